@@ -0,0 +1,119 @@
+package org.deeplearning4j;
+
+import org.deeplearning4j.datasets.iterator.utilty.ListDataSetIterator;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.optimize.api.InvocationType;
+import org.deeplearning4j.optimize.listeners.AsyncEvaluativeListener;
+import org.deeplearning4j.optimize.listeners.CheckpointListener;
+import org.deeplearning4j.optimize.listeners.EvaluativeListener;
+import org.nd4j.evaluation.classification.Evaluation;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+import org.nd4j.linalg.learning.config.Adam;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time of one training epoch with no listeners vs. periodic evaluation and checkpointing performed on the training
+ * thread (SYNC) or on a parameter snapshot in the background (ASYNC). The difference relative to NONE is the time the
+ * fit loop is stalled by the listeners; for ASYNC, the stall time reported by the listeners is also printed during setup.
+ */
+public class AsyncListeners {
+
+    public enum ListenerMode {NONE, SYNC, ASYNC}
+
+    @State(Scope.Thread)
+    public static class SetupState {
+        @Param({"NONE", "SYNC", "ASYNC"})
+        public ListenerMode mode;
+
+        @Param({"1024"})
+        public int width;
+
+        @Param({"64"})
+        public int minibatch;
+
+        @Param({"100"})
+        public int minibatchesPerEpoch;
+
+        @Param({"20"})
+        public int frequency;
+
+        public MultiLayerNetwork net;
+        public DataSetIterator iter;
+        public AsyncEvaluativeListener asyncEval;
+        public CheckpointListener checkpoint;
+
+        @Setup
+        public void setup() throws Exception {
+            Nd4j.getRandom().setSeed(12345);
+            net = new MultiLayerNetwork(new NeuralNetConfiguration.Builder()
+                    .seed(12345)
+                    .dataType(DataType.FLOAT)
+                    .updater(new Adam(1e-3))
+                    .list()
+                    .layer(new DenseLayer.Builder().nIn(width).nOut(width).activation(Activation.RELU).build())
+                    .layer(new DenseLayer.Builder().nIn(width).nOut(width).activation(Activation.RELU).build())
+                    .layer(new OutputLayer.Builder().nIn(width).nOut(10).activation(Activation.SOFTMAX)
+                            .lossFunction(LossFunctions.LossFunction.MCXENT).build())
+                    .build());
+            net.init();
+
+            DataSet all = new DataSet(Nd4j.rand(DataType.FLOAT, minibatch * minibatchesPerEpoch, width),
+                    Nd4j.eye(10).repeat(0, minibatch * minibatchesPerEpoch / 10 + 1)
+                            .get(NDArrayIndex.interval(0, minibatch * minibatchesPerEpoch),
+                                    NDArrayIndex.all()).castTo(DataType.FLOAT));
+            iter = new ListDataSetIterator<>(all.asList(), minibatch);
+            DataSetIterator evalIter = new ListDataSetIterator<>(all.asList(), minibatch);
+
+            if (mode == ListenerMode.NONE)
+                return;
+
+            File dir = Files.createTempDirectory("AsyncListeners").toFile();
+            dir.deleteOnExit();
+            checkpoint = new CheckpointListener.Builder(dir)
+                    .keepLast(1)
+                    .saveEveryNIterations(frequency)
+                    .logSaving(false)
+                    .asyncSaving(mode == ListenerMode.ASYNC)
+                    .build();
+            if (mode == ListenerMode.SYNC) {
+                net.setListeners(new EvaluativeListener(evalIter, frequency, InvocationType.ITERATION_END, new Evaluation()),
+                        checkpoint);
+            } else {
+                asyncEval = new AsyncEvaluativeListener(evalIter, frequency, InvocationType.ITERATION_END, new Evaluation());
+                net.setListeners(asyncEval, checkpoint);
+
+                net.fit(iter);
+                asyncEval.waitForCompletion();
+                checkpoint.waitForPendingSaves();
+                System.out.printf("%nAsync listeners: fit loop stall over one epoch: evaluation %.1f ms, checkpointing %.1f ms%n",
+                        asyncEval.getTotalStallMs(), checkpoint.getTotalStallMs());
+            }
+        }
+
+        @TearDown
+        public void tearDown() {
+            if (asyncEval != null)
+                asyncEval.shutdown();
+            if (checkpoint != null)
+                checkpoint.waitForPendingSaves();
+        }
+    }
+
+    @Benchmark @BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void trainingEpoch(SetupState state) {
+        state.net.fit(state.iter);
+    }
+}
@@ -0,0 +1,105 @@
+package org.deeplearning4j;
+
+import org.deeplearning4j.text.tokenization.tokenizer.BertWordPieceTokenizer;
+import org.deeplearning4j.text.tokenization.tokenizer.BertWordPieceTrie;
+import org.deeplearning4j.text.tokenization.tokenizerfactory.BertWordPieceTokenizerFactory;
+import org.nd4j.common.resources.Resources;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BERT WordPiece tokenization throughput, using the uncased BERT base vocabulary: the NavigableMap and regex based
+ * {@link BertWordPieceTokenizer} vs. the precompiled {@link BertWordPieceTrie} (as used by
+ * {@link BertWordPieceTokenizerFactory}), producing either token strings or vocabulary indices into a reused array.
+ * Each operation tokenizes a batch of synthetic sentences built from vocabulary words and punctuation; the
+ * pre-tokenize preprocessor (lower case, strip accents) is applied in all cases.
+ */
+public class BertTokenization {
+
+    public enum Method {REGEX_TREEMAP, TRIE, TRIE_IDS}
+
+    @State(Scope.Benchmark)
+    public static class SetupState {
+        @Param({"REGEX_TREEMAP", "TRIE", "TRIE_IDS"})
+        public Method method;
+
+        @Param({"1000"})
+        public int numSentences;
+
+        @Param({"30"})
+        public int sentenceLength;
+
+        public NavigableMap<String, Integer> vocab;
+        public BertWordPieceTokenizerFactory factory;
+        public String[] sentences;
+        public int[] ids;
+
+        @Setup
+        public void setup() throws Exception {
+            File f = Resources.asFile("deeplearning4j-nlp/bert/uncased_L-12_H-768_A-12/vocab.txt");
+            vocab = BertWordPieceTokenizerFactory.loadVocab(f, StandardCharsets.UTF_8);
+            long start = System.nanoTime();
+            factory = new BertWordPieceTokenizerFactory(vocab, true, true);
+            long end = System.nanoTime();
+
+            List<String> words = new ArrayList<>();
+            for (String s : vocab.keySet()) {
+                if (!s.startsWith("##") && !s.startsWith("[") && s.length() > 1)
+                    words.add(s);
+            }
+            String[] punct = {",", ".", "!", "?", "'s", " -", ":"};
+            Random r = new Random(12345);
+            sentences = new String[numSentences];
+            long numTokens = 0;
+            for (int i = 0; i < numSentences; i++) {
+                StringBuilder sb = new StringBuilder();
+                for (int j = 0; j < sentenceLength; j++) {
+                    if (j > 0)
+                        sb.append(' ');
+                    String w = words.get(r.nextInt(words.size()));
+                    //Some upper case words, and some concatenated words that need to be split into word pieces
+                    sb.append(r.nextInt(10) == 0 ? w.toUpperCase() : w);
+                    if (r.nextInt(5) == 0)
+                        sb.append(words.get(r.nextInt(words.size())));
+                    if (r.nextInt(8) == 0)
+                        sb.append(punct[r.nextInt(punct.length)]);
+                }
+                sentences[i] = sb.toString();
+
+                List<String> expected = new BertWordPieceTokenizer(sentences[i], vocab, factory.getPreTokenizePreProcessor(), null).getTokens();
+                if (!expected.equals(factory.create(sentences[i]).getTokens()))
+                    throw new IllegalStateException("Different tokens for sentence: " + sentences[i]);
+                numTokens += expected.size();
+            }
+            ids = new int[sentenceLength * 8];
+            System.out.printf("%nVocab size: %d, trie nodes: %d, trie build time: %.1f ms, tokens per sentence: %.1f%n",
+                    vocab.size(), factory.getTrie().numNodes(), (end - start) / 1e6, numTokens / (double) numSentences);
+        }
+    }
+
+    @Benchmark @BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long tokenize(SetupState state) {
+        long count = 0;
+        for (String s : state.sentences) {
+            switch (state.method) {
+                case REGEX_TREEMAP:
+                    count += new BertWordPieceTokenizer(s, state.vocab, state.factory.getPreTokenizePreProcessor(), null).countTokens();
+                    break;
+                case TRIE:
+                    count += state.factory.create(s).countTokens();
+                    break;
+                case TRIE_IDS:
+                    count += state.factory.tokenizeToIds(s, state.ids);
+                    break;
+            }
+        }
+        return count;
+    }
+}
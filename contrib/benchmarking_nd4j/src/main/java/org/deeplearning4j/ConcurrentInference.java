@@ -0,0 +1,89 @@
+package org.deeplearning4j;
+
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.parallelism.ParallelInference;
+import org.deeplearning4j.parallelism.inference.InferenceMode;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Multi-threaded inference throughput on a single model: the synchronized output methods of the shared model, vs.
+ * one {@link MultiLayerNetwork#inferenceView()} per thread (shared parameters), vs. {@link ParallelInference} with one
+ * model replica per worker.
+ */
+public class ConcurrentInference {
+
+    private static final int THREADS = 8;
+
+    @State(Scope.Benchmark)
+    public static class ModelState {
+        @Param({"512"})
+        public int width;
+
+        @Param({"1", "32"})
+        public int minibatch;
+
+        public MultiLayerNetwork net;
+        public ParallelInference parallelInference;
+
+        @Setup
+        public void setup() {
+            net = new MultiLayerNetwork(new NeuralNetConfiguration.Builder()
+                    .seed(12345)
+                    .dataType(DataType.FLOAT)
+                    .list()
+                    .layer(new DenseLayer.Builder().nIn(width).nOut(width).activation(Activation.RELU).build())
+                    .layer(new DenseLayer.Builder().nIn(width).nOut(width).activation(Activation.RELU).build())
+                    .layer(new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nIn(width).nOut(10)
+                            .activation(Activation.SOFTMAX).build())
+                    .build());
+            net.init();
+
+            parallelInference = new ParallelInference.Builder(net)
+                    .inferenceMode(InferenceMode.SEQUENTIAL)
+                    .workers(THREADS)
+                    .build();
+        }
+
+        @TearDown
+        public void tearDown() {
+            parallelInference.shutdown();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        public INDArray input;
+        public MultiLayerNetwork view;
+
+        @Setup
+        public void setup(ModelState model) {
+            input = Nd4j.rand(DataType.FLOAT, model.minibatch, model.width);
+            view = model.net.inferenceView();
+        }
+    }
+
+    @Benchmark @Threads(THREADS) @BenchmarkMode(Mode.Throughput) @OutputTimeUnit(TimeUnit.SECONDS)
+    public INDArray sharedModel(ModelState model, ThreadState state) {
+        return model.net.output(state.input);
+    }
+
+    @Benchmark @Threads(THREADS) @BenchmarkMode(Mode.Throughput) @OutputTimeUnit(TimeUnit.SECONDS)
+    public INDArray inferenceView(ThreadState state) {
+        return state.view.output(state.input);
+    }
+
+    @Benchmark @Threads(THREADS) @BenchmarkMode(Mode.Throughput) @OutputTimeUnit(TimeUnit.SECONDS)
+    public INDArray parallelInference(ModelState model, ThreadState state) {
+        return model.parallelInference.output(state.input);
+    }
+}
@@ -0,0 +1,98 @@
+package org.deeplearning4j;
+
+import org.deeplearning4j.datasets.iterator.utilty.ListDataSetIterator;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.parallelism.ParallelWrapper;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+import org.nd4j.linalg.learning.config.Adam;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ParallelWrapper training with threshold encoded gradients sharing (SHARED_GRADIENTS) vs. exact synchronous ring
+ * all-reduce (ALL_REDUCE), as a function of the number of workers. The benchmark measures the time of one epoch; as a
+ * convergence check, the score after a fixed number of epochs (from the same initialization) is printed during setup.
+ */
+public class GradientSharing {
+
+    @State(Scope.Thread)
+    public static class SetupState {
+        @Param({"SHARED_GRADIENTS", "ALL_REDUCE"})
+        public ParallelWrapper.TrainingMode mode;
+
+        @Param({"2", "4", "8", "16"})
+        public int workers;
+
+        @Param({"512"})
+        public int width;
+
+        @Param({"32"})
+        public int minibatch;
+
+        @Param({"64"})
+        public int minibatchesPerEpoch;
+
+        @Param({"5"})
+        public int convergenceEpochs;
+
+        public MultiLayerNetwork net;
+        public ParallelWrapper wrapper;
+        public DataSetIterator iter;
+
+        @Setup
+        public void setup() {
+            Nd4j.getRandom().setSeed(12345);
+            net = new MultiLayerNetwork(new NeuralNetConfiguration.Builder()
+                    .seed(12345)
+                    .dataType(DataType.FLOAT)
+                    .updater(new Adam(1e-3))
+                    .list()
+                    .layer(new DenseLayer.Builder().nIn(width).nOut(width).activation(Activation.RELU).build())
+                    .layer(new DenseLayer.Builder().nIn(width).nOut(width).activation(Activation.RELU).build())
+                    .layer(new OutputLayer.Builder(LossFunctions.LossFunction.MSE).nIn(width).nOut(10)
+                            .activation(Activation.IDENTITY).build())
+                    .build());
+            net.init();
+
+            int n = minibatch * minibatchesPerEpoch;
+            INDArray f = Nd4j.rand(DataType.FLOAT, n, width);
+            INDArray l = f.get(NDArrayIndex.all(), NDArrayIndex.interval(0, 10)).mul(2.0);
+            DataSet all = new DataSet(f, l);
+            iter = new ListDataSetIterator<>(all.asList(), minibatch);
+
+            wrapper = new ParallelWrapper.Builder<>(net)
+                    .workers(workers)
+                    .prefetchBuffer(0)
+                    .trainingMode(mode)
+                    .build();
+
+            double before = net.score(all);
+            for (int i = 0; i < convergenceEpochs; i++) {
+                wrapper.fit(iter);
+            }
+            System.out.printf("%nMode: %s, workers: %d, score before: %.5f, after %d epochs: %.5f%n",
+                    mode, workers, before, convergenceEpochs, net.score(all));
+        }
+
+        @TearDown
+        public void tearDown() {
+            wrapper.shutdown();
+        }
+    }
+
+    @Benchmark @BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void epoch(SetupState state) {
+        state.wrapper.fit(state.iter);
+    }
+}
@@ -0,0 +1,74 @@
+package org.deeplearning4j;
+
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.util.NetworkUtils;
+import org.deeplearning4j.zoo.model.ResNet50;
+import org.deeplearning4j.zoo.model.VGG16;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.ops.transforms.Transforms;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inference time for zoo models before and after {@link NetworkUtils#fuseForInference(ComputationGraph)}.<br>
+ * The zoo ResNet50 sets identity as its default activation function, so its convolution layers are linear and each
+ * convolution + batch norm (+ ReLU activation layer) sequence is fused. VGG16 has no batch norm, activation or dropout
+ * layers and is included as a baseline.<br>
+ * The number of vertices before and after fusion and the maximum output difference are printed during setup.
+ */
+public class InferenceFusion {
+
+    public enum Model {RESNET50, VGG16}
+
+    @State(Scope.Thread)
+    public static class SetupState {
+        @Param({"RESNET50", "VGG16"})
+        public Model model;
+
+        @Param({"false", "true"})
+        public boolean fused;
+
+        @Param({"1", "16"})
+        public int minibatch;
+
+        public ComputationGraph net;
+        public INDArray input;
+
+        @Setup
+        public void setup() {
+            ComputationGraph orig;
+            switch (model) {
+                case RESNET50:
+                    orig = ResNet50.builder().numClasses(1000).build().init();
+                    break;
+                case VGG16:
+                    orig = VGG16.builder().numClasses(1000).build().init();
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown model: " + model);
+            }
+
+            input = Nd4j.rand(DataType.FLOAT, minibatch, 3, 224, 224);
+            if (model == Model.VGG16)
+                input = input.reshape(minibatch, 3 * 224 * 224);
+
+            if (fused) {
+                net = NetworkUtils.fuseForInference(orig);
+                double maxDiff = Transforms.abs(orig.outputSingle(input).sub(net.outputSingle(input)), false).maxNumber().doubleValue();
+                System.out.printf("%nModel: %s, vertices before fusion: %d, after fusion: %d, max output difference: %.3e%n",
+                        model, orig.getVertices().length, net.getVertices().length, maxDiff);
+            } else {
+                net = orig;
+            }
+        }
+    }
+
+    @Benchmark @BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public INDArray output(SetupState state) {
+        return state.net.outputSingle(state.input);
+    }
+
+}
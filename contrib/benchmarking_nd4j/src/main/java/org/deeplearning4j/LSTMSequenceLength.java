@@ -0,0 +1,76 @@
+package org.deeplearning4j;
+
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.GravesLSTM;
+import org.deeplearning4j.nn.conf.layers.LSTM;
+import org.deeplearning4j.nn.conf.layers.Layer;
+import org.deeplearning4j.nn.conf.layers.RnnOutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.learning.config.Adam;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LSTM and GravesLSTM forward pass (inference) and training step (forward + backward) time, as a function of the
+ * sequence length. Uses the built-in (non-helper) implementation in LSTMHelpers.
+ */
+public class LSTMSequenceLength {
+
+    @State(Scope.Thread)
+    public static class SetupState {
+        @Param({"LSTM", "GravesLSTM"})
+        public String layerType;
+
+        @Param({"10", "100", "1000"})
+        public int sequenceLength;
+
+        @Param({"32"})
+        public int minibatch;
+
+        @Param({"128"})
+        public int nIn;
+
+        @Param({"256"})
+        public int layerSize;
+
+        public MultiLayerNetwork net;
+        public INDArray features;
+        public INDArray labels;
+
+        @Setup
+        public void setup() {
+            Layer lstm = "LSTM".equals(layerType)
+                    ? new LSTM.Builder().nIn(nIn).nOut(layerSize).activation(Activation.TANH).build()
+                    : new GravesLSTM.Builder().nIn(nIn).nOut(layerSize).activation(Activation.TANH).build();
+            net = new MultiLayerNetwork(new NeuralNetConfiguration.Builder()
+                    .seed(12345)
+                    .dataType(DataType.FLOAT)
+                    .updater(new Adam(1e-3))
+                    .list()
+                    .layer(lstm)
+                    .layer(new RnnOutputLayer.Builder(LossFunctions.LossFunction.MSE).nIn(layerSize).nOut(nIn)
+                            .activation(Activation.IDENTITY).build())
+                    .build());
+            net.init();
+
+            features = Nd4j.rand(DataType.FLOAT, minibatch, nIn, sequenceLength);
+            labels = Nd4j.rand(DataType.FLOAT, minibatch, nIn, sequenceLength);
+        }
+    }
+
+    @Benchmark @BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public INDArray forward(SetupState state) {
+        return state.net.output(state.features);
+    }
+
+    @Benchmark @BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void trainingStep(SetupState state) {
+        state.net.fit(state.features, state.labels);
+    }
+}
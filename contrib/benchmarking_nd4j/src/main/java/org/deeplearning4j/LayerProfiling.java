@@ -0,0 +1,90 @@
+package org.deeplearning4j;
+
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.profiling.LayerProfiler;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.learning.config.Adam;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Training step time for an MLP with no profiler attached, with a {@link LayerProfiler} recording timing and memory
+ * only (no op counting, no trace) and with a fully enabled profiler (op counting and Chrome trace recording).<br>
+ * The per-layer summary table for a few iterations is printed during setup.
+ */
+public class LayerProfiling {
+
+    public enum ProfilerMode {NONE, TIMING, FULL}
+
+    @State(Scope.Thread)
+    public static class SetupState {
+        @Param({"NONE", "TIMING", "FULL"})
+        public ProfilerMode mode;
+
+        @Param({"4"})
+        public int layers;
+
+        @Param({"256", "1024"})
+        public int width;
+
+        @Param({"64"})
+        public int minibatch;
+
+        public MultiLayerNetwork net;
+        public DataSet ds;
+        public LayerProfiler profiler;
+
+        @Setup
+        public void setup() {
+            NeuralNetConfiguration.ListBuilder b = new NeuralNetConfiguration.Builder()
+                    .dataType(DataType.FLOAT)
+                    .updater(new Adam(1e-3))
+                    .list();
+            for (int i = 0; i < layers; i++) {
+                b.layer(new DenseLayer.Builder().nIn(width).nOut(width).activation(Activation.RELU).build());
+            }
+            b.layer(new OutputLayer.Builder().nIn(width).nOut(10).activation(Activation.SOFTMAX)
+                    .lossFunction(LossFunctions.LossFunction.MCXENT).build());
+            MultiLayerConfiguration conf = b.build();
+            net = new MultiLayerNetwork(conf);
+            net.init();
+
+            ds = new DataSet(Nd4j.rand(DataType.FLOAT, minibatch, width),
+                    Nd4j.eye(10).getRows(new int[minibatch]).castTo(DataType.FLOAT));
+
+            if (mode != ProfilerMode.NONE) {
+                profiler = new LayerProfiler.Builder()
+                        .countOps(mode == ProfilerMode.FULL)
+                        .recordTrace(mode == ProfilerMode.FULL)
+                        .build()
+                        .attach(net);
+                for (int i = 0; i < 10; i++) {
+                    net.fit(ds);
+                }
+                System.out.println();
+                System.out.println(profiler.summaryTable());
+                profiler.reset();
+            }
+        }
+
+        @TearDown
+        public void tearDown() {
+            if (profiler != null)
+                profiler.detach();
+        }
+    }
+
+    @Benchmark @BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void trainingStep(SetupState state) {
+        state.net.fit(state.ds);
+    }
+}
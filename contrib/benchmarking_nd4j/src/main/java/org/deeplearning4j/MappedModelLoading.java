@@ -0,0 +1,107 @@
+package org.deeplearning4j;
+
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.util.MappedModelSerializer;
+import org.deeplearning4j.util.ModelSerializer;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Model loading time for the zip format ({@link ModelSerializer}) vs. the memory mapped format
+ * ({@link MappedModelSerializer}), for a MultiLayerNetwork of approximately 1GB of FLOAT parameters (with the default
+ * sizes). The increase in resident set size (Linux only) after loading the model and after running one forward pass
+ * is printed during setup.<br>
+ * Note that the files will usually be in the OS page cache after the first iteration, hence this measures loading
+ * time without disk I/O.
+ */
+public class MappedModelLoading {
+
+    public enum Format {ZIP, MAPPED}
+
+    @State(Scope.Benchmark)
+    public static class SetupState {
+        @Param({"ZIP", "MAPPED"})
+        public Format format;
+
+        @Param({"8192"})
+        public int width;
+
+        @Param({"4"})
+        public int layers;
+
+        public File file;
+
+        @Setup
+        public void setup() throws Exception {
+            NeuralNetConfiguration.ListBuilder b = new NeuralNetConfiguration.Builder()
+                    .dataType(DataType.FLOAT)
+                    .list();
+            for (int i = 0; i < layers - 1; i++) {
+                b.layer(new DenseLayer.Builder().nIn(width).nOut(width).activation(Activation.RELU).build());
+            }
+            b.layer(new OutputLayer.Builder().nIn(width).nOut(10).activation(Activation.SOFTMAX)
+                    .lossFunction(LossFunctions.LossFunction.MCXENT).build());
+            MultiLayerNetwork net = new MultiLayerNetwork(b.build());
+            net.init();
+
+            file = Files.createTempFile("MappedModelLoading", format == Format.ZIP ? ".zip" : ".bin").toFile();
+            file.deleteOnExit();
+            if (format == Format.ZIP) {
+                ModelSerializer.writeModel(net, file, false);
+            } else {
+                MappedModelSerializer.writeModel(net, file, false);
+            }
+            long numParams = net.numParams();
+            net = null;
+            System.gc();
+
+            long rssBefore = rssKb();
+            MultiLayerNetwork loaded = load(this);
+            long rssLoaded = rssKb();
+            loaded.output(Nd4j.rand(DataType.FLOAT, 1, width));
+            long rssOutput = rssKb();
+            System.out.printf("%nFormat: %s, parameters: %d (%.1f MB), file size: %.1f MB, RSS increase after load: %.1f MB, after forward pass: %.1f MB%n",
+                    format, numParams, numParams * 4 / (1024.0 * 1024.0), file.length() / (1024.0 * 1024.0),
+                    (rssLoaded - rssBefore) / 1024.0, (rssOutput - rssBefore) / 1024.0);
+        }
+
+        private static long rssKb() throws IOException {
+            File status = new File("/proc/self/status");
+            if (!status.exists())
+                return 0;
+            List<String> lines = Files.readAllLines(status.toPath(), StandardCharsets.UTF_8);
+            for (String s : lines) {
+                if (s.startsWith("VmRSS:")) {
+                    return Long.parseLong(s.substring("VmRSS:".length()).replace("kB", "").trim());
+                }
+            }
+            return 0;
+        }
+    }
+
+    private static MultiLayerNetwork load(SetupState state) throws IOException {
+        if (state.format == Format.ZIP) {
+            return ModelSerializer.restoreMultiLayerNetwork(state.file, false);
+        } else {
+            return MappedModelSerializer.restoreMultiLayerNetwork(state.file, false);
+        }
+    }
+
+    @Benchmark @BenchmarkMode(Mode.SingleShotTime) @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public MultiLayerNetwork loadModel(SetupState state) throws IOException {
+        return load(state);
+    }
+}
@@ -0,0 +1,81 @@
+package org.deeplearning4j;
+
+import org.deeplearning4j.datasets.iterator.utilty.ListDataSetIterator;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.inputs.InputType;
+import org.deeplearning4j.nn.conf.layers.ConvolutionLayer;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.conf.layers.SubsamplingLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.quantization.PostTrainingQuantizer;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.learning.config.Adam;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inference time for a small CNN in FP32 vs. after post-training INT8 quantization (see {@link PostTrainingQuantizer}).
+ * The quantization report (accuracy delta, latency and memory) is printed during setup.
+ */
+public class QuantizedInference {
+
+    @State(Scope.Thread)
+    public static class SetupState {
+        @Param({"false", "true"})
+        public boolean quantized;
+
+        @Param({"32"})
+        public int minibatch;
+
+        public MultiLayerNetwork net;
+        public INDArray features;
+
+        @Setup
+        public void setup() {
+            MultiLayerNetwork original = new MultiLayerNetwork(new NeuralNetConfiguration.Builder()
+                    .seed(12345)
+                    .dataType(DataType.FLOAT)
+                    .updater(new Adam(1e-3))
+                    .list()
+                    .layer(new ConvolutionLayer.Builder().kernelSize(5, 5).nOut(20).activation(Activation.RELU).build())
+                    .layer(new SubsamplingLayer.Builder().kernelSize(2, 2).stride(2, 2).build())
+                    .layer(new ConvolutionLayer.Builder().kernelSize(5, 5).nOut(50).activation(Activation.RELU).build())
+                    .layer(new SubsamplingLayer.Builder().kernelSize(2, 2).stride(2, 2).build())
+                    .layer(new DenseLayer.Builder().nOut(500).activation(Activation.RELU).build())
+                    .layer(new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nOut(10).activation(Activation.SOFTMAX).build())
+                    .setInputType(InputType.convolutional(28, 28, 1))
+                    .build());
+            original.init();
+
+            INDArray f = Nd4j.rand(DataType.FLOAT, 10 * minibatch, 1, 28, 28);
+            INDArray l = Nd4j.zeros(DataType.FLOAT, 10 * minibatch, 10);
+            for (int i = 0; i < l.size(0); i++) {
+                l.putScalar(i, i % 10, 1.0);
+            }
+            DataSetIterator iter = new ListDataSetIterator<>(new DataSet(f, l).asList(), minibatch);
+            original.fit(iter, 2);
+
+            if (quantized) {
+                net = new PostTrainingQuantizer(iter, 5).quantize(original);
+                System.out.println();
+                System.out.println(PostTrainingQuantizer.report(original, net, iter));
+            } else {
+                net = original;
+            }
+            features = Nd4j.rand(DataType.FLOAT, minibatch, 1, 28, 28);
+        }
+    }
+
+    @Benchmark @BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public INDArray output(SetupState state) {
+        return state.net.output(state.features);
+    }
+}
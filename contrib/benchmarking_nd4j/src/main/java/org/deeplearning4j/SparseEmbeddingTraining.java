@@ -0,0 +1,79 @@
+package org.deeplearning4j;
+
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.EmbeddingLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.learning.config.Adam;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Training step time (Adam updater) for an embedding layer with dense gradients vs. sparse (row-wise) gradients, for
+ * different vocabulary sizes. With sparse gradients, only the rows for the indices in the minibatch are touched by the
+ * gradient calculation, updater and parameter update, so the step time should be independent of the vocabulary size.
+ */
+public class SparseEmbeddingTraining {
+
+    @State(Scope.Thread)
+    public static class SetupState {
+        @Param({"false", "true"})
+        public boolean sparse;
+
+        @Param({"100000", "1000000", "5000000"})
+        public int vocabSize;
+
+        @Param({"32"})
+        public int embeddingSize;
+
+        @Param({"1024"})
+        public int minibatch;
+
+        public MultiLayerNetwork net;
+        public DataSet[] data;
+        public int next;
+
+        @Setup
+        public void setup() {
+            MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                    .dataType(DataType.FLOAT)
+                    .updater(new Adam(1e-3))
+                    .list()
+                    .layer(new EmbeddingLayer.Builder().nIn(vocabSize).nOut(embeddingSize).sparseGradients(sparse).build())
+                    .layer(new OutputLayer.Builder().nIn(embeddingSize).nOut(10).activation(Activation.SOFTMAX)
+                            .lossFunction(LossFunctions.LossFunction.MCXENT).build())
+                    .build();
+            net = new MultiLayerNetwork(conf);
+            net.init();
+
+            //Zipf-like index distribution, as for word frequencies
+            Random r = new Random(12345);
+            data = new DataSet[16];
+            for (int i = 0; i < data.length; i++) {
+                INDArray in = Nd4j.create(DataType.FLOAT, minibatch, 1);
+                INDArray labels = Nd4j.create(DataType.FLOAT, minibatch, 10);
+                for (int j = 0; j < minibatch; j++) {
+                    int idx = (int) Math.min(vocabSize - 1, Math.floor(Math.exp(r.nextDouble() * Math.log(vocabSize))) - 1);
+                    in.putScalar(j, 0, idx);
+                    labels.putScalar(j, r.nextInt(10), 1.0);
+                }
+                data[i] = new DataSet(in, labels);
+            }
+            net.fit(data[0]);
+        }
+    }
+
+    @Benchmark @BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void trainingStep(SetupState state) {
+        state.net.fit(state.data[state.next++ % state.data.length]);
+    }
+}
@@ -0,0 +1,77 @@
+package org.deeplearning4j;
+
+import org.deeplearning4j.models.word2vec.Huffman;
+import org.deeplearning4j.models.word2vec.VocabWord;
+import org.deeplearning4j.models.word2vec.wordstore.VocabCache;
+import org.deeplearning4j.models.word2vec.wordstore.inmemory.AbstractCache;
+import org.deeplearning4j.models.word2vec.wordstore.inmemory.CompactVocabCache;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Vocabulary build time for {@link AbstractCache} vs. {@link CompactVocabCache}: adding a Zipf-like stream of tokens
+ * (new words are added, existing words have their count incremented), followed by building the Huffman tree.<br>
+ * The heap used by the filled vocabulary (including the VocabWord elements, which are the same for both
+ * implementations) is printed during setup.
+ */
+public class VocabCacheFootprint {
+
+    public enum CacheType {ABSTRACT, COMPACT}
+
+    @State(Scope.Benchmark)
+    public static class SetupState {
+        @Param({"ABSTRACT", "COMPACT"})
+        public CacheType cacheType;
+
+        @Param({"1000000", "5000000"})
+        public int vocabSize;
+
+        public String[] tokens;
+
+        @Setup
+        public void setup() {
+            //Each word appears once, plus a Zipf-like tail of repeated frequent words
+            Random r = new Random(12345);
+            tokens = new String[2 * vocabSize];
+            for (int i = 0; i < vocabSize; i++)
+                tokens[i] = "word_" + i;
+            for (int i = vocabSize; i < tokens.length; i++)
+                tokens[i] = tokens[(int) Math.min(vocabSize - 1, Math.exp(r.nextDouble() * Math.log(vocabSize)) - 1)];
+
+            long before = usedHeap();
+            VocabCache<VocabWord> cache = build(this);
+            long after = usedHeap();
+            System.out.printf("%nCache: %s, words: %d, heap used: %.1f MB (%.1f bytes/word)%n", cacheType,
+                    cache.numWords(), (after - before) / (1024.0 * 1024.0), (after - before) / (double) cache.numWords());
+        }
+
+        private static long usedHeap() {
+            Runtime rt = Runtime.getRuntime();
+            for (int i = 0; i < 3; i++)
+                System.gc();
+            return rt.totalMemory() - rt.freeMemory();
+        }
+    }
+
+    private static VocabCache<VocabWord> build(SetupState state) {
+        VocabCache<VocabWord> cache = state.cacheType == CacheType.ABSTRACT ? new AbstractCache.Builder<VocabWord>().build()
+                : new CompactVocabCache.Builder<VocabWord>().build();
+        for (String token : state.tokens) {
+            if (!cache.containsWord(token))
+                cache.addToken(new VocabWord(1.0, token));
+            else
+                cache.incrementWordCount(token);
+        }
+        Huffman huffman = new Huffman(cache.vocabWords());
+        huffman.build();
+        huffman.applyIndexes(cache);
+        return cache;
+    }
+
+    @Benchmark @BenchmarkMode(Mode.SingleShotTime) @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public VocabCache<VocabWord> buildVocab(SetupState state) {
+        return build(state);
+    }
+}
@@ -0,0 +1,88 @@
+package org.deeplearning4j;
+
+import org.deeplearning4j.models.word2vec.Word2Vec;
+import org.deeplearning4j.text.sentenceiterator.CollectionSentenceIterator;
+import org.deeplearning4j.text.tokenization.tokenizerfactory.DefaultTokenizerFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Word2Vec (SkipGram, negative sampling) training time for one epoch over a synthetic corpus, vs. the number of
+ * calculation threads (Hogwild training - set via workers).<br>
+ * Words are sampled from a Zipf-like distribution over the vocabulary. The corpus size and the training throughput
+ * (words/sec) for one epoch are printed during setup. Note that each fit also includes vocabulary construction,
+ * which is the same for all thread counts.
+ */
+public class Word2VecHogwild {
+
+    @State(Scope.Thread)
+    public static class SetupState {
+        @Param({"1", "2", "4", "8"})
+        public int threads;
+
+        @Param({"10000"})
+        public int vocabSize;
+
+        @Param({"50000"})
+        public int numSentences;
+
+        @Param({"20"})
+        public int sentenceLength;
+
+        @Param({"100"})
+        public int layerSize;
+
+        public List<String> corpus;
+
+        @Setup
+        public void setup() {
+            Random r = new Random(12345);
+            //Zipf-like: P(rank k) ~ 1/k, via inverse CDF of a log-uniform distribution
+            corpus = new ArrayList<>(numSentences);
+            for (int i = 0; i < numSentences; i++) {
+                StringBuilder sb = new StringBuilder();
+                for (int j = 0; j < sentenceLength; j++) {
+                    if (j > 0)
+                        sb.append(' ');
+                    int w = (int) Math.min(vocabSize - 1, Math.floor(Math.exp(r.nextDouble() * Math.log(vocabSize))) - 1);
+                    sb.append('w').append(w);
+                }
+                corpus.add(sb.toString());
+            }
+
+            long start = System.nanoTime();
+            fit(this);
+            double sec = (System.nanoTime() - start) / 1e9;
+            long words = (long) numSentences * sentenceLength;
+            System.out.printf("%nThreads: %d, corpus: %d sentences, %d words; one epoch: %.2f sec, %.0f words/sec%n",
+                    threads, numSentences, words, sec, words / sec);
+        }
+    }
+
+    private static Word2Vec fit(SetupState state) {
+        Word2Vec vec = new Word2Vec.Builder()
+                .iterate(new CollectionSentenceIterator(state.corpus))
+                .tokenizerFactory(new DefaultTokenizerFactory())
+                .minWordFrequency(1)
+                .layerSize(state.layerSize)
+                .windowSize(5)
+                .negativeSample(5)
+                .useHierarchicSoftmax(false)
+                .epochs(1)
+                .seed(12345)
+                .workers(state.threads)
+                .build();
+        vec.fit();
+        return vec;
+    }
+
+    @Benchmark @BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Word2Vec trainEpoch(SetupState state) {
+        return fit(state);
+    }
+
+}
@@ -0,0 +1,122 @@
+package org.deeplearning4j;
+
+import org.deeplearning4j.models.embeddings.loader.MappedWordVectorSerializer;
+import org.deeplearning4j.models.embeddings.loader.WordVectorSerializer;
+import org.deeplearning4j.models.embeddings.wordvectors.WordVectors;
+import org.deeplearning4j.models.word2vec.MappedWord2Vec;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading time and single word lookup time for word vectors in the Google binary format (loaded using
+ * {@link WordVectorSerializer#readWord2VecModel(File)}) vs. the memory mapped format ({@link MappedWord2Vec}),
+ * for a synthetic model of 1M words with 300 dimensions (approximately 1.2GB) with the default sizes.
+ * The increase in resident set size (Linux only) after loading the model and after 10000 random lookups is printed
+ * during setup.<br>
+ * Note that the files will usually be in the OS page cache after the first iteration, hence this measures loading
+ * time without disk I/O.
+ */
+public class WordVectorsLoading {
+
+    public enum Format {BINARY, MAPPED}
+
+    @State(Scope.Benchmark)
+    public static class SetupState {
+        @Param({"BINARY", "MAPPED"})
+        public Format format;
+
+        @Param({"1000000"})
+        public int vocabSize;
+
+        @Param({"300"})
+        public int layerSize;
+
+        public File file;
+        public WordVectors vectors;
+        public String[] queries;
+        public int next;
+
+        @Setup
+        public void setup() throws Exception {
+            File binary = Files.createTempFile("WordVectorsLoading", ".bin").toFile();
+            binary.deleteOnExit();
+            Random r = new Random(12345);
+            try (OutputStream os = new BufferedOutputStream(new FileOutputStream(binary))) {
+                os.write((vocabSize + " " + layerSize + "\n").getBytes(StandardCharsets.UTF_8));
+                ByteBuffer bb = ByteBuffer.allocate(4 * layerSize).order(ByteOrder.LITTLE_ENDIAN);
+                for (int i = 0; i < vocabSize; i++) {
+                    os.write(("w" + i + " ").getBytes(StandardCharsets.UTF_8));
+                    bb.clear();
+                    for (int j = 0; j < layerSize; j++)
+                        bb.putFloat((float) r.nextGaussian());
+                    os.write(bb.array());
+                }
+            }
+
+            if (format == Format.BINARY) {
+                file = binary;
+            } else {
+                file = Files.createTempFile("WordVectorsLoading", ".mmap").toFile();
+                file.deleteOnExit();
+                long start = System.currentTimeMillis();
+                MappedWordVectorSerializer.convert(binary, file);
+                System.out.printf("%nConversion time: %d ms%n", System.currentTimeMillis() - start);
+            }
+
+            queries = new String[10000];
+            for (int i = 0; i < queries.length; i++)
+                queries[i] = "w" + r.nextInt(vocabSize);
+
+            System.gc();
+            long rssBefore = rssKb();
+            vectors = load(this);
+            long rssLoaded = rssKb();
+            for (String s : queries)
+                vectors.getWordVectorMatrix(s);
+            long rssLookup = rssKb();
+            System.out.printf("%nFormat: %s, file size: %.1f MB, RSS increase after load: %.1f MB, after %d lookups: %.1f MB%n",
+                    format, file.length() / (1024.0 * 1024.0), (rssLoaded - rssBefore) / 1024.0, queries.length,
+                    (rssLookup - rssBefore) / 1024.0);
+        }
+
+        private static long rssKb() throws IOException {
+            File status = new File("/proc/self/status");
+            if (!status.exists())
+                return 0;
+            List<String> lines = Files.readAllLines(status.toPath(), StandardCharsets.UTF_8);
+            for (String s : lines) {
+                if (s.startsWith("VmRSS:")) {
+                    return Long.parseLong(s.substring("VmRSS:".length()).replace("kB", "").trim());
+                }
+            }
+            return 0;
+        }
+    }
+
+    private static WordVectors load(SetupState state) throws IOException {
+        if (state.format == Format.BINARY) {
+            return WordVectorSerializer.readWord2VecModel(state.file);
+        } else {
+            return MappedWord2Vec.load(state.file);
+        }
+    }
+
+    @Benchmark @BenchmarkMode(Mode.SingleShotTime) @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public WordVectors loadModel(SetupState state) throws IOException {
+        return load(state);
+    }
+
+    @Benchmark @BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public INDArray lookup(SetupState state) {
+        return state.vectors.getWordVectorMatrix(state.queries[state.next++ % state.queries.length]);
+    }
+}
@@ -0,0 +1,105 @@
+package org.deeplearning4j;
+
+import org.deeplearning4j.models.embeddings.inmemory.InMemoryLookupTable;
+import org.deeplearning4j.models.embeddings.reader.ModelUtils;
+import org.deeplearning4j.models.embeddings.reader.impl.BasicModelUtils;
+import org.deeplearning4j.models.embeddings.reader.impl.HnswIndex;
+import org.deeplearning4j.models.embeddings.reader.impl.HnswModelUtils;
+import org.deeplearning4j.models.word2vec.VocabWord;
+import org.deeplearning4j.models.word2vec.wordstore.inmemory.AbstractCache;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Query time for {@link ModelUtils#wordsNearest(INDArray, int)} (top 10) with the brute force implementation
+ * ({@link BasicModelUtils}) vs. an approximate nearest neighbour index ({@link HnswModelUtils}), on synthetic
+ * clustered word vectors.<br>
+ * For HNSW, the index build time and recall@10 (vs. the brute force results, over 200 queries) are printed during
+ * setup.
+ */
+public class WordsNearestAnn {
+
+    public enum Method {BRUTE_FORCE, HNSW}
+
+    @State(Scope.Thread)
+    public static class SetupState {
+        @Param({"BRUTE_FORCE", "HNSW"})
+        public Method method;
+
+        @Param({"100000", "1000000"})
+        public int vocabSize;
+
+        @Param({"300"})
+        public int layerSize;
+
+        @Param({"64"})
+        public int efSearch;
+
+        public ModelUtils<VocabWord> utils;
+        public INDArray[] queries;
+        public int next;
+
+        @Setup
+        public void setup() {
+            AbstractCache<VocabWord> cache = new AbstractCache.Builder<VocabWord>().build();
+            for (int i = 0; i < vocabSize; i++) {
+                cache.addToken(new VocabWord(1.0, "w" + i));
+                cache.addWordToIndex(i, "w" + i);
+            }
+            InMemoryLookupTable<VocabWord> table = new InMemoryLookupTable.Builder<VocabWord>()
+                    .vectorLength(layerSize).cache(cache).build();
+
+            Nd4j.getRandom().setSeed(12345);
+            int clusters = vocabSize / 100;
+            INDArray centers = Nd4j.randn(DataType.FLOAT, clusters, layerSize);
+            INDArray syn0 = Nd4j.randn(DataType.FLOAT, vocabSize, layerSize).muli(0.5);
+            for (int i = 0; i < vocabSize; i++) {
+                syn0.getRow(i).addi(centers.getRow(i % clusters));
+            }
+            table.setSyn0(syn0);
+
+            Random r = new Random(12345);
+            queries = new INDArray[1000];
+            for (int i = 0; i < queries.length; i++) {
+                queries[i] = syn0.getRow(r.nextInt(vocabSize)).add(Nd4j.randn(DataType.FLOAT, layerSize).muli(0.1));
+            }
+
+            BasicModelUtils<VocabWord> basic = new BasicModelUtils<>();
+            basic.init(table);
+            if (method == Method.BRUTE_FORCE) {
+                utils = basic;
+                return;
+            }
+
+            HnswModelUtils<VocabWord> hnsw = new HnswModelUtils<>(new HnswIndex.Builder().efSearch(efSearch));
+            hnsw.init(table);
+            long start = System.currentTimeMillis();
+            hnsw.getIndex();
+            long buildTime = System.currentTimeMillis() - start;
+
+            int found = 0;
+            int n = 200;
+            for (int i = 0; i < n; i++) {
+                Set<String> exact = new HashSet<>(basic.wordsNearest(queries[i], 10));
+                for (String s : hnsw.wordsNearest(queries[i], 10)) {
+                    if (exact.contains(s))
+                        found++;
+                }
+            }
+            System.out.printf("%nVocab size: %d, HNSW index build time: %d ms, recall@10: %.4f (efSearch=%d)%n",
+                    vocabSize, buildTime, found / (10.0 * n), efSearch);
+            utils = hnsw;
+        }
+    }
+
+    @Benchmark @BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Collection<String> wordsNearest(SetupState state) {
+        return state.utils.wordsNearest(state.queries[state.next++ % state.queries.length], 10);
+    }
+
+}
@@ -0,0 +1,88 @@
+package org.nd4j;
+
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.executioner.LazyExecutionScope;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.ops.transforms.Transforms;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Element-wise op chains executed eagerly (one pass over memory per op) vs. within a {@link LazyExecutionScope}
+ * (fused, executed block by block).
+ */
+public class LazyExecution {
+
+    @State(Scope.Thread)
+    public static class SetupState {
+        @Param({"65536", "4194304"})
+        public int length;
+
+        public INDArray x;
+        public INDArray a;
+        public INDArray b;
+        public INDArray out;
+
+        @Setup
+        public void setup() {
+            x = Nd4j.rand(DataType.FLOAT, length);
+            a = Nd4j.rand(DataType.FLOAT, length);
+            b = Nd4j.rand(DataType.FLOAT, length);
+            out = Nd4j.create(DataType.FLOAT, length);
+        }
+    }
+
+    private static void mulAddScale(SetupState state) {
+        state.out.assign(state.x);
+        state.out.muli(state.a).addi(state.b).muli(0.5);
+    }
+
+    private static void sigmoidOfDiff(SetupState state) {
+        Transforms.sigmoid(state.x.sub(state.b), false);
+    }
+
+    private static void longChain(SetupState state) {
+        state.out.assign(state.x);
+        state.out.muli(state.a).addi(state.b).subi(0.5).muli(2.0);
+        Transforms.tanh(state.out, false);
+        state.out.muli(state.b).addi(1.0);
+    }
+
+    @Benchmark @BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void mulAddScaleEager(SetupState state) {
+        mulAddScale(state);
+    }
+
+    @Benchmark @BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void mulAddScaleLazy(SetupState state) {
+        try (LazyExecutionScope scope = LazyExecutionScope.open()) {
+            mulAddScale(state);
+        }
+    }
+
+    @Benchmark @BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void sigmoidOfDiffEager(SetupState state) {
+        sigmoidOfDiff(state);
+    }
+
+    @Benchmark @BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void sigmoidOfDiffLazy(SetupState state) {
+        try (LazyExecutionScope scope = LazyExecutionScope.open()) {
+            sigmoidOfDiff(state);
+        }
+    }
+
+    @Benchmark @BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void longChainEager(SetupState state) {
+        longChain(state);
+    }
+
+    @Benchmark @BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void longChainLazy(SetupState state) {
+        try (LazyExecutionScope scope = LazyExecutionScope.open()) {
+            longChain(state);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package org.nd4j.samediff;
+
+import org.bytedeco.javacpp.Pointer;
+import org.nd4j.autodiff.listeners.At;
+import org.nd4j.autodiff.listeners.BaseListener;
+import org.nd4j.autodiff.listeners.Operation;
+import org.nd4j.autodiff.samediff.SDVariable;
+import org.nd4j.autodiff.samediff.SameDiff;
+import org.nd4j.autodiff.samediff.TrainingConfig;
+import org.nd4j.autodiff.samediff.internal.SameDiffOp;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.OpContext;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.MultiDataSet;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.learning.config.Adam;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Training step time for a deep residual MLP (transformer feed-forward style blocks: [x + W2 * gelu(W1 * x)]) with
+ * and without activation checkpointing.<br>
+ * The peak native memory growth during the first training step (a measure of peak activation memory) is printed
+ * during setup.
+ */
+public class ActivationCheckpointingBenchmark {
+
+    @State(Scope.Thread)
+    public static class SetupState {
+        @Param({"false", "true"})
+        public boolean checkpointing;
+
+        @Param({"24"})
+        public int blocks;
+
+        @Param({"512"})
+        public int width;
+
+        @Param({"256"})
+        public int minibatch;
+
+        public SameDiff sd;
+        public DataSet ds;
+
+        @Setup
+        public void setup() {
+            SameDiff sd = SameDiff.create();
+            SDVariable in = sd.placeHolder("in", DataType.FLOAT, -1, width);
+            SDVariable label = sd.placeHolder("label", DataType.FLOAT, -1, width);
+            SDVariable x = in;
+            for (int i = 0; i < blocks; i++) {
+                SDVariable w1 = sd.var("w1_" + i, Nd4j.rand(DataType.FLOAT, width, 4 * width).subi(0.5).divi(width));
+                SDVariable b1 = sd.var("b1_" + i, Nd4j.zeros(DataType.FLOAT, 4 * width));
+                SDVariable w2 = sd.var("w2_" + i, Nd4j.rand(DataType.FLOAT, 4 * width, width).subi(0.5).divi(4 * width));
+                SDVariable b2 = sd.var("b2_" + i, Nd4j.zeros(DataType.FLOAT, width));
+                SDVariable h = sd.nn().gelu(x.mmul(w1).add(b1));
+                x = sd.math().add("block_" + i, x, h.mmul(w2).add(b2));
+            }
+            sd.loss().meanSquaredError("loss", label, x, null);
+
+            sd.setTrainingConfig(TrainingConfig.builder()
+                    .updater(new Adam(1e-4))
+                    .dataSetFeatureMapping("in")
+                    .dataSetLabelMapping("label")
+                    .autoActivationCheckpoints(checkpointing)
+                    .build());
+
+            this.sd = sd;
+            ds = new DataSet(Nd4j.rand(DataType.FLOAT, minibatch, width), Nd4j.rand(DataType.FLOAT, minibatch, width));
+
+            PeakMemoryListener l = new PeakMemoryListener();
+            sd.fit(ds, l);
+            System.out.printf("%nActivation checkpointing: %s, peak native memory growth during first step: %.1f MB%n",
+                    checkpointing, l.peak / (1024.0 * 1024.0));
+        }
+    }
+
+    /**
+     * Records the maximum increase in allocated native memory, relative to the start of the iteration
+     */
+    public static class PeakMemoryListener extends BaseListener {
+        private long start;
+        private long peak;
+
+        @Override
+        public boolean isActive(Operation operation) {
+            return true;
+        }
+
+        @Override
+        public void iterationStart(SameDiff sd, At at, MultiDataSet data, long etlTimeMs) {
+            start = Pointer.totalBytes();
+        }
+
+        @Override
+        public void opExecution(SameDiff sd, At at, MultiDataSet batch, SameDiffOp op, OpContext opContext, INDArray[] outputs) {
+            peak = Math.max(peak, Pointer.totalBytes() - start);
+        }
+    }
+
+    @Benchmark @BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void trainingStep(SetupState state) {
+        state.sd.fit(state.ds);
+    }
+
+}
@@ -0,0 +1,90 @@
+package org.nd4j.samediff;
+
+import org.nd4j.autodiff.samediff.SDVariable;
+import org.nd4j.autodiff.samediff.SameDiff;
+import org.nd4j.autodiff.samediff.optimize.GraphOptimizer;
+import org.nd4j.autodiff.samediff.optimize.OptimizerSet;
+import org.nd4j.autodiff.samediff.optimize.optimizations.FusionFunctionOptimizations;
+import org.nd4j.autodiff.samediff.optimize.optimizations.UnusedFunctionOptimizations;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.impl.layers.convolution.config.Conv2DConfig;
+import org.nd4j.linalg.api.ops.impl.layers.convolution.config.PaddingMode;
+import org.nd4j.linalg.factory.Nd4j;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ResNet-style graph, structured as commonly seen in imported models: residual blocks of [conv2d -> batchnorm -> relu]
+ * followed by a [matmul -> biasadd -> relu] head.
+ * Compares the graph as-is against the graph after the fusion optimizations (batch norm folding, xw_plus_b/relu_layer)
+ */
+public class GraphFusion {
+
+    @State(Scope.Thread)
+    public static class SetupState {
+        @Param({"false", "true"})
+        public boolean fused;
+
+        @Param({"4"})
+        public int blocks;
+
+        @Param({"32"})
+        public int channels;
+
+        public SameDiff sd;
+        public Map<String, INDArray> placeholders;
+
+        @Setup
+        public void setup() {
+            SameDiff sd = SameDiff.create();
+            SDVariable in = sd.placeHolder("input", DataType.FLOAT, -1, channels, 32, 32);
+            SDVariable x = in;
+            for (int i = 0; i < blocks; i++) {
+                SDVariable shortcut = x;
+                for (int j = 0; j < 2; j++) {
+                    x = convBn(sd, x, "b" + i + "_" + j);
+                    if (j == 0)
+                        x = sd.nn().relu(x, 0.0);
+                }
+                x = sd.nn().relu(x.add(shortcut), 0.0);
+            }
+
+            SDVariable pooled = x.mean(2, 3);
+            SDVariable w1 = sd.constant("fc1_w", Nd4j.rand(DataType.FLOAT, channels, 128).subi(0.5).divi(channels));
+            SDVariable b1 = sd.constant("fc1_b", Nd4j.rand(DataType.FLOAT, 128));
+            SDVariable fc1 = sd.nn().relu(sd.nn().biasAdd(pooled.mmul(w1), b1, true), 0.0);
+            SDVariable w2 = sd.constant("fc2_w", Nd4j.rand(DataType.FLOAT, 128, 10).subi(0.5).divi(128));
+            SDVariable b2 = sd.constant("fc2_b", Nd4j.rand(DataType.FLOAT, 10));
+            sd.nn().biasAdd(fc1.mmul(w2), b2, true).rename("out");
+
+            if (fused) {
+                sd = GraphOptimizer.optimize(sd, Collections.singletonList("out"),
+                        Arrays.<OptimizerSet>asList(new FusionFunctionOptimizations(), new UnusedFunctionOptimizations()));
+            }
+            this.sd = sd;
+            placeholders = Collections.singletonMap("input", Nd4j.rand(DataType.FLOAT, 16, channels, 32, 32));
+        }
+
+        private SDVariable convBn(SameDiff sd, SDVariable in, String name) {
+            SDVariable w = sd.constant(name + "_w", Nd4j.rand(DataType.FLOAT, 3, 3, channels, channels).subi(0.5).divi(9 * channels));
+            SDVariable mean = sd.constant(name + "_mean", Nd4j.rand(DataType.FLOAT, channels).subi(0.5));
+            SDVariable var = sd.constant(name + "_var", Nd4j.rand(DataType.FLOAT, channels).addi(0.5));
+            SDVariable gamma = sd.constant(name + "_gamma", Nd4j.rand(DataType.FLOAT, channels));
+            SDVariable beta = sd.constant(name + "_beta", Nd4j.rand(DataType.FLOAT, channels));
+            Conv2DConfig c = Conv2DConfig.builder().kH(3).kW(3).paddingMode(PaddingMode.SAME).dataFormat("NCHW").build();
+            SDVariable conv = sd.cnn().conv2d(in, w, c);
+            return sd.nn().batchNorm(conv, mean, var, gamma, beta, 1e-5, 1);
+        }
+    }
+
+    @Benchmark @BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public INDArray output(SetupState state) {
+        return state.sd.output(state.placeholders, "out").get("out");
+    }
+
+}
@@ -0,0 +1,58 @@
+package org.nd4j.samediff;
+
+import org.nd4j.autodiff.samediff.SDVariable;
+import org.nd4j.autodiff.samediff.SameDiff;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wide synthetic graph: a number of independent branches (dense + tanh layers) merged at the end.
+ * Compares sequential execution (interOpThreads = 1) against inter-op parallel execution.
+ */
+public class InterOpParallelism {
+
+    @State(Scope.Thread)
+    public static class SetupState {
+        @Param({"1", "2", "4", "8"})
+        public int interOpThreads;
+
+        @Param({"8"})
+        public int branches;
+
+        @Param({"256"})
+        public int layerSize;
+
+        public SameDiff sd;
+        public Map<String, INDArray> placeholders;
+
+        @Setup
+        public void setup() {
+            sd = SameDiff.create();
+            SDVariable in = sd.placeHolder("input", DataType.FLOAT, -1, layerSize);
+            SDVariable[] out = new SDVariable[branches];
+            for (int i = 0; i < branches; i++) {
+                SDVariable x = in;
+                for (int j = 0; j < 4; j++) {
+                    SDVariable w = sd.var("w_" + i + "_" + j, Nd4j.rand(DataType.FLOAT, layerSize, layerSize).subi(0.5).divi(layerSize));
+                    x = sd.math().tanh(x.mmul(w));
+                }
+                out[i] = x;
+            }
+            sd.math().mergeAdd(out).rename("out");
+            sd.setInterOpThreads(interOpThreads);
+            placeholders = Collections.singletonMap("input", Nd4j.rand(DataType.FLOAT, 32, layerSize));
+        }
+    }
+
+    @Benchmark @BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public INDArray output(SetupState state) {
+        return state.sd.output(state.placeholders, "out").get("out");
+    }
+
+}
@@ -0,0 +1,84 @@
+package org.nd4j.samediff;
+
+import org.nd4j.autodiff.samediff.SDVariable;
+import org.nd4j.autodiff.samediff.SameDiff;
+import org.nd4j.autodiff.samediff.TrainingConfig;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.learning.config.Adam;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Training step time for an MLP with FP32 training vs. mixed precision training (HALF/BFLOAT16 forward and backward
+ * passes, FP32 master weights and updater state, dynamic loss scaling).<br>
+ * As a convergence check, the loss after a fixed number of iterations (from the same initialization) is printed during
+ * setup, along with the number of iterations skipped due to gradient overflow.
+ */
+public class MixedPrecisionBenchmark {
+
+    @State(Scope.Thread)
+    public static class SetupState {
+        @Param({"FLOAT", "HALF", "BFLOAT16"})
+        public DataType dataType;
+
+        @Param({"4"})
+        public int layers;
+
+        @Param({"1024"})
+        public int width;
+
+        @Param({"256"})
+        public int minibatch;
+
+        @Param({"200"})
+        public int convergenceIterations;
+
+        public SameDiff sd;
+        public DataSet ds;
+
+        @Setup
+        public void setup() {
+            Nd4j.getRandom().setSeed(12345);
+            SameDiff sd = SameDiff.create();
+            SDVariable in = sd.placeHolder("in", DataType.FLOAT, -1, width);
+            SDVariable label = sd.placeHolder("label", DataType.FLOAT, -1, width);
+            SDVariable x = in;
+            for (int i = 0; i < layers; i++) {
+                SDVariable w = sd.var("w" + i, Nd4j.randn(DataType.FLOAT, width, width).divi(Math.sqrt(width)));
+                SDVariable b = sd.var("b" + i, Nd4j.zeros(DataType.FLOAT, width));
+                x = x.mmul(w).add(b);
+                if (i < layers - 1)
+                    x = sd.nn().relu(x, 0.0);
+            }
+            sd.loss().meanSquaredError("loss", label, x, null);
+
+            sd.setTrainingConfig(TrainingConfig.builder()
+                    .updater(new Adam(1e-3))
+                    .dataSetFeatureMapping("in")
+                    .dataSetLabelMapping("label")
+                    .mixedPrecision(dataType == DataType.FLOAT ? null : dataType)
+                    .build());
+
+            this.sd = sd;
+            ds = new DataSet(Nd4j.rand(DataType.FLOAT, minibatch, width), Nd4j.rand(DataType.FLOAT, minibatch, width));
+
+            double first = sd.fit(ds).lossCurve().lastMeanLoss("loss");
+            double last = first;
+            for (int i = 1; i < convergenceIterations; i++) {
+                last = sd.fit(ds).lossCurve().lastMeanLoss("loss");
+            }
+            long skipped = sd.getLossScaler() == null ? 0 : sd.getLossScaler().getSkippedSteps();
+            System.out.printf("%nTraining datatype: %s, loss after 1 iteration: %.5f, after %d iterations: %.5f, skipped iterations: %d%n",
+                    dataType, first, convergenceIterations, last, skipped);
+        }
+    }
+
+    @Benchmark @BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void trainingStep(SetupState state) {
+        state.sd.fit(state.ds);
+    }
+
+}
@@ -53,7 +53,8 @@ public class SkipGram<T extends SequenceElement> implements ElementsLearningAlgo
     protected VocabCache<T> vocabCache;
     protected WeightLookupTable<T> lookupTable;
     protected VectorsConfiguration configuration;
-    private ArrayCacheMemoryMgr  arrayCacheMemoryMgr;
+    // ArrayCacheMemoryMgr is not thread safe: one instance per calculation thread
+    private ThreadLocal<ArrayCacheMemoryMgr> arrayCacheMemoryMgr;
     protected int window;
     protected boolean useAdaGrad;
     protected double negative;
@@ -110,7 +111,7 @@ public class SkipGram<T extends SequenceElement> implements ElementsLearningAlgo
         this.vocabCache = vocabCache;
         this.lookupTable = lookupTable;
         this.configuration = configuration;
-        arrayCacheMemoryMgr = new ArrayCacheMemoryMgr();
+        arrayCacheMemoryMgr = ThreadLocal.withInitial(ArrayCacheMemoryMgr::new);
         if (configuration.getNegative() > 0) {
             if (((InMemoryLookupTable<T>) lookupTable).getSyn1Neg() == null) {
                 log.info("Initializing syn1Neg...");
@@ -370,7 +371,7 @@ public class SkipGram<T extends SequenceElement> implements ElementsLearningAlgo
 
         List<INDArray> release = new ArrayList<>();
         if (useHS && useNegative) {
-            INDArray idxSyn1Arr = arrayCacheMemoryMgr.allocate(false,DataType.INT32,idxSyn1.length);
+            INDArray idxSyn1Arr = arrayCacheMemoryMgr.get().allocate(false,DataType.INT32,idxSyn1.length);
 
             sg = SkipGramInference.builder()
                     .target(lastWord.getIndex())
@@ -414,7 +415,7 @@ public class SkipGram<T extends SequenceElement> implements ElementsLearningAlgo
 
         }
         else if (useNegative) {
-            INDArray negativeArr = arrayCacheMemoryMgr.allocate(false,DataType.INT32,1);
+            INDArray negativeArr = arrayCacheMemoryMgr.get().allocate(false,DataType.INT32,1);
             negativeArr.putScalar(0,negative);
 
             sg = SkipGramInference.builder()
@@ -497,7 +498,7 @@ public class SkipGram<T extends SequenceElement> implements ElementsLearningAlgo
 
         List<INDArray> release = new ArrayList<>();
         if (useHS && useNegative) {
-            INDArray idxSyn1Arr = arrayCacheMemoryMgr.allocate(false,DataType.INT32,idxSyn1.length);
+            INDArray idxSyn1Arr = arrayCacheMemoryMgr.get().allocate(false,DataType.INT32,idxSyn1.length);
 
             sg = SkipGramInference.builder()
                     .target(lastWord.getIndex())
@@ -541,7 +542,7 @@ public class SkipGram<T extends SequenceElement> implements ElementsLearningAlgo
 
         }
         else if (useNegative) {
-            INDArray negativeArr = arrayCacheMemoryMgr.allocate(false,DataType.INT32,1);
+            INDArray negativeArr = arrayCacheMemoryMgr.get().allocate(false,DataType.INT32,1);
             negativeArr.putScalar(0,negative);
 
             sg = SkipGramInference.builder()
@@ -570,7 +571,7 @@ public class SkipGram<T extends SequenceElement> implements ElementsLearningAlgo
 
         //release after use
         for(INDArray arr : release)
-            arrayCacheMemoryMgr.release(arr);
+            arrayCacheMemoryMgr.get().release(arr);
 
         return score;
     }
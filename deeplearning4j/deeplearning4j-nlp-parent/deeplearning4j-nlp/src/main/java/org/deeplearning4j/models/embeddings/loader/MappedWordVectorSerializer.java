@@ -0,0 +1,279 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.models.embeddings.loader;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+import org.deeplearning4j.models.embeddings.wordvectors.WordVectors;
+import org.deeplearning4j.models.word2vec.MappedWord2Vec;
+import org.deeplearning4j.models.word2vec.VocabWord;
+import org.nd4j.common.primitives.Pair;
+import org.nd4j.common.util.ND4JFileUtils;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Writing of word vectors in the memory mappable format read by {@link MappedWord2Vec} - see there for the file layout.<br>
+ * Conversion from the formats supported by {@link WordVectorSerializer#loadStaticModel(File)} (Google binary, text
+ * and DL4J zip formats) is done by streaming: only the vocabulary is kept in memory, and not the vectors. Hence this
+ * can be used as a one-time conversion for models that are too large to load with
+ * {@link WordVectorSerializer#readWord2VecModel(File)}.
+ */
+@Slf4j
+public class MappedWordVectorSerializer {
+
+    private static final int WRITE_BUFFER_SIZE = 8 * 1024 * 1024;
+
+    private MappedWordVectorSerializer() {}
+
+    /**
+     * Write the given word vectors to a file, in the memory mappable format
+     *
+     * @param vectors Word vectors to write
+     * @param file    File to write to
+     * @throws IOException
+     */
+    public static void writeWordVectors(@NonNull WordVectors vectors, @NonNull File file) throws IOException {
+        int numWords = vectors.vocab().numWords();
+        try (MappedWriter writer = new MappedWriter(file)) {
+            for (int i = 0; i < numWords; i++) {
+                String word = vectors.vocab().wordAtIndex(i);
+                INDArray vector = vectors.getWordVectorMatrix(word);
+                writer.add(word, vector.ravel().toFloatVector());
+            }
+        }
+    }
+
+    /**
+     * Convert word vectors to the memory mappable format.<br>
+     * The source file may be in any of the formats supported by {@link WordVectorSerializer#loadStaticModel(File)}:
+     * 1) Binary model, either compressed or not. Like well-known Google Model
+     * 2) Popular CSV word2vec text format
+     * 3) DL4j compressed format
+     *
+     * @param source Source file
+     * @param target File to write to
+     * @return the converted word vectors, as loaded from the target file
+     * @throws IOException
+     */
+    public static MappedWord2Vec convert(@NonNull File source, @NonNull File target) throws IOException {
+        if (!source.exists() || source.isDirectory())
+            throw new IOException("File [" + source.getAbsolutePath() + "] was not found");
+
+        long start = System.currentTimeMillis();
+        File tmpFileSyn0 = null;
+        try {
+            ZipFile zipFile = null;
+            try {
+                zipFile = new ZipFile(source);
+            } catch (IOException e) {
+                //Not DL4J format
+            }
+
+            if (zipFile != null) {
+                log.debug("Converting DL4J format...");
+                try {
+                    ZipEntry syn0 = zipFile.getEntry("syn0.txt");
+                    if (syn0 == null)
+                        throw new IOException("File [" + source.getAbsolutePath() + "] does not contain syn0.txt");
+                    tmpFileSyn0 = ND4JFileUtils.createTempFile("word2vec", "syn");
+                    try (InputStream stream = zipFile.getInputStream(syn0)) {
+                        FileUtils.copyInputStreamToFile(stream, tmpFileSyn0);
+                    }
+                } finally {
+                    zipFile.close();
+                }
+                write(new WordVectorSerializer.CSVReader(tmpFileSyn0), target);
+            } else {
+                try {
+                    log.debug("Trying CSVReader...");
+                    write(new WordVectorSerializer.CSVReader(source), target);
+                } catch (Exception e) {
+                    log.debug("Trying BinaryReader...");
+                    try {
+                        write(new WordVectorSerializer.BinaryReader(source), target);
+                    } catch (Exception ez) {
+                        throw new IOException("Unable to guess input file format", ez);
+                    }
+                }
+            }
+        } finally {
+            if (tmpFileSyn0 != null)
+                tmpFileSyn0.delete();
+        }
+
+        MappedWord2Vec ret = MappedWord2Vec.load(target);
+        log.info("Converted {} words to mapped format in {} ms", ret.vocabSize(), System.currentTimeMillis() - start);
+        return ret;
+    }
+
+    private static void write(WordVectorSerializer.Reader reader, File target) throws Exception {
+        try (WordVectorSerializer.Reader r = reader; MappedWriter writer = new MappedWriter(target)) {
+            while (r.hasNext()) {
+                Pair<VocabWord, float[]> pair = r.next();
+                writer.add(pair.getFirst().getLabel(), pair.getSecond());
+            }
+        }
+    }
+
+    private static long align(long offset) {
+        return (offset + MappedWord2Vec.ALIGNMENT - 1) / MappedWord2Vec.ALIGNMENT * MappedWord2Vec.ALIGNMENT;
+    }
+
+    /**
+     * Streaming writer: vectors are written directly to the file as they are added, and the vocabulary sections and
+     * the header are written on closing
+     */
+    protected static class MappedWriter implements Closeable {
+        private final FileChannel ch;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private final List<String> words = new ArrayList<>();
+        private final Set<String> seen = new HashSet<>();
+        private float[] norms = new float[1024];
+        private int vectorSize = -1;
+        private long position = MappedWord2Vec.HEADER_SIZE;
+
+        protected MappedWriter(File file) throws IOException {
+            ch = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        protected void add(String word, float[] vector) throws IOException {
+            if (vectorSize < 0)
+                vectorSize = vector.length;
+            if (vector.length != vectorSize)
+                throw new IllegalStateException("Vector for word \"" + word + "\" has length " + vector.length
+                        + ", expected " + vectorSize);
+            if (!seen.add(word))
+                throw new IllegalStateException("Tried to add existing word \"" + word + "\"");
+
+            double norm = 0.0;
+            for (float f : vector) {
+                if (buffer.remaining() < 4)
+                    flush();
+                buffer.putFloat(f);
+                norm += f * f;
+            }
+            if (words.size() == norms.length)
+                norms = Arrays.copyOf(norms, 2 * norms.length);
+            norms[words.size()] = (float) Math.sqrt(norm);
+            words.add(word);
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining())
+                position += ch.write(buffer, position);
+            buffer.clear();
+        }
+
+        private long writeSection(long offset, ByteBuffer section) throws IOException {
+            offset = align(offset);
+            long p = offset;
+            section.flip();
+            while (section.hasRemaining())
+                p += ch.write(section, p);
+            return offset;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+                int numWords = words.size();
+                if (numWords == 0)
+                    throw new IllegalStateException("No word vectors were written");
+                long vectorsOffset = MappedWord2Vec.HEADER_SIZE;
+                long vectorsEnd = vectorsOffset + 4L * numWords * vectorSize;
+
+                byte[][] encoded = new byte[numWords][];
+                long wordsLength = 0;
+                for (int i = 0; i < numWords; i++) {
+                    encoded[i] = words.get(i).getBytes(StandardCharsets.UTF_8);
+                    wordsLength += encoded[i].length;
+                }
+                if (wordsLength > Integer.MAX_VALUE)
+                    throw new IllegalStateException("Vocabulary too large: " + wordsLength + " bytes");
+
+                ByteBuffer wordsBuffer = ByteBuffer.allocate((int) wordsLength);
+                ByteBuffer offsetsBuffer = ByteBuffer.allocate(4 * (numWords + 1)).order(ByteOrder.LITTLE_ENDIAN);
+                for (byte[] b : encoded) {
+                    offsetsBuffer.putInt(wordsBuffer.position());
+                    wordsBuffer.put(b);
+                }
+                offsetsBuffer.putInt(wordsBuffer.position());
+
+                //Load factor of at most 0.5
+                int hashSize = Integer.highestOneBit(Math.max(2, 2 * numWords - 1)) << 1;
+                int[] table = new int[hashSize];
+                for (int i = 0; i < numWords; i++) {
+                    int slot = MappedWord2Vec.hash(words.get(i)) & (hashSize - 1);
+                    while (table[slot] != 0)
+                        slot = (slot + 1) & (hashSize - 1);
+                    table[slot] = i + 1;
+                }
+                ByteBuffer hashBuffer = ByteBuffer.allocate(4 * hashSize).order(ByteOrder.LITTLE_ENDIAN);
+                hashBuffer.asIntBuffer().put(table);
+                hashBuffer.position(hashBuffer.capacity());
+
+                ByteBuffer normsBuffer = ByteBuffer.allocate(4 * numWords).order(ByteOrder.LITTLE_ENDIAN);
+                normsBuffer.asFloatBuffer().put(norms, 0, numWords);
+                normsBuffer.position(normsBuffer.capacity());
+
+                long wordsOffset = writeSection(vectorsEnd, wordsBuffer);
+                long wordOffsetsOffset = writeSection(wordsOffset + wordsLength, offsetsBuffer);
+                long hashOffset = writeSection(wordOffsetsOffset + 4L * (numWords + 1), hashBuffer);
+                long normsOffset = writeSection(hashOffset + 4L * hashSize, normsBuffer);
+
+                ByteBuffer header = ByteBuffer.allocate(MappedWord2Vec.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                header.put(MappedWord2Vec.MAGIC);
+                header.putInt(MappedWord2Vec.VERSION);
+                header.putInt(vectorSize);
+                header.putLong(numWords);
+                header.putLong(vectorsOffset);
+                header.putLong(wordsOffset);
+                header.putLong(wordsLength);
+                header.putLong(wordOffsetsOffset);
+                header.putLong(hashOffset);
+                header.putInt(hashSize);
+                header.putInt(0);
+                header.putLong(normsOffset);
+                header.position(header.capacity());
+                writeSection(0, header);
+            } finally {
+                ch.close();
+            }
+        }
+    }
+}
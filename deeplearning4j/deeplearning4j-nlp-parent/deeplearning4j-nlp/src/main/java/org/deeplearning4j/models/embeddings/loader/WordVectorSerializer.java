@@ -45,6 +45,7 @@ import org.deeplearning4j.models.sequencevectors.SequenceVectors;
 import org.deeplearning4j.models.sequencevectors.interfaces.SequenceElementFactory;
 import org.deeplearning4j.models.sequencevectors.sequence.SequenceElement;
 import org.deeplearning4j.models.sequencevectors.serialization.VocabWordFactory;
+import org.deeplearning4j.models.word2vec.MappedWord2Vec;
 import org.deeplearning4j.models.word2vec.StaticWord2Vec;
 import org.deeplearning4j.models.word2vec.VocabWord;
 import org.deeplearning4j.models.word2vec.Word2Vec;
@@ -52,6 +53,7 @@ import org.deeplearning4j.models.word2vec.wordstore.VocabCache;
 import org.deeplearning4j.models.word2vec.wordstore.VocabularyHolder;
 import org.deeplearning4j.models.word2vec.wordstore.VocabularyWord;
 import org.deeplearning4j.models.word2vec.wordstore.inmemory.AbstractCache;
+import org.deeplearning4j.models.word2vec.wordstore.inmemory.CompactVocabCache;
 import org.deeplearning4j.models.word2vec.wordstore.inmemory.InMemoryLookupCache;
 import org.deeplearning4j.text.documentiterator.LabelsSource;
 import org.deeplearning4j.text.sentenceiterator.BasicLineIterator;
@@ -2203,7 +2205,9 @@ public class WordVectorSerializer {
             throws IOException {
 
         InMemoryLookupTable<VocabWord> lookupTable = (InMemoryLookupTable<VocabWord>) vectors.getLookupTable();
-        AbstractCache<T> vocabCache = (AbstractCache<T>) vectors.getVocab();
+        VocabCache<T> vocabCache = vectors.getVocab();
+        String vocabJson = vocabCache instanceof CompactVocabCache ? ((CompactVocabCache<T>) vocabCache).toJson()
+                : ((AbstractCache<T>) vocabCache).toJson();
 
         try (ZipOutputStream zipfile = new ZipOutputStream(new BufferedOutputStream(new CloseShieldOutputStream(stream)));
              DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(zipfile))) {
@@ -2217,7 +2221,7 @@ public class WordVectorSerializer {
 
             ZipEntry vocab = new ZipEntry(VOCAB_ENTRY);
             zipfile.putNextEntry(vocab);
-            zipfile.write(vocabCache.toJson().getBytes("UTF-8"));
+            zipfile.write(vocabJson.getBytes("UTF-8"));
 
             INDArray syn0Data = lookupTable.getSyn0();
             ZipEntry syn0 = new ZipEntry(SYN0_ENTRY);
@@ -2943,8 +2947,10 @@ public class WordVectorSerializer {
      * 1) Binary model, either compressed or not. Like well-known Google Model
      * 2) Popular CSV word2vec text format
      * 3) DL4j compressed format
+     * 4) Memory mapped format, see {@link MappedWordVectorSerializer}
      *
      * In return you get StaticWord2Vec model, which might be used as lookup table only in multi-gpu environment.
+     * For the memory mapped format, a {@link MappedWord2Vec} is returned instead.
      *
      * @param file File
      * @return
@@ -2954,6 +2960,14 @@ public class WordVectorSerializer {
             throw new RuntimeException(
                     new FileNotFoundException("File [" + file.getAbsolutePath() + "] was not found"));
 
+        if (MappedWord2Vec.isMappedFile(file)) {
+            try {
+                return MappedWord2Vec.load(file);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
         int originalFreq = Nd4j.getMemoryManager().getOccasionalGcFrequency();
         boolean originalPeriodic = Nd4j.getMemoryManager().isPeriodicGcActive();
 
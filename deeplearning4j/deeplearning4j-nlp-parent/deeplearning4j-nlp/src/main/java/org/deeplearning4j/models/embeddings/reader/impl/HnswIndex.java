@@ -0,0 +1,696 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.models.embeddings.reader.impl;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.nd4j.common.base.Preconditions;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hierarchical Navigable Small World (HNSW) graph index, for approximate nearest neighbour search by cosine
+ * similarity. See Malkov and Yashunin, "Efficient and robust approximate nearest neighbor search using Hierarchical
+ * Navigable Small World graphs", 2016.<br>
+ * Results are row indices into the matrix the index was built from. Vectors are normalized to unit length and kept
+ * on heap; {@link #save(File)} only persists the graph, so the same vectors must be provided again when loading.<br>
+ * Construction is multi-threaded. Searches are thread safe.
+ */
+@Slf4j
+public class HnswIndex {
+    private static final int MAGIC = 0x484E5357;    // "HNSW"
+    private static final int VERSION = 1;
+    private static final int LOCK_STRIPES = 4096;
+
+    @Getter
+    private final int size;
+    @Getter
+    private final int dimension;
+    @Getter
+    private final int m;
+    private final int m0;
+    @Getter
+    private final int efConstruction;
+    @Getter
+    private volatile int efSearch;
+
+    private float[][] vectors;
+    private final int[] levels;
+    // layer 0 links: node i at offset i * (m0 + 1): neighbour count, followed by up to m0 neighbours
+    private final int[] links0;
+    // layer 1+ links, per node: at offset (level - 1) * (m + 1): neighbour count, followed by up to m neighbours
+    private final int[][] upperLinks;
+    private volatile int entryPoint = -1;
+    private volatile int maxLevel = -1;
+
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final ReentrantLock globalLock = new ReentrantLock();
+    private final ThreadLocal<VisitedSet> visited;
+
+    private HnswIndex(int size, int dimension, int m, int efConstruction, int efSearch, int[] levels) {
+        this.size = size;
+        this.dimension = dimension;
+        this.m = m;
+        this.m0 = 2 * m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.levels = levels;
+        this.links0 = new int[size * (m0 + 1)];
+        this.upperLinks = new int[size][];
+        for (int i = 0; i < size; i++) {
+            if (levels[i] > 0)
+                upperLinks[i] = new int[levels[i] * (m + 1)];
+        }
+        for (int i = 0; i < LOCK_STRIPES; i++)
+            locks[i] = new Object();
+        this.visited = ThreadLocal.withInitial(() -> new VisitedSet(size));
+    }
+
+    /**
+     * Set the size of the dynamic candidate list used for searches: larger values give higher recall, at the cost of
+     * slower queries. Values less than the number of requested results are increased to that number.
+     */
+    public void setEfSearch(int efSearch) {
+        Preconditions.checkArgument(efSearch > 0, "efSearch must be positive, got %s", efSearch);
+        this.efSearch = efSearch;
+    }
+
+    /**
+     * Search for the approximate k nearest neighbours (by cosine similarity) of the query vector
+     *
+     * @param query Query vector, length {@link #getDimension()}
+     * @param k     Number of results
+     * @return Row indices of the nearest vectors, most similar first. May contain fewer than k results
+     */
+    public int[] search(@NonNull INDArray query, int k) {
+        return search(query.castTo(DataType.FLOAT).reshape(query.length()).toFloatVector(), k);
+    }
+
+    /**
+     * @see #search(INDArray, int)
+     */
+    public int[] search(@NonNull float[] query, int k) {
+        Preconditions.checkArgument(query.length == dimension, "Query vector length (%s) does not match index dimension (%s)",
+                query.length, dimension);
+        int ep = entryPoint;
+        if (ep < 0 || k <= 0)
+            return new int[0];
+
+        float[] q = unitVector(query);
+        int cur = ep;
+        float curDist = distance(q, vectors[cur]);
+        for (int l = maxLevel; l > 0; l--) {
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                int[] links = upperLinks[cur];
+                int off = (l - 1) * (m + 1);
+                for (int j = 1; j <= links[off]; j++) {
+                    int e = links[off + j];
+                    float d = distance(q, vectors[e]);
+                    if (d < curDist) {
+                        curDist = d;
+                        cur = e;
+                        changed = true;
+                    }
+                }
+            }
+        }
+
+        long[] results = searchLayer(q, cur, curDist, Math.max(efSearch, k), 0, false).sortedAscending();
+        int[] out = new int[Math.min(k, results.length)];
+        for (int i = 0; i < out.length; i++)
+            out[i] = id(results[i]);
+        return out;
+    }
+
+    private void insert(int q) {
+        int level = levels[q];
+        float[] vq = vectors[q];
+
+        // Nodes above the current top level keep the global lock for the whole insert, as they become the entry point
+        boolean holdGlobal = false;
+        globalLock.lock();
+        int ep = entryPoint;
+        int top = maxLevel;
+        if (ep < 0) {
+            entryPoint = q;
+            maxLevel = level;
+            globalLock.unlock();
+            return;
+        }
+        if (level > top)
+            holdGlobal = true;
+        else
+            globalLock.unlock();
+
+        try {
+            int cur = ep;
+            float curDist = distance(vq, vectors[cur]);
+            for (int l = top; l > level; l--) {
+                boolean changed = true;
+                while (changed) {
+                    changed = false;
+                    int[] links = copyLinks(cur, l);
+                    for (int j = 1; j <= links[0]; j++) {
+                        float d = distance(vq, vectors[links[j]]);
+                        if (d < curDist) {
+                            curDist = d;
+                            cur = links[j];
+                            changed = true;
+                        }
+                    }
+                }
+            }
+
+            for (int l = Math.min(level, top); l >= 0; l--) {
+                long[] candidates = searchLayer(vq, cur, curDist, efConstruction, l, true).sortedAscending();
+                int[] selected = selectNeighbours(candidates, m, q);
+                synchronized (lockFor(q)) {
+                    int[] links = l == 0 ? links0 : upperLinks[q];
+                    int off = offset(q, l);
+                    links[off] = selected.length;
+                    System.arraycopy(selected, 0, links, off + 1, selected.length);
+                }
+                for (int e : selected)
+                    addLink(e, q, l);
+                cur = id(candidates[0]);
+                curDist = dist(candidates[0]);
+            }
+
+            if (holdGlobal) {
+                entryPoint = q;
+                maxLevel = level;
+            }
+        } finally {
+            if (holdGlobal)
+                globalLock.unlock();
+        }
+    }
+
+    /**
+     * Add a link from node e to node q, pruning the neighbours of e (using the neighbour selection heuristic) if it
+     * already has the maximum number of links
+     */
+    private void addLink(int e, int q, int level) {
+        int maxConn = level == 0 ? m0 : m;
+        synchronized (lockFor(e)) {
+            int[] links = level == 0 ? links0 : upperLinks[e];
+            int off = offset(e, level);
+            int count = links[off];
+            for (int j = 1; j <= count; j++) {
+                if (links[off + j] == q)
+                    return;
+            }
+            if (count < maxConn) {
+                links[off + count + 1] = q;
+                links[off] = count + 1;
+                return;
+            }
+
+            float[] ve = vectors[e];
+            long[] candidates = new long[count + 1];
+            for (int j = 0; j < count; j++) {
+                int n = links[off + j + 1];
+                candidates[j] = encode(distance(ve, vectors[n]), n);
+            }
+            candidates[count] = encode(distance(ve, vectors[q]), q);
+            Arrays.sort(candidates);
+            int[] selected = selectNeighbours(candidates, maxConn, e);
+            links[off] = selected.length;
+            System.arraycopy(selected, 0, links, off + 1, selected.length);
+        }
+    }
+
+    /**
+     * Neighbour selection heuristic: candidates (sorted by distance to the base node) are only kept if they are
+     * closer to the base node than to any already selected neighbour
+     */
+    private int[] selectNeighbours(long[] sortedCandidates, int max, int base) {
+        int[] selected = new int[max];
+        int n = 0;
+        for (long c : sortedCandidates) {
+            if (n >= max)
+                break;
+            int cid = id(c);
+            if (cid == base)
+                continue;
+            float dBase = dist(c);
+            float[] vc = vectors[cid];
+            boolean keep = true;
+            for (int j = 0; j < n; j++) {
+                if (distance(vc, vectors[selected[j]]) < dBase) {
+                    keep = false;
+                    break;
+                }
+            }
+            if (keep)
+                selected[n++] = cid;
+        }
+        return n == max ? selected : Arrays.copyOf(selected, n);
+    }
+
+    /**
+     * Best-first search within one layer of the graph
+     *
+     * @param concurrent If true: the graph is being modified concurrently, and neighbour lists are copied under lock
+     * @return Max-heap of (at most) ef nearest nodes found
+     */
+    private LongHeap searchLayer(float[] q, int ep, float epDist, int ef, int level, boolean concurrent) {
+        VisitedSet vis = visited.get();
+        vis.reset();
+        LongHeap candidates = new LongHeap(false, ef * 2);
+        LongHeap results = new LongHeap(true, ef + 1);
+        long start = encode(epDist, ep);
+        candidates.push(start);
+        results.push(start);
+        vis.visit(ep);
+
+        while (!candidates.isEmpty()) {
+            long c = candidates.pop();
+            if (results.size() >= ef && dist(c) > dist(results.peek()))
+                break;
+            int cid = id(c);
+
+            int[] links;
+            int off;
+            if (concurrent) {
+                links = copyLinks(cid, level);
+                off = 0;
+            } else {
+                links = level == 0 ? links0 : upperLinks[cid];
+                off = offset(cid, level);
+            }
+            int count = links[off];
+            for (int j = 1; j <= count; j++) {
+                int n = links[off + j];
+                if (vis.visit(n))
+                    continue;
+                float d = distance(q, vectors[n]);
+                if (results.size() < ef || d < dist(results.peek())) {
+                    long enc = encode(d, n);
+                    candidates.push(enc);
+                    results.push(enc);
+                    if (results.size() > ef)
+                        results.pop();
+                }
+            }
+        }
+        return results;
+    }
+
+    private int[] copyLinks(int node, int level) {
+        synchronized (lockFor(node)) {
+            int[] links = level == 0 ? links0 : upperLinks[node];
+            int off = offset(node, level);
+            return Arrays.copyOfRange(links, off, off + links[off] + 1);
+        }
+    }
+
+    private int offset(int node, int level) {
+        return level == 0 ? node * (m0 + 1) : (level - 1) * (m + 1);
+    }
+
+    private Object lockFor(int node) {
+        return locks[node & (LOCK_STRIPES - 1)];
+    }
+
+    /**
+     * Cosine distance between two unit vectors
+     */
+    private static float distance(float[] a, float[] b) {
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (; i + 3 < a.length; i += 4) {
+            s0 += a[i] * b[i];
+            s1 += a[i + 1] * b[i + 1];
+            s2 += a[i + 2] * b[i + 2];
+            s3 += a[i + 3] * b[i + 3];
+        }
+        for (; i < a.length; i++)
+            s0 += a[i] * b[i];
+        return 1.0f - (s0 + s1 + s2 + s3);
+    }
+
+    // Heap entries: distance (non-negative, so float bits order as integers) in the high 32 bits, node id in the low 32
+    private static long encode(float distance, int id) {
+        return ((long) Float.floatToIntBits(Math.max(distance, 0.0f)) << 32) | (id & 0xFFFFFFFFL);
+    }
+
+    private static float dist(long encoded) {
+        return Float.intBitsToFloat((int) (encoded >>> 32));
+    }
+
+    private static int id(long encoded) {
+        return (int) encoded;
+    }
+
+    private static float[] unitVector(float[] v) {
+        double norm = 0.0;
+        for (float f : v)
+            norm += f * f;
+        norm = Math.sqrt(norm);
+        float[] out = new float[v.length];
+        if (norm > 0) {
+            for (int i = 0; i < v.length; i++)
+                out[i] = (float) (v[i] / norm);
+        }
+        return out;
+    }
+
+    private static float[][] unitVectors(INDArray vectors) {
+        int rows = (int) vectors.rows();
+        float[][] out = new float[rows][];
+        int chunk = 16384;
+        for (int i = 0; i < rows; i += chunk) {
+            int end = Math.min(rows, i + chunk);
+            float[][] f = vectors.get(NDArrayIndex.interval(i, end), NDArrayIndex.all()).castTo(DataType.FLOAT).toFloatMatrix();
+            for (int j = 0; j < f.length; j++)
+                out[i + j] = unitVector(f[j]);
+        }
+        return out;
+    }
+
+    /**
+     * Save the index graph (not the vectors) to the specified file
+     */
+    public void save(@NonNull File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            save(out);
+        }
+    }
+
+    /**
+     * Save the index graph (not the vectors) to the specified stream
+     */
+    public void save(@NonNull DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(size);
+        out.writeInt(dimension);
+        out.writeInt(m);
+        out.writeInt(efConstruction);
+        out.writeInt(efSearch);
+        out.writeInt(entryPoint);
+        out.writeInt(maxLevel);
+        for (int i = 0; i < size; i++)
+            out.writeByte(levels[i]);
+        for (int i = 0; i < size; i++) {
+            writeLinks(out, links0, offset(i, 0));
+            for (int l = 1; l <= levels[i]; l++)
+                writeLinks(out, upperLinks[i], offset(i, l));
+        }
+        out.flush();
+    }
+
+    private static void writeLinks(DataOutputStream out, int[] links, int off) throws IOException {
+        out.writeShort(links[off]);
+        for (int j = 1; j <= links[off]; j++)
+            out.writeInt(links[off + j]);
+    }
+
+    /**
+     * Load an index graph saved with {@link #save(File)}
+     *
+     * @param file    File to load
+     * @param vectors Vectors the index was built from (rows: one vector per index element)
+     */
+    public static HnswIndex load(@NonNull File file, @NonNull INDArray vectors) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            return load(in, vectors);
+        }
+    }
+
+    /**
+     * @see #load(File, INDArray)
+     */
+    public static HnswIndex load(@NonNull DataInputStream in, @NonNull INDArray vectors) throws IOException {
+        if (in.readInt() != MAGIC)
+            throw new IllegalStateException("Not a HNSW index file");
+        int version = in.readInt();
+        if (version != VERSION)
+            throw new IllegalStateException("Unsupported HNSW index version: " + version);
+        int size = in.readInt();
+        int dimension = in.readInt();
+        if (vectors.rank() != 2 || vectors.rows() != size || vectors.columns() != dimension)
+            throw new IllegalStateException("Index was built for " + size + " vectors of length " + dimension
+                    + ", got vectors with shape " + Arrays.toString(vectors.shape()));
+        int m = in.readInt();
+        int efConstruction = in.readInt();
+        int efSearch = in.readInt();
+        int entryPoint = in.readInt();
+        int maxLevel = in.readInt();
+        int[] levels = new int[size];
+        for (int i = 0; i < size; i++)
+            levels[i] = in.readByte();
+
+        HnswIndex index = new HnswIndex(size, dimension, m, efConstruction, efSearch, levels);
+        for (int i = 0; i < size; i++) {
+            readLinks(in, index.links0, index.offset(i, 0));
+            for (int l = 1; l <= levels[i]; l++)
+                readLinks(in, index.upperLinks[i], index.offset(i, l));
+        }
+        index.vectors = unitVectors(vectors);
+        index.entryPoint = entryPoint;
+        index.maxLevel = maxLevel;
+        return index;
+    }
+
+    private static void readLinks(DataInputStream in, int[] links, int off) throws IOException {
+        int count = in.readShort();
+        links[off] = count;
+        for (int j = 1; j <= count; j++)
+            links[off + j] = in.readInt();
+    }
+
+    public static class Builder {
+        private int m = 16;
+        private int efConstruction = 200;
+        private int efSearch = 64;
+        private long seed = 12345;
+        private int workers = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * Maximum number of links per node in the upper layers (2 * m for the bottom layer). Default: 16
+         */
+        public Builder m(int m) {
+            Preconditions.checkArgument(m >= 2 && m <= Short.MAX_VALUE / 2, "m must be between 2 and %s, got %s", Short.MAX_VALUE / 2, m);
+            this.m = m;
+            return this;
+        }
+
+        /**
+         * Size of the dynamic candidate list during construction: larger values give a higher quality graph, at the
+         * cost of longer build times. Default: 200
+         */
+        public Builder efConstruction(int efConstruction) {
+            Preconditions.checkArgument(efConstruction > 0, "efConstruction must be positive, got %s", efConstruction);
+            this.efConstruction = efConstruction;
+            return this;
+        }
+
+        /**
+         * Default size of the dynamic candidate list for searches. See {@link HnswIndex#setEfSearch(int)}. Default: 64
+         */
+        public Builder efSearch(int efSearch) {
+            Preconditions.checkArgument(efSearch > 0, "efSearch must be positive, got %s", efSearch);
+            this.efSearch = efSearch;
+            return this;
+        }
+
+        /**
+         * RNG seed for the random level assignment
+         */
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * Number of threads used to build the index. Default: number of available processors
+         */
+        public Builder workers(int workers) {
+            Preconditions.checkArgument(workers > 0, "workers must be positive, got %s", workers);
+            this.workers = workers;
+            return this;
+        }
+
+        /**
+         * Build the index
+         *
+         * @param vectors Vectors to index, one per row
+         */
+        public HnswIndex build(@NonNull INDArray vectors) {
+            Preconditions.checkArgument(vectors.rank() == 2, "Expected rank 2 vectors array, got array with shape %ndShape", vectors);
+            int size = (int) vectors.rows();
+            int dimension = (int) vectors.columns();
+
+            Random r = new Random(seed);
+            double levelMult = 1.0 / Math.log(m);
+            int[] levels = new int[size];
+            for (int i = 0; i < size; i++)
+                levels[i] = Math.min(Byte.MAX_VALUE, (int) (-Math.log(1.0 - r.nextDouble()) * levelMult));
+
+            HnswIndex index = new HnswIndex(size, dimension, m, efConstruction, efSearch, levels);
+            index.vectors = unitVectors(vectors);
+
+            long start = System.currentTimeMillis();
+            AtomicInteger next = new AtomicInteger(0);
+            AtomicReference<Throwable> error = new AtomicReference<>();
+            Thread[] threads = new Thread[Math.max(1, Math.min(workers, size))];
+            for (int t = 0; t < threads.length; t++) {
+                threads[t] = new Thread(() -> {
+                    int i;
+                    while (error.get() == null && (i = next.getAndIncrement()) < size) {
+                        try {
+                            index.insert(i);
+                        } catch (Throwable e) {
+                            error.compareAndSet(null, e);
+                        }
+                        if (i > 0 && i % 100000 == 0)
+                            log.info("HNSW index: {} of {} vectors inserted", i, size);
+                    }
+                }, "HnswIndex builder " + t);
+                threads[t].setDaemon(true);
+                threads[t].start();
+            }
+            for (Thread t : threads) {
+                try {
+                    t.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                }
+            }
+            if (error.get() != null)
+                throw new RuntimeException("Error building HNSW index", error.get());
+
+            log.info("Built HNSW index for {} vectors in {} ms", size, System.currentTimeMillis() - start);
+            return index;
+        }
+    }
+
+    /**
+     * Binary heap of encoded (distance, id) entries
+     */
+    private static class LongHeap {
+        private final boolean max;
+        private long[] heap;
+        private int size;
+
+        private LongHeap(boolean max, int capacity) {
+            this.max = max;
+            this.heap = new long[Math.max(capacity, 4)];
+        }
+
+        private boolean before(long a, long b) {
+            return max ? a > b : a < b;
+        }
+
+        int size() {
+            return size;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        long peek() {
+            return heap[0];
+        }
+
+        void push(long v) {
+            if (size == heap.length)
+                heap = Arrays.copyOf(heap, size * 2);
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!before(v, heap[parent]))
+                    break;
+                heap[i] = heap[parent];
+                i = parent;
+            }
+            heap[i] = v;
+        }
+
+        long pop() {
+            long top = heap[0];
+            long last = heap[--size];
+            int i = 0;
+            int half = size >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                if (child + 1 < size && before(heap[child + 1], heap[child]))
+                    child++;
+                if (!before(heap[child], last))
+                    break;
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = last;
+            return top;
+        }
+
+        long[] sortedAscending() {
+            long[] out = Arrays.copyOf(heap, size);
+            Arrays.sort(out);
+            return out;
+        }
+    }
+
+    /**
+     * Visited flags for a search, reset in O(1) by incrementing the generation
+     */
+    private static class VisitedSet {
+        private final int[] marks;
+        private int generation;
+
+        private VisitedSet(int size) {
+            this.marks = new int[size];
+        }
+
+        void reset() {
+            if (++generation == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                generation = 1;
+            }
+        }
+
+        /**
+         * @return True if already visited
+         */
+        boolean visit(int i) {
+            if (marks[i] == generation)
+                return true;
+            marks[i] = generation;
+            return false;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.models.embeddings.reader.impl;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.models.embeddings.WeightLookupTable;
+import org.deeplearning4j.models.embeddings.inmemory.InMemoryLookupTable;
+import org.deeplearning4j.models.sequencevectors.sequence.SequenceElement;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * ModelUtils implementation that answers wordsNearest queries using an approximate nearest neighbour index
+ * ({@link HnswIndex}), instead of computing the similarity to every vector in the lookup table.<br>
+ * The index is built from the syn0 weights of the lookup table on first use, or loaded from a file previously written
+ * by {@link #saveIndex(File)}. Calling {@link #init(WeightLookupTable)} discards the index, so that it is rebuilt
+ * (or reloaded) from the current weights.<br>
+ * Note that wordsNearestSum is not approximated, and uses the brute force implementation of {@link BasicModelUtils}.
+ */
+@Slf4j
+public class HnswModelUtils<T extends SequenceElement> extends BasicModelUtils<T> {
+
+    private final HnswIndex.Builder builder;
+    private final File indexFile;
+    private volatile HnswIndex index;
+
+    /**
+     * Index is built on first use, with default parameters
+     */
+    public HnswModelUtils() {
+        this(new HnswIndex.Builder());
+    }
+
+    /**
+     * Index is built on first use, with the specified parameters
+     */
+    public HnswModelUtils(@NonNull HnswIndex.Builder builder) {
+        this.builder = builder;
+        this.indexFile = null;
+    }
+
+    /**
+     * Index is loaded from the specified file (see {@link #saveIndex(File)}) on first use. The file must have been
+     * created from the same vectors as the model this instance is used with.
+     */
+    public HnswModelUtils(@NonNull File indexFile) {
+        this.builder = null;
+        this.indexFile = indexFile;
+    }
+
+    @Override
+    public void init(@NonNull WeightLookupTable<T> lookupTable) {
+        super.init(lookupTable);
+        this.index = null;
+    }
+
+    /**
+     * Get the index, building or loading it first if necessary
+     */
+    public HnswIndex getIndex() {
+        HnswIndex idx = index;
+        if (idx == null) {
+            synchronized (this) {
+                if (index == null) {
+                    if (!(lookupTable instanceof InMemoryLookupTable))
+                        throw new IllegalStateException("HnswModelUtils requires an InMemoryLookupTable, got "
+                                + (lookupTable == null ? null : lookupTable.getClass().getName()));
+                    INDArray syn0 = ((InMemoryLookupTable<T>) lookupTable).getSyn0();
+                    if (indexFile != null) {
+                        try {
+                            index = HnswIndex.load(indexFile, syn0);
+                        } catch (IOException e) {
+                            throw new RuntimeException("Error loading HNSW index from " + indexFile, e);
+                        }
+                    } else {
+                        index = builder.build(syn0);
+                    }
+                }
+                idx = index;
+            }
+        }
+        return idx;
+    }
+
+    /**
+     * Save the index, so it can be loaded with {@link #HnswModelUtils(File)}
+     */
+    public void saveIndex(@NonNull File file) throws IOException {
+        getIndex().save(file);
+    }
+
+    @Override
+    public Collection<String> wordsNearest(INDArray words, int top) {
+        words = adjustRank(words);
+
+        // a couple of extra results, as UNK and STOP are skipped
+        int[] ids = getIndex().search(words, top + 2);
+        List<String> result = new ArrayList<>(top);
+        for (int id : ids) {
+            String word = vocabCache.wordAtIndex(id);
+            if (word != null && !word.equals("UNK") && !word.equals("STOP")) {
+                result.add(word);
+                if (result.size() >= top)
+                    break;
+            }
+        }
+        return result;
+    }
+}
@@ -96,9 +96,6 @@ public class SequenceVectors<T extends SequenceElement> extends WordVectorsImpl<
     protected boolean enableScavenger = false;
     protected int vocabLimit = 0;
 
-    private BatchSequences<T> batchSequences;
-
-
     @Setter
     protected transient Set<VectorsListener<T>> eventListeners;
 
@@ -324,6 +321,13 @@ public class SequenceVectors<T extends SequenceElement> extends WordVectorsImpl<
         if (this.stopWords == null)
             this.stopWords = new ArrayList<>();
 
+        // Hogwild: all calculation threads update the shared syn0/syn1/syn1Neg weights without locking.
+        // Each calculation thread already executes its own native ops, so the ops themselves run single threaded:
+        // total parallelism stays at the configured number of workers
+        int numThreads = Math.max(1, workers);
+        int opWorkers = 1;
+        log.info("Training with {} calculation threads", numThreads);
+
         val wordsCounter = new AtomicLong(0);
         for (int currentEpoch = 1; currentEpoch <= numEpochs; currentEpoch++) {
             val linesCounter = new AtomicLong(0);
@@ -333,9 +337,13 @@ public class SequenceVectors<T extends SequenceElement> extends WordVectorsImpl<
             sequencer.start();
 
             val timer = new AtomicLong(System.currentTimeMillis());
-            val thread = new VectorCalculationsThread(0, currentEpoch, wordsCounter, vocab.totalWordOccurrences(),
-                    linesCounter, sequencer, timer, numEpochs);
-            thread.start();
+            List<VectorCalculationsThread> threads = new ArrayList<>(numThreads);
+            for (int t = 0; t < numThreads; t++) {
+                val thread = new VectorCalculationsThread(t, currentEpoch, wordsCounter, vocab.totalWordOccurrences(),
+                        linesCounter, sequencer, timer, numEpochs, opWorkers);
+                thread.start();
+                threads.add(thread);
+            }
 
             try {
                 sequencer.join();
@@ -343,10 +351,17 @@ public class SequenceVectors<T extends SequenceElement> extends WordVectorsImpl<
                 throw new RuntimeException(e);
             }
 
-            try {
-                thread.join();
-            } catch (Exception e) {
-                throw new RuntimeException(e);
+            for (VectorCalculationsThread thread : threads) {
+                try {
+                    thread.join();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+
+            for (VectorCalculationsThread thread : threads) {
+                if (thread.error != null)
+                    throw new RuntimeException("Exception in " + thread.getName(), thread.error);
             }
 
             // TODO: fix this to non-exclusive termination
@@ -376,7 +391,12 @@ public class SequenceVectors<T extends SequenceElement> extends WordVectorsImpl<
     }
 
 
-    protected void trainSequence(@NonNull Sequence<T> sequence, AtomicLong nextRandom, double alpha) {
+    /**
+     * Train on a single sequence. Called concurrently by the calculation threads: each thread has its own
+     * nextRandom and batchSequences instances.
+     */
+    protected void trainSequence(@NonNull Sequence<T> sequence, AtomicLong nextRandom, double alpha,
+                                 BatchSequences<T> batchSequences) {
 
         if (sequence.getElements().isEmpty())
             return;
@@ -432,7 +452,6 @@ public class SequenceVectors<T extends SequenceElement> extends WordVectorsImpl<
                 ", lockFactor=" + lockFactor +
                 ", enableScavenger=" + enableScavenger +
                 ", vocabLimit=" + vocabLimit +
-                ", batchSequences=" + batchSequences +
                 ", eventListeners=" + eventListeners +
                 ", minWordFrequency=" + minWordFrequency +
                 ", lookupTable=" + lookupTable +
@@ -1261,6 +1280,9 @@ public class SequenceVectors<T extends SequenceElement> extends WordVectorsImpl<
      * Please note, they do not iterate the sentences over and over, each sentence processed only once.
      * Training corpus iteration is implemented in fit() method.
      *
+     * Multiple threads consume sentences from the same AsyncSequencer, and update the shared weights without locking
+     * (Hogwild). Learning rate decay for each thread is driven by the shared wordsCounter.
+     *
      */
     private class VectorCalculationsThread extends Thread implements Runnable {
         private final int threadId;
@@ -1274,13 +1296,17 @@ public class SequenceVectors<T extends SequenceElement> extends WordVectorsImpl<
         private final AtomicLong timer;
         private final long startTime;
         private final int totalEpochs;
+        private final int opWorkers;
+        private volatile Throwable error;
 
         /*
                 Long constructors suck, so this should be reduced to something reasonable later
          */
         public VectorCalculationsThread(int threadId, int epoch, AtomicLong wordsCounter, long totalWordsCount,
-                                        AtomicLong linesCounter, AsyncSequencer digitizer, AtomicLong timer, int totalEpochs) {
+                                        AtomicLong linesCounter, AsyncSequencer digitizer, AtomicLong timer, int totalEpochs,
+                                        int opWorkers) {
             this.threadId = threadId;
+            this.opWorkers = opWorkers;
             this.totalEpochs = totalEpochs;
             this.epochNumber = epoch;
             this.wordsCounter = wordsCounter;
@@ -1291,10 +1317,24 @@ public class SequenceVectors<T extends SequenceElement> extends WordVectorsImpl<
             this.startTime = timer.get();
             this.nextRandom = new AtomicLong(this.threadId);
             this.setName("VectorCalculationsThread " + this.threadId);
+            this.setDaemon(true);
         }
 
         @Override
         public void run() {
+            try {
+                train();
+            } catch (Throwable t) {
+                log.error("Exception in calculation thread {}", threadId, t);
+                error = t;
+                // keep draining the sequencer, so it can't block on a full buffer
+                while (digitizer.hasMoreLines())
+                    digitizer.nextSentence();
+            }
+        }
+
+        private void train() {
+            BatchSequences<T> batchSequences = null;
             // small workspace, just to handle
             val conf = WorkspaceConfiguration.builder()
                     .policyLearning(LearningPolicy.OVER_TIME)
@@ -1337,13 +1377,13 @@ public class SequenceVectors<T extends SequenceElement> extends WordVectorsImpl<
                                                 / ((double) this.totalWordsCount) / (numIterations
                                                 * totalEpochs))));
 
-                                trainSequence(sequence, nextRandom, alpha);
+                                trainSequence(sequence, nextRandom, alpha, batchSequences);
 
                                 // increment processed word count, please note: this affects learningRate decay
-                                totalLines.incrementAndGet();
+                                long lines = totalLines.incrementAndGet();
                                 this.wordsCounter.addAndGet(sequence.getElements().size());
 
-                                if (totalLines.get() % 100000 == 0) {
+                                if (lines % 100000 == 0) {
                                     long currentTime = System.currentTimeMillis();
                                     long timeSpent = currentTime - timer.get();
 
@@ -1359,19 +1399,20 @@ public class SequenceVectors<T extends SequenceElement> extends WordVectorsImpl<
                                             alpha);
                                 }
                                 if (eventListeners != null && !eventListeners.isEmpty()) {
-                                    for (VectorsListener listener : eventListeners) {
-                                        if (listener.validateEvent(ListenerEvent.LINE, totalLines.get()))
-                                            listener.processEvent(ListenerEvent.LINE, SequenceVectors.this,
-                                                    totalLines.get());
+                                    synchronized (eventListeners) {
+                                        for (VectorsListener listener : eventListeners) {
+                                            if (listener.validateEvent(ListenerEvent.LINE, lines))
+                                                listener.processEvent(ListenerEvent.LINE, SequenceVectors.this, lines);
+                                        }
                                     }
                                 }
                             }
                         }
 
                         if (elementsLearningAlgorithm instanceof SkipGram)
-                            ((SkipGram)elementsLearningAlgorithm).setWorkers(workers);
+                            ((SkipGram)elementsLearningAlgorithm).setWorkers(opWorkers);
                         else if (elementsLearningAlgorithm instanceof CBOW)
-                            ((CBOW)elementsLearningAlgorithm).setWorkers(workers);
+                            ((CBOW)elementsLearningAlgorithm).setWorkers(opWorkers);
 
                         int batchSize = configuration.getBatchSize();
                         if (batchSize > 1 && batchSequences != null) {
@@ -1397,9 +1438,11 @@ public class SequenceVectors<T extends SequenceElement> extends WordVectorsImpl<
                         }
 
                         if (eventListeners != null && !eventListeners.isEmpty()) {
-                            for (VectorsListener listener : eventListeners) {
-                                if (listener.validateEvent(ListenerEvent.ITERATION, i))
-                                    listener.processEvent(ListenerEvent.ITERATION, SequenceVectors.this, i);
+                            synchronized (eventListeners) {
+                                for (VectorsListener listener : eventListeners) {
+                                    if (listener.validateEvent(ListenerEvent.ITERATION, i))
+                                        listener.processEvent(ListenerEvent.ITERATION, SequenceVectors.this, i);
+                                }
                             }
                         }
                     }
@@ -0,0 +1,600 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.models.word2vec;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.models.embeddings.WeightLookupTable;
+import org.deeplearning4j.models.embeddings.reader.ModelUtils;
+import org.deeplearning4j.models.embeddings.wordvectors.WordVectors;
+import org.deeplearning4j.models.word2vec.wordstore.VocabCache;
+import org.deeplearning4j.models.word2vec.wordstore.inmemory.AbstractCache;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Read-only {@link WordVectors} implementation, backed by a memory mapped file.<br>
+ * Nothing is parsed or copied on loading: the vocabulary is looked up via a hash index stored in the file, and the
+ * vectors are read from a fixed-stride block on request. Only the pages of the file that are actually used are read
+ * from disk, which makes this suitable for very large pretrained models (such as the Google News vectors), where
+ * only a fraction of the vocabulary is used by an application.<br>
+ * Files in this format are created from existing models using
+ * {@link org.deeplearning4j.models.embeddings.loader.MappedWordVectorSerializer}, and may also be loaded using
+ * {@link org.deeplearning4j.models.embeddings.loader.WordVectorSerializer#loadStaticModel(File)}.
+ * <p>
+ * PLEASE NOTE: wordsNearest methods are implemented as a full scan over all vectors, and hence touch the whole file.
+ * <p>
+ * File layout (little endian): a fixed size header ({@link #HEADER_SIZE} bytes, starting with {@link #MAGIC}),
+ * followed by 64-byte aligned sections:<br>
+ * - vectors: float32 [numWords, vectorSize], row i being the vector of word i<br>
+ * - words: UTF-8 bytes of all words, concatenated<br>
+ * - word offsets: int32 [numWords + 1], start of word i in the words section<br>
+ * - hash index: int32 [hashSize] open addressing (linear probing) table of word index + 1, 0 for empty slots<br>
+ * - norms: float32 [numWords], L2 norm of each vector
+ */
+@Slf4j
+public class MappedWord2Vec implements WordVectors {
+    public static final byte[] MAGIC = "DL4JWVEC".getBytes(StandardCharsets.US_ASCII);
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 128;
+    public static final int ALIGNMENT = 64;
+
+    @Getter
+    private final File file;
+    private final long numWords;
+    private final int vectorSize;
+    private final int rowsPerChunk;
+    private final int hashMask;
+
+    private final transient FloatBuffer[] vectors;
+    private final transient ByteBuffer words;
+    private final transient IntBuffer wordOffsets;
+    private final transient IntBuffer hashIndex;
+    private final transient FloatBuffer norms;
+
+    private transient VocabCache<VocabWord> vocabCache;
+    private String unk = null;
+
+    private MappedWord2Vec(File file, FileChannel ch) throws IOException {
+        this.file = file;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        if (ch.size() < HEADER_SIZE)
+            throw new IllegalStateException("File " + file.getPath() + " is not a mapped word vectors file");
+        while (header.hasRemaining()) {
+            if (ch.read(header, header.position()) < 0)
+                break;
+        }
+        header.flip();
+
+        byte[] magic = new byte[MAGIC.length];
+        header.get(magic);
+        if (!Arrays.equals(MAGIC, magic))
+            throw new IllegalStateException("File " + file.getPath() + " is not a mapped word vectors file");
+        int version = header.getInt();
+        if (version != VERSION)
+            throw new IllegalStateException("Unsupported mapped word vectors file version: " + version
+                    + " (supported version: " + VERSION + ")");
+
+        vectorSize = header.getInt();
+        numWords = header.getLong();
+        long vectorsOffset = header.getLong();
+        long wordsOffset = header.getLong();
+        long wordsLength = header.getLong();
+        long wordOffsetsOffset = header.getLong();
+        long hashOffset = header.getLong();
+        int hashSize = header.getInt();
+        header.getInt();
+        long normsOffset = header.getLong();
+
+        hashMask = hashSize - 1;
+        long stride = 4L * vectorSize;
+        rowsPerChunk = (int) Math.max(1, Math.min(numWords, Integer.MAX_VALUE / stride));
+        int numChunks = (int) ((numWords + rowsPerChunk - 1) / rowsPerChunk);
+        vectors = new FloatBuffer[numChunks];
+        for (int i = 0; i < numChunks; i++) {
+            long rows = Math.min(rowsPerChunk, numWords - (long) i * rowsPerChunk);
+            vectors[i] = map(ch, vectorsOffset + (long) i * rowsPerChunk * stride, rows * stride).asFloatBuffer();
+        }
+        words = map(ch, wordsOffset, wordsLength);
+        wordOffsets = map(ch, wordOffsetsOffset, 4L * (numWords + 1)).asIntBuffer();
+        hashIndex = map(ch, hashOffset, 4L * hashSize).asIntBuffer();
+        norms = map(ch, normsOffset, 4L * numWords).asFloatBuffer();
+    }
+
+    private static ByteBuffer map(FileChannel ch, long offset, long length) throws IOException {
+        if (offset + length > ch.size())
+            throw new IllegalStateException("Mapped word vectors file is truncated: expected at least "
+                    + (offset + length) + " bytes, got " + ch.size());
+        return ch.map(FileChannel.MapMode.READ_ONLY, offset, length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Open a mapped word vectors file. This only reads the header: vocabulary and vectors are read on demand.
+     *
+     * @param file File to open
+     * @return the word vectors, backed by the file
+     * @throws IOException
+     */
+    public static MappedWord2Vec load(@NonNull File file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            //Mappings remain valid after the channel is closed
+            return new MappedWord2Vec(file, ch);
+        }
+    }
+
+    /**
+     * @param file File to check
+     * @return true if the file starts with the magic bytes of the mapped word vectors format
+     */
+    public static boolean isMappedFile(@NonNull File file) {
+        if (!file.isFile() || file.length() < HEADER_SIZE)
+            return false;
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer bb = ByteBuffer.allocate(MAGIC.length);
+            while (bb.hasRemaining() && ch.read(bb) >= 0) { }
+            return Arrays.equals(MAGIC, bb.array());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Hash function used for the hash index of the file
+     */
+    public static int hash(String word) {
+        int h = word.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    @Override
+    public String getUNK() {
+        return unk;
+    }
+
+    @Override
+    public void setUNK(String newUNK) {
+        this.unk = newUNK;
+    }
+
+    /**
+     * Returns true if the model has this word in the vocab
+     *
+     * @param word the word to test for
+     * @return true if the model has the word in the vocab
+     */
+    @Override
+    public boolean hasWord(String word) {
+        return indexOf(word) >= 0;
+    }
+
+    @Override
+    public int indexOf(String word) {
+        if (word == null)
+            return -1;
+        byte[] bytes = word.getBytes(StandardCharsets.UTF_8);
+        int slot = hash(word) & hashMask;
+        while (true) {
+            int idx = hashIndex.get(slot) - 1;
+            if (idx < 0)
+                return -1;
+            if (wordEquals(idx, bytes))
+                return idx;
+            slot = (slot + 1) & hashMask;
+        }
+    }
+
+    private boolean wordEquals(int idx, byte[] bytes) {
+        int start = wordOffsets.get(idx);
+        if (wordOffsets.get(idx + 1) - start != bytes.length)
+            return false;
+        for (int i = 0; i < bytes.length; i++) {
+            if (words.get(start + i) != bytes[i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param idx Index of the word
+     * @return the word at the given index
+     */
+    public String wordAtIndex(int idx) {
+        int start = wordOffsets.get(idx);
+        byte[] bytes = new byte[wordOffsets.get(idx + 1) - start];
+        ByteBuffer bb = words.duplicate();
+        bb.position(start);
+        bb.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read the vector with the given index into the given array
+     */
+    protected void readVector(int idx, float[] dst, int dstOffset) {
+        FloatBuffer fb = vectors[idx / rowsPerChunk].duplicate();
+        fb.position((idx % rowsPerChunk) * vectorSize);
+        fb.get(dst, dstOffset, vectorSize);
+    }
+
+    private int indexOrUnk(String word) {
+        int idx = indexOf(word);
+        if (idx < 0 && unk != null)
+            idx = indexOf(unk);
+        return idx;
+    }
+
+    /**
+     * Get the word vector for a given matrix
+     *
+     * @param word the word to get the matrix for
+     * @return the ndarray for this word
+     */
+    @Override
+    public double[] getWordVector(String word) {
+        INDArray arr = getWordVectorMatrix(word);
+        return arr == null ? null : arr.toDoubleVector();
+    }
+
+    /**
+     * Returns the word vector divided by the norm2 of the array
+     *
+     * @param word the word to get the matrix for
+     * @return the looked up matrix
+     */
+    @Override
+    public INDArray getWordVectorMatrixNormalized(String word) {
+        int idx = indexOrUnk(word);
+        if (idx < 0)
+            return null;
+        INDArray arr = getWordVectorMatrix(word);
+        float norm = norms.get(idx);
+        return norm == 0.0f ? arr : arr.divi(norm);
+    }
+
+    /**
+     * Get the word vector for a given matrix
+     *
+     * @param word the word to get the matrix for
+     * @return the ndarray for this word
+     */
+    @Override
+    public INDArray getWordVectorMatrix(String word) {
+        int idx = indexOrUnk(word);
+        if (idx < 0)
+            return null;
+        float[] vector = new float[vectorSize];
+        readVector(idx, vector, 0);
+        return Nd4j.createFromArray(vector);
+    }
+
+    /**
+     * This method returns 2D array, where each row represents corresponding word/label
+     *
+     * @param labels
+     * @return
+     */
+    @Override
+    public INDArray getWordVectors(@NonNull Collection<String> labels) {
+        int[] indices = new int[labels.size()];
+        int count = 0;
+        for (String label : labels) {
+            int idx = indexOrUnk(label);
+            if (idx >= 0)
+                indices[count++] = idx;
+        }
+
+        float[] data = new float[count * vectorSize];
+        for (int i = 0; i < count; i++)
+            readVector(indices[i], data, i * vectorSize);
+        return Nd4j.create(data, new long[]{count, vectorSize}, 'c');
+    }
+
+    /**
+     * This method returns mean vector, built from words/labels passed in
+     *
+     * @param labels
+     * @return
+     */
+    @Override
+    public INDArray getWordVectorsMean(Collection<String> labels) {
+        return getWordVectors(labels).mean(0);
+    }
+
+    /**
+     * Returns the similarity of 2 words
+     *
+     * @param label1 the first word
+     * @param label2 the second word
+     * @return a normalized similarity (cosine similarity)
+     */
+    @Override
+    public double similarity(String label1, String label2) {
+        int idx1 = indexOrUnk(label1);
+        int idx2 = indexOrUnk(label2);
+        if (idx1 < 0 || idx2 < 0) {
+            log.debug(label1 + ": " + (idx1 < 0 ? "null" : "exists") + ";" + label2 + " vec2:"
+                    + (idx2 < 0 ? "null" : "exists"));
+            return Double.NaN;
+        }
+
+        if (label1.equals(label2))
+            return 1.0;
+
+        float[] v1 = new float[vectorSize];
+        float[] v2 = new float[vectorSize];
+        readVector(idx1, v1, 0);
+        readVector(idx2, v2, 0);
+        double dot = 0.0;
+        for (int i = 0; i < vectorSize; i++)
+            dot += v1[i] * v2[i];
+        return dot / ((double) norms.get(idx1) * norms.get(idx2));
+    }
+
+    @Override
+    public Collection<String> wordsNearest(@NonNull INDArray words, int top) {
+        float[] query = words.ravel().toFloatVector();
+        if (query.length != vectorSize)
+            throw new IllegalStateException("Expected query vector of length " + vectorSize + ", got " + query.length);
+        return nearest(query, top, Collections.<String>emptySet());
+    }
+
+    /**
+     * Get the top n words most similar to the given word
+     *
+     * @param word the word to compare
+     * @param n    the n to get
+     * @return the top n words
+     */
+    @Override
+    public Collection<String> wordsNearest(String word, int n) {
+        return wordsNearest(Collections.singletonList(word), Collections.<String>emptyList(), n);
+    }
+
+    /**
+     * Words nearest based on positive and negative words
+     *
+     * @param positive the positive words
+     * @param negative the negative words
+     * @param top      the top n words
+     * @return the words nearest the mean of the words
+     */
+    @Override
+    public Collection<String> wordsNearest(@NonNull Collection<String> positive, @NonNull Collection<String> negative,
+                                           int top) {
+        float[] mean = new float[vectorSize];
+        float[] vector = new float[vectorSize];
+        Set<String> exclude = new HashSet<>();
+        for (Collection<String> c : Arrays.asList(positive, negative)) {
+            for (String s : c) {
+                int idx = indexOf(s);
+                if (idx < 0)
+                    return new ArrayList<>();
+                readVector(idx, vector, 0);
+                float sign = c == positive ? 1.0f : -1.0f;
+                for (int i = 0; i < vectorSize; i++)
+                    mean[i] += sign * vector[i];
+                exclude.add(s);
+            }
+        }
+        return nearest(mean, top, exclude);
+    }
+
+    /**
+     * Cosine similarity based nearest words, by a scan over all vectors
+     */
+    protected List<String> nearest(float[] query, int top, Set<String> exclude) {
+        double qNorm = 0.0;
+        for (float f : query)
+            qNorm += f * f;
+        qNorm = Math.sqrt(qNorm);
+
+        //Some of the best matches may be excluded words, hence keep a few more candidates than needed
+        int candidates = top + exclude.size() + (unk != null ? 1 : 0);
+        PriorityQueue<double[]> queue = new PriorityQueue<>(candidates + 1, new Comparator<double[]>() {
+            @Override
+            public int compare(double[] o1, double[] o2) {
+                return Double.compare(o1[0], o2[0]);
+            }
+        });
+
+        long idx = 0;
+        for (FloatBuffer chunk : vectors) {
+            int rows = chunk.capacity() / vectorSize;
+            for (int r = 0; r < rows; r++, idx++) {
+                int base = r * vectorSize;
+                double dot = 0.0;
+                for (int i = 0; i < vectorSize; i++)
+                    dot += query[i] * chunk.get(base + i);
+                double norm = norms.get((int) idx) * qNorm;
+                double sim = norm == 0.0 ? 0.0 : dot / norm;
+                if (queue.size() < candidates) {
+                    queue.add(new double[]{sim, idx});
+                } else if (sim > queue.peek()[0]) {
+                    queue.poll();
+                    queue.add(new double[]{sim, idx});
+                }
+            }
+        }
+
+        List<double[]> sorted = new ArrayList<>(queue);
+        Collections.sort(sorted, Collections.reverseOrder(queue.comparator()));
+        List<String> result = new ArrayList<>(top);
+        for (double[] d : sorted) {
+            String word = wordAtIndex((int) d[1]);
+            if (exclude.contains(word) || word.equals(unk))
+                continue;
+            result.add(word);
+            if (result.size() >= top)
+                break;
+        }
+        return result;
+    }
+
+    @Override
+    public Collection<String> wordsNearestSum(INDArray words, int top) {
+        throw new UnsupportedOperationException("Method isn't implemented. Please use usual Word2Vec implementation");
+    }
+
+    /**
+     * Get the top n words most similar to the given word
+     * PLEASE NOTE: This method is not available in this implementation.
+     *
+     * @param word the word to compare
+     * @param n    the n to get
+     * @return the top n words
+     */
+    @Override
+    public Collection<String> wordsNearestSum(String word, int n) {
+        throw new UnsupportedOperationException("Method isn't implemented. Please use usual Word2Vec implementation");
+    }
+
+    /**
+     * Words nearest based on positive and negative words
+     * PLEASE NOTE: This method is not available in this implementation.
+     *
+     * @param positive the positive words
+     * @param negative the negative words
+     * @param top      the top n words
+     * @return the words nearest the mean of the words
+     */
+    @Override
+    public Collection<String> wordsNearestSum(Collection<String> positive, Collection<String> negative, int top) {
+        throw new UnsupportedOperationException("Method isn't implemented. Please use usual Word2Vec implementation");
+    }
+
+    /**
+     * Accuracy based on questions which are a space separated list of strings
+     * where the first word is the query word, the next 2 words are negative,
+     * and the last word is the predicted word to be nearest
+     * PLEASE NOTE: This method is not available in this implementation.
+     *
+     * @param questions the questions to ask
+     * @return the accuracy based on these questions
+     */
+    @Override
+    public Map<String, Double> accuracy(List<String> questions) {
+        throw new UnsupportedOperationException("Method isn't implemented. Please use usual Word2Vec implementation");
+    }
+
+    /**
+     * Find all words with a similar characters
+     * in the vocab
+     * PLEASE NOTE: This method is not available in this implementation.
+     *
+     * @param word     the word to compare
+     * @param accuracy the accuracy: 0 to 1
+     * @return the list of words that are similar in the vocab
+     */
+    @Override
+    public List<String> similarWordsInVocabTo(String word, double accuracy) {
+        throw new UnsupportedOperationException("Method isn't implemented. Please use usual Word2Vec implementation");
+    }
+
+    /**
+     * Vocab for the vectors.
+     * PLEASE NOTE: The vocab cache is created (on heap) from the file on the first call of this method. For
+     * lookups, use {@link #hasWord(String)}, {@link #indexOf(String)} and {@link #wordAtIndex(int)} instead.
+     *
+     * @return
+     */
+    @Override
+    public synchronized VocabCache vocab() {
+        if (vocabCache == null) {
+            VocabCache<VocabWord> cache = new AbstractCache.Builder<VocabWord>().build();
+            for (int i = 0; i < numWords; i++) {
+                VocabWord word = new VocabWord(1.0, wordAtIndex(i));
+                word.setIndex(i);
+                cache.addToken(word);
+                cache.addWordToIndex(i, word.getLabel());
+            }
+            vocabCache = cache;
+        }
+        return vocabCache;
+    }
+
+    /**
+     * Lookup table for the vectors
+     * PLEASE NOTE: This method is not available in this implementation.
+     *
+     * @return
+     */
+    @Override
+    public WeightLookupTable lookupTable() {
+        throw new UnsupportedOperationException("Method isn't implemented. Please use usual Word2Vec implementation");
+    }
+
+    /**
+     * Specifies ModelUtils to be used to access model
+     * PLEASE NOTE: This method has no effect in this implementation.
+     *
+     * @param utils
+     */
+    @Override
+    public void setModelUtils(ModelUtils utils) {
+        // no-op
+    }
+
+    @Override
+    public void loadWeightsInto(INDArray array) {
+        int batch = Math.max(1, (1 << 20) / vectorSize);
+        float[] buffer = new float[batch * vectorSize];
+        for (long start = 0; start < numWords; start += batch) {
+            int rows = (int) Math.min(batch, numWords - start);
+            for (int i = 0; i < rows; i++)
+                readVector((int) (start + i), buffer, i * vectorSize);
+            INDArray block = Nd4j.create(Arrays.copyOf(buffer, rows * vectorSize), new long[]{rows, vectorSize}, 'c');
+            array.get(NDArrayIndex.interval(start, start + rows), NDArrayIndex.all()).assign(block);
+        }
+    }
+
+    @Override
+    public long vocabSize() {
+        return numWords;
+    }
+
+    @Override
+    public int vectorSize() {
+        return vectorSize;
+    }
+
+    @Override
+    public boolean jsonSerializable() {
+        return false;
+    }
+
+    @Override
+    public boolean outOfVocabularySupported() {
+        return false;
+    }
+}
@@ -36,6 +36,7 @@ import org.deeplearning4j.models.sequencevectors.iterators.AbstractSequenceItera
 import org.deeplearning4j.models.sequencevectors.transformers.impl.SentenceTransformer;
 import org.deeplearning4j.models.word2vec.wordstore.VocabCache;
 import org.deeplearning4j.models.word2vec.wordstore.inmemory.AbstractCache;
+import org.deeplearning4j.models.word2vec.wordstore.inmemory.CompactVocabCache;
 import org.deeplearning4j.text.documentiterator.DocumentIterator;
 import org.deeplearning4j.text.documentiterator.LabelAwareIterator;
 import org.deeplearning4j.text.sentenceiterator.SentenceIterator;
@@ -130,6 +131,8 @@ public class Word2Vec extends SequenceVectors<VocabWord> {
 
         if (this.vocab instanceof AbstractCache) {
             retVal.addProperty(VOCAB_LIST_FIELD, ((AbstractCache<VocabWord>) this.vocab).toJson());
+        } else if (this.vocab instanceof CompactVocabCache) {
+            retVal.addProperty(VOCAB_LIST_FIELD, ((CompactVocabCache<VocabWord>) this.vocab).toJson());
         }
 
         return retVal.toString();
@@ -30,6 +30,7 @@ import org.deeplearning4j.models.sequencevectors.sequence.Sequence;
 import org.deeplearning4j.models.sequencevectors.sequence.SequenceElement;
 import org.deeplearning4j.models.word2vec.Huffman;
 import org.deeplearning4j.models.word2vec.wordstore.inmemory.AbstractCache;
+import org.deeplearning4j.models.word2vec.wordstore.inmemory.CompactVocabCache;
 import org.deeplearning4j.text.invertedindex.InvertedIndex;
 import org.nd4j.common.util.ThreadUtils;
 import org.slf4j.Logger;
@@ -193,7 +194,7 @@ public class VocabConstructor<T extends SequenceElement> {
         return result;
     }
 
-    public void processDocument(AbstractCache<T> targetVocab, Sequence<T> document,
+    public void processDocument(VocabCache<T> targetVocab, Sequence<T> document,
                                 AtomicLong finalCounter, AtomicLong loopCounter) {
         try {
             Map<String, AtomicLong> seqMap = new HashMap<>();
@@ -276,7 +277,7 @@ public class VocabConstructor<T extends SequenceElement> {
         log.debug("Target vocab size before building: [" + cache.numWords() + "]");
         final AtomicLong loopCounter = new AtomicLong(0);
 
-        AbstractCache<T> topHolder = new AbstractCache.Builder<T>().minElementFrequency(0).build();
+        VocabCache<T> topHolder = createHolder();
 
         int cnt = 0;
         int numProc = Runtime.getRuntime().availableProcessors();
@@ -293,7 +294,7 @@ public class VocabConstructor<T extends SequenceElement> {
             log.debug("Target vocab size before building: [" + cache.numWords() + "]");
             cnt++;
 
-            AbstractCache<T> tempHolder = new AbstractCache.Builder<T>().build();
+            VocabCache<T> tempHolder = createHolder();
 
             int sequences = 0;
             while (iterator.hasMoreSequences()) {
@@ -437,7 +438,17 @@ public class VocabConstructor<T extends SequenceElement> {
         return cache;
     }
 
-    protected void filterVocab(AbstractCache<T> cache, int minWordFrequency) {
+    /**
+     * Creates temporary vocabulary holder for building the joint vocabulary. If the target vocabulary is a
+     * {@link CompactVocabCache}, compact holders are used as well, to keep the heap footprint low while scanning.
+     */
+    protected VocabCache<T> createHolder() {
+        if (cache instanceof CompactVocabCache)
+            return new CompactVocabCache.Builder<T>().build();
+        return new AbstractCache.Builder<T>().minElementFrequency(0).build();
+    }
+
+    protected void filterVocab(VocabCache<T> cache, int minWordFrequency) {
         int numWords = cache.numWords();
         LinkedBlockingQueue<String> labelsToRemove = new LinkedBlockingQueue<>();
         for (T element : cache.vocabWords()) {
@@ -606,11 +617,11 @@ public class VocabConstructor<T extends SequenceElement> {
     protected class VocabRunnable implements Runnable {
         private final AtomicLong finalCounter;
         private final Sequence<T> document;
-        private final AbstractCache<T> targetVocab;
+        private final VocabCache<T> targetVocab;
         private final AtomicLong loopCounter;
         private AtomicBoolean done = new AtomicBoolean(false);
 
-        public VocabRunnable(@NonNull AbstractCache<T> targetVocab, @NonNull Sequence<T> sequence,
+        public VocabRunnable(@NonNull VocabCache<T> targetVocab, @NonNull Sequence<T> sequence,
                         @NonNull AtomicLong finalCounter, @NonNull AtomicLong loopCounter) {
             this.finalCounter = finalCounter;
             this.document = sequence;
@@ -0,0 +1,839 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.models.word2vec.wordstore.inmemory;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.models.sequencevectors.sequence.SequenceElement;
+import org.deeplearning4j.models.word2vec.wordstore.VocabCache;
+import org.nd4j.shade.jackson.core.JsonProcessingException;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * VocabCache implementation with a small per-element memory footprint, intended for very large vocabularies.<br>
+ * Unlike {@link AbstractCache}, which keeps every element in three hash maps (by storage id, by label and by Huffman
+ * index), elements are stored in a single array, and looked up via open addressing hash tables of primitive ints.
+ * This avoids the map entries and boxed keys - several objects and more than 100 bytes per element - which reduces
+ * both the heap footprint and GC pressure while building the vocabulary.<br>
+ * Lookups are lock-free (optimistic reads), modifications are serialized.<br>
+ * Elements themselves (frequencies, Huffman codes and points) are the same as for AbstractCache, so this is a drop-in
+ * replacement for training. For JSON serialization, the AbstractCache format is used: see {@link #toJson()} and
+ * {@link #fromJson(String)}.
+ */
+@Slf4j
+public class CompactVocabCache<T extends SequenceElement> implements VocabCache<T> {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private transient StampedLock lock = new StampedLock();
+
+    // elements, in insertion order. Removed elements leave a null slot behind, until the next compaction
+    private Object[] elements;
+    // number of used slots in elements array
+    private int size;
+    private volatile int count;
+    private int labelCount;
+
+    // open addressing (linear probing) tables, of element slot + 1. 0 denotes empty table entry
+    private int[] labelTable;
+    private int[] idTable;
+    // Huffman index -> element slot + 1
+    private int[] indexTable = new int[0];
+
+    private final AtomicLong documentsCounter = new AtomicLong(0);
+    private final AtomicLong totalWordCount = new AtomicLong(0);
+
+    protected CompactVocabCache(int initialCapacity) {
+        int capacity = Math.max(DEFAULT_CAPACITY, initialCapacity);
+        elements = new Object[capacity];
+        labelTable = new int[tableSize(capacity)];
+        idTable = new int[tableSize(capacity)];
+    }
+
+    private static int tableSize(int capacity) {
+        //Load factor of at most 0.5
+        return Integer.highestOneBit(Math.max(2, 2 * capacity - 1)) << 1;
+    }
+
+    private static int hash(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int hash(long id) {
+        return hash((int) (id ^ (id >>> 32)));
+    }
+
+    private int hashOf(int slot, boolean label) {
+        SequenceElement e = (SequenceElement) elements[slot];
+        return label ? hash(e.getLabel().hashCode()) : hash(e.getStorageId());
+    }
+
+    /**
+     * Slot of the element with the given label, or -1. Tolerates concurrent modification (optimistic reads)
+     */
+    private static int findLabel(Object[] els, int[] table, String label) {
+        int mask = table.length - 1;
+        int pos = hash(label.hashCode()) & mask;
+        for (int i = 0; i <= mask; i++) {
+            int slot = table[pos] - 1;
+            if (slot < 0)
+                return -1;
+            if (slot < els.length) {
+                SequenceElement e = (SequenceElement) els[slot];
+                if (e != null && label.equals(e.getLabel()))
+                    return slot;
+            }
+            pos = (pos + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Slot of the element with the given storage id, or -1. Tolerates concurrent modification (optimistic reads)
+     */
+    private static int findId(Object[] els, int[] table, long id) {
+        int mask = table.length - 1;
+        int pos = hash(id) & mask;
+        for (int i = 0; i <= mask; i++) {
+            int slot = table[pos] - 1;
+            if (slot < 0)
+                return -1;
+            if (slot < els.length) {
+                SequenceElement e = (SequenceElement) els[slot];
+                if (e != null && e.getStorageId() != null && e.getStorageId() == id)
+                    return slot;
+            }
+            pos = (pos + 1) & mask;
+        }
+        return -1;
+    }
+
+    private static Object elementAt(Object[] els, int[] indexTable, int index) {
+        if (index < 0 || index >= indexTable.length)
+            return null;
+        int slot = indexTable[index] - 1;
+        return slot < 0 || slot >= els.length ? null : els[slot];
+    }
+
+    /**
+     * Position of the table entry pointing to the given slot
+     */
+    private int tablePosition(int[] table, int slot, boolean label) {
+        int mask = table.length - 1;
+        int pos = hashOf(slot, label) & mask;
+        while (table[pos] != slot + 1)
+            pos = (pos + 1) & mask;
+        return pos;
+    }
+
+    private void tableInsert(int[] table, int slot, boolean label) {
+        int mask = table.length - 1;
+        int pos = hashOf(slot, label) & mask;
+        while (table[pos] != 0)
+            pos = (pos + 1) & mask;
+        table[pos] = slot + 1;
+    }
+
+    /**
+     * Removal from a linear probing table, by shifting back the entries that follow
+     */
+    private void tableRemove(int[] table, int pos, boolean label) {
+        int mask = table.length - 1;
+        int i = pos;
+        int j = pos;
+        while (true) {
+            j = (j + 1) & mask;
+            if (table[j] == 0)
+                break;
+            int k = hashOf(table[j] - 1, label) & mask;
+            //Entry at j stays if its home position k is cyclically in (i, j]
+            if (i <= j ? (i < k && k <= j) : (i < k || k <= j))
+                continue;
+            table[i] = table[j];
+            i = j;
+        }
+        table[i] = 0;
+    }
+
+    /**
+     * Rebuilds element array and tables, dropping removed elements. New arrays are always allocated, so that
+     * concurrent optimistic readers and iterators never see partially rebuilt arrays
+     */
+    private void rebuild(int capacity) {
+        Object[] newElements = new Object[capacity];
+        int[] slotMap = new int[size];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            if (elements[i] != null) {
+                newElements[n] = elements[i];
+                slotMap[i] = n++;
+            } else {
+                slotMap[i] = -1;
+            }
+        }
+        int[] newIndexTable = new int[indexTable.length];
+        for (int i = 0; i < indexTable.length; i++) {
+            int slot = indexTable[i] - 1;
+            newIndexTable[i] = slot < 0 ? 0 : slotMap[slot] + 1;
+        }
+
+        elements = newElements;
+        size = n;
+        labelTable = new int[tableSize(capacity)];
+        idTable = new int[tableSize(capacity)];
+        for (int i = 0; i < n; i++) {
+            SequenceElement e = (SequenceElement) elements[i];
+            if (e.getLabel() != null) {
+                int existing = findLabel(elements, labelTable, e.getLabel());
+                if (existing >= 0)
+                    labelTable[tablePosition(labelTable, existing, true)] = i + 1;
+                else
+                    tableInsert(labelTable, i, true);
+            }
+            tableInsert(idTable, i, false);
+        }
+        indexTable = newIndexTable;
+    }
+
+    /**
+     * Deserialize vocabulary from specified path
+     */
+    @Override
+    public void loadVocab() {
+        // no-op, same as for AbstractCache
+    }
+
+    /**
+     * Returns true, if number of elements in vocabulary > 0, false otherwise
+     *
+     * @return
+     */
+    @Override
+    public boolean vocabExists() {
+        return count > 0;
+    }
+
+    /**
+     * Serialize vocabulary to specified path
+     */
+    @Override
+    public void saveVocab() {
+        // no-op, same as for AbstractCache
+    }
+
+    /**
+     * Returns collection of labels available in this vocabulary
+     *
+     * @return
+     */
+    @Override
+    public Collection<String> words() {
+        return new AbstractCollection<String>() {
+            @Override
+            public Iterator<String> iterator() {
+                final Iterator<T> iter = vocabWords().iterator();
+                return new Iterator<String>() {
+                    private String next = advance();
+
+                    private String advance() {
+                        while (iter.hasNext()) {
+                            String label = iter.next().getLabel();
+                            if (label != null)
+                                return label;
+                        }
+                        return null;
+                    }
+
+                    @Override
+                    public boolean hasNext() {
+                        return next != null;
+                    }
+
+                    @Override
+                    public String next() {
+                        if (next == null)
+                            throw new NoSuchElementException();
+                        String ret = next;
+                        next = advance();
+                        return ret;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return labelCount;
+            }
+        };
+    }
+
+    /**
+     * Increment frequency for specified label by 1
+     *
+     * @param word the word to increment the count for
+     */
+    @Override
+    public void incrementWordCount(String word) {
+        incrementWordCount(word, 1);
+    }
+
+    /**
+     * Increment frequency for specified label by specified value
+     *
+     * @param word the word to increment the count for
+     * @param increment the amount to increment by
+     */
+    @Override
+    public void incrementWordCount(String word, int increment) {
+        T element = wordFor(word);
+        if (element != null) {
+            element.increaseElementFrequency(increment);
+            totalWordCount.addAndGet(increment);
+        }
+    }
+
+    /**
+     * Returns the SequenceElement's frequency over training corpus
+     *
+     * @param word the word to retrieve the occurrence frequency for
+     * @return
+     */
+    @Override
+    public int wordFrequency(@NonNull String word) {
+        T element = wordFor(word);
+        if (element != null)
+            return (int) element.getElementFrequency();
+        return 0;
+    }
+
+    /**
+     * Checks, if specified label exists in vocabulary
+     *
+     * @param word the word to check for
+     * @return
+     */
+    @Override
+    public boolean containsWord(String word) {
+        return word != null && wordFor(word) != null;
+    }
+
+    /**
+     * Returns the label of the element at specified Huffman index
+     *
+     * @param index the index of the word to get
+     * @return
+     */
+    @Override
+    public String wordAtIndex(int index) {
+        T element = elementAtIndex(index);
+        return element == null ? null : element.getLabel();
+    }
+
+    /**
+     * Returns SequenceElement at specified index
+     *
+     * @param index
+     * @return
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public T elementAtIndex(int index) {
+        long stamp = lock.tryOptimisticRead();
+        Object ret = elementAt(elements, indexTable, index);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                ret = elementAt(elements, indexTable, index);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return (T) ret;
+    }
+
+    /**
+     * Returns Huffman index for specified label
+     *
+     * @param label the label to get index for
+     * @return >=0 if label exists, -1 if Huffman tree wasn't built yet, -2 if specified label wasn't found
+     */
+    @Override
+    public int indexOf(String label) {
+        T token = tokenFor(label);
+        if (token != null) {
+            return token.getIndex();
+        } else
+            return -2;
+    }
+
+    /**
+     * Returns collection of SequenceElements stored in this vocabulary.
+     * Iteration is over the elements present when the iterator was created; elements may be added and removed
+     * during iteration.
+     *
+     * @return
+     */
+    @Override
+    public Collection<T> vocabWords() {
+        return new AbstractCollection<T>() {
+            @Override
+            public Iterator<T> iterator() {
+                final Object[] els;
+                final int n;
+                long stamp = lock.readLock();
+                try {
+                    els = elements;
+                    n = size;
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+
+                return new Iterator<T>() {
+                    private int pos = advance(0);
+
+                    private int advance(int from) {
+                        while (from < n && els[from] == null)
+                            from++;
+                        return from;
+                    }
+
+                    @Override
+                    public boolean hasNext() {
+                        return pos < n;
+                    }
+
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public T next() {
+                        if (pos >= n)
+                            throw new NoSuchElementException();
+                        T ret = (T) els[pos];
+                        pos = advance(pos + 1);
+                        return ret;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return count;
+            }
+        };
+    }
+
+    /**
+     * Returns total number of elements observed
+     *
+     * @return
+     */
+    @Override
+    public long totalWordOccurrences() {
+        return totalWordCount.get();
+    }
+
+    public void setTotalWordOccurences(long value) {
+        totalWordCount.set(value);
+    }
+
+    /**
+     * Returns SequenceElement for specified label
+     *
+     * @param label to fetch element for
+     * @return
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public T wordFor(@NonNull String label) {
+        long stamp = lock.tryOptimisticRead();
+        Object[] els = elements;
+        int slot = findLabel(els, labelTable, label);
+        Object ret = slot < 0 ? null : els[slot];
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                slot = findLabel(elements, labelTable, label);
+                ret = slot < 0 ? null : elements[slot];
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return (T) ret;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T wordFor(long id) {
+        long stamp = lock.tryOptimisticRead();
+        Object[] els = elements;
+        int slot = findId(els, idTable, id);
+        Object ret = slot < 0 ? null : els[slot];
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                slot = findId(elements, idTable, id);
+                ret = slot < 0 ? null : elements[slot];
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return (T) ret;
+    }
+
+    /**
+     * This method allows to insert specified label to specified Huffman tree position.
+     * CAUTION: Never use this, unless you 100% sure what are you doing.
+     *
+     * @param index
+     * @param label
+     */
+    @Override
+    public void addWordToIndex(int index, String label) {
+        if (index < 0 || label == null)
+            return;
+        long stamp = lock.writeLock();
+        try {
+            int slot = findLabel(elements, labelTable, label);
+            if (slot >= 0) {
+                setIndex(index, slot);
+                ((SequenceElement) elements[slot]).setIndex(index);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void addWordToIndex(int index, long elementId) {
+        if (index < 0)
+            return;
+        long stamp = lock.writeLock();
+        try {
+            setIndex(index, findId(elements, idTable, elementId));
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void setIndex(int index, int slot) {
+        if (index >= indexTable.length) {
+            if (slot < 0)
+                return;
+            indexTable = Arrays.copyOf(indexTable, Math.max(index + 1, Math.max(DEFAULT_CAPACITY, 2 * indexTable.length)));
+        }
+        indexTable[index] = slot + 1;
+    }
+
+    @Override
+    @Deprecated
+    public void putVocabWord(String word) {
+        if (!containsWord(word))
+            throw new IllegalStateException("Specified label is not present in vocabulary");
+    }
+
+    /**
+     * Returns number of elements in this vocabulary
+     *
+     * @return
+     */
+    @Override
+    public int numWords() {
+        return count;
+    }
+
+    /**
+     * Returns number of documents (if applicable) the label was observed in.
+     *
+     * @param word the number of documents the word appeared in
+     * @return
+     */
+    @Override
+    public int docAppearedIn(String word) {
+        T element = wordFor(word);
+        if (element != null) {
+            return (int) element.getSequencesCount();
+        } else
+            return -1;
+    }
+
+    /**
+     * Increment number of documents the label was observed in
+     *
+     * @param word the word to increment by
+     * @param howMuch
+     */
+    @Override
+    public void incrementDocCount(String word, long howMuch) {
+        T element = wordFor(word);
+        if (element != null) {
+            element.incrementSequencesCount(howMuch);
+        }
+    }
+
+    /**
+     * Set exact number of observed documents that contain specified word
+     *
+     * @param word the word to set the count for
+     * @param count the count of the word
+     */
+    @Override
+    public void setCountForDoc(String word, long count) {
+        T element = wordFor(word);
+        if (element != null) {
+            element.setSequencesCount(count);
+        }
+    }
+
+    /**
+     * Returns total number of documents observed (if applicable)
+     *
+     * @return
+     */
+    @Override
+    public long totalNumberOfDocs() {
+        return documentsCounter.get();
+    }
+
+    /**
+     * Increment total number of documents observed by 1
+     */
+    @Override
+    public void incrementTotalDocCount() {
+        documentsCounter.incrementAndGet();
+    }
+
+    /**
+     * Increment total number of documents observed by specified value
+     */
+    @Override
+    public void incrementTotalDocCount(long by) {
+        documentsCounter.addAndGet(by);
+    }
+
+    /**
+     * This method allows to set total number of documents
+     * @param by
+     */
+    public void setTotalDocCount(long by) {
+        documentsCounter.set(by);
+    }
+
+    /**
+     * Returns collection of SequenceElements from this vocabulary. The same as vocabWords() method
+     *
+     * @return collection of SequenceElements
+     */
+    @Override
+    public Collection<T> tokens() {
+        return vocabWords();
+    }
+
+    /**
+     * This method adds specified SequenceElement to vocabulary.
+     * If an element with the same storage id already exists, its counters are increased instead.
+     *
+     * @param element the word to add
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean addToken(@NonNull T element) {
+        boolean ret = false;
+        T oldElement;
+        long stamp = lock.writeLock();
+        try {
+            int slot = findId(elements, idTable, element.getStorageId());
+            if (slot < 0) {
+                insert(element);
+                oldElement = element;
+                ret = true;
+            } else {
+                oldElement = (T) elements[slot];
+                oldElement.incrementSequencesCount(element.getSequencesCount());
+                oldElement.increaseElementFrequency((int) element.getElementFrequency());
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        totalWordCount.addAndGet((long) oldElement.getElementFrequency());
+        return ret;
+    }
+
+    private void insert(T element) {
+        if (size == elements.length) {
+            //Compact if enough elements were removed, grow otherwise
+            rebuild(count < size / 4 * 3 ? elements.length : 2 * elements.length);
+        }
+        int slot = size++;
+        elements[slot] = element;
+        count++;
+        if (element.getLabel() != null) {
+            int existing = findLabel(elements, labelTable, element.getLabel());
+            if (existing >= 0) {
+                //Same label, different storage id: label lookups return the latest element
+                labelTable[tablePosition(labelTable, existing, true)] = slot + 1;
+            } else {
+                tableInsert(labelTable, slot, true);
+                labelCount++;
+            }
+        }
+        tableInsert(idTable, slot, false);
+    }
+
+    /**
+     * Returns SequenceElement for specified label. The same as wordFor() method.
+     *
+     * @param label the label to get the token for
+     * @return
+     */
+    @Override
+    public T tokenFor(String label) {
+        return wordFor(label);
+    }
+
+    @Override
+    public T tokenFor(long id) {
+        return wordFor(id);
+    }
+
+    /**
+     * Checks, if specified label already exists in vocabulary. The same as containsWord() method.
+     *
+     * @param label the token to test
+     * @return
+     */
+    @Override
+    public boolean hasToken(String label) {
+        return containsWord(label);
+    }
+
+    /**
+     * This method imports all elements from VocabCache passed as argument
+     *
+     * @param vocabCache
+     */
+    @Override
+    public void importVocabulary(@NonNull VocabCache<T> vocabCache) {
+        boolean added = false;
+        for (T element : vocabCache.vocabWords()) {
+            if (this.addToken(element))
+                added = true;
+        }
+        if (added)
+            this.documentsCounter.addAndGet(vocabCache.totalNumberOfDocs());
+    }
+
+    @Override
+    public void updateWordsOccurrences() {
+        long total = 0;
+        for (T element : vocabWords()) {
+            long value = (long) element.getElementFrequency();
+            if (value > 0)
+                total += value;
+        }
+        totalWordCount.set(total);
+        log.info("Updated counter: [" + total + "]");
+    }
+
+    @Override
+    public void removeElement(String label) {
+        SequenceElement element;
+        long stamp = lock.writeLock();
+        try {
+            int slot = label == null ? -1 : findLabel(elements, labelTable, label);
+            if (slot < 0)
+                throw new IllegalStateException("Can't get label: '" + label + "'");
+            element = (SequenceElement) elements[slot];
+
+            //Other index entries for this slot (if any) resolve to null from now on, and are dropped on compaction
+            int index = element.getIndex();
+            if (index >= 0 && index < indexTable.length && indexTable[index] == slot + 1)
+                indexTable[index] = 0;
+            tableRemove(labelTable, tablePosition(labelTable, slot, true), true);
+            labelCount--;
+            tableRemove(idTable, tablePosition(idTable, slot, false), false);
+            elements[slot] = null;
+            count--;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        totalWordCount.getAndAdd((long) element.getElementFrequency() * -1);
+    }
+
+    @Override
+    public void removeElement(T element) {
+        removeElement(element.getLabel());
+    }
+
+    /**
+     * Serializes this vocabulary to JSON, in the same format as {@link AbstractCache#toJson()}
+     */
+    public String toJson() throws JsonProcessingException {
+        AbstractCache<T> cache = new AbstractCache.Builder<T>().build();
+        for (T element : vocabWords()) {
+            cache.getVocabulary().put(element.getStorageId(), element);
+            if (element.getLabel() != null)
+                cache.getExtendedVocabulary().put(element.getLabel(), element);
+        }
+        cache.setTotalWordOccurences(totalWordCount.get());
+        cache.setTotalDocCount(documentsCounter.get());
+        return cache.toJson();
+    }
+
+    /**
+     * Restores vocabulary from JSON, as created by {@link #toJson()} or {@link AbstractCache#toJson()}
+     */
+    public static <T extends SequenceElement> CompactVocabCache<T> fromJson(String jsonString) throws IOException {
+        AbstractCache<T> cache = AbstractCache.fromJson(jsonString);
+        CompactVocabCache<T> ret = new CompactVocabCache.Builder<T>().initialCapacity(cache.numWords()).build();
+        for (T element : cache.vocabWords()) {
+            ret.addToken(element);
+            ret.addWordToIndex(element.getIndex(), element.getStorageId());
+        }
+        ret.setTotalWordOccurences(cache.totalWordOccurrences());
+        ret.setTotalDocCount(cache.totalNumberOfDocs());
+        return ret;
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        lock = new StampedLock();
+    }
+
+    public static class Builder<T extends SequenceElement> {
+        protected int initialCapacity = DEFAULT_CAPACITY;
+
+        /**
+         * Expected number of elements. Default is 16; the vocabulary grows as needed
+         */
+        public Builder<T> initialCapacity(int initialCapacity) {
+            this.initialCapacity = initialCapacity;
+            return this;
+        }
+
+        public CompactVocabCache<T> build() {
+            return new CompactVocabCache<>(initialCapacity);
+        }
+    }
+}
@@ -37,6 +37,10 @@ public class BertWordPieceStreamTokenizer extends BertWordPieceTokenizer {
         super(readAndClose(tokens, encoding), vocab, preTokenizePreProcessor, tokenPreProcess);
     }
 
+    public BertWordPieceStreamTokenizer(InputStream tokens, Charset encoding, BertWordPieceTrie vocab, TokenPreProcess preTokenizePreProcessor, TokenPreProcess tokenPreProcess) {
+        super(readAndClose(tokens, encoding), vocab, preTokenizePreProcessor, tokenPreProcess);
+    }
+
 
     public static String readAndClose(InputStream is, Charset encoding){
         try {
@@ -58,6 +58,18 @@ public class BertWordPieceTokenizer implements Tokenizer {
         this.tokens = tokenize(vocab, tokens);
     }
 
+    /**
+     * Tokenize using a precompiled vocabulary. The output is the same as when using the vocabulary map, but
+     * tokenization is considerably faster.
+     */
+    public BertWordPieceTokenizer(String tokens, BertWordPieceTrie vocab, TokenPreProcess preTokenizePreProcessor,
+                                  TokenPreProcess tokenPreProcess) {
+        this.preTokenizePreProcessor = preTokenizePreProcessor;
+        this.tokenPreProcess = tokenPreProcess;
+
+        this.tokens = vocab.tokenize(preTokenizePreProcessor != null ? preTokenizePreProcessor.preProcess(tokens) : tokens);
+    }
+
 
     @Override
     public boolean hasMoreTokens() {
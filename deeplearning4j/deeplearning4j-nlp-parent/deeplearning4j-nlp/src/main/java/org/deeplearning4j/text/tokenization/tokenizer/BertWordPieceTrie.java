@@ -0,0 +1,280 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.text.tokenization.tokenizer;
+
+import lombok.NonNull;
+
+import java.util.*;
+
+/**
+ * Precompiled WordPiece vocabulary, for fast BERT tokenization.<br>
+ * The vocabulary is stored as an array backed character trie: nodes are numbered in breadth first order, so that the
+ * children of a node are contiguous, and edge i (sorted by character within each node) leads to node
+ * i + 1.<br>
+ * Tokenization is done in a single pass over the (already pre-processed) text, without regular expressions or
+ * substrings, and gives the same output as the NavigableMap based {@link BertWordPieceTokenizer}: the text is split
+ * on whitespace and punctuation (see {@link BertWordPieceTokenizer#splitPattern}), and each resulting word is split
+ * greedily into the longest matching vocabulary entries, continuation pieces being prefixed by "##".<br>
+ * Instances are immutable and thread safe.
+ */
+public class BertWordPieceTrie {
+
+    private final int[] childStart;
+    private final char[] edgeChars;
+    private final int[] depth;
+    private final String[] tokens;
+    private final int[] ids;
+
+    private static class Node {
+        private final TreeMap<Character, Node> children = new TreeMap<>();
+        private String token;
+        private int id = -1;
+    }
+
+    /**
+     * @param vocab Vocabulary: token to token index
+     */
+    public BertWordPieceTrie(@NonNull Map<String, Integer> vocab) {
+        Node root = new Node();
+        int numNodes = 1;
+        for (Map.Entry<String, Integer> e : vocab.entrySet()) {
+            String token = e.getKey();
+            Node n = root;
+            for (int i = 0; i < token.length(); i++) {
+                Node child = n.children.get(token.charAt(i));
+                if (child == null) {
+                    child = new Node();
+                    n.children.put(token.charAt(i), child);
+                    numNodes++;
+                }
+                n = child;
+            }
+            n.token = token;
+            n.id = e.getValue();
+        }
+
+        childStart = new int[numNodes + 1];
+        edgeChars = new char[numNodes - 1];
+        depth = new int[numNodes];
+        tokens = new String[numNodes];
+        ids = new int[numNodes];
+
+        //Breadth first numbering: children of node k get the next free node numbers, in character order
+        Node[] queue = new Node[numNodes];
+        queue[0] = root;
+        int next = 1;
+        for (int k = 0; k < numNodes; k++) {
+            Node n = queue[k];
+            tokens[k] = n.token;
+            ids[k] = n.id;
+            childStart[k] = next - 1;
+            for (Map.Entry<Character, Node> e : n.children.entrySet()) {
+                edgeChars[next - 1] = e.getKey();
+                depth[next] = depth[k] + 1;
+                queue[next++] = e.getValue();
+            }
+        }
+        childStart[numNodes] = numNodes - 1;
+    }
+
+    /**
+     * @return Number of trie nodes
+     */
+    public int numNodes() {
+        return tokens.length;
+    }
+
+    private int child(int node, char c) {
+        int lo = childStart[node];
+        int hi = childStart[node + 1] - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            char m = edgeChars[mid];
+            if (m < c) {
+                lo = mid + 1;
+            } else if (m > c) {
+                hi = mid - 1;
+            } else {
+                return mid + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Longest vocabulary entry that is a prefix of the candidate: {@code hashes} '#' characters followed by
+     * text[start, end)
+     *
+     * @return Trie node of the vocabulary entry, or -1 if no vocabulary entry is a prefix of the candidate
+     */
+    protected int longestMatch(int hashes, CharSequence text, int start, int end) {
+        int node = 0;
+        int best = tokens[0] != null ? 0 : -1;
+        for (int i = 0; i < hashes; i++) {
+            node = child(node, '#');
+            if (node < 0)
+                return best;
+            if (tokens[node] != null)
+                best = node;
+        }
+        for (int i = start; i < end; i++) {
+            node = child(node, text.charAt(i));
+            if (node < 0)
+                return best;
+            if (tokens[node] != null)
+                best = node;
+        }
+        return best;
+    }
+
+    /**
+     * Punctuation, as defined by {@link BertWordPieceTokenizer#splitPattern}: Unicode punctuation characters, and all
+     * non-letter/number ASCII characters
+     */
+    public static boolean isPunctuation(int cp) {
+        if ((cp >= 0x21 && cp <= 0x2F) || (cp >= 0x3A && cp <= 0x40) || (cp >= 0x5B && cp <= 0x60) || (cp >= 0x7B && cp <= 0x7E))
+            return true;
+        switch (Character.getType(cp)) {
+            case Character.CONNECTOR_PUNCTUATION:
+            case Character.DASH_PUNCTUATION:
+            case Character.START_PUNCTUATION:
+            case Character.END_PUNCTUATION:
+            case Character.INITIAL_QUOTE_PUNCTUATION:
+            case Character.FINAL_QUOTE_PUNCTUATION:
+            case Character.OTHER_PUNCTUATION:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Tokenize the text, writing the trie nodes of the tokens to the given array.
+     *
+     * @param text Text to tokenize, after pre-processing
+     * @param out  Output array. If there are more tokens than fit in the array, only the first out.length are written
+     * @return The total number of tokens
+     */
+    protected int tokenizeToNodes(String text, int[] out) {
+        int count = 0;
+        int pieceStart = -1;
+        int n = text.length();
+        int i = 0;
+        while (i < n) {
+            int cp = text.codePointAt(i);
+            int cc = Character.charCount(cp);
+            if (Character.isWhitespace(cp)) {
+                if (pieceStart >= 0) {
+                    count = wordPiece(text, pieceStart, i, out, count);
+                    pieceStart = -1;
+                }
+            } else if (isPunctuation(cp)) {
+                if (pieceStart >= 0) {
+                    count = wordPiece(text, pieceStart, i, out, count);
+                    pieceStart = -1;
+                }
+                count = wordPiece(text, i, i + cc, out, count);
+            } else if (pieceStart < 0) {
+                pieceStart = i;
+            }
+            i += cc;
+        }
+        if (pieceStart >= 0)
+            count = wordPiece(text, pieceStart, n, out, count);
+        return count;
+    }
+
+    /**
+     * Greedy longest-match-first split of a single word text[start, end). The current candidate is represented as
+     * {@code hashes} '#' characters followed by text[offset, end)
+     */
+    private int wordPiece(String text, int start, int end, int[] out, int count) {
+        int hashes = 0;
+        int offset = start;
+        int steps = 0;
+        while (hashes + end - offset > 0 && !(hashes == 2 && offset == end)) {
+            int node = longestMatch(hashes, text, offset, end);
+            if (node < 0) {
+                throw new IllegalStateException("Invalid token/character encountered: \"" + candidate(text, hashes, offset, end)
+                        + "\" likely contains characters that are not present in the vocabulary. Invalid tokens may be " +
+                        "cleaned in a preprocessing step using a TokenPreProcessor.");
+            }
+            if (count < out.length)
+                out[count] = node;
+            count++;
+
+            int m = depth[node];
+            if (m <= hashes) {
+                hashes = 2 + hashes - m;
+            } else {
+                offset += m - hashes;
+                hashes = 2;
+            }
+            if (steps++ > end - start) {
+                //Can't take more steps to tokenize than the length of the token
+                throw new IllegalStateException("Invalid token encountered: \"" + text.substring(start, end) + "\" likely " +
+                        "contains characters that are not present in the vocabulary. Invalid tokens may be cleaned in a " +
+                        "preprocessing step using a TokenPreProcessor.");
+            }
+        }
+        return count;
+    }
+
+    private static String candidate(String text, int hashes, int offset, int end) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < hashes; i++)
+            sb.append('#');
+        return sb.append(text, offset, end).toString();
+    }
+
+    /**
+     * Tokenize the text
+     *
+     * @param text Text to tokenize, after pre-processing
+     * @return WordPiece tokens
+     */
+    public List<String> tokenize(@NonNull String text) {
+        int[] nodes = new int[text.length() + 16];
+        int n = tokenizeToNodes(text, nodes);
+        if (n > nodes.length) {
+            nodes = new int[n];
+            tokenizeToNodes(text, nodes);
+        }
+        List<String> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++)
+            out.add(tokens[nodes[i]]);
+        return out;
+    }
+
+    /**
+     * Tokenize the text, writing the vocabulary indices of the tokens to the given array.
+     *
+     * @param text Text to tokenize, after pre-processing
+     * @param ids  Output array. If there are more tokens than fit in the array, only the first ids.length are written
+     * @return The total number of tokens
+     */
+    public int tokenizeToIds(@NonNull String text, @NonNull int[] ids) {
+        int n = tokenizeToNodes(text, ids);
+        for (int i = 0, written = Math.min(n, ids.length); i < written; i++)
+            ids[i] = this.ids[ids[i]];
+        return n;
+    }
+}
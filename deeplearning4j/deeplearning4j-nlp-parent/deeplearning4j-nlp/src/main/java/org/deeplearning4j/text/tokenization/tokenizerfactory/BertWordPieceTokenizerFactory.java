@@ -25,6 +25,7 @@ import lombok.NonNull;
 import lombok.Setter;
 import org.deeplearning4j.text.tokenization.tokenizer.BertWordPieceStreamTokenizer;
 import org.deeplearning4j.text.tokenization.tokenizer.BertWordPieceTokenizer;
+import org.deeplearning4j.text.tokenization.tokenizer.BertWordPieceTrie;
 import org.deeplearning4j.text.tokenization.tokenizer.TokenPreProcess;
 import org.deeplearning4j.text.tokenization.tokenizer.Tokenizer;
 import org.deeplearning4j.text.tokenization.tokenizer.preprocessor.BertWordPiecePreProcessor;
@@ -39,6 +40,8 @@ import java.util.TreeMap;
 public class BertWordPieceTokenizerFactory implements TokenizerFactory {
 
     private final NavigableMap<String, Integer> vocab;
+    @Getter
+    private final BertWordPieceTrie trie;
     @Getter @Setter
     private TokenPreProcess preTokenizePreProcessor;
     @Getter @Setter
@@ -60,6 +63,7 @@ public class BertWordPieceTokenizerFactory implements TokenizerFactory {
      */
     public BertWordPieceTokenizerFactory(NavigableMap<String, Integer> vocab, TokenPreProcess preTokenizePreProcessor) {
         this.vocab = vocab;
+        this.trie = new BertWordPieceTrie(vocab);
         this.preTokenizePreProcessor = preTokenizePreProcessor;
     }
 
@@ -94,16 +98,32 @@ public class BertWordPieceTokenizerFactory implements TokenizerFactory {
 
     @Override
     public Tokenizer create(String toTokenize) {
-        Tokenizer t = new BertWordPieceTokenizer(toTokenize, vocab, preTokenizePreProcessor, tokenPreProcessor);
+        Tokenizer t = new BertWordPieceTokenizer(toTokenize, trie, preTokenizePreProcessor, tokenPreProcessor);
         return t;
     }
 
     @Override
     public Tokenizer create(InputStream toTokenize) {
-        Tokenizer t = new BertWordPieceStreamTokenizer(toTokenize, charset, vocab, preTokenizePreProcessor, tokenPreProcessor);
+        Tokenizer t = new BertWordPieceStreamTokenizer(toTokenize, charset, trie, preTokenizePreProcessor, tokenPreProcessor);
         return t;
     }
 
+    /**
+     * Tokenize the text directly to vocabulary indices, without creating a Tokenizer or token strings.<br>
+     * The pre-tokenize preprocessor is applied; the token preprocessor is not, as the indices refer to the vocabulary
+     * entries themselves.
+     *
+     * @param toTokenize Text to tokenize
+     * @param ids        Output array for the vocabulary indices, may be reused between calls. If there are more
+     *                   tokens than fit in the array, only the first ids.length indices are written
+     * @return The total number of tokens, which may be larger than ids.length
+     */
+    public int tokenizeToIds(@NonNull String toTokenize, @NonNull int[] ids) {
+        if (preTokenizePreProcessor != null)
+            toTokenize = preTokenizePreProcessor.preProcess(toTokenize);
+        return trie.tokenizeToIds(toTokenize, ids);
+    }
+
     public Map<String,Integer> getVocab(){
         return Collections.unmodifiableMap(vocab);
     }
@@ -0,0 +1,53 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.nn.api.layers;
+
+import org.deeplearning4j.nn.api.Layer;
+
+/**
+ * A layer that may compute sparse (row-wise) gradients for some of its 2d parameters - for example, the weights of an
+ * embedding layer, where only the rows for the indices present in the minibatch have a non-zero gradient.<br>
+ * The gradient is still stored in the (dense) gradient view array; the gradient view is zero for all rows other than
+ * those returned by {@link #getSparseGradientRows(String)}. The updater uses this to only update the specified rows.
+ */
+public interface SparseGradientLayer extends Layer {
+
+    /**
+     * @param paramName Name of the parameter
+     * @return True if the gradient for the specified parameter is row-sparse
+     */
+    boolean hasSparseGradient(String paramName);
+
+    /**
+     * @param paramName Name of the parameter
+     * @return The (sorted, unique) rows of the gradient for the specified parameter that may be non-zero after the last
+     * call to {@link #backpropGradient(org.nd4j.linalg.api.ndarray.INDArray, org.deeplearning4j.nn.workspace.LayerWorkspaceMgr)},
+     * or null if backprop has not been performed
+     */
+    int[] getSparseGradientRows(String paramName);
+
+    /**
+     * Notify the layer that the gradient view array may have been modified outside of the rows returned by
+     * {@link #getSparseGradientRows(String)} - for example, when updates are shared between workers. The next
+     * backprop call will zero the full gradient array, rather than only the previously used rows.
+     */
+    void clearSparseGradientRows();
+}
@@ -48,10 +48,12 @@ import java.util.Map;
 public class EmbeddingLayer extends FeedForwardLayer {
 
     private boolean hasBias = true; //Default for pre-0.9.2 implementations
+    private boolean sparseGradients = false;
 
     private EmbeddingLayer(Builder builder) {
         super(builder);
         this.hasBias = builder.hasBias;
+        this.sparseGradients = builder.sparseGradients;
         initializeConstraints(builder);
     }
 
@@ -107,6 +109,12 @@ public class EmbeddingLayer extends FeedForwardLayer {
          */
         private boolean hasBias = false;
 
+        /**
+         * If true: compute sparse (row-wise) gradients for the embedding weights. False (default): dense gradients.
+         *
+         */
+        private boolean sparseGradients = false;
+
         public Builder(){
             //Default to Identity activation - i.e., don't inherit.
             //For example, if user sets ReLU as global default, they very likely don't intend to use it for Embedding layer also
@@ -124,6 +132,25 @@ public class EmbeddingLayer extends FeedForwardLayer {
             return this;
         }
 
+        /**
+         * If true: compute sparse (row-wise) gradients for the embedding weights. Only the rows of the weight matrix
+         * for the indices present in the minibatch are modified by the gradient calculation, the updater and the
+         * parameter update, which makes the cost of a training step independent of the vocabulary size (nIn).<br>
+         * Updates and regularization are applied lazily, to the rows present in the minibatch only: updater state (for
+         * example, Adam moving averages) is not updated for other rows, and L1/L2 regularization and weight decay are
+         * not applied to them. Without regularization, training with Sgd or AdaGrad gives the same result as with dense
+         * gradients; with regularization, or with Adam, the results differ.<br>
+         * Supported updaters: {@link org.nd4j.linalg.learning.config.Sgd}, {@link org.nd4j.linalg.learning.config.Adam},
+         * {@link org.nd4j.linalg.learning.config.AdaGrad} and {@link org.nd4j.linalg.learning.config.NoOp}.
+         * Default: false (dense gradients).
+         *
+         * @param sparseGradients If true: use sparse gradients for the embedding weights
+         */
+        public Builder sparseGradients(boolean sparseGradients) {
+            this.sparseGradients = sparseGradients;
+            return this;
+        }
+
         @Override
         public Builder weightInit(IWeightInit weightInit) {
             if(weightInit instanceof WeightInitEmbedding){
@@ -50,12 +50,14 @@ public class EmbeddingSequenceLayer extends FeedForwardLayer {
 
     private int inputLength = 1; // By default only use one index to embed
     private boolean hasBias = false;
+    private boolean sparseGradients = false;
     private boolean inferInputLength = false; // use input length as provided by input data
     private RNNFormat outputFormat = RNNFormat.NCW;       //Default value for older deserialized models
 
     private EmbeddingSequenceLayer(Builder builder) {
         super(builder);
         this.hasBias = builder.hasBias;
+        this.sparseGradients = builder.sparseGradients;
         this.inputLength = builder.inputLength;
         this.inferInputLength = builder.inferInputLength;
         this.outputFormat = builder.outputFormat;
@@ -169,6 +171,12 @@ public class EmbeddingSequenceLayer extends FeedForwardLayer {
          */
         private boolean inferInputLength = true;
 
+        /**
+         * If true: compute sparse (row-wise) gradients for the embedding weights. False (default): dense gradients.
+         *
+         */
+        private boolean sparseGradients = false;
+
         private RNNFormat outputFormat = RNNFormat.NCW;       //Default value for older deserialized models
 
         public Builder outputDataFormat(RNNFormat format){
@@ -209,6 +217,25 @@ public class EmbeddingSequenceLayer extends FeedForwardLayer {
             return this;
         }
 
+        /**
+         * If true: compute sparse (row-wise) gradients for the embedding weights. Only the rows of the weight matrix
+         * for the indices present in the minibatch are modified by the gradient calculation, the updater and the
+         * parameter update, which makes the cost of a training step independent of the vocabulary size (nIn).<br>
+         * Updates and regularization are applied lazily, to the rows present in the minibatch only: updater state (for
+         * example, Adam moving averages) is not updated for other rows, and L1/L2 regularization and weight decay are
+         * not applied to them. Without regularization, training with Sgd or AdaGrad gives the same result as with dense
+         * gradients; with regularization, or with Adam, the results differ.<br>
+         * Supported updaters: {@link org.nd4j.linalg.learning.config.Sgd}, {@link org.nd4j.linalg.learning.config.Adam},
+         * {@link org.nd4j.linalg.learning.config.AdaGrad} and {@link org.nd4j.linalg.learning.config.NoOp}.
+         * Default: false (dense gradients).
+         *
+         * @param sparseGradients If true: use sparse gradients for the embedding weights
+         */
+        public Builder sparseGradients(boolean sparseGradients) {
+            this.setSparseGradients(sparseGradients);
+            return this;
+        }
+
         @Override
         public Builder weightInit(IWeightInit weightInit) {
             this.setWeightInitFn(weightInit);
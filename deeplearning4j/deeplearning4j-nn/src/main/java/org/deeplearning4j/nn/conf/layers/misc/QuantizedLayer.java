@@ -0,0 +1,186 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.nn.conf.layers.misc;
+
+import lombok.*;
+import org.deeplearning4j.nn.api.ParamInitializer;
+import org.deeplearning4j.nn.conf.InputPreProcessor;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.inputs.InputType;
+import org.deeplearning4j.nn.conf.layers.*;
+import org.deeplearning4j.nn.conf.memory.LayerMemoryReport;
+import org.deeplearning4j.nn.params.QuantizedLayerParamInitializer;
+import org.deeplearning4j.optimize.api.TrainingListener;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.learning.config.IUpdater;
+import org.nd4j.linalg.learning.config.NoOp;
+import org.nd4j.linalg.learning.regularization.Regularization;
+import org.nd4j.shade.jackson.annotation.JsonIgnore;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Configuration for an inference-only, INT8 quantized version of a dense, output or 2d convolution layer - see
+ * {@link org.deeplearning4j.nn.quantization.PostTrainingQuantizer}.<br>
+ * The configuration of the original (floating point) layer is retained for the layer size, activation function and
+ * convolution settings, but its weights are not: the parameters of a quantized layer are only the per output channel
+ * weight scales and the bias. The INT8 weights are held by the layer itself, see
+ * {@link org.deeplearning4j.nn.quantization.QuantizedLayer}.
+ */
+@Data
+@NoArgsConstructor
+@ToString(callSuper = true)
+@EqualsAndHashCode(callSuper = true)
+public class QuantizedLayer extends FeedForwardLayer {
+
+    /**
+     * Configuration of the original (floating point) layer
+     */
+    protected FeedForwardLayer layer;
+    /**
+     * Input scale (input = inputScale * quantized input), from the input range observed during calibration
+     */
+    protected double inputScale;
+
+    /**
+     * @param layer      Configuration of the original layer: dense, output or 2d convolution layer
+     * @param inputScale Input scale, as determined by calibration
+     */
+    public QuantizedLayer(@NonNull FeedForwardLayer layer, double inputScale) {
+        this.layer = layer;
+        this.inputScale = inputScale;
+        this.layerName = layer.getLayerName();
+        this.nIn = layer.getNIn();
+        this.nOut = layer.getNOut();
+        this.activationFn = layer.getActivationFn();
+        this.weightInitFn = layer.getWeightInitFn();
+        this.biasInit = layer.getBiasInit();
+        this.iUpdater = new NoOp();
+        this.regularization = new ArrayList<>();
+        this.regularizationBias = new ArrayList<>();
+    }
+
+    /**
+     * @return True if the original layer is a 2d convolution layer
+     */
+    @JsonIgnore
+    public boolean isConvolution() {
+        return layer instanceof ConvolutionLayer;
+    }
+
+    /**
+     * @return True if the original layer has a bias
+     */
+    public boolean hasBias() {
+        if (layer instanceof ConvolutionLayer)
+            return ((ConvolutionLayer) layer).hasBias();
+        if (layer instanceof DenseLayer)
+            return ((DenseLayer) layer).hasBias();
+        if (layer instanceof BaseOutputLayer)
+            return ((BaseOutputLayer) layer).hasBias();
+        return true;
+    }
+
+    /**
+     * @return Number of rows of the quantized weight matrix: nIn for dense layers, kH*kW*nIn for convolution layers
+     */
+    public long fanIn() {
+        if (isConvolution()) {
+            int[] k = ((ConvolutionLayer) layer).getKernelSize();
+            return k[0] * k[1] * layer.getNIn();
+        }
+        return layer.getNIn();
+    }
+
+    @Override
+    public QuantizedLayer clone() {
+        QuantizedLayer l = (QuantizedLayer) super.clone();
+        l.layer = (FeedForwardLayer) layer.clone();
+        return l;
+    }
+
+    @Override
+    public org.deeplearning4j.nn.api.Layer instantiate(NeuralNetConfiguration conf,
+                                                       Collection<TrainingListener> trainingListeners, int layerIndex, INDArray layerParamsView,
+                                                       boolean initializeParams, DataType networkDataType) {
+        org.deeplearning4j.nn.quantization.QuantizedLayer ret =
+                new org.deeplearning4j.nn.quantization.QuantizedLayer(conf, networkDataType);
+        ret.setListeners(trainingListeners);
+        ret.setIndex(layerIndex);
+        ret.setParamsViewArray(layerParamsView);
+        Map<String, INDArray> paramTable = initializer().init(conf, layerParamsView, initializeParams);
+        ret.setParamTable(paramTable);
+        ret.setConf(conf);
+        return ret;
+    }
+
+    @Override
+    public ParamInitializer initializer() {
+        return QuantizedLayerParamInitializer.getInstance();
+    }
+
+    @Override
+    public InputType getOutputType(int layerIndex, InputType inputType) {
+        return layer.getOutputType(layerIndex, inputType);
+    }
+
+    @Override
+    public void setNIn(InputType inputType, boolean override) {
+        layer.setNIn(inputType, override);
+        this.nIn = layer.getNIn();
+    }
+
+    @Override
+    public InputPreProcessor getPreProcessorForInputType(InputType inputType) {
+        return layer.getPreProcessorForInputType(inputType);
+    }
+
+    @Override
+    public List<Regularization> getRegularizationByParam(String paramName) {
+        return null;
+    }
+
+    @Override
+    public boolean isPretrainParam(String paramName) {
+        return false;
+    }
+
+    @Override
+    public IUpdater getUpdaterByParam(String paramName) {
+        return new NoOp();
+    }
+
+    @Override
+    public LayerMemoryReport getMemoryReport(InputType inputType) {
+        return layer.getMemoryReport(inputType);
+    }
+
+    @Override
+    public void setLayerName(String layerName) {
+        super.setLayerName(layerName);
+        if (layer != null)
+            layer.setLayerName(layerName);
+    }
+}
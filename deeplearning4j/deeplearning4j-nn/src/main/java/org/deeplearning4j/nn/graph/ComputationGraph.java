@@ -54,6 +54,7 @@ import org.deeplearning4j.nn.layers.FrozenLayer;
 import org.deeplearning4j.nn.layers.FrozenLayerWithBackprop;
 import org.deeplearning4j.nn.layers.recurrent.BidirectionalLayer;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.profiling.LayerProfiler;
 import org.deeplearning4j.nn.updater.graph.ComputationGraphUpdater;
 import org.deeplearning4j.nn.workspace.ArrayType;
 import org.deeplearning4j.nn.workspace.LayerWorkspaceMgr;
@@ -118,9 +119,20 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
     protected double score;
     @Setter
     private boolean initDone = false;
+    /**
+     * True if this network is an inference-only view of another network - see {@link #inferenceView()}
+     */
+    @Getter
+    protected boolean inferenceView = false;
     @Getter
     @Setter
     protected boolean clearTbpttState = true;  //Mainly for unit testing (should be enabled otherwise)
+    /**
+     * Per layer runtime profiler, if any - see {@link LayerProfiler#attach(Model)}
+     */
+    @Getter
+    @Setter
+    protected transient LayerProfiler layerProfiler;
     //Workspaces for CUDNN. Pass to LayerWorkspaceMgr for re-use in cudnn helpers
     @Getter
     protected transient Map<String,Pointer> helperWorkspaces = new HashMap<>();
@@ -760,6 +772,8 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
      * or fit(MultiDataSet) methods
      */
     public void initGradientsView() {
+        Preconditions.checkState(!inferenceView, "Cannot train or compute gradients for an inference view of a network." +
+                " Use the original network for training instead");
         try (MemoryWorkspace ws = Nd4j.getMemoryManager().scopeOutOfWorkspaces()) {
             if (!initCalled)
                 init();
@@ -1885,6 +1899,19 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
     }
 
 
+    private LayerProfiler.Measurement profileBegin() {
+        LayerProfiler p = layerProfiler;
+        return p == null ? null : p.begin();
+    }
+
+    private void profileEnd(LayerProfiler.Measurement pm, LayerProfiler.Phase phase, GraphVertex vertex) {
+        LayerProfiler p = layerProfiler;
+        if (pm != null && p != null) {
+            String type = vertex.hasLayer() ? vertex.getLayer().getClass().getSimpleName() : vertex.getClass().getSimpleName();
+            p.end(pm, phase, vertex.getVertexName(), type);
+        }
+    }
+
     protected void validateArrayWorkspaces(LayerWorkspaceMgr mgr, INDArray array, ArrayType arrayType, String vertexName, boolean isInputVertex, String op){
         try{
             mgr.validateArrayLocation(arrayType, array, false, isInputVertex);
@@ -1981,6 +2008,7 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
                 if(current.isInputVertex()){
                     out = inputs[vIdx];
                 } else {
+                    LayerProfiler.Measurement pm = profileBegin();
 
                     if(fwdPassType == FwdPassType.STANDARD) {
                         //Standard feed-forward case
@@ -2028,6 +2056,7 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
                         throw new IllegalArgumentException("Unsupported forward pass type for this method: " + fwdPassType);
                     }
                     validateArrayWorkspaces(workspaceMgr, out, ArrayType.ACTIVATIONS, vName, false, "Feed forward (inference)");
+                    profileEnd(pm, LayerProfiler.Phase.FORWARD, current);
                 }
                 activations.put(current.getVertexName(), out);
 
@@ -2142,6 +2171,7 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
                 if(current.isInputVertex()){
                     out = inputs[vIdx];
                 } else {
+                    LayerProfiler.Measurement pm = profileBegin();
 
                     if(fwdPassType == FwdPassType.STANDARD){
                         out = current.doForward(train, workspaceMgr);
@@ -2170,6 +2200,7 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
                     }
 
                     validateArrayWorkspaces(workspaceMgr, out, ArrayType.ACTIVATIONS, vName, false, "Feed forward (inference)");
+                    profileEnd(pm, LayerProfiler.Phase.FORWARD, current);
                 }
                 activations.put(current.getVertexName(), out);
 
@@ -2387,6 +2418,7 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
                     if (current.isInputVertex()) {
                         out = features[vIdx];
                     } else {
+                        LayerProfiler.Measurement pm = profileBegin();
 
                         if (fwdPassType == FwdPassType.STANDARD) {
                             //Standard feed-forward case
@@ -2473,6 +2505,7 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
                             throw new IllegalArgumentException("Unsupported forward pass type for this method: " + fwdPassType);
                         }
                         validateArrayWorkspaces(workspaceMgr, out, ArrayType.ACTIVATIONS, vName, false, "Feed forward (inference)");
+                        profileEnd(pm, LayerProfiler.Phase.FORWARD, current);
                     }
 
                     if (inputsTo != null) {  //Output vertices may not input to any other vertices
@@ -2781,7 +2814,9 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
                 Pair<Gradient, INDArray[]> pair;
                 INDArray[] epsilons;
                 try (MemoryWorkspace wsWorkingMem = workspaceMgr.notifyScopeEntered(ArrayType.BP_WORKING_MEM)) {
+                    LayerProfiler.Measurement pm = profileBegin();
                     pair = current.doBackward(truncatedBPTT, workspaceMgr);
+                    profileEnd(pm, LayerProfiler.Phase.BACKWARD, current);
                     epsilons = pair.getSecond();
 
                     //Validate workspace location for the activation gradients:
@@ -2917,6 +2952,30 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
         return cg;
     }
 
+    /**
+     * Create an inference-only view of this network, for running inference on one model from many threads
+     * concurrently, without replicating the network parameters.<br>
+     * The view shares the parameters array of this network (no copy is made), but has its own layer instances - and
+     * hence its own layer input, mask and RNN state fields - and its own lock for the output methods. As workspaces
+     * are thread local, output calls on different views do not block each other.<br>
+     * Views are intended to be created once per inference thread (for example, via a {@link ThreadLocal}) and reused.
+     * Notes:<br>
+     * - A view cannot be trained: fit, computeGradientAndScore and similar methods will throw an exception<br>
+     * - Parameter changes on this network (via fit, setParams etc) are immediately visible to all views, hence parameters
+     *   should not be modified while views are being used for inference<br>
+     * - Listeners and updater state are not copied to the view
+     *
+     * @return Inference view of this network, sharing its parameters
+     */
+    public ComputationGraph inferenceView() {
+        if (!initCalled)
+            init();
+        ComputationGraph view = new ComputationGraph(configuration.clone());
+        view.init(numParams() == 0 ? null : flattenedParams, false);
+        view.inferenceView = true;
+        return view;
+    }
+
 
     public double calcRegularizationScore(boolean backpropParamsOnly){
         double scoreSum = 0.0;
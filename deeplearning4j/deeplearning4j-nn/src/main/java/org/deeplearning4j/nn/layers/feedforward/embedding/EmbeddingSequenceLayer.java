@@ -23,6 +23,7 @@ package org.deeplearning4j.nn.layers.feedforward.embedding;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 import org.deeplearning4j.exception.DL4JInvalidInputException;
+import org.deeplearning4j.nn.api.layers.SparseGradientLayer;
 import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
 import org.deeplearning4j.nn.conf.RNNFormat;
 import org.deeplearning4j.nn.gradient.DefaultGradient;
@@ -42,7 +43,7 @@ import java.util.Arrays;
 import static org.nd4j.linalg.api.shape.Shape.hasDefaultStridesForShape;
 
 @Slf4j
-public class EmbeddingSequenceLayer extends BaseLayer<org.deeplearning4j.nn.conf.layers.EmbeddingSequenceLayer> {
+public class EmbeddingSequenceLayer extends BaseLayer<org.deeplearning4j.nn.conf.layers.EmbeddingSequenceLayer> implements SparseGradientLayer {
     private static final int[] WEIGHT_DIM = new int[]{1};
 
     public EmbeddingSequenceLayer(NeuralNetConfiguration conf, DataType dataType) {
@@ -51,6 +52,9 @@ public class EmbeddingSequenceLayer extends BaseLayer<org.deeplearning4j.nn.conf
 
     private int[] indexes;
 
+    //Rows of the weight gradient that may be non-zero - only when using sparse gradients
+    private int[] sparseGradientRows;
+
     @Override
     public Pair<Gradient, INDArray> backpropGradient(INDArray epsilon, LayerWorkspaceMgr workspaceMgr) {
         assertInputSet(true);
@@ -82,13 +86,21 @@ public class EmbeddingSequenceLayer extends BaseLayer<org.deeplearning4j.nn.conf
         delta = delta.reshape('c',inputLength * numSamples, nOut);
 
         INDArray weightGradients = gradientViews.get(DefaultParamInitializer.WEIGHT_KEY);
-        weightGradients.assign(0);
+        boolean sparse = layerConf().isSparseGradients();
+        if (sparse) {
+            SparseEmbeddingGradients.zeroGradients(weightGradients, sparseGradientRows);
+        } else {
+            weightGradients.assign(0);
+        }
 
         if (!hasDefaultStridesForShape(input))
             input = workspaceMgr.dup(ArrayType.ACTIVATIONS, input, 'f');
 
         INDArray indices = Nd4j.createFromArray(indexes);
         Nd4j.scatterUpdate(org.nd4j.linalg.api.ops.impl.scatter.ScatterUpdate.UpdateOp.ADD, weightGradients, indices, delta, WEIGHT_DIM);
+        if (sparse) {
+            sparseGradientRows = SparseEmbeddingGradients.uniqueRows(indexes);
+        }
 
         Gradient ret = new DefaultGradient();
         ret.gradientForVariable().put(DefaultParamInitializer.WEIGHT_KEY, weightGradients);
@@ -207,6 +219,27 @@ public class EmbeddingSequenceLayer extends BaseLayer<org.deeplearning4j.nn.conf
         return false;
     }
 
+    @Override
+    public boolean hasSparseGradient(String paramName) {
+        return layerConf().isSparseGradients() && DefaultParamInitializer.WEIGHT_KEY.equals(paramName);
+    }
+
+    @Override
+    public int[] getSparseGradientRows(String paramName) {
+        return hasSparseGradient(paramName) ? sparseGradientRows : null;
+    }
+
+    @Override
+    public void clearSparseGradientRows() {
+        sparseGradientRows = null;
+    }
+
+    @Override
+    public void setBackpropGradientsViewArray(INDArray gradients) {
+        super.setBackpropGradientsViewArray(gradients);
+        sparseGradientRows = null;
+    }
+
     @Override
     protected void applyDropOutIfNecessary(boolean training, LayerWorkspaceMgr workspaceMgr) {
         throw new UnsupportedOperationException("Dropout not supported with EmbeddingLayer " + layerId());
@@ -0,0 +1,67 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.nn.layers.feedforward.embedding;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.impl.scatter.ScatterUpdate;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.Arrays;
+
+/**
+ * Helper methods for sparse (row-wise) embedding weight gradients - see
+ * {@link org.deeplearning4j.nn.api.layers.SparseGradientLayer}
+ */
+class SparseEmbeddingGradients {
+    private static final int[] DIM_1 = new int[]{1};
+
+    private SparseEmbeddingGradients() { }
+
+    /**
+     * @return The sorted, unique values of the specified indices
+     */
+    static int[] uniqueRows(int[] indexes) {
+        int[] sorted = Arrays.copyOf(indexes, indexes.length);
+        Arrays.sort(sorted);
+        int n = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1])
+                sorted[n++] = sorted[i];
+        }
+        return n == sorted.length ? sorted : Arrays.copyOf(sorted, n);
+    }
+
+    /**
+     * Zero the weight gradients before the gradient calculation. If the rows used in the previous iteration are known,
+     * only those are zeroed (the remainder of the gradient view is already zero); otherwise the full array is zeroed.
+     *
+     * @param weightGradients Weight gradient view array, shape [nIn, nOut]
+     * @param previousRows    Rows used in the previous iteration, or null if not known
+     */
+    static void zeroGradients(INDArray weightGradients, int[] previousRows) {
+        if (previousRows == null) {
+            weightGradients.assign(0);
+        } else if (previousRows.length > 0) {
+            INDArray zeros = Nd4j.zeros(weightGradients.dataType(), previousRows.length, weightGradients.size(1));
+            Nd4j.scatterUpdate(ScatterUpdate.UpdateOp.ASSIGN, weightGradients, Nd4j.createFromArray(previousRows), zeros, DIM_1);
+        }
+    }
+}
@@ -39,6 +39,7 @@ import org.nd4j.linalg.activations.IActivation;
 import org.nd4j.linalg.activations.impl.ActivationSigmoid;
 import org.nd4j.linalg.api.memory.MemoryWorkspace;
 import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.impl.broadcast.BroadcastMulOp;
 import org.nd4j.linalg.api.ops.impl.transforms.pairwise.arithmetic.MulOp;
 import org.nd4j.linalg.api.ops.impl.transforms.same.TimesOneMinus;
 import org.nd4j.linalg.api.shape.Shape;
@@ -208,6 +209,13 @@ public class LSTMHelpers {
             }
         }
 
+        //The input to gate projection doesn't depend on the recurrent state: calculate it for all time steps at once, as
+        // one [T*m,nIn] x [nIn,4*layerSize] matrix multiply instead of one small matrix multiply per time step
+        INDArray inputProjection = null;
+        if (!is2dInput && timeSeriesLength > 1) {
+            inputProjection = timeStepsAsRows(input).mmul(inputWeights); //Shape: [T*miniBatch,4*layerSize]
+        }
+
         for (int iTimeIndex = 0; iTimeIndex < timeSeriesLength; iTimeIndex++) {
             try(MemoryWorkspace ws = workspaceMgr.notifyScopeEntered(ArrayType.RNN_FF_LOOP_WORKING_MEM)) {
                 int time = iTimeIndex;
@@ -216,15 +224,18 @@ public class LSTMHelpers {
                     time = timeSeriesLength - iTimeIndex - 1;
                 }
 
-
-                INDArray miniBatchData = (is2dInput ? input : input.tensorAlongDimension(time, 1, 0)); //[Expected shape: [m,nIn]. Also deals with edge case of T=1, with 'time series' data of shape [m,nIn], equiv. to [m,nIn,1]
-                miniBatchData = Shape.toMmulCompatible(miniBatchData);
-
                 // if we're using cache here - let's create ifogActivations within cache workspace, so all views from this array will be valid in cache
                 cacheEnter(training, cacheMode, workspaceMgr);
 
                 //Calculate activations for: network input + forget, output, input modulation gates. Next 3 lines are first part of those
-                INDArray ifogActivations = miniBatchData.mmul(inputWeights); //Shape: [miniBatch,4*layerSize]
+                INDArray ifogActivations;
+                if (inputProjection != null) {
+                    ifogActivations = inputProjection.get(interval((long) time * miniBatchSize, (long) (time + 1) * miniBatchSize), all()).dup('f'); //Shape: [miniBatch,4*layerSize]
+                } else {
+                    INDArray miniBatchData = (is2dInput ? input : input.tensorAlongDimension(time, 1, 0)); //[Expected shape: [m,nIn]. Also deals with edge case of T=1, with 'time series' data of shape [m,nIn], equiv. to [m,nIn,1]
+                    miniBatchData = Shape.toMmulCompatible(miniBatchData);
+                    ifogActivations = miniBatchData.mmul(inputWeights); //Shape: [miniBatch,4*layerSize]
+                }
                 cacheExit(training, cacheMode, workspaceMgr);
 
                 Nd4j.gemm(prevOutputActivations, recurrentWeightsIFOG, ifogActivations, false, false, 1.0, 1.0);
@@ -408,6 +419,14 @@ public class LSTMHelpers {
         return toReturn;
     }
 
+    /**
+     * Reshape time series input of shape [m,nIn,T] to [T*m,nIn], with the rows for each time step being contiguous:
+     * row t*m+i is example i at time step t
+     */
+    private static INDArray timeStepsAsRows(INDArray input) {
+        return input.permute(2, 0, 1).dup('c').reshape('c', input.size(2) * input.size(0), input.size(1));
+    }
+
     private static boolean shouldCache(boolean training, CacheMode cacheMode, LayerWorkspaceMgr workspaceMgr){
         return training && cacheMode != CacheMode.NONE && workspaceMgr.hasConfiguration(ArrayType.FF_CACHE) && workspaceMgr.isWorkspaceOpen(ArrayType.FF_CACHE);
     }
@@ -528,6 +547,14 @@ public class LSTMHelpers {
         boolean sigmoidGates = gateActivationFn instanceof ActivationSigmoid;
         IActivation afn = ((org.deeplearning4j.nn.conf.layers.BaseLayer) conf.getLayer()).getActivationFn();
 
+        //Gate deltas for all time steps, shape [T*m,4*layerSize] (same row order as timeStepsAsRows(input)).
+        //The input weight gradients, bias gradients and epsilons only depend on these (not on the recurrent state), so they
+        // are calculated after the time loop with one large matrix multiply each, instead of small ones for every time step
+        INDArray deltaifogAll = null;
+        if (!is2dInput && timeSeriesLength > 1) {
+            deltaifogAll = Nd4j.create(inputWeights.dataType(), new long[] {timeSeriesLength * miniBatchSize, 4 * hiddenLayerSize}, 'f');
+        }
+
         INDArray timeStepMaskColumn = null;
         for (long iTimeIndex = timeSeriesLength - 1; iTimeIndex >= endIdx; iTimeIndex--) {
             try(MemoryWorkspace ws = workspaceMgr.notifyScopeEntered(ArrayType.RNN_BP_LOOP_WORKING_MEM)) {
@@ -649,21 +676,30 @@ public class LSTMHelpers {
                     //Later, the deltaifogNext is used to calculate: input weight gradients, recurrent weight gradients, bias gradients
                 }
 
-                INDArray prevLayerActivationSlice =
-                        Shape.toMmulCompatible(is2dInput ? input : input.tensorAlongDimension(time, 1, 0));
-                if (iTimeIndex > 0 || prevHiddenUnitActivation != null) { //For time == 0 && no prevMemCellState, equivalent to muli by 0
-                    //Note that prevHiddenUnitActivations may be non-null at t=0 for TBPTT
-                    //Again, deltaifog_current == deltaifogNext at this point... same array
-                    Nd4j.gemm(prevLayerActivationSlice, deltaifogNext, iwGradientsOut, true, false, 1.0, 1.0);
+                if (deltaifogAll != null) {
+                    INDArray deltaifogStep = deltaifogAll.get(interval(time * miniBatchSize, (time + 1) * miniBatchSize), all());
+                    deltaifogStep.assign(deltaifogNext);
+                    if (iTimeIndex == 0 && prevHiddenUnitActivation == null) {
+                        //No contribution from forget gate at t=0 (deltaf was not calculated for this time step)
+                        deltaifogStep.get(all(), interval(hiddenLayerSize, 2 * hiddenLayerSize)).assign(0);
+                    }
                 } else {
-                    INDArray iwGradients_i =
-                            iwGradientsOut.get(all(), interval(0, hiddenLayerSize));
-                    Nd4j.gemm(prevLayerActivationSlice, deltai, iwGradients_i, true, false, 1.0, 1.0);
-                    INDArray iwGradients_og = iwGradientsOut.get(all(),
-                            interval(2 * hiddenLayerSize, 4 * hiddenLayerSize));
-                    INDArray deltaog = deltaifogNext.get(all(),
-                            interval(2 * hiddenLayerSize, 4 * hiddenLayerSize));
-                    Nd4j.gemm(prevLayerActivationSlice, deltaog, iwGradients_og, true, false, 1.0, 1.0);
+                    INDArray prevLayerActivationSlice =
+                            Shape.toMmulCompatible(is2dInput ? input : input.tensorAlongDimension(time, 1, 0));
+                    if (iTimeIndex > 0 || prevHiddenUnitActivation != null) { //For time == 0 && no prevMemCellState, equivalent to muli by 0
+                        //Note that prevHiddenUnitActivations may be non-null at t=0 for TBPTT
+                        //Again, deltaifog_current == deltaifogNext at this point... same array
+                        Nd4j.gemm(prevLayerActivationSlice, deltaifogNext, iwGradientsOut, true, false, 1.0, 1.0);
+                    } else {
+                        INDArray iwGradients_i =
+                                iwGradientsOut.get(all(), interval(0, hiddenLayerSize));
+                        Nd4j.gemm(prevLayerActivationSlice, deltai, iwGradients_i, true, false, 1.0, 1.0);
+                        INDArray iwGradients_og = iwGradientsOut.get(all(),
+                                interval(2 * hiddenLayerSize, 4 * hiddenLayerSize));
+                        INDArray deltaog = deltaifogNext.get(all(),
+                                interval(2 * hiddenLayerSize, 4 * hiddenLayerSize));
+                        Nd4j.gemm(prevLayerActivationSlice, deltaog, iwGradients_og, true, false, 1.0, 1.0);
+                    }
                 }
 
                 if (iTimeIndex > 0 || prevHiddenUnitActivation != null) {
@@ -688,41 +724,57 @@ public class LSTMHelpers {
                     rwGradientsOO.addi(dLdwOO);
                 }
 
-                INDArray bGradientsOutReshape = bGradientsOut.reshape(bGradientsOut.length());
-                if (iTimeIndex > 0 || prevHiddenUnitActivation != null) { //For time == 0 && no prevMemCellState, equivalent to muli by 0
-                    //Note that prevHiddenUnitActivation may be non-null at t=0 for TBPTT
-                    bGradientsOut.addi(deltaifogNext.sum(true, 0).reshape(bGradientsOut.shape()));
-                } else {
-                    INDArray bGradientsOutReshapeAdd = bGradientsOutReshape.get(interval(0, hiddenLayerSize));
-                    bGradientsOutReshapeAdd.addi(deltai.sum(true, 0).reshape(bGradientsOutReshapeAdd.shape()));
-                    INDArray ogBiasToAdd = deltaifogNext.get(all(), interval(2 * hiddenLayerSize, 4 * hiddenLayerSize)).sum(true, 0);
-                    INDArray ogBiasGrad = bGradientsOutReshape.get(interval(2 * hiddenLayerSize, 4 * hiddenLayerSize));
-                    ogBiasGrad.addi(ogBiasToAdd.reshape(ogBiasGrad.shape()));
-                }
+                if (deltaifogAll == null) {
+                    INDArray bGradientsOutReshape = bGradientsOut.reshape(bGradientsOut.length());
+                    if (iTimeIndex > 0 || prevHiddenUnitActivation != null) { //For time == 0 && no prevMemCellState, equivalent to muli by 0
+                        //Note that prevHiddenUnitActivation may be non-null at t=0 for TBPTT
+                        bGradientsOut.addi(deltaifogNext.sum(true, 0).reshape(bGradientsOut.shape()));
+                    } else {
+                        INDArray bGradientsOutReshapeAdd = bGradientsOutReshape.get(interval(0, hiddenLayerSize));
+                        bGradientsOutReshapeAdd.addi(deltai.sum(true, 0).reshape(bGradientsOutReshapeAdd.shape()));
+                        INDArray ogBiasToAdd = deltaifogNext.get(all(), interval(2 * hiddenLayerSize, 4 * hiddenLayerSize)).sum(true, 0);
+                        INDArray ogBiasGrad = bGradientsOutReshape.get(interval(2 * hiddenLayerSize, 4 * hiddenLayerSize));
+                        ogBiasGrad.addi(ogBiasToAdd.reshape(ogBiasGrad.shape()));
+                    }
 
-                //Calculate epsilonNext - i.e., equiv. to what would be (w^L*(d^(Lt))^T)^T in a normal network
-                //But here, need to add 4 weights * deltas for the IFOG gates
-                INDArray epsilonNextSlice = epsilonNext.tensorAlongDimension(time, 1, 0); //This slice: f order and contiguous, due to epsilonNext being defined as f order.
-                if (iTimeIndex > 0 || prevHiddenUnitActivation != null) {
-                    //Note that prevHiddenUnitActivation may be non-null at t=0 for TBPTT
-                    Nd4j.gemm(deltaifogNext, inputWeights, epsilonNextSlice, false, true, 1.0, 1.0);
-                } else {
-                    //No contribution from forget gate at t=0
-                    INDArray wi = inputWeights.get(all(), interval(0, hiddenLayerSize));
-                    Nd4j.gemm(deltai, wi, epsilonNextSlice, false, true, 1.0, 1.0);
-                    INDArray deltaog = deltaifogNext.get(all(), interval(2 * hiddenLayerSize, 4 * hiddenLayerSize));
-                    INDArray wog = inputWeights.get(all(), interval(2 * hiddenLayerSize, 4 * hiddenLayerSize));
-                    Nd4j.gemm(deltaog, wog, epsilonNextSlice, false, true, 1.0, 1.0); //epsilonNextSlice.addi(deltao.mmul(woTranspose)).addi(deltag.mmul(wgTranspose));
-                }
+                    //Calculate epsilonNext - i.e., equiv. to what would be (w^L*(d^(Lt))^T)^T in a normal network
+                    //But here, need to add 4 weights * deltas for the IFOG gates
+                    INDArray epsilonNextSlice = epsilonNext.tensorAlongDimension(time, 1, 0); //This slice: f order and contiguous, due to epsilonNext being defined as f order.
+                    if (iTimeIndex > 0 || prevHiddenUnitActivation != null) {
+                        //Note that prevHiddenUnitActivation may be non-null at t=0 for TBPTT
+                        Nd4j.gemm(deltaifogNext, inputWeights, epsilonNextSlice, false, true, 1.0, 1.0);
+                    } else {
+                        //No contribution from forget gate at t=0
+                        INDArray wi = inputWeights.get(all(), interval(0, hiddenLayerSize));
+                        Nd4j.gemm(deltai, wi, epsilonNextSlice, false, true, 1.0, 1.0);
+                        INDArray deltaog = deltaifogNext.get(all(), interval(2 * hiddenLayerSize, 4 * hiddenLayerSize));
+                        INDArray wog = inputWeights.get(all(), interval(2 * hiddenLayerSize, 4 * hiddenLayerSize));
+                        Nd4j.gemm(deltaog, wog, epsilonNextSlice, false, true, 1.0, 1.0); //epsilonNextSlice.addi(deltao.mmul(woTranspose)).addi(deltag.mmul(wgTranspose));
+                    }
 
-                if (maskArray != null) {
-                    //Mask array is present: bidirectional RNN -> need to zero out these errors to avoid sending anything
-                    // but 0s to the layer below at this time step (for the given example)
-                    epsilonNextSlice.muli(timeStepMaskColumn);
+                    if (maskArray != null) {
+                        //Mask array is present: bidirectional RNN -> need to zero out these errors to avoid sending anything
+                        // but 0s to the layer below at this time step (for the given example)
+                        epsilonNextSlice.muli(timeStepMaskColumn);
+                    }
                 }
             }
         }
 
+        if (deltaifogAll != null) {
+            //Sum over time steps of input_t^T * deltaifog_t, as a single matrix multiply
+            Nd4j.gemm(timeStepsAsRows(input), deltaifogAll, iwGradientsOut, true, false, 1.0, 1.0);
+            bGradientsOut.addi(deltaifogAll.sum(true, 0).reshape(bGradientsOut.shape()));
+
+            //epsilonNext_t = deltaifog_t * inputWeights^T for all time steps; rows of epsAsRows are [t*m+i] -> [m,nIn,T]
+            INDArray epsAsRows = deltaifogAll.mmul(inputWeights.transpose()); //Shape: [T*m,n^(L-1)]
+            epsilonNext.assign(epsAsRows.reshape('c', timeSeriesLength, miniBatchSize, prevLayerSize).permute(1, 2, 0));
+            if (maskArray != null) {
+                //Zero out the errors for masked time steps, as per timeStepMaskColumn in the time loop
+                Nd4j.getExecutioner().exec(new BroadcastMulOp(epsilonNext, maskArray.castTo(epsilonNext.dataType()), epsilonNext, 0, 2));
+            }
+        }
+
         Gradient retGradient = new DefaultGradient();
         retGradient.gradientForVariable().put(inputWeightKey, iwGradientsOut);
         retGradient.gradientForVariable().put(recurrentWeightKey, rwGradientsOut);
@@ -773,7 +825,8 @@ public class LSTMHelpers {
 
         //Memory use during forward pass:
         //ifogActivations: nTimeSteps * [minibatch,4*layerSize] (not cached during inference fwd pass)
-        val workingMemInferencePerEx = tsLength * 4 * lstmLayer.getNOut(); //Reduced by factor of tsLength if using workspace
+        //Input projection for all time steps: nTimeSteps * [minibatch,4*layerSize], plus a copy of the input
+        val workingMemInferencePerEx = tsLength * (8 * lstmLayer.getNOut() + lstmLayer.getNIn()); //Reduced if using workspace
 
         //For training, we also have
         //nTimeSteps * 5 * [minibatch, nOut] - 4 x gate pre-outs, memory cell state - may be cached
@@ -790,8 +843,9 @@ public class LSTMHelpers {
         //3 dups [minibatch, nOut] for peephole (Graves only)
         // 5xnOut (independent of minibatch size) - deltaiFog, peephole etc. Only 2 if no peephole TODO
         //6 for non-graves, 9 for graves
+        //Plus, for all time steps: gate deltas [minibatch, 4*nOut], a copy of the input and the epsilons [minibatch, nIn]
 
-        val backpropWorkingSpace = (isGraves ? 9 : 6) * tsLength * lstmLayer.getNOut();
+        val backpropWorkingSpace = ((isGraves ? 9 : 6) + 4) * tsLength * lstmLayer.getNOut() + 2 * tsLength * lstmLayer.getNIn();
 
         //TODO NO WAY TO TAKE LSTM WORKSPACE INTO ACCOUNT HERE :(
 
@@ -48,6 +48,7 @@ import org.deeplearning4j.nn.layers.FrozenLayerWithBackprop;
 import org.deeplearning4j.nn.layers.LayerHelper;
 import org.deeplearning4j.nn.layers.recurrent.BidirectionalLayer;
 import org.deeplearning4j.nn.layers.wrapper.BaseWrapperLayer;
+import org.deeplearning4j.nn.profiling.LayerProfiler;
 import org.deeplearning4j.nn.updater.UpdaterCreator;
 import org.deeplearning4j.nn.workspace.ArrayType;
 import org.deeplearning4j.nn.workspace.LayerWorkspaceMgr;
@@ -121,6 +122,11 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
     protected double score;
     @Setter
     protected boolean initDone = false;
+    /**
+     * True if this network is an inference-only view of another network - see {@link #inferenceView()}
+     */
+    @Getter
+    protected boolean inferenceView = false;
     protected INDArray flattenedParams; //Params for all layers are a view/subset of this array
     @Getter
     protected transient INDArray flattenedGradients; //Gradients for all layers are a view/subset of this array
@@ -133,6 +139,12 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
     protected int layerIndex; //For Layer.get/setIndex()
 
     protected transient Solver solver; //Used to call optimizers during backprop
+    /**
+     * Per layer runtime profiler, if any - see {@link LayerProfiler#attach(Model)}
+     */
+    @Getter
+    @Setter
+    protected transient LayerProfiler layerProfiler;
     //Workspaces for CUDNN. Pass to LayerWorkspaceMgr for re-use in cudnn helpers
     @Getter
     protected transient Map<String,Pointer> helperWorkspaces = new HashMap<>();
@@ -787,6 +799,8 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
      * As a general rule, this shouldn't ever need to be called manually when doing training via fit(DataSet) or fit(DataSetIterator)
      */
     public void initGradientsView() {
+        Preconditions.checkState(!inferenceView, "Cannot train or compute gradients for an inference view of a network." +
+                " Use the original network for training instead");
         try (MemoryWorkspace ws = Nd4j.getMemoryManager().scopeOutOfWorkspaces()) {
             if (layers == null)
                 init();
@@ -821,6 +835,19 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
         }
     }
 
+    private LayerProfiler.Measurement profileBegin() {
+        LayerProfiler p = layerProfiler;
+        return p == null ? null : p.begin();
+    }
+
+    private void profileEnd(LayerProfiler.Measurement pm, LayerProfiler.Phase phase, int layerIdx) {
+        LayerProfiler p = layerProfiler;
+        if (pm != null && p != null) {
+            String name = layers[layerIdx].conf().getLayer().getLayerName();
+            p.end(pm, phase, name != null ? name : String.valueOf(layerIdx), layers[layerIdx].getClass().getSimpleName());
+        }
+    }
+
     protected INDArray activationFromPrevLayer(int curr, INDArray input, boolean training, LayerWorkspaceMgr mgr) {
         if (getLayerWiseConfigurations().getInputPreProcess(curr) != null) {
             input = getLayerWiseConfigurations().getInputPreProcess(curr).preProcess(input, getInputMiniBatchSize(), mgr);
@@ -1040,6 +1067,7 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
 
         for( int i=0; i<=layerIndex; i++ ){
             try(MemoryWorkspace wsFFWorking = workspaceMgr.notifyScopeEntered(ArrayType.FF_WORKING_MEM)){
+                LayerProfiler.Measurement pm = profileBegin();
                 if (getLayerWiseConfigurations().getInputPreProcess(i) != null) {
                     input = getLayerWiseConfigurations().getInputPreProcess(i).preProcess(input, getInputMiniBatchSize(), workspaceMgr);
                     //Validation: Exception if invalid (bad preprocessor implementation)
@@ -1067,6 +1095,7 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
 
                 //Validation: Exception if invalid (bad layer implementation)
                 validateArrayWorkspaces(workspaceMgr, input, ArrayType.ACTIVATIONS, i, false, "Feed forward to layer (inference)");
+                profileEnd(pm, LayerProfiler.Phase.FORWARD, i);
 
                 out.add(input);
             }
@@ -1133,6 +1162,7 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
 
         for( int i = 0; i <=layerIndex; i++) {
             try(MemoryWorkspace wsFFWorking = workspaceMgr.notifyScopeEntered(ArrayType.FF_WORKING_MEM)){
+                LayerProfiler.Measurement pm = profileBegin();
                 if (getLayerWiseConfigurations().getInputPreProcess(i) != null) {
                     input = getLayerWiseConfigurations().getInputPreProcess(i).preProcess(input, getInputMiniBatchSize(), workspaceMgr);
                     //Validation: Exception if invalid (bad preprocessor implementation)
@@ -1168,6 +1198,7 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
                 //Validation: Exception if invalid (bad layer implementation)
                 validateArrayWorkspaces(workspaceMgr, input, ArrayType.ACTIVATIONS, i, false, "Feed forward to layer (training)");
                 validateArrayWorkspaces(workspaceMgr, layers[i].input(), ArrayType.INPUT, i, false, "Feed forward to layer (training)");
+                profileEnd(pm, LayerProfiler.Phase.FORWARD, i);
 
                 out.add(input);
 
@@ -1279,6 +1310,7 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
                 }
 
                 try (MemoryWorkspace wsFFWorking = mgr.notifyScopeEntered(ArrayType.FF_WORKING_MEM)) { //Working memory: opened/closed once per layer
+                    LayerProfiler.Measurement pm = profileBegin();
                     //Activations workspaces: opened/closed every second layer.
                     //So mgrEven (WS_LAYER_ACT_1) open at start of 0, 2, 4, 8; closed at end of 1, 3, 5, 7 etc
                     //and mgrOdd (WS_LAYER_ACT_2) opened at start of 1, 3, 5, 7; closed at end of 2, 4, 6, 8 etc
@@ -1365,6 +1397,7 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
                     layers[i].clear();
                     //Validation: Exception if invalid (bad layer implementation)
                     validateArrayWorkspaces(mgr, input, ArrayType.ACTIVATIONS, i, false, "Output of layer (inference)");
+                    profileEnd(pm, LayerProfiler.Phase.FORWARD, i);
 
                     if (wsActCloseNext != null) {
                         wsActCloseNext.close();
@@ -1524,6 +1557,30 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
         return ret;
     }
 
+    /**
+     * Create an inference-only view of this network, for running inference on one model from many threads
+     * concurrently, without replicating the network parameters.<br>
+     * The view shares the parameters array of this network (no copy is made), but has its own layer instances - and
+     * hence its own layer input, mask and RNN state fields - and its own lock for the output methods. As workspaces
+     * are thread local, output calls on different views do not block each other.<br>
+     * Views are intended to be created once per inference thread (for example, via a {@link ThreadLocal}) and reused.
+     * Notes:<br>
+     * - A view cannot be trained: fit, computeGradientAndScore and similar methods will throw an exception<br>
+     * - Parameter changes on this network (via fit, setParams etc) are immediately visible to all views, hence parameters
+     *   should not be modified while views are being used for inference<br>
+     * - Listeners and updater state are not copied to the view
+     *
+     * @return Inference view of this network, sharing its parameters
+     */
+    public MultiLayerNetwork inferenceView() {
+        if (!initCalled)
+            init();
+        MultiLayerNetwork view = new MultiLayerNetwork(layerWiseConfigurations.clone());
+        view.init(flattenedParams, false);
+        view.inferenceView = true;
+        return view;
+    }
+
     protected boolean hasAFrozenLayer() {
         for (int i = 0; i < layers.length - 1; i++) {
             if (layers[i] instanceof FrozenLayer)
@@ -1992,6 +2049,7 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
                     wsBPWorking.setPreviousWorkspace(initialWorkspace);
 
                     INDArray eps = (i == layers.length - 1 ? epsilon : currPair.getRight());  //eps is null for OutputLayer
+                    LayerProfiler.Measurement pm = profileBegin();
 
                     if (!tbptt) {
                         //Standard case
@@ -2006,6 +2064,8 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
                         }
                     }
 
+                    profileEnd(pm, LayerProfiler.Phase.BACKWARD, i);
+
                     if (currPair.getSecond() != null) {
                         //Edge case: may be null for Embedding layer, for example
                         validateArrayWorkspaces(workspaceMgr, currPair.getSecond(), ArrayType.ACTIVATION_GRAD, i,
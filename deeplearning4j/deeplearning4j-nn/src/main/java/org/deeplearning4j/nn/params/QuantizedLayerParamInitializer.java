@@ -0,0 +1,123 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.nn.params;
+
+import org.deeplearning4j.nn.api.ParamInitializer;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.Layer;
+import org.deeplearning4j.nn.conf.layers.misc.QuantizedLayer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+import java.util.*;
+
+/**
+ * Parameter initializer for {@link QuantizedLayer}: per output channel weight scales, and the bias (if the original
+ * layer has one), both with shape [1, nOut]. The INT8 weights are not network parameters.
+ */
+public class QuantizedLayerParamInitializer implements ParamInitializer {
+
+    private static final QuantizedLayerParamInitializer INSTANCE = new QuantizedLayerParamInitializer();
+
+    public static QuantizedLayerParamInitializer getInstance() {
+        return INSTANCE;
+    }
+
+    public final static String WEIGHT_SCALE_KEY = "s";
+    public final static String BIAS_KEY = DefaultParamInitializer.BIAS_KEY;
+
+    @Override
+    public long numParams(NeuralNetConfiguration conf) {
+        return numParams(conf.getLayer());
+    }
+
+    @Override
+    public long numParams(Layer layer) {
+        QuantizedLayer l = (QuantizedLayer) layer;
+        return l.hasBias() ? 2 * l.getNOut() : l.getNOut();
+    }
+
+    @Override
+    public List<String> paramKeys(Layer layer) {
+        if (((QuantizedLayer) layer).hasBias())
+            return Arrays.asList(WEIGHT_SCALE_KEY, BIAS_KEY);
+        return Collections.singletonList(WEIGHT_SCALE_KEY);
+    }
+
+    @Override
+    public List<String> weightKeys(Layer layer) {
+        return Collections.singletonList(WEIGHT_SCALE_KEY);
+    }
+
+    @Override
+    public List<String> biasKeys(Layer layer) {
+        if (((QuantizedLayer) layer).hasBias())
+            return Collections.singletonList(BIAS_KEY);
+        return Collections.emptyList();
+    }
+
+    @Override
+    public boolean isWeightParam(Layer layer, String key) {
+        return WEIGHT_SCALE_KEY.equals(key);
+    }
+
+    @Override
+    public boolean isBiasParam(Layer layer, String key) {
+        return BIAS_KEY.equals(key);
+    }
+
+    @Override
+    public Map<String, INDArray> init(NeuralNetConfiguration conf, INDArray paramsView, boolean initializeParams) {
+        QuantizedLayer layer = (QuantizedLayer) conf.getLayer();
+        long length = numParams(conf);
+        if (paramsView.length() != length)
+            throw new IllegalStateException("Expected params view of length " + length + ", got length " + paramsView.length());
+
+        Map<String, INDArray> params = Collections.synchronizedMap(new LinkedHashMap<String, INDArray>());
+        Map<String, INDArray> views = getGradientsFromFlattened(conf, paramsView);
+        INDArray scales = views.get(WEIGHT_SCALE_KEY);
+        if (initializeParams)
+            scales.assign(1.0);
+        params.put(WEIGHT_SCALE_KEY, scales);
+        conf.addVariable(WEIGHT_SCALE_KEY);
+        if (layer.hasBias()) {
+            INDArray bias = views.get(BIAS_KEY);
+            if (initializeParams)
+                bias.assign(layer.getBiasInit());
+            params.put(BIAS_KEY, bias);
+            conf.addVariable(BIAS_KEY);
+        }
+        return params;
+    }
+
+    @Override
+    public Map<String, INDArray> getGradientsFromFlattened(NeuralNetConfiguration conf, INDArray gradientView) {
+        QuantizedLayer layer = (QuantizedLayer) conf.getLayer();
+        long nOut = layer.getNOut();
+        INDArray viewReshape = gradientView.reshape(gradientView.length());
+        Map<String, INDArray> out = new LinkedHashMap<>();
+        out.put(WEIGHT_SCALE_KEY, viewReshape.get(NDArrayIndex.interval(0, nOut)).reshape(1, nOut));
+        if (layer.hasBias()) {
+            out.put(BIAS_KEY, viewReshape.get(NDArrayIndex.interval(nOut, 2 * nOut)).reshape(1, nOut));
+        }
+        return out;
+    }
+}
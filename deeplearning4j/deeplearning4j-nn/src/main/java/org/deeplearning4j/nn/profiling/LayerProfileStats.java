@@ -0,0 +1,65 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.nn.profiling;
+
+import lombok.Data;
+
+/**
+ * Aggregated statistics for one layer/vertex (or updater block) and one phase, as recorded by {@link LayerProfiler}
+ */
+@Data
+public class LayerProfileStats {
+
+    private final String name;
+    private final String type;
+    private final LayerProfiler.Phase phase;
+    private long count;
+    private long totalNanos;
+    private long minNanos = Long.MAX_VALUE;
+    private long maxNanos;
+    private long workspaceBytes;
+    private long detachedBytes;
+    private long opCount;
+
+    protected void record(long nanos, long workspaceBytes, long detachedBytes, long ops) {
+        count++;
+        totalNanos += nanos;
+        minNanos = Math.min(minNanos, nanos);
+        maxNanos = Math.max(maxNanos, nanos);
+        this.workspaceBytes += workspaceBytes;
+        this.detachedBytes += detachedBytes;
+        this.opCount += ops;
+    }
+
+    /**
+     * @return Total time, in milliseconds
+     */
+    public double getTotalMs() {
+        return totalNanos / 1e6;
+    }
+
+    /**
+     * @return Mean time per call, in milliseconds
+     */
+    public double getMeanMs() {
+        return count == 0 ? 0.0 : totalNanos / 1e6 / count;
+    }
+}
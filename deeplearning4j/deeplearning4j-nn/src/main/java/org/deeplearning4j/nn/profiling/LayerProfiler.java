@@ -0,0 +1,401 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.nn.profiling;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+import org.deeplearning4j.nn.api.Model;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.common.base.Preconditions;
+import org.nd4j.linalg.api.memory.MemoryWorkspace;
+import org.nd4j.linalg.api.memory.AllocationsTracker;
+import org.nd4j.linalg.api.memory.enums.AllocationKind;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.profiler.OpProfiler;
+import org.nd4j.linalg.profiler.ProfilerConfig;
+import org.nd4j.shade.jackson.databind.ObjectMapper;
+import org.nd4j.shade.jackson.databind.SerializationFeature;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Opt-in per layer runtime profiler for {@link MultiLayerNetwork} and {@link ComputationGraph}.<br>
+ * Once attached to a network (see {@link #attach(Model)}), the following are recorded for every forward pass of each
+ * layer/vertex, every backward pass of each layer/vertex, and every application of each updater block:<br>
+ * - Wall time<br>
+ * - Bytes allocated in workspaces, and net growth of allocated memory outside of workspaces (detached arrays)<br>
+ * - Number of ops executed (if enabled via {@link Builder#countOps(boolean)})<br>
+ * <br>
+ * Results are available as aggregated per layer statistics ({@link #getStats()}, {@link #summaryTable()}) and as
+ * individual events in Chrome trace format ({@link #toChromeTrace()}, {@link #writeChromeTrace(File)}), which can be
+ * opened in chrome://tracing or Perfetto.<br>
+ * <br>
+ * Notes:<br>
+ * - Updater blocks cover contiguous parameters with identical updater configuration, and hence may span multiple
+ * layers; they are named by the first and last layer in the block<br>
+ * - Memory figures are approximate: workspace allocations are derived from workspace cycle allocation counters, and
+ * detached memory is the net change in memory reported by the memory manager<br>
+ * - Op counting uses the global {@link OpProfiler}, and adds some overhead to every op; counts are only meaningful when
+ * one network is executing at a time. The previous profiler configuration is restored on {@link #detach()}<br>
+ * - Nothing is recorded (and there is no overhead) when no profiler is attached
+ */
+@Slf4j
+public class LayerProfiler {
+
+    public enum Phase {FORWARD, BACKWARD, UPDATER}
+
+    private final boolean countOps;
+    private final boolean recordTrace;
+    private final int maxTraceEvents;
+
+    private final Map<String, LayerProfileStats> stats = new LinkedHashMap<>();
+    private final List<TraceEvent> events = new ArrayList<>();
+    @Getter
+    private long droppedTraceEvents;
+    private final long startNanos = System.nanoTime();
+
+    private final List<Model> attached = new ArrayList<>();
+    private ProfilerConfig previousOpProfilerConfig;
+
+    /**
+     * Create a profiler with the default configuration: op counting and trace recording enabled, up to 100,000 trace events
+     */
+    public LayerProfiler() {
+        this(new Builder());
+    }
+
+    private LayerProfiler(Builder builder) {
+        this.countOps = builder.countOps;
+        this.recordTrace = builder.recordTrace;
+        this.maxTraceEvents = builder.maxTraceEvents;
+    }
+
+    /**
+     * Attach the profiler to the specified network. Profiling starts immediately.
+     *
+     * @param model MultiLayerNetwork or ComputationGraph to profile
+     * @return This profiler
+     */
+    public synchronized LayerProfiler attach(Model model) {
+        if (model instanceof MultiLayerNetwork) {
+            ((MultiLayerNetwork) model).setLayerProfiler(this);
+        } else if (model instanceof ComputationGraph) {
+            ((ComputationGraph) model).setLayerProfiler(this);
+        } else {
+            throw new IllegalArgumentException("Only MultiLayerNetwork and ComputationGraph are supported: got "
+                    + (model == null ? null : model.getClass().getName()));
+        }
+        attached.add(model);
+
+        if (countOps && previousOpProfilerConfig == null) {
+            previousOpProfilerConfig = OpProfiler.getInstance().getConfig();
+            ProfilerConfig p = previousOpProfilerConfig;
+            Nd4j.getExecutioner().setProfilingConfig(ProfilerConfig.builder()
+                    .notOptimalArguments(p != null && p.isNotOptimalArguments())
+                    .notOptimalTAD(p != null && p.isNotOptimalTAD())
+                    .nativeStatistics(p != null && p.isNativeStatistics())
+                    .checkForNAN(p != null && p.isCheckForNAN())
+                    .checkForINF(p != null && p.isCheckForINF())
+                    .stackTrace(p != null && p.isStackTrace())
+                    .checkWorkspaces(p == null || p.isCheckWorkspaces())
+                    .checkLocality(p != null && p.isCheckLocality())
+                    .checkElapsedTime(true)
+                    .build());
+        }
+        return this;
+    }
+
+    /**
+     * Detach the profiler from all networks it is attached to. Recorded results are retained.
+     */
+    public synchronized void detach() {
+        for (Model m : attached) {
+            if (m instanceof MultiLayerNetwork && ((MultiLayerNetwork) m).getLayerProfiler() == this) {
+                ((MultiLayerNetwork) m).setLayerProfiler(null);
+            } else if (m instanceof ComputationGraph && ((ComputationGraph) m).getLayerProfiler() == this) {
+                ((ComputationGraph) m).setLayerProfiler(null);
+            }
+        }
+        attached.clear();
+
+        if (previousOpProfilerConfig != null) {
+            Nd4j.getExecutioner().setProfilingConfig(previousOpProfilerConfig);
+            previousOpProfilerConfig = null;
+        }
+    }
+
+    /**
+     * Start a measurement. Used by the network implementations; the result should be passed to
+     * {@link #end(Measurement, Phase, String, String)}
+     */
+    public Measurement begin() {
+        Measurement m = new Measurement();
+        List<MemoryWorkspace> ws = Nd4j.getWorkspaceManager().getAllWorkspacesForCurrentThread();
+        m.workspaces = ws.toArray(new MemoryWorkspace[0]);
+        m.wsGeneration = new long[m.workspaces.length];
+        m.wsAllocations = new long[m.workspaces.length];
+        for (int i = 0; i < m.workspaces.length; i++) {
+            m.wsGeneration[i] = m.workspaces[i].getGenerationId();
+            m.wsAllocations[i] = m.workspaces[i].getThisCycleAllocations();
+        }
+        m.detachedBytes = detachedBytes();
+        m.ops = countOps ? OpProfiler.getInstance().getInvocationsCount() : 0;
+        m.startNanos = System.nanoTime();
+        return m;
+    }
+
+    /**
+     * End a measurement, and record the result
+     *
+     * @param m     Measurement, from {@link #begin()}
+     * @param phase Phase of the measurement
+     * @param name  Name of the layer, vertex or updater block
+     * @param type  Type of the layer, vertex or updater (for example, the class name)
+     */
+    public void end(Measurement m, Phase phase, String name, String type) {
+        long end = System.nanoTime();
+        long nanos = end - m.startNanos;
+        long ops = countOps ? OpProfiler.getInstance().getInvocationsCount() - m.ops : 0;
+        long detached = Math.max(0, detachedBytes() - m.detachedBytes);
+
+        long wsBytes = 0;
+        for (MemoryWorkspace w : Nd4j.getWorkspaceManager().getAllWorkspacesForCurrentThread()) {
+            int idx = -1;
+            for (int i = 0; i < m.workspaces.length; i++) {
+                if (m.workspaces[i] == w) {
+                    idx = i;
+                    break;
+                }
+            }
+            if (idx >= 0 && w.getGenerationId() == m.wsGeneration[idx]) {
+                wsBytes += Math.max(0, w.getThisCycleAllocations() - m.wsAllocations[idx]);
+            } else {
+                //Workspace cycle(s) started during the measurement - i.e., working memory workspaces
+                wsBytes += Math.max(w.getThisCycleAllocations(), w.getLastCycleAllocations());
+            }
+        }
+
+        synchronized (this) {
+            String key = phase + "/" + name;
+            LayerProfileStats s = stats.get(key);
+            if (s == null) {
+                s = new LayerProfileStats(name, type, phase);
+                stats.put(key, s);
+            }
+            s.record(nanos, wsBytes, detached, ops);
+
+            if (recordTrace) {
+                if (events.size() < maxTraceEvents) {
+                    events.add(new TraceEvent(name, type, phase, (m.startNanos - startNanos) / 1000, nanos / 1000,
+                            Thread.currentThread().getId(), wsBytes, detached, ops));
+                } else {
+                    droppedTraceEvents++;
+                }
+            }
+        }
+    }
+
+    private static long detachedBytes() {
+        Integer device = Nd4j.getAffinityManager().getDeviceForCurrentThread();
+        return Nd4j.getMemoryManager().allocatedMemory(device)
+                - AllocationsTracker.getInstance().bytesOnDevice(AllocationKind.WORKSPACE, device);
+    }
+
+    /**
+     * @return Aggregated statistics, in order of first occurrence
+     */
+    public synchronized List<LayerProfileStats> getStats() {
+        return new ArrayList<>(stats.values());
+    }
+
+    /**
+     * Clear all recorded statistics and trace events
+     */
+    public synchronized void reset() {
+        stats.clear();
+        events.clear();
+        droppedTraceEvents = 0;
+    }
+
+    /**
+     * @return Table of the aggregated statistics, sorted by total time (descending). The "% phase" column gives the
+     * fraction of the total time of the phase (forward, backward or updater) spent in each layer
+     */
+    public synchronized String summaryTable() {
+        List<LayerProfileStats> list = new ArrayList<>(stats.values());
+        list.sort((a, b) -> Long.compare(b.getTotalNanos(), a.getTotalNanos()));
+
+        Map<Phase, Long> phaseTotals = new EnumMap<>(Phase.class);
+        int nameLength = "Name".length();
+        int typeLength = "Type".length();
+        for (LayerProfileStats s : list) {
+            phaseTotals.merge(s.getPhase(), s.getTotalNanos(), Long::sum);
+            nameLength = Math.max(nameLength, s.getName().length());
+            typeLength = Math.max(typeLength, s.getType().length());
+        }
+
+        String format = "%-" + nameLength + "s  %-" + typeLength + "s  %-8s  %8s  %12s  %10s  %8s  %12s  %12s  %10s%n";
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(format, "Name", "Type", "Phase", "Calls", "Total (ms)", "Mean (ms)", "% phase",
+                "WS (MB)", "Detached (MB)", "Ops"));
+        for (LayerProfileStats s : list) {
+            long phaseTotal = phaseTotals.get(s.getPhase());
+            sb.append(String.format(format, s.getName(), s.getType(), s.getPhase(), s.getCount(),
+                    String.format("%.3f", s.getTotalMs()), String.format("%.4f", s.getMeanMs()),
+                    String.format("%.1f", phaseTotal == 0 ? 0.0 : 100.0 * s.getTotalNanos() / phaseTotal),
+                    String.format("%.2f", s.getWorkspaceBytes() / (1024.0 * 1024.0)),
+                    String.format("%.2f", s.getDetachedBytes() / (1024.0 * 1024.0)),
+                    countOps ? String.valueOf(s.getOpCount()) : "-"));
+        }
+        for (Phase p : Phase.values()) {
+            if (phaseTotals.containsKey(p)) {
+                sb.append(String.format("Total %s: %.3f ms%n", p, phaseTotals.get(p) / 1e6));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return The recorded events in Chrome trace JSON format (complete events, with timestamps in microseconds
+     * relative to the creation of this profiler)
+     */
+    public synchronized String toChromeTrace() {
+        List<Map<String, Object>> traceEvents = new ArrayList<>(events.size());
+        for (TraceEvent e : events) {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("name", e.name);
+            m.put("cat", e.phase.name());
+            m.put("ph", "X");
+            m.put("ts", e.startMicros);
+            m.put("dur", e.durationMicros);
+            m.put("pid", 0);
+            m.put("tid", e.threadId);
+            Map<String, Object> args = new LinkedHashMap<>();
+            args.put("type", e.type);
+            args.put("workspaceBytes", e.workspaceBytes);
+            args.put("detachedBytes", e.detachedBytes);
+            if (countOps)
+                args.put("ops", e.ops);
+            m.put("args", args);
+            traceEvents.add(m);
+        }
+
+        Map<String, Object> trace = new LinkedHashMap<>();
+        trace.put("traceEvents", traceEvents);
+        trace.put("displayTimeUnit", "ms");
+        try {
+            return new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValueAsString(trace);
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing Chrome trace JSON", e);
+        }
+    }
+
+    /**
+     * Write the recorded events to the specified file in Chrome trace JSON format. See {@link #toChromeTrace()}
+     */
+    public void writeChromeTrace(File file) throws IOException {
+        if (droppedTraceEvents > 0) {
+            log.warn("{} trace events were not recorded, as the maximum number of trace events ({}) was reached",
+                    droppedTraceEvents, maxTraceEvents);
+        }
+        FileUtils.writeStringToFile(file, toChromeTrace(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * State at the start of a measurement - see {@link #begin()}
+     */
+    public static class Measurement {
+        private long startNanos;
+        private long detachedBytes;
+        private long ops;
+        private MemoryWorkspace[] workspaces;
+        private long[] wsGeneration;
+        private long[] wsAllocations;
+    }
+
+    private static class TraceEvent {
+        private final String name;
+        private final String type;
+        private final Phase phase;
+        private final long startMicros;
+        private final long durationMicros;
+        private final long threadId;
+        private final long workspaceBytes;
+        private final long detachedBytes;
+        private final long ops;
+
+        private TraceEvent(String name, String type, Phase phase, long startMicros, long durationMicros, long threadId,
+                           long workspaceBytes, long detachedBytes, long ops) {
+            this.name = name;
+            this.type = type;
+            this.phase = phase;
+            this.startMicros = startMicros;
+            this.durationMicros = durationMicros;
+            this.threadId = threadId;
+            this.workspaceBytes = workspaceBytes;
+            this.detachedBytes = detachedBytes;
+            this.ops = ops;
+        }
+    }
+
+    public static class Builder {
+        private boolean countOps = true;
+        private boolean recordTrace = true;
+        private int maxTraceEvents = 100_000;
+
+        /**
+         * Whether to count the number of ops executed per layer. Enabled by default. Note that this adds some
+         * overhead to every op execution while the profiler is attached
+         */
+        public Builder countOps(boolean countOps) {
+            this.countOps = countOps;
+            return this;
+        }
+
+        /**
+         * Whether to record individual events for Chrome trace export (see {@link LayerProfiler#toChromeTrace()}).
+         * Enabled by default. If disabled, only aggregated statistics are recorded
+         */
+        public Builder recordTrace(boolean recordTrace) {
+            this.recordTrace = recordTrace;
+            return this;
+        }
+
+        /**
+         * Maximum number of trace events to record (default: 100,000). Events beyond this are not recorded in the
+         * trace, but are still included in the aggregated statistics
+         */
+        public Builder maxTraceEvents(int maxTraceEvents) {
+            Preconditions.checkArgument(maxTraceEvents >= 0, "Max trace events must be >= 0, got %s", maxTraceEvents);
+            this.maxTraceEvents = maxTraceEvents;
+            return this;
+        }
+
+        public LayerProfiler build() {
+            return new LayerProfiler(this);
+        }
+    }
+}
@@ -0,0 +1,372 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.nn.quantization;
+
+import lombok.NonNull;
+import org.deeplearning4j.nn.api.Layer;
+import org.deeplearning4j.nn.api.Model;
+import org.deeplearning4j.nn.conf.ComputationGraphConfiguration;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.graph.GraphVertex;
+import org.deeplearning4j.nn.conf.graph.LayerVertex;
+import org.deeplearning4j.nn.conf.layers.FeedForwardLayer;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.params.ConvolutionParamInitializer;
+import org.deeplearning4j.nn.params.DefaultParamInitializer;
+import org.deeplearning4j.nn.params.QuantizedLayerParamInitializer;
+import org.deeplearning4j.util.ModelSerializer;
+import org.nd4j.common.base.Preconditions;
+import org.nd4j.common.primitives.Pair;
+import org.nd4j.evaluation.classification.Evaluation;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.api.DataSet;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Post-training INT8 quantization for inference.<br>
+ * Activation ranges are calibrated by running the trained network on (a sample of) representative data; a new network
+ * is then built in which the dense, output and 2d convolution layers are replaced with quantized layers (see
+ * {@link org.deeplearning4j.nn.conf.layers.misc.QuantizedLayer}), which use INT8 weights with per-output-channel scales
+ * and INT32 accumulation. All other layers (and any unsupported dense/convolution layers - for example dense layers with
+ * layer normalization) remain in floating point, with their parameters copied from the original network.<br>
+ * The quantized network does not hold the floating point weights of the quantized layers: once the original network is
+ * no longer referenced, the weight memory of the quantized layers is reduced by approximately 4x (relative to FP32).
+ * The quantized network cannot be trained, and the original network is not modified.<br>
+ * The INT8 weights are not network parameters, hence quantized networks must be saved and restored using
+ * {@link #writeModel(MultiLayerNetwork, File)} and {@link #restoreMultiLayerNetwork(File)} (or the
+ * ComputationGraph equivalents) rather than {@link ModelSerializer} directly.<br>
+ * Usage:
+ * <pre>
+ * {@code
+ * PostTrainingQuantizer quantizer = new PostTrainingQuantizer(calibrationIter, 20);
+ * MultiLayerNetwork quantized = quantizer.quantize(net);
+ * QuantizationReport report = PostTrainingQuantizer.report(net, quantized, testIter);
+ * PostTrainingQuantizer.writeModel(quantized, new File("quantized.zip"));
+ * }
+ * </pre>
+ * Calibration uses the maximum absolute value of each quantized layer's input, hence the calibration data should be
+ * representative of the inference data, without extreme outliers.
+ */
+public class PostTrainingQuantizer {
+
+    /**
+     * Key used to store the INT8 weights in the model file - see {@link ModelSerializer#addObjectToFile(File, String, Object)}
+     */
+    public static final String QUANTIZED_WEIGHTS_KEY = "quantizedWeights";
+
+    private final DataSetIterator calibrationData;
+    private final int maxCalibrationBatches;
+
+    /**
+     * @param calibrationData Data used to calibrate the activation ranges. All minibatches are used
+     */
+    public PostTrainingQuantizer(@NonNull DataSetIterator calibrationData) {
+        this(calibrationData, -1);
+    }
+
+    /**
+     * @param calibrationData       Data used to calibrate the activation ranges
+     * @param maxCalibrationBatches Maximum number of minibatches to use for calibration. Values <= 0: use all minibatches
+     */
+    public PostTrainingQuantizer(@NonNull DataSetIterator calibrationData, int maxCalibrationBatches) {
+        this.calibrationData = calibrationData;
+        this.maxCalibrationBatches = maxCalibrationBatches;
+    }
+
+    /**
+     * Quantize the supported layers of the specified network, using activation ranges calibrated on this quantizer's
+     * calibration data.
+     *
+     * @param net Trained network to quantize. Not modified
+     * @return Quantized, inference only, network
+     */
+    public MultiLayerNetwork quantize(@NonNull MultiLayerNetwork net) {
+        if (!net.isInitCalled())
+            net.init();
+        final double[] inputMaxAbs = new double[net.getnLayers()];
+        calibrate(ds -> {
+            //Activations: index 0 is the network input, index i is the output of layer i-1 (i.e., the input to layer i)
+            List<INDArray> activations = net.feedForward(ds.getFeatures(), false);
+            for (int i = 0; i < inputMaxAbs.length; i++) {
+                inputMaxAbs[i] = Math.max(inputMaxAbs[i], activations.get(i).amaxNumber().doubleValue());
+            }
+        });
+
+        MultiLayerConfiguration conf = net.getLayerWiseConfigurations().clone();
+        for (int i = 0; i < inputMaxAbs.length; i++) {
+            quantizeConf(conf.getConf(i), inputMaxAbs[i]);
+        }
+        MultiLayerNetwork quantized = new MultiLayerNetwork(conf);
+        quantized.init();
+
+        Layer[] layers = quantized.getLayers();
+        for (int i = 0; i < layers.length; i++) {
+            copyParams(net.getLayer(i), layers[i]);
+        }
+        return quantized;
+    }
+
+    /**
+     * Quantize the supported layers of the specified network, using activation ranges calibrated on this quantizer's
+     * calibration data. The network must have a single input.
+     *
+     * @param graph Trained network to quantize. Not modified
+     * @return Quantized, inference only, network
+     */
+    public ComputationGraph quantize(@NonNull ComputationGraph graph) {
+        Preconditions.checkState(graph.getNumInputArrays() == 1, "Only single input ComputationGraphs can be calibrated" +
+                " using a DataSetIterator: network has %s inputs", graph.getNumInputArrays());
+        graph.init();   //No-op if already initialized
+        final Map<String, List<String>> vertexInputs = graph.getConfiguration().getVertexInputs();
+        final Map<String, Double> inputMaxAbs = new HashMap<>();
+        calibrate(ds -> {
+            Map<String, INDArray> activations = graph.feedForward(ds.getFeatures(), false);
+            for (Layer l : graph.getLayers()) {
+                String name = l.conf().getLayer().getLayerName();
+                double max = inputMaxAbs.getOrDefault(name, 0.0);
+                for (String in : vertexInputs.get(name)) {
+                    max = Math.max(max, activations.get(in).amaxNumber().doubleValue());
+                }
+                inputMaxAbs.put(name, max);
+            }
+        });
+
+        ComputationGraphConfiguration conf = graph.getConfiguration().clone();
+        for (Map.Entry<String, GraphVertex> e : conf.getVertices().entrySet()) {
+            if (e.getValue() instanceof LayerVertex) {
+                quantizeConf(((LayerVertex) e.getValue()).getLayerConf(), inputMaxAbs.get(e.getKey()));
+            }
+        }
+        ComputationGraph quantized = new ComputationGraph(conf);
+        quantized.init();
+
+        for (Layer l : quantized.getLayers()) {
+            copyParams(graph.getLayer(l.conf().getLayer().getLayerName()), l);
+        }
+        return quantized;
+    }
+
+    private static void quantizeConf(NeuralNetConfiguration conf, double inputMaxAbs) {
+        if (!QuantizedLayer.isSupported(conf.getLayer()))
+            return;
+        double inputScale = inputMaxAbs > 0 ? inputMaxAbs / QuantizedLayer.QUANT_MAX : 1.0;
+        conf.clearVariables();
+        conf.setLayer(new org.deeplearning4j.nn.conf.layers.misc.QuantizedLayer((FeedForwardLayer) conf.getLayer().clone(), inputScale));
+    }
+
+    /**
+     * Copy the parameters of an original layer to the corresponding layer of the quantized network, quantizing the
+     * weights if required
+     */
+    private static void copyParams(Layer original, Layer target) {
+        if (target instanceof QuantizedLayer) {
+            QuantizedLayer q = (QuantizedLayer) target;
+            boolean convolution = q.layerConf().isConvolution();
+            INDArray w = original.getParam(convolution ? ConvolutionParamInitializer.WEIGHT_KEY : DefaultParamInitializer.WEIGHT_KEY);
+            Pair<INDArray, INDArray> quantizedWeights = QuantizedLayer.quantizeWeights(w, convolution);
+            q.setQuantizedWeights(quantizedWeights.getFirst());
+            q.getParam(QuantizedLayerParamInitializer.WEIGHT_SCALE_KEY).assign(quantizedWeights.getSecond());
+            if (q.hasBias()) {
+                String biasKey = convolution ? ConvolutionParamInitializer.BIAS_KEY : DefaultParamInitializer.BIAS_KEY;
+                q.getParam(QuantizedLayerParamInitializer.BIAS_KEY).assign(original.getParam(biasKey).reshape(1, q.layerConf().getNOut()));
+            }
+        } else if (target.numParams() > 0) {
+            target.params().assign(original.params());
+        }
+    }
+
+    /**
+     * Save a quantized network, including the INT8 weights of the quantized layers
+     *
+     * @param net  Quantized network, from {@link #quantize(MultiLayerNetwork)}
+     * @param file File to write the model to
+     */
+    public static void writeModel(@NonNull MultiLayerNetwork net, @NonNull File file) throws IOException {
+        Map<String, INDArray> weights = new HashMap<>();
+        Layer[] layers = net.getLayers();
+        for (int i = 0; i < layers.length; i++) {
+            if (layers[i] instanceof QuantizedLayer)
+                weights.put(String.valueOf(i), ((QuantizedLayer) layers[i]).getQuantizedWeights());
+        }
+        writeModel(net, weights, file);
+    }
+
+    /**
+     * Save a quantized network, including the INT8 weights of the quantized layers
+     *
+     * @param graph Quantized network, from {@link #quantize(ComputationGraph)}
+     * @param file  File to write the model to
+     */
+    public static void writeModel(@NonNull ComputationGraph graph, @NonNull File file) throws IOException {
+        Map<String, INDArray> weights = new HashMap<>();
+        for (Layer l : graph.getLayers()) {
+            if (l instanceof QuantizedLayer)
+                weights.put(l.conf().getLayer().getLayerName(), ((QuantizedLayer) l).getQuantizedWeights());
+        }
+        writeModel(graph, weights, file);
+    }
+
+    private static void writeModel(Model model, Map<String, INDArray> weights, File file) throws IOException {
+        ModelSerializer.writeModel(model, file, false);
+        ModelSerializer.addObjectToFile(file, QUANTIZED_WEIGHTS_KEY, weights);
+    }
+
+    /**
+     * Restore a quantized network saved using {@link #writeModel(MultiLayerNetwork, File)}
+     *
+     * @param file File to restore the network from
+     * @return Quantized network
+     */
+    public static MultiLayerNetwork restoreMultiLayerNetwork(@NonNull File file) throws IOException {
+        MultiLayerNetwork net = ModelSerializer.restoreMultiLayerNetwork(file, false);
+        Map<String, INDArray> weights = ModelSerializer.getObjectFromFile(file, QUANTIZED_WEIGHTS_KEY);
+        Layer[] layers = net.getLayers();
+        for (int i = 0; i < layers.length; i++) {
+            if (layers[i] instanceof QuantizedLayer)
+                setQuantizedWeights((QuantizedLayer) layers[i], weights.get(String.valueOf(i)));
+        }
+        return net;
+    }
+
+    /**
+     * Restore a quantized network saved using {@link #writeModel(ComputationGraph, File)}
+     *
+     * @param file File to restore the network from
+     * @return Quantized network
+     */
+    public static ComputationGraph restoreComputationGraph(@NonNull File file) throws IOException {
+        ComputationGraph graph = ModelSerializer.restoreComputationGraph(file, false);
+        Map<String, INDArray> weights = ModelSerializer.getObjectFromFile(file, QUANTIZED_WEIGHTS_KEY);
+        for (Layer l : graph.getLayers()) {
+            if (l instanceof QuantizedLayer)
+                setQuantizedWeights((QuantizedLayer) l, weights.get(l.conf().getLayer().getLayerName()));
+        }
+        return graph;
+    }
+
+    private static void setQuantizedWeights(QuantizedLayer l, INDArray weights) {
+        Preconditions.checkState(weights != null, "No quantized weights found in model file for layer %s",
+                l.conf().getLayer().getLayerName());
+        l.setQuantizedWeights(weights);
+    }
+
+    private void calibrate(Consumer<DataSet> forward) {
+        if (calibrationData.resetSupported())
+            calibrationData.reset();
+        int count = 0;
+        while (calibrationData.hasNext() && (maxCalibrationBatches <= 0 || count < maxCalibrationBatches)) {
+            forward.accept(calibrationData.next());
+            count++;
+        }
+        Preconditions.checkState(count > 0, "No calibration data: calibration iterator has no minibatches");
+    }
+
+    /**
+     * Compare the accuracy, latency and memory of a network and its quantized version on the specified test data
+     *
+     * @param original  Original network
+     * @param quantized Quantized network, from {@link #quantize(MultiLayerNetwork)}
+     * @param testData  Test data (classification)
+     */
+    public static QuantizationReport report(@NonNull MultiLayerNetwork original, @NonNull MultiLayerNetwork quantized,
+                                            @NonNull DataSetIterator testData) {
+        double originalAcc = original.doEvaluation(testData, new Evaluation())[0].accuracy();
+        double quantizedAcc = quantized.doEvaluation(testData, new Evaluation())[0].accuracy();
+        double originalMs = meanLatencyMs(testData, ds -> original.output(ds.getFeatures(), false));
+        double quantizedMs = meanLatencyMs(testData, ds -> quantized.output(ds.getFeatures(), false));
+        return buildReport(quantized.getLayers(), originalAcc, quantizedAcc, originalMs, quantizedMs,
+                modelBytes(original), modelBytes(quantized));
+    }
+
+    /**
+     * Compare the accuracy, latency and memory of a network and its quantized version on the specified test data
+     *
+     * @param original  Original network
+     * @param quantized Quantized network, from {@link #quantize(ComputationGraph)}
+     * @param testData  Test data (classification)
+     */
+    public static QuantizationReport report(@NonNull ComputationGraph original, @NonNull ComputationGraph quantized,
+                                            @NonNull DataSetIterator testData) {
+        double originalAcc = original.doEvaluation(testData, new Evaluation())[0].accuracy();
+        double quantizedAcc = quantized.doEvaluation(testData, new Evaluation())[0].accuracy();
+        double originalMs = meanLatencyMs(testData, ds -> original.output(false, ds.getFeatures()));
+        double quantizedMs = meanLatencyMs(testData, ds -> quantized.output(false, ds.getFeatures()));
+        return buildReport(quantized.getLayers(), originalAcc, quantizedAcc, originalMs, quantizedMs,
+                modelBytes(original), modelBytes(quantized));
+    }
+
+    private static double meanLatencyMs(DataSetIterator testData, Consumer<DataSet> output) {
+        if (testData.resetSupported())
+            testData.reset();
+        long total = 0;
+        int count = 0;
+        while (testData.hasNext()) {
+            DataSet ds = testData.next();
+            long start = System.nanoTime();
+            output.accept(ds);
+            total += System.nanoTime() - start;
+            count++;
+        }
+        return count == 0 ? 0.0 : total / (1e6 * count);
+    }
+
+    /**
+     * @return Number of bytes allocated for the parameters of the network, plus the INT8 weights of any quantized layers
+     */
+    public static long modelBytes(@NonNull MultiLayerNetwork net) {
+        return modelBytes(net.params(), net.getLayers());
+    }
+
+    /**
+     * @return Number of bytes allocated for the parameters of the network, plus the INT8 weights of any quantized layers
+     */
+    public static long modelBytes(@NonNull ComputationGraph graph) {
+        return modelBytes(graph.params(), graph.getLayers());
+    }
+
+    private static long modelBytes(INDArray params, Layer[] layers) {
+        long bytes = params == null ? 0 : params.data().length() * params.data().getElementSize();
+        for (Layer l : layers) {
+            if (l instanceof QuantizedLayer)
+                bytes += ((QuantizedLayer) l).quantizedWeightBytes();
+        }
+        return bytes;
+    }
+
+    private static QuantizationReport buildReport(Layer[] quantizedLayers, double originalAcc, double quantizedAcc,
+                                                  double originalMs, double quantizedMs, long originalBytes, long quantizedBytes) {
+        int n = 0;
+        for (Layer l : quantizedLayers) {
+            if (l instanceof QuantizedLayer)
+                n++;
+        }
+        return new QuantizationReport(n, originalAcc, quantizedAcc, originalMs, quantizedMs, originalBytes, quantizedBytes);
+    }
+}
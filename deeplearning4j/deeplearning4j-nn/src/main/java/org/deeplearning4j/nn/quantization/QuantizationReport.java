@@ -0,0 +1,75 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.nn.quantization;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Comparison of a network and its post-training quantized version, as produced by
+ * {@link PostTrainingQuantizer#report(org.deeplearning4j.nn.multilayer.MultiLayerNetwork, org.deeplearning4j.nn.multilayer.MultiLayerNetwork, org.nd4j.linalg.dataset.api.iterator.DataSetIterator)}
+ * and the equivalent ComputationGraph method.<br>
+ * Accuracy is classification accuracy on the test data; latency is the mean time of one output call, per minibatch of
+ * the test data. Memory is the number of bytes allocated for the network parameters, plus (for the quantized network)
+ * the INT8 weights of the quantized layers - see {@link PostTrainingQuantizer#modelBytes(org.deeplearning4j.nn.multilayer.MultiLayerNetwork)}.
+ */
+@Data
+@AllArgsConstructor
+public class QuantizationReport {
+
+    private final int numQuantizedLayers;
+    private final double originalAccuracy;
+    private final double quantizedAccuracy;
+    private final double originalLatencyMs;
+    private final double quantizedLatencyMs;
+    private final long originalMemoryBytes;
+    private final long quantizedMemoryBytes;
+
+    /**
+     * @return Quantized accuracy minus original accuracy
+     */
+    public double getAccuracyDelta() {
+        return quantizedAccuracy - originalAccuracy;
+    }
+
+    /**
+     * @return Original latency divided by quantized latency: values above 1.0 mean the quantized network is faster
+     */
+    public double getSpeedup() {
+        return originalLatencyMs / quantizedLatencyMs;
+    }
+
+    /**
+     * @return Original memory divided by quantized memory
+     */
+    public double getMemoryReduction() {
+        return quantizedMemoryBytes == 0 ? 1.0 : originalMemoryBytes / (double) quantizedMemoryBytes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("QuantizationReport(quantized layers: %d, accuracy: %.4f -> %.4f (delta %+.4f), " +
+                        "latency per minibatch: %.3f ms -> %.3f ms (%.2fx), memory: %d -> %d bytes (%.2fx smaller))",
+                numQuantizedLayers, originalAccuracy, quantizedAccuracy, getAccuracyDelta(),
+                originalLatencyMs, quantizedLatencyMs, getSpeedup(),
+                originalMemoryBytes, quantizedMemoryBytes, getMemoryReduction());
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.nn.quantization;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.deeplearning4j.nn.api.Layer;
+import org.deeplearning4j.nn.conf.CNN2DFormat;
+import org.deeplearning4j.nn.conf.ConvolutionMode;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.ConvolutionLayer;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.gradient.Gradient;
+import org.deeplearning4j.nn.layers.BaseLayer;
+import org.deeplearning4j.nn.params.QuantizedLayerParamInitializer;
+import org.deeplearning4j.nn.workspace.ArrayType;
+import org.deeplearning4j.nn.workspace.LayerWorkspaceMgr;
+import org.deeplearning4j.util.ConvolutionUtils;
+import org.nd4j.common.base.Preconditions;
+import org.nd4j.common.primitives.Pair;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.memory.MemoryWorkspace;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.shape.Shape;
+import org.nd4j.linalg.convolution.Convolution;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+import org.nd4j.linalg.ops.transforms.Transforms;
+
+/**
+ * Inference-only, INT8 quantized version of a trained dense, output or 2d convolution layer - see
+ * {@link org.deeplearning4j.nn.conf.layers.misc.QuantizedLayer} and {@link PostTrainingQuantizer}.<br>
+ * Weights are quantized symmetrically with one scale per output channel (column of the dense weight matrix, or output
+ * channel of the convolution kernel); the layer input is quantized symmetrically with a single scale, determined from the
+ * activation range observed during calibration. The matrix multiplication is performed on integers with INT32
+ * accumulation, and the result is rescaled to the network datatype before the bias and activation function are applied.<br>
+ * The layer parameters are only the weight scales and the bias: the INT8 weights are held separately (see
+ * {@link #setQuantizedWeights(INDArray)}), and the floating point weights of the original layer are not retained.
+ * As the libnd4j integer GEMM requires both operands to be the same type, the INT8 weights are widened to INT32 one
+ * row panel (at most {@link #PANEL_ELEMENTS} values) at a time during the forward pass; the full weight matrix is never
+ * widened.<br>
+ * Quantized layers cannot be trained. Note that the INT8 weights are not part of the network parameters, hence they
+ * are not copied by {@code MultiLayerNetwork.clone()} or saved by {@code ModelSerializer.writeModel}: use
+ * {@link PostTrainingQuantizer#writeModel(org.deeplearning4j.nn.multilayer.MultiLayerNetwork, java.io.File)} and
+ * {@link PostTrainingQuantizer#restoreMultiLayerNetwork(java.io.File)} instead.
+ */
+public class QuantizedLayer extends BaseLayer<org.deeplearning4j.nn.conf.layers.misc.QuantizedLayer> {
+
+    /**
+     * Largest quantized magnitude. The range is symmetric, [-127, 127]
+     */
+    public static final int QUANT_MAX = 127;
+    /**
+     * Maximum number of weights widened to INT32 at once in the forward pass
+     */
+    public static final int PANEL_ELEMENTS = 1 << 16;
+
+    /**
+     * Quantized weights, INT8. Shape [fanIn, nOut], 'f' order. For convolution layers, the rows are ordered to match
+     * the im2col layout: [kW*kH*inChannels, outChannels]
+     */
+    @Getter
+    private INDArray quantizedWeights;
+
+    public QuantizedLayer(NeuralNetConfiguration conf, DataType dataType) {
+        super(conf, dataType);
+    }
+
+    /**
+     * Set the quantized weights of this layer, as returned by {@link #quantizeWeights(INDArray, boolean)}
+     *
+     * @param quantizedWeights INT8 weights, shape [fanIn, nOut]
+     */
+    public void setQuantizedWeights(@NonNull INDArray quantizedWeights) {
+        org.deeplearning4j.nn.conf.layers.misc.QuantizedLayer l = layerConf();
+        Preconditions.checkArgument(quantizedWeights.dataType() == DataType.INT8, "Quantized weights must be INT8, got %s",
+                quantizedWeights.dataType());
+        Preconditions.checkArgument(quantizedWeights.rank() == 2 && quantizedWeights.size(0) == l.fanIn()
+                        && quantizedWeights.size(1) == l.getNOut(), "Expected quantized weights with shape [%s, %s] for layer %s, got %ndShape",
+                l.fanIn(), l.getNOut(), l.getLayerName(), quantizedWeights);
+        try (MemoryWorkspace ws = Nd4j.getMemoryManager().scopeOutOfWorkspaces()) {
+            this.quantizedWeights = quantizedWeights.dup('f');
+        }
+    }
+
+    /**
+     * Quantize the weights of a trained layer, with one scale per output channel
+     *
+     * @param w           Weights: [nIn, nOut] for dense and output layers, [outC, inC, kH, kW] for convolution layers
+     * @param convolution Whether the weights are convolution weights
+     * @return INT8 weights with shape [fanIn, nOut], and FLOAT scales with shape [1, nOut]
+     */
+    public static Pair<INDArray, INDArray> quantizeWeights(@NonNull INDArray w, boolean convolution) {
+        INDArray w2d;
+        if (convolution) {
+            //[outC, inC, kH, kW] -> [kW*kH*inC, outC], as per ConvolutionLayer.preOutput
+            w2d = w.permute(3, 2, 1, 0).reshape('f', w.size(3) * w.size(2) * w.size(1), w.size(0));
+        } else {
+            w2d = w;
+        }
+        try (MemoryWorkspace ws = Nd4j.getMemoryManager().scopeOutOfWorkspaces()) {
+            INDArray maxAbs = Transforms.abs(w2d, true).max(true, 0).castTo(DataType.FLOAT);
+            //All zero channel: any scale will do
+            Transforms.max(maxAbs, Float.MIN_NORMAL, false);
+            INDArray scales = maxAbs.divi(QUANT_MAX).reshape(1, w2d.size(1));
+            INDArray q = w2d.castTo(DataType.FLOAT).divRowVector(scales);
+            return new Pair<>(clampRound(q).castTo(DataType.INT8).dup('f'), scales);
+        }
+    }
+
+    /**
+     * @return True if the layer can be quantized: dense layers without layer normalization, output layers, and 2d
+     * convolution layers
+     */
+    public static boolean isSupported(Layer layer) {
+        return isSupported(layer.conf().getLayer());
+    }
+
+    /**
+     * @return True if the layer configuration can be quantized: dense layers without layer normalization, output
+     * layers, and 2d convolution layers
+     */
+    public static boolean isSupported(org.deeplearning4j.nn.conf.layers.Layer layer) {
+        Class<?> c = layer.getClass();
+        if (c == DenseLayer.class) {
+            return !((DenseLayer) layer).hasLayerNorm();
+        }
+        return c == org.deeplearning4j.nn.conf.layers.OutputLayer.class || c == ConvolutionLayer.class;
+    }
+
+    /**
+     * @return Number of bytes used by the INT8 weights of this layer. Note that the weight scales and the bias are
+     * network parameters
+     */
+    public long quantizedWeightBytes() {
+        if (quantizedWeights == null)
+            return 0;
+        return quantizedWeights.data().length() * quantizedWeights.data().getElementSize();
+    }
+
+    @Override
+    public boolean hasBias() {
+        return layerConf().hasBias();
+    }
+
+    @Override
+    public boolean isPretrainLayer() {
+        return false;
+    }
+
+    private static INDArray clampRound(INDArray in) {
+        Transforms.round(in, false);
+        Transforms.min(in, QUANT_MAX, false);
+        return Transforms.max(in, -QUANT_MAX, false);
+    }
+
+    /**
+     * Quantize to INT32 (with values in the INT8 range), for use in the integer GEMM
+     */
+    private INDArray quantizeInput(INDArray in) {
+        return clampRound(in.castTo(DataType.FLOAT).div(layerConf().getInputScale())).castTo(DataType.INT32).dup('f');
+    }
+
+    /**
+     * [m, fanIn] x [fanIn, nOut] in the integer domain, rescaled to the network datatype, plus bias
+     */
+    private INDArray quantizedMmul(INDArray in2d) {
+        Preconditions.checkState(quantizedWeights != null, "Quantized weights have not been set for layer %s: quantized" +
+                " networks should be created using PostTrainingQuantizer.quantize or restored using PostTrainingQuantizer.restoreMultiLayerNetwork" +
+                " or PostTrainingQuantizer.restoreComputationGraph", layerConf().getLayerName());
+        INDArray xq = quantizeInput(in2d);
+        long fanIn = quantizedWeights.size(0);
+        long nOut = quantizedWeights.size(1);
+        long panelRows = Math.max(1, Math.min(fanIn, PANEL_ELEMENTS / nOut));
+
+        INDArray acc = Nd4j.createUninitialized(DataType.INT32, new long[]{xq.size(0), nOut}, 'f');
+        INDArray panel = Nd4j.createUninitialized(DataType.INT32, new long[]{panelRows, nOut}, 'f');
+        for (long k0 = 0; k0 < fanIn; k0 += panelRows) {
+            long k1 = Math.min(fanIn, k0 + panelRows);
+            INDArray p = k1 - k0 == panelRows ? panel : panel.get(NDArrayIndex.interval(0, k1 - k0), NDArrayIndex.all());
+            p.assign(quantizedWeights.get(NDArrayIndex.interval(k0, k1), NDArrayIndex.all()));
+            Nd4j.gemm(xq.get(NDArrayIndex.all(), NDArrayIndex.interval(k0, k1)), p, acc, false, false, 1.0, k0 == 0 ? 0.0 : 1.0);
+        }
+
+        INDArray outputScales = getParam(QuantizedLayerParamInitializer.WEIGHT_SCALE_KEY).mul(layerConf().getInputScale());
+        INDArray z = acc.castTo(dataType).muliRowVector(outputScales.castTo(dataType));
+        if (hasBias()) {
+            z.addiRowVector(getParam(QuantizedLayerParamInitializer.BIAS_KEY).castTo(dataType));
+        }
+        return z;
+    }
+
+    @Override
+    public INDArray activate(boolean training, LayerWorkspaceMgr workspaceMgr) {
+        assertInputSet(false);
+        org.deeplearning4j.nn.conf.layers.misc.QuantizedLayer conf = layerConf();
+
+        INDArray z;
+        if (conf.isConvolution()) {
+            z = convPreOutput(input, (ConvolutionLayer) conf.getLayer());
+        } else {
+            Preconditions.checkState(input.rank() == 2, "Expected rank 2 input for quantized dense layer, got input with shape %ndShape", input);
+            z = quantizedMmul(input.castTo(dataType));
+        }
+        z = workspaceMgr.leverageTo(ArrayType.ACTIVATIONS, z);
+        INDArray ret = conf.getActivationFn().getActivation(z, false);
+
+        if (!conf.isConvolution() && maskArray != null) {
+            applyMask(ret);
+        }
+        return ret;
+    }
+
+    private INDArray convPreOutput(INDArray input, ConvolutionLayer conf) {
+        Preconditions.checkState(input.rank() == 4, "Expected rank 4 input for quantized convolution layer, got input with shape %ndShape", input);
+        input = input.castTo(dataType);
+        if (conf.getCnn2dDataFormat() == CNN2DFormat.NHWC) {
+            input = input.permute(0, 3, 1, 2).dup(); //NHWC to NCHW
+        }
+
+        int[] kernel = conf.getKernelSize();
+        int[] strides = conf.getStride();
+        int[] dilation = conf.getDilation();
+        ConvolutionMode mode = conf.getConvolutionMode();
+        int[] pad;
+        int[] outSize;
+        if (mode == ConvolutionMode.Same) {
+            outSize = ConvolutionUtils.getOutputSize(input, kernel, strides, null, mode, dilation, CNN2DFormat.NCHW);
+            pad = ConvolutionUtils.getSameModeTopLeftPadding(outSize, new int[]{(int) input.size(2), (int) input.size(3)},
+                    kernel, strides, dilation);
+        } else {
+            pad = conf.getPadding();
+            outSize = ConvolutionUtils.getOutputSize(input, kernel, strides, pad, mode, dilation, CNN2DFormat.NCHW);
+        }
+        long miniBatch = input.size(0);
+        long inDepth = input.size(1);
+        int outH = outSize[0];
+        int outW = outSize[1];
+        long outDepth = conf.getNOut();
+
+        //im2col as per ConvolutionLayer: rows ordered [miniBatch, outH, outW], columns [inDepth, kH, kW]
+        INDArray col = Nd4j.createUninitialized(dataType, new long[]{miniBatch, outH, outW, inDepth, kernel[0], kernel[1]}, 'c');
+        INDArray col2 = col.permute(0, 3, 4, 5, 1, 2);
+        Convolution.im2col(input, kernel[0], kernel[1], strides[0], strides[1], pad[0], pad[1], dilation[0], dilation[1],
+                mode == ConvolutionMode.Same, col2);
+        INDArray im2col2d = Shape.newShapeNoCopy(col, new long[]{miniBatch * outH * outW, inDepth * kernel[0] * kernel[1]}, false);
+
+        INDArray z = quantizedMmul(im2col2d);
+        z = Shape.newShapeNoCopy(z, new long[]{outW, outH, miniBatch, outDepth}, true);
+        z = z.permute(2, 3, 1, 0);
+        if (conf.getCnn2dDataFormat() == CNN2DFormat.NHWC) {
+            z = z.permute(0, 2, 3, 1);
+        }
+        return z.dup('c');
+    }
+
+    @Override
+    public Pair<Gradient, INDArray> backpropGradient(INDArray epsilon, LayerWorkspaceMgr workspaceMgr) {
+        throw new UnsupportedOperationException("Quantized layers are inference only: backprop is not supported");
+    }
+
+    @Override
+    public void computeGradientAndScore(LayerWorkspaceMgr workspaceMgr) {
+        throw new UnsupportedOperationException("Quantized layers are inference only: gradient computation is not supported");
+    }
+
+    @Override
+    public void fit() {
+        throw new UnsupportedOperationException("Quantized layers are inference only: fitting is not supported");
+    }
+
+    @Override
+    public void fit(INDArray data, LayerWorkspaceMgr workspaceMgr) {
+        throw new UnsupportedOperationException("Quantized layers are inference only: fitting is not supported");
+    }
+}
@@ -24,9 +24,11 @@ import lombok.Getter;
 import org.deeplearning4j.nn.api.Model;
 import org.deeplearning4j.nn.api.Trainable;
 import org.deeplearning4j.nn.api.Updater;
+import org.deeplearning4j.nn.api.layers.SparseGradientLayer;
 import org.deeplearning4j.nn.conf.GradientNormalization;
 import org.deeplearning4j.nn.gradient.DefaultGradient;
 import org.deeplearning4j.nn.gradient.Gradient;
+import org.deeplearning4j.nn.profiling.LayerProfiler;
 import org.nd4j.common.base.Preconditions;
 import org.nd4j.linalg.api.memory.MemoryWorkspace;
 import org.nd4j.linalg.api.ndarray.INDArray;
@@ -39,6 +41,7 @@ import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.indexing.NDArrayIndex;
 import org.deeplearning4j.nn.workspace.ArrayType;
 import org.deeplearning4j.nn.workspace.LayerWorkspaceMgr;
+import org.deeplearning4j.optimize.api.StepFunction;
 import org.nd4j.linalg.learning.config.IUpdater;
 
 import java.util.*;
@@ -308,6 +311,7 @@ public abstract class BaseMultiLayerUpdater<T extends Model> implements Updater
             //OK for LayerUpdater as this is part of layerwise pretraining
             workspaceMgr.assertNotOpen(ArrayType.UPDATER_WORKING_MEM, "Updater working memory");
         }
+        LayerProfiler profiler = getLayerProfiler();
         for (UpdaterBlock ub : updaterBlocks) {
             if (ub.skipDueToPretrainConfig(this instanceof LayerUpdater)) {
                 //Should skip some updater blocks sometimes
@@ -315,6 +319,7 @@ public abstract class BaseMultiLayerUpdater<T extends Model> implements Updater
                 continue;
             }
             try(MemoryWorkspace ws = workspaceMgr.notifyScopeEntered(ArrayType.UPDATER_WORKING_MEM)){
+                LayerProfiler.Measurement pm = profiler == null ? null : profiler.begin();
                 if (isExternal) {
                     //RL4J etc type case: calculate gradients in 1 net, update them in another
                     ub.updateExternalGradient(iteration, epoch, gradient.gradient(), getParams());
@@ -322,17 +327,35 @@ public abstract class BaseMultiLayerUpdater<T extends Model> implements Updater
                     //Standard case
                     ub.update(iteration, epoch);
                 }
+                if (pm != null) {
+                    profiler.end(pm, LayerProfiler.Phase.UPDATER, profilerBlockName(ub),
+                            ub.getGradientUpdater().getClass().getSimpleName());
+                }
             }
         }
     }
 
+    /**
+     * @return The per layer profiler attached to the model, or null if profiling is not enabled
+     */
+    protected LayerProfiler getLayerProfiler() {
+        return null;
+    }
+
+    private static String profilerBlockName(UpdaterBlock ub) {
+        List<UpdaterBlock.ParamState> l = ub.getLayersAndVariablesInBlock();
+        String first = l.get(0).getLayer().getConfig().getLayerName();
+        String last = l.get(l.size() - 1).getLayer().getConfig().getLayerName();
+        return first == null || first.equals(last) ? String.valueOf(first) : first + " - " + last;
+    }
+
     protected void divideByMinibatch(boolean isExternal, Gradient gradient, int batchSize){
         //Challenge here: most gradients are actual gradients, and should be divided by the minibatch to get the average
         //However, some 'gradients' are actually updates - an example being BatchNorm mean/variance estimates... these
         // shouldn't be modified
 
         if(!initializedMinibatchDivision){
-            gradientsForMinibatchDivision = getMinibatchDivisionSubsets(getFlattenedGradientsView());
+            gradientsForMinibatchDivision = getMinibatchDivisionSubsets(getFlattenedGradientsView(), true);
             initializedMinibatchDivision = true;
         }
 
@@ -341,6 +364,14 @@ public abstract class BaseMultiLayerUpdater<T extends Model> implements Updater
             toDivide = getMinibatchDivisionSubsets(gradient.gradient());
         } else {
             toDivide = gradientsForMinibatchDivision;
+            //Sparse gradients: only the rows used in the last backprop need to be divided
+            for (UpdaterBlock ub : updaterBlocks) {
+                if (ub.isSparseGradientBlock()) {
+                    UpdaterBlock.ParamState ps = ub.getLayersAndVariablesInBlock().get(0);
+                    if (ps.getLayer().updaterDivideByMinibatch(ps.getParamName()))
+                        ub.divideSparseGradient(batchSize);
+                }
+            }
         }
         for(INDArray arr : toDivide){
             arr.divi(batchSize);
@@ -348,6 +379,15 @@ public abstract class BaseMultiLayerUpdater<T extends Model> implements Updater
     }
 
     protected List<INDArray> getMinibatchDivisionSubsets(INDArray from){
+        return getMinibatchDivisionSubsets(from, false);
+    }
+
+    /**
+     * @param from                  Gradient array to get the subsets of
+     * @param excludeSparseGradients If true: exclude parameters with sparse gradients (these are divided row-wise)
+     * @return Subsets of the gradient array that should be divided by the minibatch size
+     */
+    protected List<INDArray> getMinibatchDivisionSubsets(INDArray from, boolean excludeSparseGradients){
         from = from.reshape(from.length());
         List<INDArray> out = new ArrayList<>();
         long paramsSoFar = 0;
@@ -357,7 +397,7 @@ public abstract class BaseMultiLayerUpdater<T extends Model> implements Updater
             Set<String> layerParams = t.paramTable(false).keySet();
             Map<String,INDArray> paramTable = t.paramTable(false);
             for(String s : layerParams) {
-                if(t.updaterDivideByMinibatch(s)){
+                if(t.updaterDivideByMinibatch(s) && !(excludeSparseGradients && UpdaterUtils.isSparseGradientParam(t, s))){
                     long l = paramTable.get(s).length();
                     currentEnd += l;
                 } else {
@@ -381,6 +421,70 @@ public abstract class BaseMultiLayerUpdater<T extends Model> implements Updater
         return out;
     }
 
+    /**
+     * @return True if any of the updater blocks are for parameters with sparse (row-wise) gradients
+     */
+    public boolean hasSparseGradientBlocks() {
+        for (UpdaterBlock ub : updaterBlocks) {
+            if (ub.isSparseGradientBlock())
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Apply the update (as calculated by {@link #update(Gradient, int, int, int, LayerWorkspaceMgr)}) to the
+     * parameters. This is equivalent to {@code stepFunction.step(params, update)}, except that for parameters with
+     * sparse gradients, only the rows updated in the last iteration are modified.
+     *
+     * @param stepFunction Step function to use
+     * @param params       Flattened network parameters
+     * @param update       Flattened network update
+     */
+    public void applyStep(StepFunction stepFunction, INDArray params, INDArray update) {
+        if (!hasSparseGradientBlocks()) {
+            stepFunction.step(params, update);
+            return;
+        }
+
+        INDArray paramsReshape = params.reshape(params.length());
+        INDArray updateReshape = update.reshape(update.length());
+        long denseStart = 0;
+        long denseEnd = 0;
+        for (UpdaterBlock ub : updaterBlocks) {
+            if (ub.getLastSparseRows() == null) {
+                //Combine adjacent dense blocks into a single op
+                denseEnd = ub.getParamOffsetEnd();
+                continue;
+            }
+            if (denseEnd > denseStart) {
+                stepFunction.step(paramsReshape.get(NDArrayIndex.interval(denseStart, denseEnd)),
+                        updateReshape.get(NDArrayIndex.interval(denseStart, denseEnd)));
+            }
+            ub.step(stepFunction, params, update);
+            denseStart = ub.getParamOffsetEnd();
+            denseEnd = denseStart;
+        }
+        if (denseEnd > denseStart) {
+            stepFunction.step(paramsReshape.get(NDArrayIndex.interval(denseStart, denseEnd)),
+                    updateReshape.get(NDArrayIndex.interval(denseStart, denseEnd)));
+        }
+    }
+
+    /**
+     * Notify layers with sparse gradients that the gradient view array has been modified outside of the rows used in
+     * the last iteration - for example, by applying updates shared from other workers. See
+     * {@link SparseGradientLayer#clearSparseGradientRows()}
+     */
+    public void clearSparseGradientRows() {
+        for (UpdaterBlock ub : updaterBlocks) {
+            if (ub.isSparseGradientBlock()) {
+                ((SparseGradientLayer) ub.getLayersAndVariablesInBlock().get(0).getLayer()).clearSparseGradientRows();
+                ub.setLastSparseRows(null);
+            }
+        }
+    }
+
     protected boolean isSingleLayerUpdater() {
         return false;
     }
@@ -26,6 +26,7 @@ import org.deeplearning4j.nn.api.Layer;
 import org.deeplearning4j.nn.api.Trainable;
 import org.deeplearning4j.nn.api.Updater;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.profiling.LayerProfiler;
 import org.nd4j.linalg.api.ndarray.INDArray;
 
 import java.util.HashMap;
@@ -74,6 +75,11 @@ public class MultiLayerUpdater extends BaseMultiLayerUpdater<MultiLayerNetwork>
         return network.conf().isMiniBatch();
     }
 
+    @Override
+    protected LayerProfiler getLayerProfiler() {
+        return network.getLayerProfiler();
+    }
+
     @Override
     public Updater clone() {
         return new MultiLayerUpdater(network, null);
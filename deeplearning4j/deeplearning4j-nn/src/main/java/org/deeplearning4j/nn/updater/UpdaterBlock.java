@@ -25,17 +25,23 @@ import lombok.Data;
 import lombok.val;
 import org.deeplearning4j.nn.api.Layer;
 import org.deeplearning4j.nn.api.Trainable;
+import org.deeplearning4j.nn.api.layers.SparseGradientLayer;
 import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
 import org.deeplearning4j.nn.conf.layers.BaseLayer;
 import org.deeplearning4j.nn.layers.FrozenLayer;
+import org.deeplearning4j.optimize.api.StepFunction;
 import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.impl.scatter.ScatterUpdate;
+import org.nd4j.linalg.api.shape.Shape;
 import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.indexing.NDArrayIndex;
 import org.nd4j.linalg.learning.GradientUpdater;
+import org.nd4j.linalg.learning.SparseGradientUpdater;
 import org.nd4j.linalg.learning.regularization.Regularization;
 import org.nd4j.linalg.ops.transforms.Transforms;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 @Data
@@ -52,6 +58,9 @@ public class UpdaterBlock {
 
     private GradientUpdater gradientUpdater;
 
+    //Rows updated in the last call to update, for sparse gradient blocks. Null if the last update was dense
+    private int[] lastSparseRows;
+
 
     @AllArgsConstructor
     @Data
@@ -91,9 +100,27 @@ public class UpdaterBlock {
             String varName = varState.getParamName();
             gradientUpdater = varState.getLayer().getConfig().getUpdaterByParam(varName).instantiate(updaterView,
                     updaterViewRequiresInitialization); //UpdaterUtils.getGradientUpdater(varState.getLayer(), varState.getParamName());
+
+            if (isSparseGradientBlock() && !(gradientUpdater instanceof SparseGradientUpdater)) {
+                throw new IllegalStateException("Parameter \"" + varName + "\" of layer \"" + varState.getLayer().getConfig().getLayerName()
+                        + "\" is configured to use sparse gradients, but updater " + gradientUpdater.getClass().getSimpleName()
+                        + " does not support sparse (row-wise) updates. Use an updater that supports sparse updates (Sgd, Adam, AdaGrad,"
+                        + " NoOp) or disable sparse gradients for this layer");
+            }
         }
     }
 
+    /**
+     * @return True if this block consists of a single parameter with sparse (row-wise) gradients. For these blocks,
+     * only the rows that were used in the last backprop are updated. See {@link SparseGradientLayer}
+     */
+    public boolean isSparseGradientBlock() {
+        if (layersAndVariablesInBlock.size() != 1)
+            return false;
+        ParamState ps = layersAndVariablesInBlock.get(0);
+        return UpdaterUtils.isSparseGradientParam(ps.getLayer(), ps.getParamName());
+    }
+
     public boolean isPretrainUpdaterBlock() {
         //All in block should be the same layer, and all be pretrain params
         ParamState vs = layersAndVariablesInBlock.get(0);
@@ -155,6 +182,19 @@ public class UpdaterBlock {
             return;
         }
 
+        if (!externalGradient && isSparseGradientBlock()) {
+            ParamState ps = layersAndVariablesInBlock.get(0);
+            int[] rows = ((SparseGradientLayer) ps.getLayer()).getSparseGradientRows(ps.getParamName());
+            lastSparseRows = rows;
+            if (rows != null) {
+                updateSparse(ps, rows, iteration, epoch);
+                return;
+            }
+            //Rows are unknown (no backprop since the gradient view was modified) - dense update
+        } else {
+            lastSparseRows = null;
+        }
+
         //Pre-updater regularization: l1 and l2
         applyRegularizationAllVariables(Regularization.ApplyStep.BEFORE_UPDATER, iteration, epoch, externalGradient, fullNetworkGradientView, fullNetworkParamsArray);
 
@@ -165,6 +205,90 @@ public class UpdaterBlock {
         applyRegularizationAllVariables(Regularization.ApplyStep.POST_UPDATER, iteration, epoch, externalGradient, fullNetworkGradientView, fullNetworkParamsArray);
     }
 
+    /**
+     * Apply the updater and regularization to the specified rows only. The gradient view is zero for all other rows,
+     * and it remains zero after the update.
+     */
+    private void updateSparse(ParamState ps, int[] rows, int iteration, int epoch) {
+        if (rows.length == 0)
+            return;
+
+        INDArray param = ps.getLayer().paramTable(false).get(ps.getParamName());
+        long[] shape = param.shape();
+        char order = param.ordering();
+        INDArray grad2d = as2d(ps.getGradView(), shape, order);
+        INDArray gradRows = Nd4j.pullRows(grad2d, 1, rows, 'c');
+
+        boolean hasLR = gradientUpdater.getConfig().hasLearningRate();
+        double lr = (hasLR ? gradientUpdater.getConfig().getLearningRate(iteration, epoch) : 1.0);
+        List<Regularization> l = ps.getLayer().getConfig().getRegularizationByParam(ps.getParamName());
+        INDArray paramRows = (l == null || l.isEmpty()) ? null : Nd4j.pullRows(as2d(ps.getParamView(), shape, order), 1, rows, 'c');
+
+        if (paramRows != null)
+            applyRegularization(Regularization.ApplyStep.BEFORE_UPDATER, ps.getLayer(), ps.getParamName(), gradRows, paramRows, iteration, epoch, lr);
+
+        ((SparseGradientUpdater) gradientUpdater).applyUpdaterRows(gradRows, rows, shape, order, iteration, epoch);
+
+        if (paramRows != null)
+            applyRegularization(Regularization.ApplyStep.POST_UPDATER, ps.getLayer(), ps.getParamName(), gradRows, paramRows, iteration, epoch, lr);
+
+        Nd4j.scatterUpdate(ScatterUpdate.UpdateOp.ASSIGN, grad2d, Nd4j.createFromArray(rows), gradRows, 1);
+    }
+
+    /**
+     * Divide the gradient for a sparse gradient block by the minibatch size. Only the rows used in the last backprop
+     * are divided, if known.
+     */
+    public void divideSparseGradient(int batchSize) {
+        ParamState ps = layersAndVariablesInBlock.get(0);
+        int[] rows = ((SparseGradientLayer) ps.getLayer()).getSparseGradientRows(ps.getParamName());
+        if (rows == null) {
+            ps.getGradView().divi(batchSize);
+        } else if (rows.length > 0) {
+            INDArray param = ps.getLayer().paramTable(false).get(ps.getParamName());
+            INDArray grad2d = as2d(ps.getGradView(), param.shape(), param.ordering());
+            Nd4j.scatterUpdate(ScatterUpdate.UpdateOp.DIVIDE, grad2d, Nd4j.createFromArray(rows),
+                    Nd4j.valueArrayOf(new long[]{rows.length, param.size(1)}, (double) batchSize, grad2d.dataType()), 1);
+        }
+    }
+
+    /**
+     * Apply the update for this block to the parameters, using the specified step function. If the last update for
+     * this block was sparse, only the updated rows of the parameters are modified.
+     *
+     * @param stepFunction Step function to use
+     * @param params       Full network parameters array
+     * @param update       Full network update (i.e., gradient after the updater has been applied)
+     */
+    public void step(StepFunction stepFunction, INDArray params, INDArray update) {
+        if (paramOffsetEnd == paramOffsetStart)
+            return;
+        INDArray paramsSubset = params.reshape(params.length()).get(NDArrayIndex.interval(paramOffsetStart, paramOffsetEnd));
+        INDArray updateSubset = update.reshape(update.length()).get(NDArrayIndex.interval(paramOffsetStart, paramOffsetEnd));
+        if (lastSparseRows == null) {
+            stepFunction.step(paramsSubset, updateSubset);
+            return;
+        }
+        if (lastSparseRows.length == 0)
+            return;
+
+        ParamState ps = layersAndVariablesInBlock.get(0);
+        INDArray param = ps.getLayer().paramTable(false).get(ps.getParamName());
+        INDArray params2d = as2d(paramsSubset, param.shape(), param.ordering());
+        INDArray paramRows = Nd4j.pullRows(params2d, 1, lastSparseRows, 'c');
+        INDArray updateRows = Nd4j.pullRows(as2d(updateSubset, param.shape(), param.ordering()), 1, lastSparseRows, 'c');
+        stepFunction.step(paramRows, updateRows);
+        Nd4j.scatterUpdate(ScatterUpdate.UpdateOp.ASSIGN, params2d, Nd4j.createFromArray(lastSparseRows), paramRows, 1);
+    }
+
+    private static INDArray as2d(INDArray flat, long[] shape, char order) {
+        INDArray out = Shape.newShapeNoCopy(flat, shape, order == 'f');
+        if (out == null)
+            throw new IllegalStateException("Could not reshape array of length " + flat.length() + " to shape "
+                    + Arrays.toString(shape) + " without copying");
+        return out;
+    }
+
     protected void applyRegularizationAllVariables(Regularization.ApplyStep applyStep, int iteration, int epoch, boolean externalGradient, INDArray fullNetworkGradientView,
                                                    INDArray fullNetworkParamsArray) {
         for (ParamState p : layersAndVariablesInBlock) {
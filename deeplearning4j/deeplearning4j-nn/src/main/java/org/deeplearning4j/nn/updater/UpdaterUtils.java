@@ -22,6 +22,7 @@ package org.deeplearning4j.nn.updater;
 
 import org.deeplearning4j.nn.api.Trainable;
 import org.deeplearning4j.nn.api.TrainingConfig;
+import org.deeplearning4j.nn.api.layers.SparseGradientLayer;
 import org.nd4j.linalg.learning.config.IUpdater;
 
 public class UpdaterUtils {
@@ -38,11 +39,16 @@ public class UpdaterUtils {
         //(b) If one or more of the params are pretrainable params, they are in the same layer
         //    This last point is necessary as we don't want to modify the pretrain gradient/updater state during
         //    backprop, or modify the pretrain gradient/updater state of one layer while training another
+        //(c) Neither of the params has sparse (row-wise) gradients, as these are updated row-by-row in their own block
         if (!u1.equals(u2)) {
             //Different updaters or different config
             return false;
         }
 
+        if (isSparseGradientParam(layer1, param1) || isSparseGradientParam(layer2, param2)) {
+            return false;
+        }
+
         boolean isPretrainParam1 = l1.isPretrainParam(param1);
         boolean isPretrainParam2 = l2.isPretrainParam(param2);
         if (isPretrainParam1 || isPretrainParam2) {
@@ -54,4 +60,11 @@ public class UpdaterUtils {
 
         return true;
     }
+
+    /**
+     * @return True if the specified parameter has sparse (row-wise) gradients - see {@link SparseGradientLayer}
+     */
+    public static boolean isSparseGradientParam(Trainable layer, String param) {
+        return layer instanceof SparseGradientLayer && ((SparseGradientLayer) layer).hasSparseGradient(param);
+    }
 }
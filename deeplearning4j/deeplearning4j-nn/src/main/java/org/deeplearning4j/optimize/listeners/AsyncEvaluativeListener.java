@@ -0,0 +1,126 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.optimize.listeners;
+
+import lombok.NonNull;
+import org.deeplearning4j.nn.api.Model;
+import org.deeplearning4j.optimize.api.InvocationType;
+import org.nd4j.evaluation.IEvaluation;
+import org.nd4j.evaluation.classification.Evaluation;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.MultiDataSet;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.dataset.api.iterator.MultiDataSetIterator;
+
+/**
+ * A version of {@link EvaluativeListener} that does not block training while evaluating.<br>
+ * When evaluation is due, the parameters of the model are copied to a snapshot (see {@link AsyncModelSnapshotter}), and
+ * the evaluation is performed on the snapshot on a background thread while training continues. If the previous
+ * evaluation has not completed when the next one is due, training blocks until it completes.<br>
+ * Note that:<br>
+ * - The {@link #getCallback() callback} is invoked on the background thread, and is passed the snapshot, not the model
+ * being trained<br>
+ * - The evaluations returned by {@link #getEvaluations()} are only complete once the callback has been invoked, or
+ * after {@link #waitForCompletion()}<br>
+ * - The evaluation data (iterator or DataSet) is only used from the background thread, and must not be used elsewhere
+ * during training
+ */
+public class AsyncEvaluativeListener extends EvaluativeListener {
+
+    protected transient AsyncModelSnapshotter snapshotter = new AsyncModelSnapshotter("AsyncEvaluativeListener");
+
+    /**
+     * Evaluation will be launched after each *frequency* iterations, with {@link Evaluation} datatype
+     * @param iterator  Iterator to provide data for evaluation
+     * @param frequency Frequency (in number of iterations) to perform evaluation
+     */
+    public AsyncEvaluativeListener(@NonNull DataSetIterator iterator, int frequency) {
+        super(iterator, frequency);
+    }
+
+    /**
+     * @param iterator    Iterator to provide data for evaluation
+     * @param frequency   Frequency (in number of iterations/epochs according to the invocation type) to perform evaluation
+     * @param type        Type of value for 'frequency' - iteration end, epoch end, etc
+     * @param evaluations Type of evalutions to perform
+     */
+    public AsyncEvaluativeListener(@NonNull DataSetIterator iterator, int frequency, @NonNull InvocationType type,
+                                   IEvaluation... evaluations) {
+        super(iterator, frequency, type, evaluations);
+    }
+
+    /**
+     * Evaluation will be launched after each *frequency* iterations, with {@link Evaluation} datatype
+     * @param iterator  Iterator to provide data for evaluation
+     * @param frequency Frequency (in number of iterations) to perform evaluation
+     */
+    public AsyncEvaluativeListener(@NonNull MultiDataSetIterator iterator, int frequency) {
+        super(iterator, frequency);
+    }
+
+    /**
+     * @param iterator    Iterator to provide data for evaluation
+     * @param frequency   Frequency (in number of iterations/epochs according to the invocation type) to perform evaluation
+     * @param type        Type of value for 'frequency' - iteration end, epoch end, etc
+     * @param evaluations Type of evalutions to perform
+     */
+    public AsyncEvaluativeListener(@NonNull MultiDataSetIterator iterator, int frequency, @NonNull InvocationType type,
+                                   IEvaluation... evaluations) {
+        super(iterator, frequency, type, evaluations);
+    }
+
+    public AsyncEvaluativeListener(@NonNull DataSet dataSet, int frequency, @NonNull InvocationType type,
+                                   IEvaluation... evaluations) {
+        super(dataSet, frequency, type, evaluations);
+    }
+
+    public AsyncEvaluativeListener(@NonNull MultiDataSet multiDataSet, int frequency, @NonNull InvocationType type,
+                                   IEvaluation... evaluations) {
+        super(multiDataSet, frequency, type, evaluations);
+    }
+
+    @Override
+    protected void evaluate(Model model) {
+        snapshotter.submit(model, super::evaluate);
+    }
+
+    /**
+     * Block until the most recently started evaluation (if any) has completed
+     */
+    public void waitForCompletion() {
+        snapshotter.waitForCompletion();
+    }
+
+    /**
+     * @return Total time (in milliseconds) training was blocked by this listener: copying parameters, and waiting for
+     * previous evaluations to complete
+     */
+    public double getTotalStallMs() {
+        return snapshotter.getTotalStallMs();
+    }
+
+    /**
+     * Wait for any pending evaluation, and release the background thread
+     */
+    public void shutdown() {
+        snapshotter.shutdown();
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.optimize.listeners;
+
+import org.deeplearning4j.exception.DL4JInvalidInputException;
+import org.deeplearning4j.nn.api.Model;
+import org.deeplearning4j.nn.api.Updater;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.updater.graph.ComputationGraphUpdater;
+import org.nd4j.linalg.api.memory.MemoryWorkspace;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Runs tasks (evaluation, serialization) on a snapshot of a model, on a background thread, so that the training thread
+ * only blocks for the time required to copy the parameters.<br>
+ * The snapshot is a second network instance with the same configuration, created on first use. Parameters, updater
+ * state and iteration/epoch counts are copied into its (preallocated) arrays when a task is submitted. Only one
+ * snapshot exists: if the previous task is still running when a new one is submitted, the training thread waits for it
+ * to complete before copying (back-pressure), rather than queueing an unbounded number of model copies.<br>
+ * Time spent blocked on the training thread (waiting plus copying) is recorded - see {@link #getTotalStallMs()}.<br>
+ * Exceptions in background tasks are rethrown on the next call to {@link #submit(Model, Consumer)} or {@link #waitForCompletion()}.
+ */
+public class AsyncModelSnapshotter {
+
+    private final ThreadPoolExecutor executor;
+    private Model snapshot;
+    private Future<?> pending;
+
+    private long totalStallNanos;
+    private long lastStallNanos;
+    private int submitted;
+
+    public AsyncModelSnapshotter(final String threadName) {
+        // The worker thread exits once idle, hence pending tasks complete before JVM shutdown without requiring close()
+        executor = new ThreadPoolExecutor(1, 1, 5, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), r -> {
+            Thread t = new Thread(r, threadName);
+            t.setDaemon(false);
+            return t;
+        });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Wait for any previous task, copy the current state of the model into the snapshot, and run the task on the
+     * snapshot asynchronously
+     *
+     * @param model Model to snapshot
+     * @param task  Task to execute with the snapshot. Note that the snapshot must not be retained after the task returns
+     */
+    public synchronized void submit(Model model, Consumer<Model> task) {
+        long start = System.nanoTime();
+        waitForCompletion();
+        copyToSnapshot(model);
+        final Model s = snapshot;
+        pending = executor.submit(() -> task.accept(s));
+        submitted++;
+        lastStallNanos = System.nanoTime() - start;
+        totalStallNanos += lastStallNanos;
+    }
+
+    /**
+     * Block until the most recently submitted task (if any) has completed
+     */
+    public synchronized void waitForCompletion() {
+        if (pending == null)
+            return;
+        try {
+            pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error in asynchronous listener task", e.getCause());
+        } finally {
+            pending = null;
+        }
+    }
+
+    /**
+     * @return True if a task is currently running
+     */
+    public synchronized boolean isBusy() {
+        return pending != null && !pending.isDone();
+    }
+
+    /**
+     * @return Total time (in milliseconds) the training thread has been blocked by {@link #submit(Model, Consumer)}
+     */
+    public synchronized double getTotalStallMs() {
+        return totalStallNanos / 1e6;
+    }
+
+    /**
+     * @return Time (in milliseconds) the training thread was blocked by the most recent {@link #submit(Model, Consumer)}
+     */
+    public synchronized double getLastStallMs() {
+        return lastStallNanos / 1e6;
+    }
+
+    /**
+     * @return Number of tasks submitted so far
+     */
+    public synchronized int getNumSubmitted() {
+        return submitted;
+    }
+
+    /**
+     * Wait for any pending task, and shut down the background thread
+     */
+    public synchronized void shutdown() {
+        try {
+            waitForCompletion();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    protected void copyToSnapshot(Model model) {
+        try (MemoryWorkspace ws = Nd4j.getMemoryManager().scopeOutOfWorkspaces()) {
+            if (model instanceof MultiLayerNetwork) {
+                MultiLayerNetwork net = (MultiLayerNetwork) model;
+                if (snapshot == null) {
+                    MultiLayerNetwork s = new MultiLayerNetwork(net.getLayerWiseConfigurations().clone());
+                    s.init();
+                    snapshot = s;
+                }
+                MultiLayerNetwork s = (MultiLayerNetwork) snapshot;
+                s.params().assign(net.params());
+                Updater u = net.getUpdater(false);
+                if (u != null && u.getStateViewArray() != null) {
+                    s.getUpdater(true).getStateViewArray().assign(u.getStateViewArray());
+                }
+                s.setIterationCount(net.getIterationCount());
+                s.setEpochCount(net.getEpochCount());
+            } else if (model instanceof ComputationGraph) {
+                ComputationGraph net = (ComputationGraph) model;
+                if (snapshot == null) {
+                    ComputationGraph s = new ComputationGraph(net.getConfiguration().clone());
+                    s.init();
+                    snapshot = s;
+                }
+                ComputationGraph s = (ComputationGraph) snapshot;
+                s.params().assign(net.params());
+                ComputationGraphUpdater u = net.getUpdater(false);
+                if (u != null && u.getStateViewArray() != null) {
+                    INDArray state = s.getUpdater(true).getStateViewArray();
+                    state.assign(u.getStateViewArray());
+                }
+                s.getConfiguration().setIterationCount(net.getConfiguration().getIterationCount());
+                s.getConfiguration().setEpochCount(net.getConfiguration().getEpochCount());
+            } else {
+                throw new DL4JInvalidInputException("Model is unknown: " + model.getClass().getCanonicalName());
+            }
+            Nd4j.getExecutioner().commit();
+        }
+    }
+}
@@ -64,6 +64,8 @@ public class CheckpointListener extends BaseTrainingListener implements Serializ
     private long startTime = -1;
     private int startIter = -1;
     private Long lastSaveEveryMsNoSinceLast;
+    private boolean asyncSaving;
+    private transient AsyncModelSnapshotter snapshotter;
 
     private CheckpointListener(Builder builder){
         this.rootDir = builder.rootDir;
@@ -79,6 +81,7 @@ public class CheckpointListener extends BaseTrainingListener implements Serializ
         this.saveEveryAmount = builder.saveEveryAmount;
         this.saveEveryUnit = builder.saveEveryUnit;
         this.saveEverySinceLast = builder.saveEverySinceLast;
+        this.asyncSaving = builder.asyncSaving;
 
         if(saveEveryAmount != null){
             saveEveryMs = TimeUnit.MILLISECONDS.convert(saveEveryAmount, saveEveryUnit);
@@ -183,6 +186,26 @@ public class CheckpointListener extends BaseTrainingListener implements Serializ
                 getModelType(model), null);
         setFileName(c);
 
+        //Set on the training thread (before the save completes, if asynchronous) as it is used for save scheduling
+        this.lastCheckpoint = c;
+
+        if(asyncSaving){
+            if(snapshotter == null){
+                snapshotter = new AsyncModelSnapshotter("CheckpointListener");
+            }
+            snapshotter.submit(model, m -> {
+                try {
+                    writeCheckpoint(m, c);
+                } catch (Exception e){
+                    throw new RuntimeException("Error saving checkpoint", e);
+                }
+            });
+        } else {
+            writeCheckpoint(model, c);
+        }
+    }
+
+    private void writeCheckpoint(Model model, Checkpoint c) throws Exception {
         ModelSerializer.writeModel(model, new File(rootDir, c.getFilename()), true);
 
         String s = c.toFileString();
@@ -192,7 +215,6 @@ public class CheckpointListener extends BaseTrainingListener implements Serializ
             log.info("Model checkpoint saved: epoch {}, iteration {}, path: {}", c.getEpoch(), c.getIteration(),
                     new File(rootDir, c.getFilename()).getPath() );
         }
-        this.lastCheckpoint = c;
 
 
         //Finally: determine if we should delete some old models...
@@ -213,7 +235,7 @@ public class CheckpointListener extends BaseTrainingListener implements Serializ
                 if(cp.getCheckpointNum() > 0 && (cp.getCheckpointNum()+1) % keepEvery == 0){
                     //One of the "every M to keep" models
                     continue;
-                } else if(cp.getCheckpointNum() > lastCheckpointNum - keepLast ){        //Example: latest is 5, keep last 2 -> keep checkpoints 4 and 5
+                } else if(cp.getCheckpointNum() > c.getCheckpointNum() - keepLast ){        //Example: latest is 5, keep last 2 -> keep checkpoints 4 and 5
                     //One of last N to keep
                     continue;
                 }
@@ -224,6 +246,24 @@ public class CheckpointListener extends BaseTrainingListener implements Serializ
         }
     }
 
+    /**
+     * Block until any checkpoint currently being saved in the background has been written. Only relevant when
+     * {@link Builder#asyncSaving(boolean)} is enabled; the checkpoint files should not be loaded until this returns.
+     */
+    public void waitForPendingSaves(){
+        if(snapshotter != null){
+            snapshotter.waitForCompletion();
+        }
+    }
+
+    /**
+     * @return Total time (in milliseconds) the training thread has been blocked by checkpoint saving, when asynchronous
+     * saving is enabled. Returns 0 if asynchronous saving is disabled, or no checkpoints have been saved yet
+     */
+    public double getTotalStallMs(){
+        return snapshotter == null ? 0.0 : snapshotter.getTotalStallMs();
+    }
+
     private static void setFileName(Checkpoint c){
         String filename = getFileName(c.getCheckpointNum(), c.getModelType());
         c.setFilename(filename);
@@ -503,6 +543,7 @@ public class CheckpointListener extends BaseTrainingListener implements Serializ
         private Long saveEveryAmount;
         private TimeUnit saveEveryUnit;
         private boolean saveEverySinceLast;
+        private boolean asyncSaving = false;
 
         /**
          * @param rootDir Root directory to save models to
@@ -640,6 +681,19 @@ public class CheckpointListener extends BaseTrainingListener implements Serializ
             return this;
         }
 
+        /**
+         * If true, checkpoints are written on a background thread: when a checkpoint is due, the parameters and updater
+         * state are copied to a second network instance, which is then serialized while training continues. This
+         * requires memory for one extra copy of the model. If the previous save has not completed when the next
+         * checkpoint is due, training blocks until it completes.<br>
+         * Use {@link CheckpointListener#waitForPendingSaves()} before loading the most recent checkpoint.<br>
+         * Default: false (save on the training thread)
+         */
+        public Builder asyncSaving(boolean asyncSaving){
+            this.asyncSaving = asyncSaving;
+            return this;
+        }
+
         public CheckpointListener build(){
             if(saveEveryNEpochs == null && saveEveryAmount == null && saveEveryNIterations == null){
                 throw new IllegalStateException("Cannot construct listener: no models will be saved (must use at least" +
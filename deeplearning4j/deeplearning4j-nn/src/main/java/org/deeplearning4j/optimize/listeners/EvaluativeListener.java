@@ -217,6 +217,13 @@ public class EvaluativeListener extends BaseTrainingListener {
         if (iterationCount.get().getAndIncrement() % frequency != 0)
             return;
 
+        evaluate(model);
+    }
+
+    /**
+     * Perform the evaluation on the given model, log the results and invoke the callback (if any)
+     */
+    protected void evaluate(Model model) {
         for (IEvaluation evaluation : evaluations)
             evaluation.reset();
 
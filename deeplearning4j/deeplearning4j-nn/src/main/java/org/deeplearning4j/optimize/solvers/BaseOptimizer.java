@@ -31,6 +31,7 @@ import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
 import org.deeplearning4j.nn.gradient.Gradient;
 import org.deeplearning4j.nn.graph.ComputationGraph;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.updater.BaseMultiLayerUpdater;
 import org.deeplearning4j.nn.updater.UpdaterCreator;
 import org.deeplearning4j.nn.updater.graph.ComputationGraphUpdater;
 import org.deeplearning4j.nn.workspace.LayerWorkspaceMgr;
@@ -151,6 +152,16 @@ public abstract class BaseOptimizer implements ConvexOptimizer {
         this.computationGraphUpdater = updater;
     }
 
+    /**
+     * @return The MultiLayerNetwork or ComputationGraph updater used by this optimizer, or null if no such updater
+     * has been set or created yet
+     */
+    protected BaseMultiLayerUpdater<?> getMultiLayerUpdater() {
+        if (model instanceof ComputationGraph)
+            return computationGraphUpdater;
+        return updater instanceof BaseMultiLayerUpdater ? (BaseMultiLayerUpdater<?>) updater : null;
+    }
+
     @Override
     public void setListeners(Collection<TrainingListener> listeners) {
         if (listeners == null)
@@ -26,6 +26,7 @@ import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
 import org.deeplearning4j.nn.gradient.Gradient;
 import org.deeplearning4j.nn.graph.ComputationGraph;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.updater.BaseMultiLayerUpdater;
 import org.deeplearning4j.nn.workspace.LayerWorkspaceMgr;
 import org.deeplearning4j.optimize.api.StepFunction;
 import org.deeplearning4j.optimize.api.TrainingListener;
@@ -86,10 +87,21 @@ public class StochasticGradientDescent extends BaseOptimizer {
             //stepFunction.step(params, pendingUpdate);
             accumulator.applyUpdate(stepFunction, params, fullGrad, true);
 
+            // gradient view now holds the shared updates: layers with sparse gradients must zero the full array next time
+            BaseMultiLayerUpdater<?> u = getMultiLayerUpdater();
+            if (u != null && u.hasSparseGradientBlocks())
+                u.clearSparseGradientRows();
+
             // if there's no update available - just go on then
         } else {
             // if accumulator isn't used - we just to for direct updates application
-            stepFunction.step(params, fullGrad);
+            // for parameters with sparse gradients, only the rows updated in this iteration are modified
+            BaseMultiLayerUpdater<?> u = getMultiLayerUpdater();
+            if (u != null) {
+                u.applyStep(stepFunction, params, fullGrad);
+            } else {
+                stepFunction.step(params, fullGrad);
+            }
         }
 
         //Note: model.params() is always in-place for MultiLayerNetwork and ComputationGraph, hence no setParams is necessary there
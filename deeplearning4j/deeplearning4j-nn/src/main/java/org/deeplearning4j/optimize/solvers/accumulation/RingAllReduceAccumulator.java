@@ -0,0 +1,232 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.optimize.solvers.accumulation;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.optimize.api.StepFunction;
+import org.nd4j.common.base.Preconditions;
+import org.nd4j.linalg.api.memory.MemoryWorkspace;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * GradientsAccumulator implementation for exact, synchronous gradients sharing between workers in the same JVM, via
+ * ring all-reduce.<br>
+ * Unlike {@link EncodedGradientsAccumulator}, updates are not threshold encoded: after each iteration, every worker
+ * applies exactly the same update - the mean (or optionally, the sum) of the updates of all workers - hence the model
+ * replicas remain identical, as with synchronous large-minibatch training.<br>
+ * The flattened update vector is split into one chunk per worker. In the reduce-scatter phase, each worker repeatedly
+ * adds one chunk from its predecessor in the ring into its own buffer; after (N-1) steps each worker holds the complete
+ * sum of one chunk. In the all-gather phase, each worker repeatedly copies one completed chunk from its predecessor;
+ * after another (N-1) steps all workers hold the complete sum. Each worker only ever reads from its ring predecessor,
+ * and reads/writes (N-1)/N of the update vector per phase, independent of the number of workers - which keeps
+ * cross-socket memory traffic bounded on multi-socket systems.<br>
+ * The ring is formed per iteration, in order of arrival; workers that receive no data in a given iteration (end of an
+ * epoch) are excluded by {@link #registerConsumers(int)}.
+ */
+@Slf4j
+public class RingAllReduceAccumulator implements GradientsAccumulator, Registerable {
+
+    protected final int parties;
+    @Getter
+    protected final boolean average;
+
+    // number of workers participating in the current iteration
+    protected transient volatile int currentParties;
+    protected transient volatile CyclicBarrier barrier;
+    protected transient INDArray[] buffers;
+    protected transient final AtomicInteger arrivals = new AtomicInteger(0);
+
+    protected transient ThreadLocal<INDArray> buffer = new ThreadLocal<>();
+    protected transient ThreadLocal<Boolean> hasUpdate = new ThreadLocal<>();
+
+    /**
+     * Create an accumulator that averages the updates of all workers
+     *
+     * @param parties Number of workers
+     */
+    public RingAllReduceAccumulator(int parties) {
+        this(parties, true);
+    }
+
+    /**
+     * @param parties Number of workers
+     * @param average If true: apply the mean of all worker updates. If false: apply the sum of all worker updates
+     *                (equivalent to the semantics of {@link EncodedGradientsAccumulator}, without the encoding)
+     */
+    public RingAllReduceAccumulator(int parties, boolean average) {
+        Preconditions.checkArgument(parties > 0, "Number of parties must be positive, got %s", parties);
+        this.parties = parties;
+        this.average = average;
+        this.buffers = new INDArray[parties];
+        setParties(parties);
+    }
+
+    protected void setParties(int numParties) {
+        currentParties = numParties;
+        // the barrier action runs once all workers have arrived, hence it's safe to reset the ring position counter there
+        barrier = new CyclicBarrier(numParties, () -> arrivals.set(0));
+    }
+
+    protected void await() {
+        try {
+            barrier.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (BrokenBarrierException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void registerConsumers(int numConsumers) {
+        Preconditions.checkArgument(numConsumers > 0 && numConsumers <= parties,
+                "Number of consumers must be between 1 and %s, got %s", parties, numConsumers);
+        if (numConsumers != currentParties)
+            setParties(numConsumers);
+    }
+
+    @Override
+    public void fallbackToSingleConsumerMode(boolean reallyFallback) {
+        registerConsumers(reallyFallback ? 1 : parties);
+    }
+
+    /**
+     * This method accepts the update of the current worker, and blocks until the updates of all workers participating
+     * in this iteration have been reduced
+     *
+     * @param array
+     */
+    @Override
+    public void storeUpdate(INDArray array, int iterationNumber, int epochNumber) {
+        INDArray own = buffer.get();
+        if (own == null || own.length() != array.length()) {
+            try (MemoryWorkspace ws = Nd4j.getMemoryManager().scopeOutOfWorkspaces()) {
+                own = Nd4j.createUninitialized(array.dataType(), array.length());
+            }
+            buffer.set(own);
+        }
+        own.assign(array.reshape(array.length()));
+        Nd4j.getExecutioner().commit();
+
+        int n = currentParties;
+        int rank = arrivals.getAndIncrement();
+        buffers[rank] = own;
+        await();
+
+        if (n > 1) {
+            INDArray prev = buffers[(rank - 1 + n) % n];
+            long length = own.length();
+
+            // reduce-scatter: at step s, add chunk (rank - 1 - s) of the predecessor to our own
+            for (int s = 0; s < n - 1; s++) {
+                int c = Math.floorMod(rank - 1 - s, n);
+                long start = length * c / n;
+                long end = length * (c + 1) / n;
+                if (end > start) {
+                    own.get(NDArrayIndex.interval(start, end)).addi(prev.get(NDArrayIndex.interval(start, end)));
+                    Nd4j.getExecutioner().commit();
+                }
+                await();
+            }
+
+            // all-gather: at step s, copy the completed chunk (rank - s) from the predecessor
+            for (int s = 0; s < n - 1; s++) {
+                int c = Math.floorMod(rank - s, n);
+                long start = length * c / n;
+                long end = length * (c + 1) / n;
+                if (end > start) {
+                    own.get(NDArrayIndex.interval(start, end)).assign(prev.get(NDArrayIndex.interval(start, end)));
+                    Nd4j.getExecutioner().commit();
+                }
+                await();
+            }
+
+            if (average)
+                own.divi(n);
+        }
+        hasUpdate.set(true);
+    }
+
+    @Override
+    public void applyUpdate(StepFunction function, INDArray params, INDArray updates, boolean isFinalStep) {
+        if (Boolean.TRUE.equals(hasUpdate.get())) {
+            function.step(params, buffer.get());
+            hasUpdate.set(false);
+        }
+    }
+
+    @Override
+    public void applyUpdate(StepFunction function, INDArray params, INDArray updates, double alpha) {
+        if (Boolean.TRUE.equals(hasUpdate.get())) {
+            function.step(params, buffer.get(), alpha);
+            hasUpdate.set(false);
+        }
+    }
+
+    @Override
+    public void receiveUpdate(INDArray array) {
+        throw new UnsupportedOperationException("RingAllReduceAccumulator does not support external updates");
+    }
+
+    @Override
+    public void setExternalSource(IndexedTail source) {
+        throw new UnsupportedOperationException("RingAllReduceAccumulator does not support external updates");
+    }
+
+    @Override
+    public IndexedTail getExternalSource() {
+        return null;
+    }
+
+    @Override
+    public void markExternalUpdates(boolean updatesAvailable) {
+        // no-op
+    }
+
+    /**
+     * This method resets the ring. Any workers blocked in {@link #storeUpdate(INDArray, int, int)} (for example, due to
+     * another worker failing) will be released with an exception
+     */
+    @Override
+    public void reset() {
+        barrier.reset();
+        setParties(parties);
+        hasUpdate = new ThreadLocal<>();
+    }
+
+    @Override
+    public void touch() {
+        // no-op: ring positions are assigned per iteration
+    }
+
+    @Override
+    public boolean hasAnything() {
+        return false;
+    }
+}
@@ -0,0 +1,321 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.nn.conf.ComputationGraphConfiguration;
+import org.deeplearning4j.nn.conf.InputPreProcessor;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.graph.ElementWiseVertex;
+import org.deeplearning4j.nn.conf.graph.GraphVertex;
+import org.deeplearning4j.nn.conf.graph.LayerVertex;
+import org.deeplearning4j.nn.conf.graph.MergeVertex;
+import org.deeplearning4j.nn.conf.graph.ScaleVertex;
+import org.deeplearning4j.nn.conf.graph.ShiftVertex;
+import org.deeplearning4j.nn.conf.layers.*;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.params.BatchNormalizationParamInitializer;
+import org.deeplearning4j.nn.params.DefaultParamInitializer;
+import org.nd4j.common.base.Preconditions;
+import org.nd4j.linalg.activations.IActivation;
+import org.nd4j.linalg.activations.impl.ActivationIdentity;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.ops.transforms.Transforms;
+
+import java.util.*;
+
+/**
+ * Implementation of {@link NetworkUtils#fuseForInference(MultiLayerNetwork)} and
+ * {@link NetworkUtils#fuseForInference(ComputationGraph)}.<br>
+ * Three rewrites are applied to a copy of the network configuration, after which a new network is initialized and
+ * the (original or fused) parameters are copied across:<br>
+ * 1. Batch normalization folding: a {@link BatchNormalization} layer directly after a dense or 2d convolution layer
+ * (with identity activation) is folded into the weights and bias of that layer, using the global mean/variance<br>
+ * 2. Activation fusion: an {@link ActivationLayer} directly after a dense or convolution layer (with identity
+ * activation) is removed, with its activation function moved onto the producing layer<br>
+ * 3. No-op removal: layers and vertices that are the identity at inference time - dropout layers, identity activation
+ * layers, single input merge/element-wise vertices, scale by 1 and shift by 0 vertices - are removed<br>
+ * A layer or vertex is only removed if it has no input preprocessor and is not a network output; layers are only
+ * fused into a producer that has no other consumers.
+ */
+@Slf4j
+class InferenceFusion {
+
+    private InferenceFusion() {
+    }
+
+    static MultiLayerNetwork fuse(MultiLayerNetwork net) {
+        if (!net.isInitCalled())
+            net.init();
+
+        MultiLayerConfiguration conf = net.getLayerWiseConfigurations().clone();
+        List<NeuralNetConfiguration> confs = conf.getConfs();
+
+        List<NeuralNetConfiguration> outConfs = new ArrayList<>();
+        Map<Integer, InputPreProcessor> outPreProcs = new HashMap<>();
+        List<Map<String, INDArray>> outParams = new ArrayList<>();
+        int folded = 0;
+        int removed = 0;
+        for (int i = 0; i < confs.size(); i++) {
+            Layer l = confs.get(i).getLayer();
+            InputPreProcessor pp = conf.getInputPreProcess(i);
+            int last = outConfs.size() - 1;
+            Layer prev = last >= 0 ? outConfs.get(last).getLayer() : null;
+            if (pp == null && i < confs.size() - 1) {
+                if (isNoOp(l)) {
+                    removed++;
+                    continue;
+                }
+                if (canFoldBatchNorm(prev, l)) {
+                    outParams.set(last, foldBatchNorm(prev, outParams.get(last), (BatchNormalization) l, net.getLayer(i).paramTable()));
+                    folded++;
+                    continue;
+                }
+                if (canFuseActivation(prev, l)) {
+                    ((BaseLayer) prev).setActivationFn(((ActivationLayer) l).getActivationFn());
+                    folded++;
+                    continue;
+                }
+            }
+            if (pp != null)
+                outPreProcs.put(outConfs.size(), pp);
+            outConfs.add(confs.get(i));
+            outParams.add(net.getLayer(i).paramTable());
+        }
+
+        conf.setConfs(outConfs);
+        conf.setInputPreProcessors(outPreProcs);
+        MultiLayerNetwork out = new MultiLayerNetwork(conf);
+        out.init();
+        for (int i = 0; i < outParams.size(); i++) {
+            copyParams(outParams.get(i), out.getLayer(i).paramTable());
+        }
+        log.info("Fused network for inference: {} layers fused, {} no-op layers removed, {} -> {} layers", folded, removed,
+                confs.size(), outConfs.size());
+        return out;
+    }
+
+    static ComputationGraph fuse(ComputationGraph graph) {
+        graph.init();   //No-op if already initialized
+
+        ComputationGraphConfiguration conf = graph.getConfiguration().clone();
+        Map<String, GraphVertex> vertices = conf.getVertices();
+        Map<String, List<String>> vertexInputs = conf.getVertexInputs();
+        Set<String> outputs = new HashSet<>(conf.getNetworkOutputs());
+        Map<String, Map<String, INDArray>> fusedParams = new HashMap<>();
+
+        int nBefore = vertices.size();
+        int folded = 0;
+        int removed = 0;
+        for (int idx : graph.topologicalSortOrder()) {
+            String name = graph.getVertices()[idx].getVertexName();
+            GraphVertex v = vertices.get(name);
+            List<String> in = vertexInputs.get(name);
+            if (v == null || in == null || in.size() != 1 || outputs.contains(name))
+                continue;   //Network input, multiple inputs, or network output
+            if (v instanceof LayerVertex && ((LayerVertex) v).getPreProcessor() != null)
+                continue;
+
+            String inName = in.get(0);
+            if (isNoOp(v)) {
+                removeVertex(conf, name, inName);
+                removed++;
+                continue;
+            }
+
+            GraphVertex prevV = vertices.get(inName);
+            if (!(v instanceof LayerVertex) || !(prevV instanceof LayerVertex) || outputs.contains(inName)
+                    || numConsumers(vertexInputs, inName) != 1)
+                continue;
+            Layer l = ((LayerVertex) v).getLayerConf().getLayer();
+            Layer prev = ((LayerVertex) prevV).getLayerConf().getLayer();
+            if (canFoldBatchNorm(prev, l)) {
+                Map<String, INDArray> prevParams = fusedParams.containsKey(inName) ? fusedParams.get(inName) : graph.getLayer(inName).paramTable();
+                fusedParams.put(inName, foldBatchNorm(prev, prevParams, (BatchNormalization) l, graph.getLayer(name).paramTable()));
+                removeVertex(conf, name, inName);
+                folded++;
+            } else if (canFuseActivation(prev, l)) {
+                ((BaseLayer) prev).setActivationFn(((ActivationLayer) l).getActivationFn());
+                removeVertex(conf, name, inName);
+                folded++;
+            }
+        }
+
+        ComputationGraph out = new ComputationGraph(conf);
+        out.init();
+        for (org.deeplearning4j.nn.api.Layer l : out.getLayers()) {
+            String name = l.conf().getLayer().getLayerName();
+            Map<String, INDArray> params = fusedParams.containsKey(name) ? fusedParams.get(name) : graph.getLayer(name).paramTable();
+            copyParams(params, l.paramTable());
+        }
+        log.info("Fused network for inference: {} layers fused, {} no-op vertices removed, {} -> {} vertices", folded, removed,
+                nBefore, vertices.size());
+        return out;
+    }
+
+    /**
+     * Remove the specified (single input) vertex, connecting all of its consumers directly to its input instead.
+     * Input positions of the consumers are preserved.
+     */
+    private static void removeVertex(ComputationGraphConfiguration conf, String name, String inputName) {
+        conf.getVertices().remove(name);
+        conf.getVertexInputs().remove(name);
+        for (List<String> l : conf.getVertexInputs().values()) {
+            ListIterator<String> iter = l.listIterator();
+            while (iter.hasNext()) {
+                if (name.equals(iter.next()))
+                    iter.set(inputName);
+            }
+        }
+    }
+
+    private static int numConsumers(Map<String, List<String>> vertexInputs, String name) {
+        int count = 0;
+        for (List<String> l : vertexInputs.values()) {
+            for (String s : l) {
+                if (name.equals(s))
+                    count++;
+            }
+        }
+        return count;
+    }
+
+    private static boolean isNoOp(GraphVertex v) {
+        if (v instanceof LayerVertex)
+            return isNoOp(((LayerVertex) v).getLayerConf().getLayer());
+        if (v instanceof MergeVertex)
+            return true;
+        if (v instanceof ElementWiseVertex)
+            return ((ElementWiseVertex) v).getOp() != ElementWiseVertex.Op.Subtract;
+        if (v instanceof ScaleVertex)
+            return ((ScaleVertex) v).getScaleFactor() == 1.0;
+        if (v instanceof ShiftVertex)
+            return ((ShiftVertex) v).getShiftFactor() == 0.0;
+        return false;
+    }
+
+    private static boolean isNoOp(Layer l) {
+        return l instanceof DropoutLayer || (l instanceof ActivationLayer && isIdentity(((ActivationLayer) l).getActivationFn()));
+    }
+
+    private static boolean isIdentity(IActivation a) {
+        return a instanceof ActivationIdentity;
+    }
+
+    private static boolean canFoldBatchNorm(Layer prev, Layer l) {
+        if (!(l instanceof BatchNormalization) || !(prev instanceof BaseLayer) || !isIdentity(((BaseLayer) prev).getActivationFn()))
+            return false;
+        if (prev.getClass() == DenseLayer.class)
+            return !((DenseLayer) prev).hasLayerNorm();     //Layer norm is applied before the bias - can't fold
+        if (prev.getClass() == ConvolutionLayer.class || prev.getClass() == Convolution2D.class)
+            return ((ConvolutionLayer) prev).getCnn2dDataFormat() == ((BatchNormalization) l).getCnn2DFormat();
+        return false;
+    }
+
+    private static boolean canFuseActivation(Layer prev, Layer l) {
+        if (!(l instanceof ActivationLayer) || !(prev instanceof BaseLayer) || !isIdentity(((BaseLayer) prev).getActivationFn()))
+            return false;
+        //Note: not BatchNormalization - the batch norm layer implementation does not apply its activation function
+        Class<?> c = prev.getClass();
+        return c == DenseLayer.class || c == ConvolutionLayer.class || c == Convolution2D.class
+                || c == DepthwiseConvolution2D.class || c == SeparableConvolution2D.class;
+    }
+
+    /**
+     * Fold the batch normalization layer (inference mode: global mean and variance) into the weights and bias of the
+     * preceding layer. With scale = gamma / sqrt(var + eps), the fused parameters are W' = W * scale (per output
+     * channel) and b' = (b - mean) * scale + beta.
+     * Sets hasBias on the producer configuration, as the fused layer always requires a bias.
+     *
+     * @return Fused parameters for the preceding layer
+     */
+    private static Map<String, INDArray> foldBatchNorm(Layer prev, Map<String, INDArray> prevParams, BatchNormalization bn,
+                                                       Map<String, INDArray> bnParams) {
+        INDArray w = prevParams.get(DefaultParamInitializer.WEIGHT_KEY);
+        INDArray b = prevParams.get(DefaultParamInitializer.BIAS_KEY);
+        DataType dt = w.dataType();
+        INDArray mean = bnParams.get(BatchNormalizationParamInitializer.GLOBAL_MEAN).castTo(DataType.DOUBLE);
+        long n = mean.length();
+        mean = mean.reshape(n);
+
+        INDArray var;
+        if (bn.isUseLogStd()) {
+            //var = (10^(log10(s)))^2
+            INDArray log10s = bnParams.get(BatchNormalizationParamInitializer.GLOBAL_LOG_STD).castTo(DataType.DOUBLE).reshape(n);
+            var = Transforms.pow(Nd4j.valueArrayOf(log10s.shape(), 10.0, DataType.DOUBLE), log10s);
+            var.muli(var);
+        } else {
+            var = bnParams.get(BatchNormalizationParamInitializer.GLOBAL_VAR).castTo(DataType.DOUBLE).reshape(n);
+        }
+        INDArray std = Transforms.sqrt(var.add(bn.getEps()), false);
+
+        INDArray gamma;
+        INDArray beta;
+        if (bn.isLockGammaBeta()) {
+            //Mirrors BatchNormalization.preOutput, which only applies the fixed gamma/beta when both differ from 1 and 0
+            boolean apply = bn.getGamma() != 1.0 && bn.getBeta() != 0.0;
+            gamma = Nd4j.valueArrayOf(new long[]{n}, apply ? bn.getGamma() : 1.0, DataType.DOUBLE);
+            beta = Nd4j.valueArrayOf(new long[]{n}, apply ? bn.getBeta() : 0.0, DataType.DOUBLE);
+        } else {
+            gamma = bnParams.get(BatchNormalizationParamInitializer.GAMMA).castTo(DataType.DOUBLE).reshape(n);
+            beta = bnParams.get(BatchNormalizationParamInitializer.BETA).castTo(DataType.DOUBLE).reshape(n);
+        }
+        INDArray scale = gamma.div(std);
+
+        INDArray wOut = w.castTo(DataType.DOUBLE).dup('c');
+        if (prev instanceof ConvolutionLayer) {
+            //Weights: [nOut, nIn, kH, kW]
+            Preconditions.checkState(wOut.size(0) == n, "Convolution layer nOut (%s) does not match batch norm size (%s)", wOut.size(0), n);
+            wOut.reshape('c', n, wOut.length() / n).muliColumnVector(scale.reshape(n, 1));
+            ((ConvolutionLayer) prev).setHasBias(true);
+        } else {
+            //Weights: [nIn, nOut]
+            Preconditions.checkState(wOut.size(1) == n, "Dense layer nOut (%s) does not match batch norm size (%s)", wOut.size(1), n);
+            wOut.muliRowVector(scale.reshape(1, n));
+            ((DenseLayer) prev).setHasBias(true);
+        }
+        INDArray bOut = b == null ? Nd4j.zeros(DataType.DOUBLE, n) : b.castTo(DataType.DOUBLE).reshape(n);
+        bOut = bOut.sub(mean).muli(scale).addi(beta);
+
+        Map<String, INDArray> out = new LinkedHashMap<>(prevParams);
+        out.put(DefaultParamInitializer.WEIGHT_KEY, wOut.castTo(dt));
+        out.put(DefaultParamInitializer.BIAS_KEY, bOut.castTo(dt));
+        return out;
+    }
+
+    private static void copyParams(Map<String, INDArray> from, Map<String, INDArray> to) {
+        for (Map.Entry<String, INDArray> e : to.entrySet()) {
+            INDArray src = from.get(e.getKey());
+            INDArray target = e.getValue();
+            Preconditions.checkState(src != null, "No value for parameter \"%s\"", e.getKey());
+            Preconditions.checkState(src.length() == target.length(), "Unable to copy parameter \"%s\": " +
+                    "source %ndShape, target %ndShape", e.getKey(), src, target);
+            if (Arrays.equals(src.shape(), target.shape()))
+                target.assign(src);
+            else
+                target.assign(src.reshape(target.shape()));
+        }
+    }
+}
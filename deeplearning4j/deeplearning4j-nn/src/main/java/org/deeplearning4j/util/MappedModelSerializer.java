@@ -0,0 +1,398 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.util;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.bytedeco.javacpp.BytePointer;
+import org.deeplearning4j.nn.api.Model;
+import org.deeplearning4j.nn.conf.ComputationGraphConfiguration;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.updater.MultiLayerUpdater;
+import org.deeplearning4j.nn.updater.graph.ComputationGraphUpdater;
+import org.nd4j.common.base.Preconditions;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.concurrency.AffinityManager;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.*;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Saving and loading of MultiLayerNetwork and ComputationGraph models in an uncompressed, aligned container format,
+ * designed for fast model loading.<br>
+ * Unlike the zip format used by {@link ModelSerializer}, the parameters and updater state are stored as raw blocks
+ * (in native byte order, 64-byte aligned) that are memory mapped on loading, and used directly as the network's
+ * flattened parameter and updater state arrays - no copy is made, and pages are only read from disk when first used.
+ * Arrays are mapped copy-on-write: modifying the parameters of a loaded network (for example, by fitting it) does not
+ * modify the file.<br>
+ * Memory mapping is used on the CPU backend for blocks up to 2GB in size; otherwise the blocks are read directly into
+ * a newly allocated array.<br>
+ * Files in this format may also be loaded using {@link ModelSerializer#restoreMultiLayerNetwork(File, boolean)} and
+ * {@link ModelSerializer#restoreComputationGraph(File, boolean)}.
+ * <p>
+ * File layout: an 8 byte magic string, a format version, the byte order and model type, followed by a table of entries
+ * (name, datatype, shape, offset and length in bytes) and the entries themselves: the configuration (UTF-8 JSON), the
+ * parameters and optionally the updater state.
+ */
+@Slf4j
+public class MappedModelSerializer {
+
+    public static final String CONFIGURATION_JSON = "configuration.json";
+    public static final String COEFFICIENTS = "coefficients";
+    public static final String UPDATER_STATE = "updaterState";
+
+    private static final byte[] MAGIC = "DL4JMMAP".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 1;
+    private static final int ALIGNMENT = 64;
+    private static final long MAX_COPY_CHUNK = 64 * 1024 * 1024;
+    private static final String TYPE_MLN = "MultiLayerNetwork";
+    private static final String TYPE_CG = "ComputationGraph";
+
+    //Keeps each mapping alive for as long as the data buffer using it is reachable. Views of the buffer (i.e., the
+    //per layer parameter views) retain a reference to the original buffer. Note that this can't be a WeakHashMap:
+    //DataBuffer equals/hashCode are based on the buffer contents, not identity
+    private static final Set<MappingReference> MAPPINGS = ConcurrentHashMap.newKeySet();
+    private static final ReferenceQueue<DataBuffer> MAPPINGS_QUEUE = new ReferenceQueue<>();
+
+    private MappedModelSerializer() {}
+
+    /**
+     * Write a model to a file, in the memory mappable format
+     *
+     * @param model       the model to write
+     * @param file        the file to write to
+     * @param saveUpdater whether to save the updater state or not
+     * @throws IOException
+     */
+    public static void writeModel(@NonNull Model model, @NonNull File file, boolean saveUpdater) throws IOException {
+        String modelType;
+        String json;
+        INDArray updaterState = null;
+        if (model instanceof MultiLayerNetwork) {
+            MultiLayerNetwork net = (MultiLayerNetwork) model;
+            modelType = TYPE_MLN;
+            json = net.getLayerWiseConfigurations().toJson();
+            if (saveUpdater && net.getUpdater(false) != null)
+                updaterState = net.getUpdater(false).getStateViewArray();
+        } else if (model instanceof ComputationGraph) {
+            ComputationGraph net = (ComputationGraph) model;
+            modelType = TYPE_CG;
+            json = net.getConfiguration().toJson();
+            if (saveUpdater && net.getUpdater(false) != null)
+                updaterState = net.getUpdater(false).getStateViewArray();
+        } else {
+            throw new IllegalArgumentException("Only MultiLayerNetwork and ComputationGraph models are supported: got "
+                    + model.getClass().getName());
+        }
+
+        List<Entry> entries = new ArrayList<>();
+        byte[] jsonBytes = json.getBytes(StandardCharsets.UTF_8);
+        entries.add(new Entry(CONFIGURATION_JSON, null, new long[]{jsonBytes.length}, jsonBytes.length));
+
+        INDArray params = contiguous(model.params());
+        if (params != null)
+            entries.add(new Entry(COEFFICIENTS, params.dataType(), params.shape(), params.length() * params.dataType().width()));
+        updaterState = contiguous(updaterState);
+        if (updaterState != null)
+            entries.add(new Entry(UPDATER_STATE, updaterState.dataType(), updaterState.shape(),
+                    updaterState.length() * updaterState.dataType().width()));
+
+        //Header size does not depend on the entry offsets, hence the offsets can be determined after writing it once
+        long offset = align(writeHeader(modelType, entries).length);
+        for (Entry e : entries) {
+            e.offset = offset;
+            offset = align(offset + e.lengthBytes);
+        }
+        byte[] header = writeHeader(modelType, entries);
+
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(ch, ByteBuffer.wrap(header), 0);
+            for (Entry e : entries) {
+                if (CONFIGURATION_JSON.equals(e.name)) {
+                    writeFully(ch, ByteBuffer.wrap(jsonBytes), e.offset);
+                } else {
+                    writeArray(ch, COEFFICIENTS.equals(e.name) ? params : updaterState, e.offset);
+                }
+            }
+            //Pad to the aligned length, so that the final entry can be mapped in full
+            if (ch.size() < offset)
+                writeFully(ch, ByteBuffer.wrap(new byte[]{0}), offset - 1);
+        }
+    }
+
+    /**
+     * Load a MultiLayerNetwork from a file in the memory mappable format.
+     *
+     * @param file        the file to load from
+     * @param loadUpdater whether to load the updater state (if present)
+     * @return the loaded network; its parameters are backed by the file (copy-on-write) where possible
+     * @throws IOException
+     */
+    public static MultiLayerNetwork restoreMultiLayerNetwork(@NonNull File file, boolean loadUpdater) throws IOException {
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            Header h = readHeader(ch, file);
+            if (!TYPE_MLN.equals(h.modelType)) {
+                throw new IllegalStateException("File " + file.getPath() + " contains a " + h.modelType + " model - use " +
+                        "restoreComputationGraph instead");
+            }
+
+            MultiLayerConfiguration conf = MultiLayerConfiguration.fromJson(readConfig(ch, h));
+            INDArray params = readArray(ch, h, h.entries.get(COEFFICIENTS));
+            if (params != null)
+                conf.setDataType(params.dataType());
+            MultiLayerNetwork net = new MultiLayerNetwork(conf);
+            net.init(params, false);
+
+            INDArray updaterState = loadUpdater ? readArray(ch, h, h.entries.get(UPDATER_STATE)) : null;
+            if (updaterState != null) {
+                net.setUpdater(new MultiLayerUpdater(net, updaterState));
+            }
+            return net;
+        }
+    }
+
+    /**
+     * Load a ComputationGraph from a file in the memory mappable format.
+     *
+     * @param file        the file to load from
+     * @param loadUpdater whether to load the updater state (if present)
+     * @return the loaded network; its parameters are backed by the file (copy-on-write) where possible
+     * @throws IOException
+     */
+    public static ComputationGraph restoreComputationGraph(@NonNull File file, boolean loadUpdater) throws IOException {
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            Header h = readHeader(ch, file);
+            if (!TYPE_CG.equals(h.modelType)) {
+                throw new IllegalStateException("File " + file.getPath() + " contains a " + h.modelType + " model - use " +
+                        "restoreMultiLayerNetwork instead");
+            }
+
+            ComputationGraphConfiguration conf = ComputationGraphConfiguration.fromJson(readConfig(ch, h));
+            INDArray params = readArray(ch, h, h.entries.get(COEFFICIENTS));
+            if (params != null)
+                conf.setDataType(params.dataType());
+            ComputationGraph net = new ComputationGraph(conf);
+            net.init(params, false);
+
+            INDArray updaterState = loadUpdater ? readArray(ch, h, h.entries.get(UPDATER_STATE)) : null;
+            if (updaterState != null) {
+                net.setUpdater(new ComputationGraphUpdater(net, updaterState));
+            }
+            return net;
+        }
+    }
+
+    /**
+     * @param file File to check
+     * @return True if the file exists and is in the memory mappable format (as opposed to the zip format, for example)
+     */
+    public static boolean isMappedModelFile(@NonNull File file) {
+        if (!file.isFile() || file.length() < MAGIC.length)
+            return false;
+        try (DataInputStream dis = new DataInputStream(new FileInputStream(file))) {
+            byte[] b = new byte[MAGIC.length];
+            dis.readFully(b);
+            return Arrays.equals(MAGIC, b);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static INDArray contiguous(INDArray arr) {
+        if (arr == null || arr.isEmpty() || arr.length() == 0)
+            return null;
+        if (arr.isView() || arr.ordering() != 'c')
+            return arr.dup('c');
+        return arr;
+    }
+
+    private static long align(long offset) {
+        return (offset + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    private static byte[] writeHeader(String modelType, List<Entry> entries) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (DataOutputStream dos = new DataOutputStream(baos)) {
+            dos.write(MAGIC);
+            dos.writeInt(VERSION);
+            dos.writeBoolean(ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN);
+            dos.writeUTF(modelType);
+            dos.writeInt(entries.size());
+            for (Entry e : entries) {
+                dos.writeUTF(e.name);
+                dos.writeUTF(e.dataType == null ? "" : e.dataType.name());
+                dos.writeInt(e.shape.length);
+                for (long l : e.shape)
+                    dos.writeLong(l);
+                dos.writeLong(e.offset);
+                dos.writeLong(e.lengthBytes);
+            }
+        }
+        return baos.toByteArray();
+    }
+
+    private static Header readHeader(FileChannel ch, File file) throws IOException {
+        DataInputStream dis = new DataInputStream(new BufferedInputStream(Channels.newInputStream(ch.position(0))));
+        byte[] magic = new byte[MAGIC.length];
+        dis.readFully(magic);
+        if (!Arrays.equals(MAGIC, magic)) {
+            throw new IllegalStateException("File " + file.getPath() + " is not a memory mappable model file. Use " +
+                    "ModelSerializer to load models saved in the zip format");
+        }
+        int version = dis.readInt();
+        if (version > VERSION) {
+            throw new IllegalStateException("File " + file.getPath() + " has format version " + version + ", only " +
+                    "versions up to " + VERSION + " are supported");
+        }
+
+        Header h = new Header();
+        h.littleEndian = dis.readBoolean();
+        h.modelType = dis.readUTF();
+        int n = dis.readInt();
+        for (int i = 0; i < n; i++) {
+            String name = dis.readUTF();
+            String dt = dis.readUTF();
+            long[] shape = new long[dis.readInt()];
+            for (int j = 0; j < shape.length; j++)
+                shape[j] = dis.readLong();
+            long offset = dis.readLong();
+            Entry e = new Entry(name, dt.isEmpty() ? null : DataType.valueOf(dt), shape, dis.readLong());
+            e.offset = offset;
+            h.entries.put(name, e);
+        }
+        Preconditions.checkState(h.entries.containsKey(CONFIGURATION_JSON), "No configuration found in file %s", file.getPath());
+        return h;
+    }
+
+    private static String readConfig(FileChannel ch, Header h) throws IOException {
+        Entry e = h.entries.get(CONFIGURATION_JSON);
+        ByteBuffer bb = ByteBuffer.allocate((int) e.lengthBytes);
+        while (bb.hasRemaining()) {
+            if (ch.read(bb, e.offset + bb.position()) < 0)
+                throw new EOFException("Unexpected end of file reading model configuration");
+        }
+        return new String(bb.array(), StandardCharsets.UTF_8);
+    }
+
+    private static INDArray readArray(FileChannel ch, Header h, Entry e) throws IOException {
+        if (e == null)
+            return null;
+        DataType dt = e.dataType;
+        long length = e.lengthBytes / dt.width();
+        boolean nativeOrder = h.littleEndian == (ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN);
+        Preconditions.checkState(nativeOrder, "Model file byte order does not match the byte order of this platform");
+
+        if (Nd4j.getEnvironment().isCPU() && e.lengthBytes <= Integer.MAX_VALUE) {
+            MappedByteBuffer mbb = ch.map(FileChannel.MapMode.PRIVATE, e.offset, e.lengthBytes);
+            DataBuffer buffer = Nd4j.createBuffer(new BytePointer(mbb), length, dt);
+            retainMapping(buffer, mbb);
+            return Nd4j.create(buffer, e.shape, Nd4j.getStrides(e.shape, 'c'), 0, 'c', dt);
+        }
+
+        //Can't map: read directly into the array's memory, without intermediate copies
+        INDArray arr = Nd4j.createUninitializedDetached(dt, 'c', e.shape);
+        BytePointer bp = new BytePointer(arr.data().addressPointer());
+        bp.capacity(e.lengthBytes);
+        for (long pos = 0; pos < e.lengthBytes; pos += MAX_COPY_CHUNK) {
+            long end = Math.min(e.lengthBytes, pos + MAX_COPY_CHUNK);
+            ByteBuffer bb = bp.position(pos).limit(end).asByteBuffer();
+            while (bb.hasRemaining()) {
+                if (ch.read(bb, e.offset + pos + bb.position()) < 0)
+                    throw new EOFException("Unexpected end of file reading " + e.name);
+            }
+        }
+        Nd4j.getAffinityManager().tagLocation(arr, AffinityManager.Location.HOST);
+        return arr;
+    }
+
+    private static void retainMapping(DataBuffer buffer, MappedByteBuffer mapping) {
+        Reference<? extends DataBuffer> r;
+        while ((r = MAPPINGS_QUEUE.poll()) != null) {
+            MAPPINGS.remove(r);
+        }
+        MAPPINGS.add(new MappingReference(buffer, mapping, MAPPINGS_QUEUE));
+    }
+
+    private static void writeArray(FileChannel ch, INDArray arr, long offset) throws IOException {
+        Nd4j.getAffinityManager().ensureLocation(arr, AffinityManager.Location.HOST);
+        long bytes = arr.length() * arr.dataType().width();
+        BytePointer bp = new BytePointer(arr.data().addressPointer());
+        bp.capacity(bytes);
+        for (long pos = 0; pos < bytes; pos += MAX_COPY_CHUNK) {
+            long end = Math.min(bytes, pos + MAX_COPY_CHUNK);
+            writeFully(ch, bp.position(pos).limit(end).asByteBuffer(), offset + pos);
+        }
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer bb, long offset) throws IOException {
+        long pos = offset;
+        while (bb.hasRemaining()) {
+            pos += ch.write(bb, pos);
+        }
+    }
+
+    private static class MappingReference extends WeakReference<DataBuffer> {
+        private final MappedByteBuffer mapping;
+
+        private MappingReference(DataBuffer buffer, MappedByteBuffer mapping, ReferenceQueue<DataBuffer> queue) {
+            super(buffer, queue);
+            this.mapping = mapping;
+        }
+    }
+
+    private static class Header {
+        private boolean littleEndian;
+        private String modelType;
+        private final Map<String, Entry> entries = new LinkedHashMap<>();
+    }
+
+    private static class Entry {
+        private final String name;
+        private final DataType dataType;
+        private final long[] shape;
+        private long offset;
+        private long lengthBytes;
+
+        private Entry(String name, DataType dataType, long[] shape, long lengthBytes) {
+            this.name = name;
+            this.dataType = dataType;
+            this.shape = shape;
+            this.lengthBytes = lengthBytes;
+        }
+    }
+}
@@ -209,7 +209,8 @@ public class ModelSerializer {
 
 
     /**
-     * Load a multi layer network from a file
+     * Load a multi layer network from a file<br>
+     * Files saved using {@link MappedModelSerializer} are also supported, and are memory mapped rather than read.
      *
      * @param file the file to load from
      * @return the loaded multi layer network
@@ -217,6 +218,9 @@ public class ModelSerializer {
      */
     public static MultiLayerNetwork restoreMultiLayerNetwork(@NonNull File file, boolean loadUpdater)
             throws IOException {
+        if(MappedModelSerializer.isMappedModelFile(file)){
+            return MappedModelSerializer.restoreMultiLayerNetwork(file, loadUpdater);
+        }
         try(InputStream is = new BufferedInputStream(new FileInputStream(file))){
             return restoreMultiLayerNetwork(is, loadUpdater);
         }
@@ -637,13 +641,17 @@ public class ModelSerializer {
     }
 
     /**
-     * Load a computation graph from a file
+     * Load a computation graph from a file<br>
+     * Files saved using {@link MappedModelSerializer} are also supported, and are memory mapped rather than read.
      * @param file the file to get the computation graph from
      * @return the loaded computation graph
      *
      * @throws IOException
      */
     public static ComputationGraph restoreComputationGraph(@NonNull File file, boolean loadUpdater) throws IOException {
+        if(MappedModelSerializer.isMappedModelFile(file)){
+            return MappedModelSerializer.restoreComputationGraph(file, loadUpdater);
+        }
     	return restoreComputationGraph(new FileInputStream(file), loadUpdater);
     }
 
@@ -99,6 +99,39 @@ public class NetworkUtils {
         return cg;
     }
 
+    /**
+     * Create a copy of the network optimized for inference, with the same outputs (up to floating point precision)
+     * as the original network. The following transformations are applied:<br>
+     * - Batch normalization layers directly after a dense or 2d convolution layer are folded into that layer's weights
+     * and bias (using the global mean/variance statistics)<br>
+     * - Activation layers directly after a dense or convolution layer are removed, with the activation function
+     * applied by the producing layer instead<br>
+     * - Layers that are no-ops at inference time (dropout layers, identity activation layers) are removed<br>
+     * <br>
+     * <b>Note</b>: The returned network is intended for inference only: fused layers do not train the same way as the
+     * original layers, and updater state is not copied. The original network is not modified.
+     *
+     * @param net Network to fuse
+     * @return New network with fused layers
+     */
+    public static MultiLayerNetwork fuseForInference(MultiLayerNetwork net) {
+        return InferenceFusion.fuse(net);
+    }
+
+    /**
+     * Create a copy of the network optimized for inference, with the same outputs (up to floating point precision)
+     * as the original network. In addition to the transformations described in {@link #fuseForInference(MultiLayerNetwork)},
+     * graph vertices that are no-ops (single input merge and element-wise vertices, scale by 1 and shift by 0
+     * vertices) are removed.<br>
+     * Network output layers/vertices are never removed. The original network is not modified.
+     *
+     * @param graph Network to fuse
+     * @return New network with fused layers
+     */
+    public static ComputationGraph fuseForInference(ComputationGraph graph) {
+        return InferenceFusion.fuse(graph);
+    }
+
     /**
      * Set the learning rate for all layers in the network to the specified value. Note that if any learning rate
      * schedules are currently present, these will be removed in favor of the new (fixed) learning rate.<br>
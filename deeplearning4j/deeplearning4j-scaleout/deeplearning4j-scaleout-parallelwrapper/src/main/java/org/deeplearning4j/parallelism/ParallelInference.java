@@ -29,23 +29,33 @@ import org.deeplearning4j.nn.conf.ComputationGraphConfiguration;
 import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
 import org.deeplearning4j.nn.graph.ComputationGraph;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.parallelism.inference.AdaptiveBatcher;
+import org.deeplearning4j.parallelism.inference.BatchSizeHistogram;
 import org.deeplearning4j.parallelism.inference.InferenceMode;
 import org.deeplearning4j.parallelism.inference.InferenceObservable;
+import org.deeplearning4j.parallelism.inference.LatencyHistogram;
 import org.deeplearning4j.parallelism.inference.LoadBalanceMode;
 import org.deeplearning4j.parallelism.inference.observers.BasicInferenceObservable;
 import org.deeplearning4j.parallelism.inference.observers.BasicInferenceObserver;
 import org.deeplearning4j.parallelism.inference.observers.BatchedInferenceObservable;
+import org.deeplearning4j.parallelism.inference.observers.TimedInferenceObservable;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.DataSetUtil;
 import org.nd4j.linalg.exception.ND4JIllegalStateException;
 import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.INDArrayIndex;
+import org.nd4j.linalg.indexing.NDArrayIndex;
 import org.nd4j.common.primitives.Pair;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Observer;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -59,6 +69,10 @@ public class ParallelInference {
     protected InferenceMode inferenceMode;
     protected int queueLimit;
     protected LoadBalanceMode loadBalanceMode = LoadBalanceMode.FIFO;
+    protected long maxBatchLatencyNanos = DEFAULT_MAX_BATCH_LATENCY_NANOS;
+    protected long queueDeadlineNanos;
+    protected long[] preferredBatchSizes;
+    protected final AtomicLong rejected = new AtomicLong();
 
     // this queue holds data for inference
     private BlockingQueue<InferenceObservable> observables;
@@ -74,6 +88,7 @@ public class ParallelInference {
     public final static int DEFAULT_BATCH_LIMIT = 32;
     public final static InferenceMode DEFAULT_INFERENCE_MODE = InferenceMode.BATCHED;
     public final static int DEFAULT_QUEUE_LIMIT = 64;
+    public final static long DEFAULT_MAX_BATCH_LATENCY_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
 
 
 
@@ -129,6 +144,8 @@ public class ParallelInference {
             assignedRoot.compareAndSet(false, cRoot);
 
             zoo[i] = new InferenceWorker(i, model, observables, cRoot, cDevice);
+            if (inferenceMode == InferenceMode.ADAPTIVE_BATCHED)
+                zoo[i].batcher = new AdaptiveBatcher(maxBatchLatencyNanos, queueDeadlineNanos, batchLimit, preferredBatchSizes);
 
             zoo[i].setDaemon(true);
             zoo[i].start();
@@ -145,6 +162,52 @@ public class ParallelInference {
         return zoo[workerIdx].getCounterValue();
     }
 
+    /**
+     * @return Number of workers
+     */
+    public int getNumWorkers() {
+        return workers;
+    }
+
+    /**
+     * Get the request latency histogram (time from submitting a request, until its batch has been executed) for the
+     * specified worker. Only available in {@link InferenceMode#ADAPTIVE_BATCHED} mode.
+     *
+     * @param workerIdx Index of the worker, 0 to {@link #getNumWorkers()}-1
+     * @return Latency histogram, or null if not in ADAPTIVE_BATCHED mode
+     */
+    public LatencyHistogram getLatencyHistogram(int workerIdx) {
+        AdaptiveBatcher b = zoo[workerIdx].batcher;
+        return b == null ? null : b.getLatencyHistogram();
+    }
+
+    /**
+     * Get the histogram of executed batch sizes (after any padding to a preferred batch size) for the specified worker.
+     * Only available in {@link InferenceMode#ADAPTIVE_BATCHED} mode.
+     *
+     * @param workerIdx Index of the worker, 0 to {@link #getNumWorkers()}-1
+     * @return Batch size histogram, or null if not in ADAPTIVE_BATCHED mode
+     */
+    public BatchSizeHistogram getBatchSizeHistogram(int workerIdx) {
+        AdaptiveBatcher b = zoo[workerIdx].batcher;
+        return b == null ? null : b.getBatchSizeHistogram();
+    }
+
+    /**
+     * @return Number of requests rejected because the queue was full, or failed because they exceeded the queue
+     * deadline. Only counted in {@link InferenceMode#ADAPTIVE_BATCHED} mode
+     */
+    public long getRejectedCount() {
+        long sum = rejected.get();
+        if (zoo != null) {
+            for (InferenceWorker w : zoo) {
+                if (w != null && w.batcher != null)
+                    sum += w.batcher.getShedCount();
+            }
+        }
+        return sum;
+    }
+
     /**
      * This method gracefully shuts down ParallelInference instance
      */
@@ -232,7 +295,15 @@ public class ParallelInference {
         BasicInferenceObserver observer = new BasicInferenceObserver();
         InferenceObservable observable;
 
-        if (inferenceMode == InferenceMode.SEQUENTIAL) {
+        if (inferenceMode == InferenceMode.ADAPTIVE_BATCHED) {
+            observable = new TimedInferenceObservable(input, inputMasks);
+            observable.addObserver(observer);
+            //Fail fast instead of blocking when the queue is full
+            if (!observables.offer(observable)) {
+                rejected.incrementAndGet();
+                throw new RejectedExecutionException("Inference queue is full (queue limit: " + queueLimit + ")");
+            }
+        } else if (inferenceMode == InferenceMode.SEQUENTIAL) {
             observable = new BasicInferenceObservable(input, inputMasks);
             observable.addObserver(observer);
             try {
@@ -290,6 +361,9 @@ public class ParallelInference {
         private InferenceMode inferenceMode = DEFAULT_INFERENCE_MODE;
         private int queueLimit = DEFAULT_QUEUE_LIMIT;
         protected LoadBalanceMode loadBalanceMode = LoadBalanceMode.FIFO;
+        private long maxBatchLatencyNanos = DEFAULT_MAX_BATCH_LATENCY_NANOS;
+        private long queueDeadlineNanos = 0;
+        private long[] preferredBatchSizes;
 
         public Builder(@NonNull Model model) {
             this.model = model;
@@ -302,6 +376,8 @@ public class ParallelInference {
          * SEQUENTIAL: Input will be sent to last-used worker unmodified.
          * BATCHED: Multiple inputs will be packed into single batch, and
          * sent to last-used device.
+         * ADAPTIVE_BATCHED: Workers build batches, waiting up to {@link #maxBatchLatency(long, TimeUnit)} to fill them.
+         * See also {@link #preferredBatchSizes(long...)} and {@link #queueDeadline(long, TimeUnit)}
          *
          * @param inferenceMode
          * @return
@@ -375,6 +451,67 @@ public class ParallelInference {
             return this;
         }
 
+        /**
+         * Maximum time to wait to fill a batch, measured from the arrival of the oldest request in the batch.
+         * Larger values give larger batches (higher throughput) at the cost of latency.
+         *
+         * PLEASE NOTE: This value is only used in ADAPTIVE_BATCHED inference mode
+         *
+         * Default value: 5 ms
+         *
+         * @param maxLatency Maximum latency. May be 0 (batch only requests that are already queued)
+         * @param unit       Time unit for the maximum latency
+         * @return
+         */
+        public Builder maxBatchLatency(long maxLatency, @NonNull TimeUnit unit) {
+            if (maxLatency < 0)
+                throw new IllegalStateException("Max batch latency should be non-negative value");
+
+            this.maxBatchLatencyNanos = unit.toNanos(maxLatency);
+            return this;
+        }
+
+        /**
+         * Preferred batch sizes, for example 1, 8 and 32. Batches are padded up to the smallest preferred size that
+         * they fit in, so the network only sees these batch sizes (and workspaces sized for them can be reused).
+         * The largest preferred size is the maximum batch size, replacing {@link #batchLimit(int)}.
+         *
+         * PLEASE NOTE: This value is only used in ADAPTIVE_BATCHED inference mode
+         *
+         * @param batchSizes Preferred batch sizes. If not set (default), batches are not padded
+         * @return
+         */
+        public Builder preferredBatchSizes(long... batchSizes) {
+            for (long b : batchSizes) {
+                if (b < 1)
+                    throw new IllegalStateException("Preferred batch sizes should be positive values");
+            }
+
+            this.preferredBatchSizes = batchSizes;
+            return this;
+        }
+
+        /**
+         * Queue deadline: requests that waited in the queue for longer than this are failed with a
+         * {@link RejectedExecutionException} instead of being executed, to shed load under overload.
+         *
+         * PLEASE NOTE: This value is only used in ADAPTIVE_BATCHED inference mode, in which requests are also
+         * rejected immediately (instead of blocking) when the queue is full
+         *
+         * Default value: 0 (no deadline)
+         *
+         * @param deadline Queue deadline; 0 for no deadline
+         * @param unit     Time unit for the deadline
+         * @return
+         */
+        public Builder queueDeadline(long deadline, @NonNull TimeUnit unit) {
+            if (deadline < 0)
+                throw new IllegalStateException("Queue deadline should be non-negative value");
+
+            this.queueDeadlineNanos = unit.toNanos(deadline);
+            return this;
+        }
+
         /**
          * This method builds new ParallelInference instance
          *
@@ -399,6 +536,9 @@ public class ParallelInference {
                 inference.model = this.model;
                 inference.workers = this.workers;
                 inference.loadBalanceMode = this.loadBalanceMode;
+                inference.maxBatchLatencyNanos = this.maxBatchLatencyNanos;
+                inference.queueDeadlineNanos = this.queueDeadlineNanos;
+                inference.preferredBatchSizes = this.preferredBatchSizes;
 
                 inference.init();
 
@@ -421,6 +561,7 @@ public class ParallelInference {
         private AtomicLong counter = new AtomicLong(0);
         private boolean rootDevice;
         private int deviceId;
+        private AdaptiveBatcher batcher;
 
         private ReentrantReadWriteLock modelLock = new ReentrantReadWriteLock();
 
@@ -493,8 +634,10 @@ public class ParallelInference {
                 // model should be replicated & initialized here
                 initializeReplicaModel();
 
-                boolean isCG = replicatedModel instanceof  ComputationGraph;
-                boolean isMLN = replicatedModel instanceof  MultiLayerNetwork;
+                if (batcher != null) {
+                    runAdaptive();
+                    return;
+                }
 
                 while (shouldWork.get()) {
                     InferenceObservable request = inputQueue.take();
@@ -502,51 +645,16 @@ public class ParallelInference {
                     if (request != null) {
                         counter.incrementAndGet();
 
-                        // FIXME: get rid of instanceof here, model won't change during runtime anyway
-                        if (isCG) {
-                            List<Pair<INDArray[],INDArray[]>> batches = request.getInputBatches();
-                            List<INDArray[]> out = new ArrayList<>(batches.size());
-                            try {
-                                for (Pair<INDArray[],INDArray[]> inBatch : batches) {
-                                    try {
-                                        modelLock.readLock().lock();
-
-                                        INDArray[] output = ((ComputationGraph) replicatedModel).output(false, inBatch.getFirst(), inBatch.getSecond());
-                                        out.add(output);
-                                    } finally {
-                                        Nd4j.getExecutioner().commit();
-                                        modelLock.readLock().unlock();
-                                    }
-
-                                }
-                                request.setOutputBatches(out);
-                            } catch (Exception e){
-                                request.setOutputException(e);
-                            }
-                        } else if (isMLN) {
-                            List<Pair<INDArray[],INDArray[]>> batches = request.getInputBatches();
-                            List<INDArray[]> out = new ArrayList<>(batches.size());
-                            try {
-                                for (Pair<INDArray[],INDArray[]> inBatch : batches) {
-                                    INDArray f = inBatch.getFirst()[0];
-                                    INDArray fm = (inBatch.getSecond() == null ? null : inBatch.getSecond()[0]);
-                                    try {
-                                        modelLock.readLock().lock();
-
-                                        INDArray output = ((MultiLayerNetwork) replicatedModel).output(f, false, fm, null);
-                                        out.add(new INDArray[]{output});
-                                    } finally {
-                                        Nd4j.getExecutioner().commit();
-                                        modelLock.readLock().unlock();
-                                    }
-                                }
-                                request.setOutputBatches(out);
-                            } catch (Exception e){
-                                request.setOutputException(e);
+                        List<Pair<INDArray[],INDArray[]>> batches = request.getInputBatches();
+                        List<INDArray[]> out = new ArrayList<>(batches.size());
+                        try {
+                            for (Pair<INDArray[],INDArray[]> inBatch : batches) {
+                                out.add(outputBatch(inBatch.getFirst(), inBatch.getSecond()));
                             }
+                            request.setOutputBatches(out);
+                        } catch (Exception e){
+                            request.setOutputException(e);
                         }
-
-
                     } else {
                         // just do nothing, i guess and hope for next round?
                     }
@@ -557,10 +665,101 @@ public class ParallelInference {
             } catch (Exception e) {
                 throw new RuntimeException(e);
             } finally {
+                if (batcher != null)
+                    batcher.failPending(new IllegalStateException("ParallelInference was shut down"));
                 isStopped.set(true);
             }
         }
 
+        /**
+         * Main loop for ADAPTIVE_BATCHED mode: build batches from individual requests, execute them as one minibatch
+         * (padded to a preferred batch size, if any), and split the output back to the requests
+         */
+        private void runAdaptive() throws InterruptedException {
+            while (shouldWork.get()) {
+                List<TimedInferenceObservable> batch = batcher.nextBatch(inputQueue);
+                counter.incrementAndGet();
+
+                long examples = 0;
+                for (TimedInferenceObservable o : batch) {
+                    examples += o.numExamples();
+                }
+                long executedSize = batcher.paddedBatchSize(examples);
+                boolean single = batch.size() == 1 && executedSize == examples;
+
+                try {
+                    TimedInferenceObservable first = batch.get(0);
+                    INDArray[] output;
+                    if (single) {
+                        output = outputBatch(first.getInputs(), first.getInputMasks());
+                    } else {
+                        int n = batch.size() + (executedSize > examples ? 1 : 0);
+                        INDArray[][] features = new INDArray[n][0];
+                        INDArray[][] masks = first.getInputMasks() == null ? null : new INDArray[n][0];
+                        for (int i = 0; i < batch.size(); i++) {
+                            features[i] = batch.get(i).getInputs();
+                            if (masks != null)
+                                masks[i] = batch.get(i).getInputMasks();
+                        }
+                        if (n > batch.size()) {
+                            //Pad with zeros, so the network sees the preferred batch size
+                            INDArray[] padding = new INDArray[features[0].length];
+                            for (int i = 0; i < padding.length; i++) {
+                                long[] shape = features[0][i].shape();
+                                shape[0] = executedSize - examples;
+                                padding[i] = Nd4j.zeros(features[0][i].dataType(), shape);
+                            }
+                            features[n - 1] = padding;
+                            if (masks != null)
+                                masks[n - 1] = null;
+                        }
+                        Pair<INDArray[], INDArray[]> merged = DataSetUtil.mergeFeatures(features, masks);
+                        output = outputBatch(merged.getFirst(), merged.getSecond());
+                    }
+
+                    long offset = 0;
+                    for (TimedInferenceObservable o : batch) {
+                        long size = o.numExamples();
+                        INDArray[] split = new INDArray[output.length];
+                        for (int i = 0; i < output.length; i++) {
+                            if (single) {
+                                split[i] = output[i];
+                            } else {
+                                INDArrayIndex[] idx = new INDArrayIndex[output[i].rank()];
+                                idx[0] = NDArrayIndex.interval(offset, offset + size);
+                                for (int j = 1; j < idx.length; j++)
+                                    idx[j] = NDArrayIndex.all();
+                                split[i] = output[i].get(idx);
+                            }
+                        }
+                        offset += size;
+                        o.setOutputBatches(Collections.singletonList(split));
+                    }
+                } catch (Exception e) {
+                    for (TimedInferenceObservable o : batch)
+                        o.setOutputException(e);
+                } finally {
+                    batcher.batchCompleted(batch, executedSize);
+                }
+            }
+        }
+
+        private INDArray[] outputBatch(INDArray[] features, INDArray[] featureMasks) {
+            try {
+                modelLock.readLock().lock();
+
+                if (replicatedModel instanceof ComputationGraph) {
+                    return ((ComputationGraph) replicatedModel).output(false, features, featureMasks);
+                } else {
+                    INDArray fm = (featureMasks == null ? null : featureMasks[0]);
+                    return new INDArray[]{((MultiLayerNetwork) replicatedModel).output(features[0], false, fm, null)};
+                }
+            } finally {
+                Nd4j.getExecutioner().commit();
+                modelLock.readLock().unlock();
+            }
+        }
+
         protected void shutdown() {
             shouldWork.set(false);
             while (!isStopped.get()) {
@@ -43,6 +43,7 @@ import org.deeplearning4j.optimize.listeners.SharedGradient;
 import org.deeplearning4j.optimize.solvers.accumulation.EncodedGradientsAccumulator;
 import org.deeplearning4j.optimize.solvers.accumulation.GradientsAccumulator;
 import org.deeplearning4j.optimize.solvers.accumulation.Registerable;
+import org.deeplearning4j.optimize.solvers.accumulation.RingAllReduceAccumulator;
 import org.deeplearning4j.optimize.solvers.accumulation.encoding.ResidualPostProcessor;
 import org.deeplearning4j.optimize.solvers.accumulation.encoding.ThresholdAlgorithm;
 import org.deeplearning4j.parallelism.factory.DefaultTrainerContext;
@@ -84,6 +85,12 @@ public class ParallelWrapper implements AutoCloseable {
          * This option assumes use of GradientsAccumulator with any MessageHandler
          */
         CUSTOM,
+
+        /**
+         * Models within ParallelWrapper instance will share exact (not threshold encoded) gradient updates, averaged
+         * synchronously after every iteration via ring all-reduce - see {@link RingAllReduceAccumulator}
+         */
+        ALL_REDUCE,
     }
 
     protected Supplier<INDArray> modelParamsSupplier;
@@ -826,6 +833,7 @@ public class ParallelWrapper implements AutoCloseable {
          *  1) AVERAGING - stands for parameters averaging. Each X epochs weights and updaters state will be averaged across all models<br>
          *  2) SHARED_GRADIENTS - stands for gradients sharing - more details available here: <a href="https://deeplearning4j.konduit.ai/distributed-deep-learning/intro">https://deeplearning4j.konduit.ai/distributed-deep-learning/intro</a><br>
          *  3) CUSTOM - this method allows you to specify custom gradients accumulator, this giving you better control of configuration params for training.<br>
+         *  4) ALL_REDUCE - exact, synchronous gradients sharing: updates of all workers are averaged via ring all-reduce after every iteration<br>
          *
          * @param mode
          * @return
@@ -938,6 +946,14 @@ public class ParallelWrapper implements AutoCloseable {
                     }
                 }
                     break;
+                case ALL_REDUCE: {
+                    this.trainerContext = new SymmetricTrainerContext();
+                    if (this.accumulator == null) {
+                        log.info("Creating new RingAllReduceAccumulator instance for [{}] workers", workers);
+                        this.accumulator = new RingAllReduceAccumulator(workers);
+                    }
+                }
+                    break;
                 case CUSTOM: {
                     this.trainerContext = new SymmetricTrainerContext();
                     if (this.accumulator == null)
@@ -0,0 +1,533 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.parallelism;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.parallelism.inference.LatencyHistogram;
+import org.nd4j.autodiff.samediff.SameDiff;
+import org.nd4j.common.base.Preconditions;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.exception.ND4JIllegalStateException;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.INDArrayIndex;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Batched inference for {@link SameDiff} graphs, the SameDiff equivalent of {@link ParallelInference} in
+ * {@link org.deeplearning4j.parallelism.inference.InferenceMode#BATCHED} mode.<br>
+ * Requests (placeholder maps for a single example, or a small number of examples) may be submitted from any number of
+ * threads. Worker threads coalesce queued requests into a single batch along the batch axis - up to
+ * {@link Builder#maxBatchSize(int)} examples, waiting at most {@link Builder#maxWait(long, TimeUnit)} after the first
+ * request of a batch arrives - run one {@link SameDiff#output(Map, String...)} call for the whole batch, and split the
+ * outputs back to the individual requests.<br>
+ * Only requests with the same placeholders, data types and shapes (other than along the batch axis) are batched
+ * together; all requested outputs must have the batch axis.<br>
+ * <br>
+ * Latency (from submission to completion) is recorded per request; see {@link #getLatencyHistogram()}, along with
+ * request, example and batch counters and throughput.
+ * <pre>
+ * {@code
+ * SameDiffParallelInference inf = new SameDiffParallelInference.Builder(sd)
+ *         .outputs("softmax")
+ *         .maxBatchSize(32)
+ *         .maxWait(2, TimeUnit.MILLISECONDS)
+ *         .build();
+ * Map<String,INDArray> out = inf.output(Collections.singletonMap("in", features));
+ * }
+ * </pre>
+ */
+@Slf4j
+public class SameDiffParallelInference {
+    public final static int DEFAULT_NUM_WORKERS = 1;
+    public final static int DEFAULT_MAX_BATCH_SIZE = 32;
+    public final static long DEFAULT_MAX_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    public final static int DEFAULT_QUEUE_LIMIT = 1024;
+
+    @Getter
+    protected final SameDiff sameDiff;
+    @Getter
+    protected final String[] outputs;
+    @Getter
+    protected final int batchAxis;
+    @Getter
+    protected final boolean stackInputs;
+    @Getter
+    protected final int maxBatchSize;
+    @Getter
+    protected final long maxWaitNanos;
+
+    private final BlockingQueue<Request> queue;
+    private final BatchingWorker[] workers;
+    private final AtomicBoolean isShutdown = new AtomicBoolean(false);
+
+    @Getter
+    private final LatencyHistogram latencyHistogram = new LatencyHistogram();
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong exampleCount = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+    private volatile long statsStartNanos = System.nanoTime();
+
+    protected SameDiffParallelInference(Builder builder) {
+        this.sameDiff = builder.sameDiff;
+        this.outputs = builder.outputs;
+        this.batchAxis = builder.batchAxis;
+        this.stackInputs = builder.stackInputs;
+        this.maxBatchSize = builder.maxBatchSize;
+        this.maxWaitNanos = builder.maxWaitNanos;
+        this.queue = new LinkedBlockingQueue<>(builder.queueLimit);
+
+        workers = new BatchingWorker[builder.workers];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new BatchingWorker(i);
+            workers[i].start();
+        }
+    }
+
+    /**
+     * Submit a request for asynchronous, batched execution
+     *
+     * @param placeholders Placeholder values for the request. If {@link Builder#stackInputs(boolean)} is set, these
+     *                     must not have the batch axis; otherwise, they must have the batch axis (usually of size 1)
+     * @return Future for the requested outputs of this request
+     */
+    public CompletableFuture<Map<String, INDArray>> submit(@NonNull Map<String, INDArray> placeholders) {
+        if (isShutdown.get())
+            throw new ND4JIllegalStateException("SameDiffParallelInference instance has been shut down");
+        Preconditions.checkArgument(!placeholders.isEmpty(), "Cannot submit request with no placeholders");
+
+        Nd4j.getExecutioner().commit(); //Commit before passing input to other thread
+
+        Request r = new Request(placeholders, numExamples(placeholders));
+        try {
+            queue.put(r);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        return r.future;
+    }
+
+    /**
+     * Submit a request and block until its outputs are available
+     *
+     * @param placeholders Placeholder values for the request - see {@link #submit(Map)}
+     * @return The requested outputs for this request
+     */
+    public Map<String, INDArray> output(@NonNull Map<String, INDArray> placeholders) {
+        try {
+            return submit(placeholders).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * @return Number of requests completed (successfully or not) since creation or the last {@link #resetStats()}
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * @return Number of examples completed since creation or the last {@link #resetStats()}
+     */
+    public long getExampleCount() {
+        return exampleCount.get();
+    }
+
+    /**
+     * @return Number of batched {@link SameDiff#output(Map, String...)} calls since creation or the last
+     * {@link #resetStats()}
+     */
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    /**
+     * @return Number of requests that completed with an exception since creation or the last {@link #resetStats()}
+     */
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+    /**
+     * @return Average number of examples per batched execution
+     */
+    public double getAverageBatchSize() {
+        long b = batchCount.get();
+        return b == 0 ? 0.0 : exampleCount.get() / (double) b;
+    }
+
+    /**
+     * @return Requests completed per second since creation or the last {@link #resetStats()}
+     */
+    public double getRequestsPerSecond() {
+        return perSecond(requestCount.get());
+    }
+
+    /**
+     * @return Examples completed per second since creation or the last {@link #resetStats()}
+     */
+    public double getExamplesPerSecond() {
+        return perSecond(exampleCount.get());
+    }
+
+    /**
+     * @return Number of requests currently waiting to be batched
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * Reset the latency histogram and all counters
+     */
+    public void resetStats() {
+        latencyHistogram.reset();
+        requestCount.set(0);
+        exampleCount.set(0);
+        batchCount.set(0);
+        failureCount.set(0);
+        statsStartNanos = System.nanoTime();
+    }
+
+    /**
+     * @return A summary of the latency percentiles and throughput
+     */
+    public String statsSummary() {
+        return String.format("requests=%d, examples=%d, batches=%d, failures=%d, avgBatchSize=%.2f, " +
+                        "requests/sec=%.1f, examples/sec=%.1f, latency p50=%.3fms, p99=%.3fms, max=%.3fms",
+                getRequestCount(), getExampleCount(), getBatchCount(), getFailureCount(), getAverageBatchSize(),
+                getRequestsPerSecond(), getExamplesPerSecond(), latencyHistogram.getPercentile(50) / 1e6,
+                latencyHistogram.getPercentile(99) / 1e6, latencyHistogram.getMax() / 1e6);
+    }
+
+    /**
+     * Shut down this instance. Requests that have not yet been executed are completed exceptionally.
+     */
+    public synchronized void shutdown() {
+        if (!isShutdown.compareAndSet(false, true))
+            return;
+
+        for (BatchingWorker w : workers)
+            w.interrupt();
+        for (BatchingWorker w : workers) {
+            try {
+                w.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        List<Request> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        for (Request r : remaining)
+            r.future.completeExceptionally(new ND4JIllegalStateException("SameDiffParallelInference instance was shut down"));
+    }
+
+    private double perSecond(long count) {
+        double seconds = (System.nanoTime() - statsStartNanos) / 1e9;
+        return seconds <= 0 ? 0.0 : count / seconds;
+    }
+
+    protected long numExamples(Map<String, INDArray> placeholders) {
+        if (stackInputs)
+            return 1;
+        long n = -1;
+        for (Map.Entry<String, INDArray> e : placeholders.entrySet()) {
+            INDArray arr = e.getValue();
+            Preconditions.checkArgument(arr != null, "Null array provided for placeholder \"%s\"", e.getKey());
+            Preconditions.checkArgument(arr.rank() > batchAxis, "Placeholder \"%s\" must have batch axis %s, got array with shape %ndShape",
+                    e.getKey(), batchAxis, arr);
+            long size = arr.size(batchAxis);
+            Preconditions.checkArgument(n < 0 || n == size, "All placeholders must have the same size along batch axis %s:" +
+                    " got sizes %s and %s", batchAxis, n, size);
+            n = size;
+        }
+        return n;
+    }
+
+    /**
+     * Whether the two requests can be executed as part of the same batch: same placeholders, data types and shapes,
+     * other than along the batch axis
+     */
+    protected boolean canBatch(Request first, Request candidate) {
+        if (!first.placeholders.keySet().equals(candidate.placeholders.keySet()))
+            return false;
+        for (Map.Entry<String, INDArray> e : first.placeholders.entrySet()) {
+            INDArray a = e.getValue();
+            INDArray b = candidate.placeholders.get(e.getKey());
+            if (a.dataType() != b.dataType() || a.rank() != b.rank())
+                return false;
+            for (int i = 0; i < a.rank(); i++) {
+                if (i != batchAxis || stackInputs) {
+                    if (a.size(i) != b.size(i))
+                        return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Execute the given requests as a single batch, and complete their futures
+     */
+    protected void execute(List<Request> batch) {
+        long totalExamples = 0;
+        for (Request r : batch)
+            totalExamples += r.numExamples;
+
+        try {
+            if (batch.size() == 1 && !stackInputs) {
+                Map<String, INDArray> out = sameDiff.output(batch.get(0).placeholders, outputs);
+                Nd4j.getExecutioner().commit();
+                complete(batch.get(0), out);
+            } else {
+                Map<String, INDArray> merged = new HashMap<>();
+                for (String ph : batch.get(0).placeholders.keySet()) {
+                    INDArray[] toMerge = new INDArray[batch.size()];
+                    for (int i = 0; i < toMerge.length; i++)
+                        toMerge[i] = batch.get(i).placeholders.get(ph);
+                    merged.put(ph, stackInputs ? Nd4j.stack(batchAxis, toMerge) : Nd4j.concat(batchAxis, toMerge));
+                }
+
+                Map<String, INDArray> out = sameDiff.output(merged, outputs);
+                Nd4j.getExecutioner().commit();
+
+                List<Map<String, INDArray>> split = split(out, batch, totalExamples);
+                for (int i = 0; i < batch.size(); i++)
+                    complete(batch.get(i), split.get(i));
+            }
+        } catch (Throwable t) {
+            for (Request r : batch) {
+                failureCount.incrementAndGet();
+                requestCount.incrementAndGet();
+                latencyHistogram.record(System.nanoTime() - r.submitNanos);
+                r.future.completeExceptionally(t);
+            }
+        }
+
+        batchCount.incrementAndGet();
+        exampleCount.addAndGet(totalExamples);
+    }
+
+    protected List<Map<String, INDArray>> split(Map<String, INDArray> out, List<Request> batch, long totalExamples) {
+        List<Map<String, INDArray>> split = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++)
+            split.add(new HashMap<>());
+
+        for (Map.Entry<String, INDArray> e : out.entrySet()) {
+            INDArray arr = e.getValue();
+            if (arr.rank() <= batchAxis || arr.size(batchAxis) != totalExamples) {
+                throw new ND4JIllegalStateException("Unable to split batched output \"" + e.getKey() + "\" with shape " +
+                        Arrays.toString(arr.shape()) + " into individual requests: expected size " + totalExamples +
+                        " along batch axis " + batchAxis + ". All requested outputs must have the batch axis");
+            }
+
+            INDArrayIndex[] indices = new INDArrayIndex[arr.rank()];
+            for (int j = 0; j < indices.length; j++)
+                indices[j] = NDArrayIndex.all();
+
+            long offset = 0;
+            for (int i = 0; i < batch.size(); i++) {
+                long n = batch.get(i).numExamples;
+                indices[batchAxis] = stackInputs ? NDArrayIndex.point(offset) : NDArrayIndex.interval(offset, offset + n);
+                split.get(i).put(e.getKey(), arr.get(indices));
+                offset += n;
+            }
+        }
+        return split;
+    }
+
+    private void complete(Request r, Map<String, INDArray> out) {
+        requestCount.incrementAndGet();
+        latencyHistogram.record(System.nanoTime() - r.submitNanos);
+        r.future.complete(out);
+    }
+
+
+    protected static class Request {
+        private final Map<String, INDArray> placeholders;
+        private final long numExamples;
+        private final long submitNanos = System.nanoTime();
+        private final CompletableFuture<Map<String, INDArray>> future = new CompletableFuture<>();
+
+        protected Request(Map<String, INDArray> placeholders, long numExamples) {
+            this.placeholders = placeholders;
+            this.numExamples = numExamples;
+        }
+    }
+
+
+    /**
+     * Takes requests from the queue, coalesces them into batches and executes them
+     */
+    private class BatchingWorker extends Thread {
+        //A request that could not be added to the previous batch (incompatible shape, or batch full): starts the next batch
+        private Request carried;
+        private final List<Request> batch = new ArrayList<>();
+
+        private BatchingWorker(int id) {
+            this.setDaemon(true);
+            this.setName("SameDiffInferenceThread-" + id);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!isShutdown.get()) {
+                    Request first = carried != null ? carried : queue.take();
+                    carried = null;
+
+                    batch.add(first);
+                    long examples = first.numExamples;
+                    long deadline = first.submitNanos + maxWaitNanos;
+
+                    while (examples < maxBatchSize) {
+                        long remaining = deadline - System.nanoTime();
+                        Request next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                        if (next == null)
+                            break;
+                        if (examples + next.numExamples > maxBatchSize || !canBatch(first, next)) {
+                            carried = next;
+                            break;
+                        }
+                        batch.add(next);
+                        examples += next.numExamples;
+                    }
+
+                    execute(new ArrayList<>(batch));
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                //Shutdown
+            } finally {
+                if (carried != null)
+                    batch.add(carried);
+                for (Request r : batch)
+                    r.future.completeExceptionally(new ND4JIllegalStateException("SameDiffParallelInference instance was shut down"));
+                batch.clear();
+            }
+        }
+    }
+
+
+    public static class Builder {
+        private final SameDiff sameDiff;
+        private String[] outputs;
+        private int workers = DEFAULT_NUM_WORKERS;
+        private int batchAxis = 0;
+        private boolean stackInputs = false;
+        private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+        private long maxWaitNanos = DEFAULT_MAX_WAIT_NANOS;
+        private int queueLimit = DEFAULT_QUEUE_LIMIT;
+
+        public Builder(@NonNull SameDiff sameDiff) {
+            this.sameDiff = sameDiff;
+        }
+
+        /**
+         * The names of the outputs to calculate for each request. Required.
+         */
+        public Builder outputs(@NonNull String... outputs) {
+            Preconditions.checkArgument(outputs.length > 0, "At least one output must be specified");
+            this.outputs = outputs;
+            return this;
+        }
+
+        /**
+         * The axis along which requests are batched, for both placeholders and outputs. Default: 0
+         */
+        public Builder batchAxis(int batchAxis) {
+            Preconditions.checkArgument(batchAxis >= 0, "Batch axis must be non-negative, got %s", batchAxis);
+            this.batchAxis = batchAxis;
+            return this;
+        }
+
+        /**
+         * If true: each request is a single example whose placeholder arrays do NOT have the batch axis. Requests are
+         * stacked along a new batch axis, and the batch axis is removed from the outputs returned for each request.<br>
+         * If false (default): placeholder arrays include the batch axis (usually of size 1), and requests are
+         * concatenated along it.
+         */
+        public Builder stackInputs(boolean stackInputs) {
+            this.stackInputs = stackInputs;
+            return this;
+        }
+
+        /**
+         * Maximum number of examples in a single batched execution. Default: 32
+         */
+        public Builder maxBatchSize(int maxBatchSize) {
+            Preconditions.checkArgument(maxBatchSize > 0, "Max batch size must be positive, got %s", maxBatchSize);
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        /**
+         * Maximum amount of time to wait, after the first request of a batch was submitted, for further requests to
+         * add to the batch. Default: 1 millisecond
+         */
+        public Builder maxWait(long time, @NonNull TimeUnit unit) {
+            Preconditions.checkArgument(time >= 0, "Max wait time must be non-negative, got %s", time);
+            this.maxWaitNanos = unit.toNanos(time);
+            return this;
+        }
+
+        /**
+         * Number of threads concurrently executing batches. Default: 1.<br>
+         * Note that all workers share the same SameDiff instance (each thread uses its own session).
+         */
+        public Builder workers(int workers) {
+            Preconditions.checkArgument(workers > 0, "Number of workers must be positive, got %s", workers);
+            this.workers = workers;
+            return this;
+        }
+
+        /**
+         * Maximum number of queued requests; submitting blocks while the queue is full. Default: 1024
+         */
+        public Builder queueLimit(int queueLimit) {
+            Preconditions.checkArgument(queueLimit > 0, "Queue limit must be positive, got %s", queueLimit);
+            this.queueLimit = queueLimit;
+            return this;
+        }
+
+        public SameDiffParallelInference build() {
+            Preconditions.checkState(outputs != null, "Outputs must be specified using Builder.outputs(String...)");
+            return new SameDiffParallelInference(this);
+        }
+    }
+}
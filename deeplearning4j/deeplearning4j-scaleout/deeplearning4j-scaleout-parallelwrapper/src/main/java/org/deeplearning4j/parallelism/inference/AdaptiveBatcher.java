@@ -0,0 +1,203 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+package org.deeplearning4j.parallelism.inference;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.deeplearning4j.parallelism.inference.observers.TimedInferenceObservable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Batch builder for a single worker in {@link InferenceMode#ADAPTIVE_BATCHED} mode.<br>
+ * A batch is started with the oldest available request, and further compatible requests are added until either the
+ * maximum batch size is reached, or the maximum latency (measured from the creation of the first request of the batch)
+ * has passed. Requests that have already waited longer than the maximum latency are batched with whatever is already
+ * queued, without waiting.<br>
+ * If preferred batch sizes are set, the batch is padded up to the smallest preferred size that it fits in, so that
+ * the network sees a small set of batch shapes (for which workspaces are already sized).<br>
+ * Requests that have waited in the queue longer than the queue deadline are failed with a
+ * {@link RejectedExecutionException} without being executed.<br>
+ * Not thread safe: each worker should use its own instance. The histograms and counters may be read from any thread.
+ */
+public class AdaptiveBatcher {
+
+    private final long maxLatencyNanos;
+    private final long queueDeadlineNanos;
+    private final long maxBatchSize;
+    private final long[] preferredBatchSizes;
+
+    //Requests taken from the queue, but not (yet) compatible with the current batch
+    private final Deque<TimedInferenceObservable> pending = new ArrayDeque<>();
+
+    @Getter
+    private final LatencyHistogram latencyHistogram = new LatencyHistogram();
+    @Getter
+    private final BatchSizeHistogram batchSizeHistogram = new BatchSizeHistogram();
+    private final AtomicLong shed = new AtomicLong();
+    private final AtomicLong paddedExamples = new AtomicLong();
+
+    /**
+     * @param maxLatencyNanos     Maximum time to wait (from the creation of the oldest request) to fill a batch
+     * @param queueDeadlineNanos  Requests that waited longer than this in the queue are failed. 0 or less: no deadline
+     * @param maxBatchSize        Maximum number of examples in a batch (before padding), if no preferred batch sizes are set
+     * @param preferredBatchSizes Preferred batch sizes. May be null or empty. If set, the largest preferred size is the
+     *                            maximum batch size
+     */
+    public AdaptiveBatcher(long maxLatencyNanos, long queueDeadlineNanos, long maxBatchSize, long[] preferredBatchSizes) {
+        if (maxLatencyNanos < 0)
+            throw new IllegalArgumentException("Maximum latency must be >= 0, got " + maxLatencyNanos);
+        if (preferredBatchSizes != null && preferredBatchSizes.length > 0) {
+            preferredBatchSizes = preferredBatchSizes.clone();
+            Arrays.sort(preferredBatchSizes);
+            if (preferredBatchSizes[0] < 1)
+                throw new IllegalArgumentException("Preferred batch sizes must be positive, got " + Arrays.toString(preferredBatchSizes));
+            maxBatchSize = preferredBatchSizes[preferredBatchSizes.length - 1];
+        } else {
+            preferredBatchSizes = null;
+        }
+        if (maxBatchSize < 1)
+            throw new IllegalArgumentException("Maximum batch size must be positive, got " + maxBatchSize);
+        this.maxLatencyNanos = maxLatencyNanos;
+        this.queueDeadlineNanos = queueDeadlineNanos;
+        this.maxBatchSize = maxBatchSize;
+        this.preferredBatchSizes = preferredBatchSizes;
+    }
+
+    /**
+     * Get the next batch of requests, blocking until at least one request is available.
+     *
+     * @param queue Queue of {@link TimedInferenceObservable} requests
+     * @return Non-empty list of requests, that can be merged into a single batch
+     */
+    public List<TimedInferenceObservable> nextBatch(@NonNull BlockingQueue<InferenceObservable> queue) throws InterruptedException {
+        TimedInferenceObservable first = null;
+        while (first == null) {
+            first = pending.isEmpty() ? (TimedInferenceObservable) queue.take() : pending.pollFirst();
+            if (shedIfExpired(first, System.nanoTime()))
+                first = null;
+        }
+
+        List<TimedInferenceObservable> batch = new ArrayList<>();
+        batch.add(first);
+        long examples = first.numExamples();
+        long waitUntil = first.getCreatedNanos() + maxLatencyNanos;
+        while (examples < maxBatchSize) {
+            TimedInferenceObservable next;
+            boolean fromPending = !pending.isEmpty();
+            if (fromPending) {
+                next = pending.pollFirst();
+            } else {
+                long remaining = waitUntil - System.nanoTime();
+                next = (TimedInferenceObservable) (remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll());
+                if (next == null)
+                    break;
+            }
+
+            if (shedIfExpired(next, System.nanoTime()))
+                continue;
+
+            if (!first.canBatchWith(next) || examples + next.numExamples() > maxBatchSize) {
+                //Keep for a later batch, in arrival order
+                if (fromPending)
+                    pending.addFirst(next);
+                else
+                    pending.addLast(next);
+                break;
+            }
+            batch.add(next);
+            examples += next.numExamples();
+        }
+        return batch;
+    }
+
+    /**
+     * @param examples Number of examples in a batch
+     * @return Size the batch should be padded to: the smallest preferred batch size that is at least the specified
+     * number of examples, or the number of examples if there is no such preferred size
+     */
+    public long paddedBatchSize(long examples) {
+        if (preferredBatchSizes != null) {
+            for (long s : preferredBatchSizes) {
+                if (s >= examples)
+                    return s;
+            }
+        }
+        return examples;
+    }
+
+    /**
+     * Record statistics for an executed batch
+     *
+     * @param batch         Requests in the batch
+     * @param executedSize  Size of the batch as executed (i.e., after any padding)
+     */
+    public void batchCompleted(List<TimedInferenceObservable> batch, long executedSize) {
+        long now = System.nanoTime();
+        long examples = 0;
+        for (TimedInferenceObservable o : batch) {
+            latencyHistogram.record(o.waitedNanos(now));
+            examples += o.numExamples();
+        }
+        batchSizeHistogram.record(executedSize);
+        paddedExamples.addAndGet(executedSize - examples);
+    }
+
+    /**
+     * Fail all requests that have been taken from the queue but not yet executed - for example, on shutdown
+     */
+    public void failPending(Exception e) {
+        TimedInferenceObservable o;
+        while ((o = pending.pollFirst()) != null) {
+            o.setOutputException(e);
+        }
+    }
+
+    /**
+     * @return Number of requests failed due to exceeding the queue deadline
+     */
+    public long getShedCount() {
+        return shed.get();
+    }
+
+    /**
+     * @return Total number of padding examples (rows added to reach a preferred batch size) executed so far
+     */
+    public long getPaddedExamples() {
+        return paddedExamples.get();
+    }
+
+    private boolean shedIfExpired(TimedInferenceObservable o, long now) {
+        if (queueDeadlineNanos <= 0 || o.waitedNanos(now) <= queueDeadlineNanos)
+            return false;
+        shed.incrementAndGet();
+        o.setOutputException(new RejectedExecutionException("Inference request waited " + TimeUnit.NANOSECONDS.toMillis(o.waitedNanos(now))
+                + " ms in the queue, exceeding the queue deadline of " + TimeUnit.NANOSECONDS.toMillis(queueDeadlineNanos) + " ms"));
+        return true;
+    }
+}
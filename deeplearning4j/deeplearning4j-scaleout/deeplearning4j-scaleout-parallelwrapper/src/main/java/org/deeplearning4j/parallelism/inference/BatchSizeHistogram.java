@@ -0,0 +1,94 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+package org.deeplearning4j.parallelism.inference;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread safe histogram of (exact) batch sizes: the number of batches executed for each batch size.
+ */
+public class BatchSizeHistogram {
+    private final Map<Long, AtomicLong> counts = new ConcurrentHashMap<>();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong examples = new AtomicLong();
+
+    /**
+     * Record a single batch
+     *
+     * @param batchSize Number of examples in the batch
+     */
+    public void record(long batchSize) {
+        counts.computeIfAbsent(batchSize, k -> new AtomicLong()).incrementAndGet();
+        batches.incrementAndGet();
+        examples.addAndGet(batchSize);
+    }
+
+    /**
+     * @return Number of batches recorded
+     */
+    public long getCount() {
+        return batches.get();
+    }
+
+    /**
+     * @param batchSize Batch size
+     * @return Number of batches recorded with the specified size
+     */
+    public long getCount(long batchSize) {
+        AtomicLong c = counts.get(batchSize);
+        return c == null ? 0 : c.get();
+    }
+
+    /**
+     * @return Mean batch size; 0 if no batches have been recorded
+     */
+    public double getMean() {
+        long b = batches.get();
+        return b == 0 ? 0.0 : examples.get() / (double) b;
+    }
+
+    /**
+     * @return Number of batches for each batch size, sorted by batch size
+     */
+    public Map<Long, Long> getCounts() {
+        Map<Long, Long> out = new TreeMap<>();
+        for (Map.Entry<Long, AtomicLong> e : counts.entrySet()) {
+            out.put(e.getKey(), e.getValue().get());
+        }
+        return out;
+    }
+
+    /**
+     * Clear all recorded values
+     */
+    public void reset() {
+        counts.clear();
+        batches.set(0);
+        examples.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "BatchSizeHistogram(count=" + getCount() + ", mean=" + String.format("%.2f", getMean()) + ", counts=" + getCounts() + ")";
+    }
+}
@@ -35,4 +35,12 @@ public enum InferenceMode {
      * Inference will applied in the calling thread instead of workers. Worker models will be using shared parameters on per-device basis.
      */
     INPLACE,
+
+    /**
+     * Inputs are queued individually, and each worker builds its own batches: it waits up to a configurable maximum
+     * latency (measured from the arrival of the oldest request in the batch) to fill a batch, optionally pads batches
+     * to one of a set of preferred batch sizes, and fails requests that waited in the queue for longer than a deadline.
+     * Per-worker latency and batch size histograms are available from ParallelInference
+     */
+    ADAPTIVE_BATCHED,
 }
@@ -0,0 +1,148 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.parallelism.inference;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of latencies (in nanoseconds), used to report percentiles such as p50 and p99.<br>
+ * Values are recorded into log-linear buckets: each power of two is split into {@link #SUB_BUCKETS} linear
+ * sub-buckets, so a reported percentile is within about 6% of the true value. Recording is a single atomic
+ * increment and is safe to call from many threads concurrently.
+ */
+public class LatencyHistogram {
+    public static final int SUB_BUCKET_BITS = 4;
+    public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final AtomicLongArray counts = new AtomicLongArray((64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record a single latency value
+     *
+     * @param nanos Latency in nanoseconds. Negative values are recorded as 0
+     */
+    public void record(long nanos) {
+        if (nanos < 0)
+            nanos = 0;
+        counts.incrementAndGet(bucketIndex(nanos));
+        count.incrementAndGet();
+        sum.addAndGet(nanos);
+
+        long currMax;
+        while (nanos > (currMax = max.get()) && !max.compareAndSet(currMax, nanos)) {
+            //Retry
+        }
+    }
+
+    /**
+     * @return Number of values recorded
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * @return Mean of all recorded values, in nanoseconds; 0 if no values have been recorded
+     */
+    public double getMean() {
+        long c = count.get();
+        return c == 0 ? 0.0 : sum.get() / (double) c;
+    }
+
+    /**
+     * @return Maximum recorded value, in nanoseconds
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Get the (approximate) value at the specified percentile
+     *
+     * @param percentile Percentile, in range 0 to 100 - for example, 50 for the median and 99 for p99
+     * @return Approximate value at the specified percentile, in nanoseconds; 0 if no values have been recorded
+     */
+    public long getPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100)
+            throw new IllegalArgumentException("Percentile must be in range 0 to 100, got " + percentile);
+        long total = count.get();
+        if (total == 0)
+            return 0;
+
+        long target = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long cumulative = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            cumulative += counts.get(i);
+            if (cumulative >= target)
+                return Math.min(bucketUpperBound(i), max.get());
+        }
+        //Values recorded concurrently with this call may not be reflected in the buckets yet
+        return max.get();
+    }
+
+    /**
+     * Get the (approximate) value at the specified percentile in the given time unit
+     */
+    public double getPercentile(double percentile, TimeUnit unit) {
+        return getPercentile(percentile) / (double) unit.toNanos(1);
+    }
+
+    /**
+     * Clear all recorded values
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++)
+            counts.set(i, 0);
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LatencyHistogram(count=%d, mean=%.3fms, p50=%.3fms, p99=%.3fms, max=%.3fms)", getCount(),
+                getMean() / 1e6, getPercentile(50) / 1e6, getPercentile(99) / 1e6, getMax() / 1e6);
+    }
+
+    protected static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        //Shift so that the top SUB_BUCKET_BITS+1 bits remain: value >>> shift is in range [SUB_BUCKETS, 2*SUB_BUCKETS)
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+        return (shift + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    protected static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS)
+            return index;
+        int shift = index / SUB_BUCKETS - 1;
+        int subBucket = index % SUB_BUCKETS;
+        if (shift >= 63 - SUB_BUCKET_BITS)
+            return Long.MAX_VALUE;
+        return ((long) (SUB_BUCKETS + subBucket + 1) << shift) - 1;
+    }
+}
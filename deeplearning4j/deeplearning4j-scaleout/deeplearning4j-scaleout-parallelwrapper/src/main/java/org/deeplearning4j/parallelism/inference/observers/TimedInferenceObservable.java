@@ -0,0 +1,89 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+package org.deeplearning4j.parallelism.inference.observers;
+
+import lombok.Getter;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.util.Arrays;
+
+/**
+ * A single inference request, as used in {@link org.deeplearning4j.parallelism.inference.InferenceMode#ADAPTIVE_BATCHED}
+ * mode: in addition to the input arrays, it records the time it was created (enqueued), so that batching can be done
+ * with respect to the maximum latency and the queue deadline.
+ */
+public class TimedInferenceObservable extends BasicInferenceObservable {
+    @Getter
+    private final long createdNanos = System.nanoTime();
+    @Getter
+    private final INDArray[] inputs;
+    @Getter
+    private final INDArray[] inputMasks;
+
+    public TimedInferenceObservable(INDArray[] inputs, INDArray[] inputMasks) {
+        super(inputs, inputMasks);
+        this.inputs = inputs;
+        this.inputMasks = inputMasks;
+    }
+
+    /**
+     * @return Number of examples in this request - i.e., size(0) of the input arrays
+     */
+    public long numExamples() {
+        return inputs[0].size(0);
+    }
+
+    /**
+     * @return Time this request has been waiting since it was created, in nanoseconds
+     */
+    public long waitedNanos(long nowNanos) {
+        return nowNanos - createdNanos;
+    }
+
+    /**
+     * Check if the other request can be batched with this one: that is, it has the same number of inputs and masks,
+     * with the same shapes (other than the minibatch dimension) and data types
+     */
+    public boolean canBatchWith(TimedInferenceObservable other) {
+        if (inputs.length != other.inputs.length || (inputMasks == null) != (other.inputMasks == null))
+            return false;
+        for (int i = 0; i < inputs.length; i++) {
+            if (!sameExampleShape(inputs[i], other.inputs[i]))
+                return false;
+        }
+        if (inputMasks != null) {
+            for (int i = 0; i < inputMasks.length; i++) {
+                if ((inputMasks[i] == null) != (other.inputMasks[i] == null))
+                    return false;
+                if (inputMasks[i] != null && !sameExampleShape(inputMasks[i], other.inputMasks[i]))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameExampleShape(INDArray a, INDArray b) {
+        if (a.rank() != b.rank() || a.dataType() != b.dataType())
+            return false;
+        long[] sa = a.shape();
+        long[] sb = b.shape();
+        return Arrays.equals(Arrays.copyOfRange(sa, 1, sa.length), Arrays.copyOfRange(sb, 1, sb.length));
+    }
+}
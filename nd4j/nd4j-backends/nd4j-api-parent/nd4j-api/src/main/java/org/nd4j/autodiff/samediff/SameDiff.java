@@ -96,6 +96,7 @@ import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -120,6 +121,8 @@ public class SameDiff extends SDBaseOps {
     private final Map<String, SameDiffOp> ops = new LinkedHashMap<>();
     @Getter
     private final Map<Long, InferenceSession> sessions = new ConcurrentHashMap<>();      //Key: thread ID
+    @Getter
+    private volatile InferenceSessionPool sessionPool;      //If set: used instead of the per-thread sessions
 
     @Getter
     @Setter
@@ -156,6 +159,16 @@ public class SameDiff extends SDBaseOps {
     @Setter
     private boolean enableCache = true;
 
+    /**
+     * Number of threads used to execute independent ops concurrently during inference (inter-op parallelism).
+     * Default: 1 (sequential execution on the calling thread)
+     */
+    @Getter
+    private int interOpThreads = 1;
+
+    //Incremented on every change to the graph structure; used to invalidate execution plans cached in sessions
+    private final AtomicLong graphStructureVersion = new AtomicLong();
+
     ///////////////////////////////////////
     //Fields related to training
     @Getter
@@ -164,6 +177,8 @@ public class SameDiff extends SDBaseOps {
     private boolean initializedTraining;                            //True if training setup has been done
     @Getter
     private Map<String, GradientUpdater> updaterMap;                 //GradientUpdater instance for each trainable parameter
+    @Getter
+    private DynamicLossScaler lossScaler;                           //Loss scale state, when mixed precision training is enabled
 
     ////////////////////////////////////////
 
@@ -774,9 +789,96 @@ public class SameDiff extends SDBaseOps {
 
         if (!ops.containsKey(id)) {
             ops.put(id, SameDiffOp.builder().name(id).op(function).build());
+            markGraphStructureModified();
         }
     }
 
+    /**
+     * Set the number of threads used to execute independent ops concurrently during inference (inter-op
+     * parallelism). When greater than 1, ops that are ready for execution at the same time (for example, separate
+     * branches of a multi-head or Inception-style model) are executed on a pool of this many threads per session,
+     * instead of one at a time on the calling thread.<br>
+     * Note that each op may itself use multiple threads (intra-op parallelism, see
+     * {@link org.nd4j.linalg.factory.Environment#setMaxMasterThreads(int)}); the total number of threads used is
+     * roughly the product of the two, so intra-op threads should usually be reduced when enabling this.<br>
+     * Only applies to inference: ops are never executed concurrently during training, when listeners are
+     * active, or inside control flow frames (loops).
+     *
+     * @param interOpThreads Number of inter-op threads. Must be 1 or more; 1 disables inter-op parallelism
+     */
+    public void setInterOpThreads(int interOpThreads) {
+        Preconditions.checkArgument(interOpThreads >= 1, "Number of inter-op threads must be 1 or more, got %s", interOpThreads);
+        this.interOpThreads = interOpThreads;
+    }
+
+    /**
+     * Use a bounded pool of inference sessions for all inference (output/exec methods), instead of one session per
+     * thread. This is recommended when inference is performed from many short-lived threads (such as virtual threads
+     * or a thread per request): with per-thread sessions, each new thread creates (and keeps) its own session and
+     * cached arrays. With a pool, at most maxSessions sessions are created and shared between all threads; callers
+     * wait for a free session if all are in use.<br>
+     * Note that when a session pool is enabled, placeholder values must be passed to the output methods directly -
+     * placeholder values set per thread are not used.
+     *
+     * @param maxSessions Maximum number of sessions, and hence maximum number of concurrent inference calls
+     * @return The session pool
+     */
+    public InferenceSessionPool enableSessionPool(int maxSessions) {
+        InferenceSessionPool pool = new InferenceSessionPool(this, maxSessions);
+        this.sessionPool = pool;
+        discardThreadSessions();
+        return pool;
+    }
+
+    /**
+     * Disable the session pool previously enabled via {@link #enableSessionPool(int)}, and return to one inference
+     * session per thread
+     */
+    public void disableSessionPool() {
+        InferenceSessionPool pool = sessionPool;
+        sessionPool = null;
+        if (pool != null)
+            pool.clear();
+    }
+
+    /**
+     * Remove all inference sessions - both per-thread sessions and those in the session pool, if any - so that no
+     * state or cached arrays from previous executions are used
+     */
+    protected void clearSessions() {
+        discardThreadSessions();
+        InferenceSessionPool pool = sessionPool;
+        if (pool != null)
+            pool.clear();
+    }
+
+    private void discardThreadSessions() {
+        for (InferenceSession s : sessions.values()) {
+            s.shutdownInterOpExecutor();
+        }
+        sessions.clear();
+    }
+
+    /**
+     * Get the current version of the graph structure. The version is incremented whenever ops or variables are
+     * added, removed, renamed or rewired, or variable types change.<br>
+     * Used by sessions to detect when cached execution plans are no longer valid.
+     *
+     * @return Current graph structure version
+     */
+    public long getGraphStructureVersion() {
+        return graphStructureVersion.get();
+    }
+
+    /**
+     * Mark the graph structure as modified, invalidating any execution plans cached by the sessions.<br>
+     * Code that modifies the graph structure directly (i.e., via {@link #getOps()}, {@link #getVariables()} or the
+     * {@link SameDiffOp}/{@link Variable} fields instead of the SameDiff methods) should call this after doing so.
+     */
+    public void markGraphStructureModified() {
+        graphStructureVersion.incrementAndGet();
+    }
+
 
     /**
      * Returns the name(s) of the inputs for the given function
@@ -1197,6 +1299,7 @@ public class SameDiff extends SDBaseOps {
         for (String resultName : varNames) {
             variables.get(resultName).setOutputOfOp(function.getOwnName());
         }
+        markGraphStructureModified();
     }
 
     /**
@@ -1328,6 +1431,7 @@ public class SameDiff extends SDBaseOps {
             }
 
         }
+        markGraphStructureModified();
     }
 
     /**
@@ -1379,7 +1483,7 @@ public class SameDiff extends SDBaseOps {
             if (!ArrayUtils.contains(function.argNames(), oldName))
                 oldFuncs.remove(function.getOwnName());
         }
-
+        markGraphStructureModified();
     }
 
 
@@ -1649,6 +1753,18 @@ public class SameDiff extends SDBaseOps {
      * @param trainingConfig Training configuration
      */
     public void setTrainingConfig(TrainingConfig trainingConfig) {
+        TrainingConfig prev = this.trainingConfig;
+        boolean checkpointingChanged = prev == null ? trainingConfig.hasActivationCheckpointing() :
+                (prev.isAutoActivationCheckpoints() != trainingConfig.isAutoActivationCheckpoints() ||
+                        !Objects.equals(prev.getActivationCheckpoints(), trainingConfig.getActivationCheckpoints()));
+        boolean mixedPrecisionChanged = prev == null ? trainingConfig.hasMixedPrecision() :
+                prev.getMixedPrecisionDataType() != trainingConfig.getMixedPrecisionDataType();
+        if((checkpointingChanged || mixedPrecisionChanged) && sameDiffFunctionInstances.containsKey(GRAD_FN_KEY)) {
+            //Activation checkpointing and mixed precision are applied when the gradient function is created - recreate it
+            sameDiffFunctionInstances.remove(GRAD_FN_KEY);
+        }
+        if(prev != trainingConfig)
+            lossScaler = null;
         this.trainingConfig = trainingConfig;
         if(trainingConfig.getLossVariables() != null)
             this.setLossVariables(trainingConfig.getLossVariables());
@@ -1901,6 +2017,18 @@ public class SameDiff extends SDBaseOps {
             }
         }
 
+        if(trainingConfig.hasMixedPrecision()) {
+            //The parameters of this instance are the master weights; the gradient function has reduced precision copies
+            Map<String, INDArray> masterParams = new HashMap<>();
+            for(String s : paramsToTrain) {
+                if(getVariable(s).dataType().isFPType())
+                    masterParams.put(s, getVariable(s).getArr());
+            }
+            if(lossScaler == null)
+                lossScaler = new DynamicLossScaler(trainingConfig);
+            ts.setMixedPrecision(masterParams, lossScaler);
+        }
+
         Loss lastLoss = null;
         for (int i = 0; i < numEpochs; i++) {
             if (incrementEpochCount && hasListeners) {
@@ -2987,6 +3115,20 @@ public class SameDiff extends SDBaseOps {
 
 
         Preconditions.checkState(outputs != null && outputs.length > 0, "No outputs were specified");
+        InferenceSessionPool pool = sessionPool;
+        if (pool != null) {
+            //Placeholders set via setPlaceholder are per thread and are not used with session pools - must be passed in
+            try (InferenceSessionPool.Lease lease = pool.borrow()) {
+                return lease.getSession().output(Arrays.asList(outputs),
+                        placeholders,
+                        otherPlaceHolders == null ? Collections.emptyMap() : otherPlaceHolders,
+                        batch,
+                        requiredActivations,
+                        activeListeners,
+                        at);
+            }
+        }
+
         long threadId = Thread.currentThread().getId();
         if (!sessions.containsKey(threadId)) {
             log.info("Creating new InferenceSession for thread {}", threadId);
@@ -3428,6 +3570,7 @@ public class SameDiff extends SDBaseOps {
         } else {
             variables.remove(varName);
             sequences.remove(varName);
+            markGraphStructureModified();
         }
     }
 
@@ -3729,7 +3872,7 @@ public class SameDiff extends SDBaseOps {
         }
 
         //Remove all sessions in case they have any cached arrays/state
-        sessions.clear();
+        clearSessions();
 
         //If gradient function has been defined, remove it (so it will be recreated later)
         if(recreateGradFunction)
@@ -3751,6 +3894,7 @@ public class SameDiff extends SDBaseOps {
 
             variable.setVariableType(VariableType.CONSTANT);
         }
+        markGraphStructureModified();
 
 
         if (trainingConfig != null && initializedTraining) {
@@ -3829,7 +3973,7 @@ public class SameDiff extends SDBaseOps {
         }
 
         //Remove all sessions in case they have any cached arrays/state
-        sessions.clear();
+        clearSessions();
 
         //If gradient function has been defined, remove it (so it will be recreated later)
         sameDiffFunctionInstances.remove(GRAD_FN_KEY);
@@ -3849,6 +3993,7 @@ public class SameDiff extends SDBaseOps {
 
             variable.setVariableType(VariableType.VARIABLE);
         }
+        markGraphStructureModified();
 
 
         //For training: need to add new updater state
@@ -3941,7 +4086,7 @@ public class SameDiff extends SDBaseOps {
         }
 
         if (anyChanged) {
-            sessions.clear();
+            clearSessions();
 
             //Recalculate datatypes of outputs, and dynamically update them
             Set<String> allSeenOps = new HashSet<>();
@@ -4070,6 +4215,7 @@ public class SameDiff extends SDBaseOps {
 
         variables.remove(from);
         variables.put(to, v);
+        markGraphStructureModified();
 
         if(v.getVariable().getVariableType() == VariableType.CONSTANT && constantArrays.hasArray(from)) {
             constantArrays.rename(from, to);
@@ -4194,6 +4340,7 @@ public class SameDiff extends SDBaseOps {
         }
 
         variables.get(varName).getInputsForOp().remove(function.getOwnName());
+        markGraphStructureModified();
     }
 
     /**
@@ -4504,6 +4651,7 @@ public class SameDiff extends SDBaseOps {
 
         Preconditions.checkState(variable.getSameDiff() == this, "Same diff instance for variable must be the same!");
         variables.put(variable.name(), Variable.builder().name(variable.name()).variable(variable).build());
+        markGraphStructureModified();
         return variable;
     }
 
@@ -4971,6 +5119,20 @@ public class SameDiff extends SDBaseOps {
                 func.setSameDiff(sameDiff);
             }
 
+            if (trainingConfig != null && trainingConfig.hasMixedPrecision()) {
+                //Execute forward and backward passes in reduced precision. The (full precision) arrays of this instance
+                // are not modified and act as the master weights during training
+                DataType mpType = trainingConfig.getMixedPrecisionDataType();
+                Map<String, DataType> convert = new HashMap<>();
+                for (SDVariable v : sameDiff.variables()) {
+                    if ((v.dataType() != DataType.FLOAT && v.dataType() != DataType.DOUBLE) || v.getVariableType() == VariableType.ARRAY)
+                        continue;
+                    if (v.getVariableType() == VariableType.PLACEHOLDER || sameDiff.arrayAlreadyExistsForVarName(v.name()))
+                        convert.put(v.name(), mpType);
+                }
+                sameDiff.convertDataTypes(convert);
+            }
+
             List<SDVariable> finalOutputs = new ArrayList<>(lossVariables.size());
             SDVariable initialGrad = sameDiff.var("one-var", Nd4j.scalar(1.0f));
             for (String s : lossVariables) {
@@ -4982,10 +5144,11 @@ public class SameDiff extends SDBaseOps {
                         "point variable (datatype: %s). Only floating point variables may be used as loss function variable", s, v.dataType());
 
 
-                if (v.dataType() == initialGrad.dataType()) {
+                DataType lossDataType = sameDiff.getVariable(s).dataType();     //May differ from v with mixed precision
+                if (lossDataType == initialGrad.dataType()) {
                     sameDiff.setGradientForVariableName(v.name(), initialGrad);
                 } else {
-                    initialGrad = initialGrad.castTo(v.dataType());
+                    initialGrad = initialGrad.castTo(lossDataType);
                     sameDiff.setGradientForVariableName(v.name(), initialGrad);
                 }
 
@@ -5367,6 +5530,11 @@ public class SameDiff extends SDBaseOps {
                 }
             }
 
+            if (trainingConfig != null && trainingConfig.hasActivationCheckpointing()) {
+                ActivationCheckpointing.apply(sameDiff, ops.keySet(), trainingConfig.getActivationCheckpoints(),
+                        trainingConfig.isAutoActivationCheckpoints());
+            }
+
             DataType dataType = trainingConfig == null ? DataType.FLOAT : (trainingConfig.getInitialLossDataType() != null ? trainingConfig.getInitialLossDataType() : DataType.FLOAT);
             return new SDVariable[]{sameDiff.var(GRAD_FN_KEY, dataType, 1)};
         });
@@ -6578,7 +6746,7 @@ public class SameDiff extends SDBaseOps {
                     break;
             }
         }
-
+        clone.markGraphStructureModified();
 
         return clone;
     }
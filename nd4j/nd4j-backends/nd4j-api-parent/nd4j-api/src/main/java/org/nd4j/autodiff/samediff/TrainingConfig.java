@@ -52,6 +52,12 @@ public class TrainingConfig {
     private int iterationCount;
     private int epochCount;
     private DataType initialLossDataType;
+    private List<String> activationCheckpoints;
+    private boolean autoActivationCheckpoints;
+    private DataType mixedPrecisionDataType;
+    private double initialLossScale = 32768.0;
+    private boolean dynamicLossScaling = true;
+    private int lossScaleGrowthInterval = 2000;
 
 
     private Map<String, List<IEvaluation>> trainEvaluations = new HashMap<>();
@@ -134,6 +140,21 @@ public class TrainingConfig {
         return new Builder();
     }
 
+    /**
+     * @return True if activation checkpointing is enabled - see {@link Builder#activationCheckpoints(String...)} and
+     * {@link Builder#autoActivationCheckpoints()}
+     */
+    public boolean hasActivationCheckpointing(){
+        return autoActivationCheckpoints || (activationCheckpoints != null && !activationCheckpoints.isEmpty());
+    }
+
+    /**
+     * @return True if mixed precision training is enabled - see {@link Builder#mixedPrecision(DataType)}
+     */
+    public boolean hasMixedPrecision(){
+        return mixedPrecisionDataType != null;
+    }
+
     /**
      * Get the index of the label array that the specified variable is associated with
      * @param s Name of the variable
@@ -156,6 +177,12 @@ public class TrainingConfig {
         private boolean skipValidation = false;
         private boolean markLabelsUnused = false;
         private DataType initialLossDataType = DataType.FLOAT;
+        private List<String> activationCheckpoints;
+        private boolean autoActivationCheckpoints = false;
+        private DataType mixedPrecisionDataType;
+        private double initialLossScale = 32768.0;
+        private boolean dynamicLossScaling = true;
+        private int lossScaleGrowthInterval = 2000;
 
         private Map<String, List<IEvaluation>> trainEvaluations = new HashMap<>();
         private Map<String, Integer> trainEvaluationLabels = new HashMap<>();
@@ -400,6 +427,93 @@ public class TrainingConfig {
             return this;
         }
 
+        /**
+         * Enable activation checkpointing (rematerialization) with the specified checkpoint variables.<br>
+         * By default, all forward pass activations needed during backprop are kept in memory until they are used in
+         * the backward pass. With activation checkpointing, only the checkpoint activations are kept; all other
+         * activations are released after the forward pass, and recomputed from the nearest checkpoints when the
+         * backward pass needs them. This reduces memory use (allowing larger minibatches) at the cost of extra
+         * computation.<br>
+         * Checkpoints are usually the outputs of layers or blocks - for example, the output of each transformer block.
+         * Must be set before the gradient function is created. See also {@link #autoActivationCheckpoints()}
+         *
+         * @param checkpoints Names of the activations (ARRAY type variables) to keep during the forward pass
+         */
+        public Builder activationCheckpoints(String... checkpoints){
+            return activationCheckpoints(Arrays.asList(checkpoints));
+        }
+
+        /**
+         * See {@link #activationCheckpoints(String...)}
+         */
+        public Builder activationCheckpoints(List<String> checkpoints){
+            this.activationCheckpoints = checkpoints == null ? null : new ArrayList<>(checkpoints);
+            return this;
+        }
+
+        /**
+         * Enable activation checkpointing (see {@link #activationCheckpoints(String...)}) with checkpoints selected
+         * automatically: given N forward activations used in the backward pass, every ceil(sqrt(N))th one (in execution
+         * order) is kept, for O(sqrt(N)) activation memory at the cost of roughly one extra forward pass per iteration.
+         * Any checkpoints specified via {@link #activationCheckpoints(String...)} are also kept.
+         */
+        public Builder autoActivationCheckpoints(){
+            return autoActivationCheckpoints(true);
+        }
+
+        /**
+         * See {@link #autoActivationCheckpoints()}
+         */
+        public Builder autoActivationCheckpoints(boolean auto){
+            this.autoActivationCheckpoints = auto;
+            return this;
+        }
+
+        /**
+         * Enable mixed precision training: the forward and backward passes are executed in the specified reduced
+         * precision datatype ({@link DataType#HALF} or {@link DataType#BFLOAT16}), while the parameters (the "master
+         * weights") and the updater state are kept in their original datatype (usually FP32).<br>
+         * Each iteration, the master weights are cast to the reduced precision datatype for the forward/backward
+         * passes; the resulting gradients are cast back and the updater is applied to the master weights.<br>
+         * Loss scaling is used to avoid gradient underflow - see {@link #lossScaling(double, boolean)}.
+         * Must be set before the gradient function is created.
+         *
+         * @param dataType Datatype for the forward and backward passes. Null to disable mixed precision training
+         */
+        public Builder mixedPrecision(DataType dataType){
+            Preconditions.checkArgument(dataType == null || dataType == DataType.HALF || dataType == DataType.BFLOAT16,
+                    "Mixed precision datatype must be HALF or BFLOAT16, got %s", dataType);
+            this.mixedPrecisionDataType = dataType;
+            return this;
+        }
+
+        /**
+         * Loss scaling configuration for mixed precision training (see {@link #mixedPrecision(DataType)}).
+         * The gradients are computed for (loss * scale), then divided by the scale before the updater is applied.
+         * Iterations where any gradient is NaN or infinite are skipped.<br>
+         * With dynamic loss scaling (the default), the scale is halved whenever an overflow occurs, and doubled after
+         * {@link #lossScaleGrowthInterval(int)} consecutive iterations without overflow.
+         *
+         * @param initialScale Initial loss scale. Default: 32768 (2^15)
+         * @param dynamic      If true: use dynamic loss scaling. If false: the scale is fixed
+         */
+        public Builder lossScaling(double initialScale, boolean dynamic){
+            Preconditions.checkArgument(initialScale > 0, "Loss scale must be positive, got %s", initialScale);
+            this.initialLossScale = initialScale;
+            this.dynamicLossScaling = dynamic;
+            return this;
+        }
+
+        /**
+         * Number of consecutive iterations without gradient overflow after which the dynamic loss scale is doubled.
+         * Default: 2000. See {@link #lossScaling(double, boolean)}
+         */
+        public Builder lossScaleGrowthInterval(int iterations){
+            Preconditions.checkArgument(iterations > 0, "Loss scale growth interval must be positive, got %s", iterations);
+            this.lossScaleGrowthInterval = iterations;
+            return this;
+        }
+
         public Builder skipBuilderValidation(boolean skip){
             this.skipValidation = skip;
             return this;
@@ -527,9 +641,16 @@ public class TrainingConfig {
                         validationEvaluations.keySet(), validationEvaluationLabels.keySet());
             }
 
-            return new TrainingConfig(updater, regularization, minimize, dataSetFeatureMapping, dataSetLabelMapping,
+            TrainingConfig tc = new TrainingConfig(updater, regularization, minimize, dataSetFeatureMapping, dataSetLabelMapping,
                     dataSetFeatureMaskMapping, dataSetLabelMaskMapping, lossVariables,
                     trainEvaluations, trainEvaluationLabels, validationEvaluations, validationEvaluationLabels,initialLossDataType);
+            tc.setActivationCheckpoints(activationCheckpoints);
+            tc.setAutoActivationCheckpoints(autoActivationCheckpoints);
+            tc.setMixedPrecisionDataType(mixedPrecisionDataType);
+            tc.setInitialLossScale(initialLossScale);
+            tc.setDynamicLossScaling(dynamicLossScaling);
+            tc.setLossScaleGrowthInterval(lossScaleGrowthInterval);
+            return tc;
         }
     }
 
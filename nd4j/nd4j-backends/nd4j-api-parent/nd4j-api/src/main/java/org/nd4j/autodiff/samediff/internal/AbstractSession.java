@@ -38,6 +38,8 @@ import org.nd4j.linalg.dataset.api.MultiDataSet;
 import org.nd4j.common.function.Predicate;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 import static org.nd4j.imports.VariableUtils.stripVarSuffix;
@@ -86,11 +88,11 @@ public abstract class AbstractSession<T, O> {
      * in this set may not be executed depending on the graph structure - i.e.,
      * switch ops, etc
      */
-    protected final Set<String> subgraph = new LinkedHashSet<>();
+    protected Set<String> subgraph = new LinkedHashSet<>();
     /**
      * As per subgraph set, but for ops instead
      */
-    protected final Set<String> subgraphOps = new LinkedHashSet<>();
+    protected Set<String> subgraphOps = new LinkedHashSet<>();
 
     /**
      * Contains the names of ops that don't have any inputs. Kept because normally
@@ -98,12 +100,66 @@ public abstract class AbstractSession<T, O> {
      * their all their inputs have been calculated; we'll trigger that step manually
      * during execution initialization
      */
-    protected final Set<String> zeroInputOpsInSubgraph = new HashSet<>();
+    protected Set<String> zeroInputOpsInSubgraph = new HashSet<>();
+
+    /**
+     * Default maximum number of execution plans to keep in {@link #executionPlanCache}
+     */
+    public static final int DEFAULT_EXECUTION_PLAN_CACHE_SIZE = 32;
+
+    /**
+     * Cache of execution plans (subgraph, subgraph ops, zero input ops and the
+     * initial execution steps) from previous calls to output.
+     * Keyed by the requested outputs, the present placeholders and the graph structure version -
+     * see {@link ExecutionPlanKey}. Least recently used plans are evicted once the
+     * cache holds more than {@link #executionPlanCacheSize} entries
+     */
+    protected final Map<ExecutionPlanKey, ExecutionPlan> executionPlanCache = new LinkedHashMap<ExecutionPlanKey, ExecutionPlan>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ExecutionPlanKey, ExecutionPlan> eldest) {
+            return size() > executionPlanCacheSize;
+        }
+    };
+
+    /**
+     * Maximum number of execution plans to cache. 0 disables caching of execution plans
+     */
+    @Getter
+    @Setter
+    protected int executionPlanCacheSize = DEFAULT_EXECUTION_PLAN_CACHE_SIZE;
+
+    @Getter
+    protected long executionPlanCacheHits;
+    @Getter
+    protected long executionPlanCacheMisses;
+
+    /**
+     * Ops that have been parameterized and submitted for concurrent execution (inter-op parallelism) but have not yet
+     * been processed by the main execution loop. See {@link #canExecuteConcurrently(ExecStep, SameDiffOp)}
+     */
+    protected final Map<ExecStep, PendingOp<O>> pendingOps = new HashMap<>();
 
     public AbstractSession(@NonNull SameDiff sameDiff) {
         this.sameDiff = sameDiff;
     }
 
+    /**
+     * Clear all cached execution plans. Normally not required: cached plans are
+     * invalidated automatically when the graph structure changes
+     * (see {@link SameDiff#getGraphStructureVersion()})
+     */
+    public void clearExecutionPlanCache() {
+        executionPlanCache.clear();
+    }
+
+    /**
+     * Reset the execution plan cache hit/miss counters to 0
+     */
+    public void resetExecutionPlanCacheStats() {
+        executionPlanCacheHits = 0;
+        executionPlanCacheMisses = 0;
+    }
+
     public boolean contains(String variable, String frame, int iteration, FrameIter parentFrameIter) {
         VarId varId = new VarId(variable, frame, iteration, parentFrameIter);
         return nodeValueOutputs.containsKey(varId);
@@ -229,23 +285,13 @@ public abstract class AbstractSession<T, O> {
         otherPlaceHolderValues = preprocessValuePlaceholders(otherPlaceHolderValues, at);
 
         // Clear state from past iterations, if any
+        awaitPendingOps();
         dt.clear();
-        subgraph.clear();
-        subgraphOps.clear();
 
-        // Step 1: determine subgraph structure we actually need to execute
-        // Basic plan: work backwards from the variables we want, based on the graph
-        // structure, to work out what
-        // we actually need to execute
-        // TODO we'll optimize this and cache the results, only recalculating if the
-        // graph structure changes
         Set<String> userRequestedUnique = new LinkedHashSet<>(variables);
         Set<String> allRequired = new LinkedHashSet<>(requiredActivations);
         allRequired.addAll(variables);
-        initSubgraph(allRequired);
 
-        // Step 2: Check that we have required placeholders
-        List<String> phNames = sameDiff.inputs();
         Set<String> presentPlaceholders = new HashSet<>();
         // add all placeholder values together
         if (placeholderValues != null && !placeholderValues.isEmpty())
@@ -253,40 +299,21 @@ public abstract class AbstractSession<T, O> {
         if (otherPlaceHolderValues != null && !otherPlaceHolderValues.isEmpty())
             presentPlaceholders.addAll(otherPlaceHolderValues.keySet());
 
-        if (presentPlaceholders.isEmpty() || !presentPlaceholders.containsAll(phNames)) {
-            /*
-             * We only have a subset of all placeholders
-             * Validate that we have all *required* placeholder values. Some might not be
-             * needed to calculate the requested outputs
-             * A placeholder is required if:
-             * (a) It's one of the requested outputs
-             * (b) It's required to calculate any of the ops in the subgraph
-             * For example, we might have a label placeholder, and we're doing inference not
-             * training
-             */
-            for (String s : phNames) {
-                boolean required = false;
-                if (variables.contains(s)) {
-                    required = true;
-                }
-                if (!required) {
-                    Variable v = sameDiff.getVariables().get(s);
-                    if (v.getInputsForOp() != null) {
-                        for (String s2 : v.getInputsForOp()) {
-                            if (subgraph.contains(s2)) {
-                                // Placeholder is required
-                                required = true;
-                                break;
-                            }
-                        }
-                    }
-                }
-
-                if (required && (presentPlaceholders.isEmpty() || !presentPlaceholders.contains(s))) {
-                    throw new IllegalStateException(
-                            "An input placeholder \"" + s + "\" is required to calculate the requested outputs," +
-                                    " but a placeholder value was not provided");
-                }
+        // Steps 1 and 2 only depend on the graph structure, the requested outputs and
+        // which placeholders are present - reuse the plan from a previous call if possible
+        ExecutionPlanKey planKey = new ExecutionPlanKey(userRequestedUnique, allRequired, presentPlaceholders,
+                sameDiff.getGraphStructureVersion(), sameDiff.getOps().size(), sameDiff.getVariables().size());
+        ExecutionPlan plan = executionPlanCacheSize > 0 ? executionPlanCache.get(planKey) : null;
+        if (plan != null) {
+            executionPlanCacheHits++;
+            subgraph = plan.getSubgraph();
+            subgraphOps = plan.getSubgraphOps();
+            zeroInputOpsInSubgraph = plan.getZeroInputOps();
+        } else {
+            executionPlanCacheMisses++;
+            plan = createExecutionPlan(variables, allRequired, presentPlaceholders);
+            if (executionPlanCacheSize > 0) {
+                executionPlanCache.put(planKey, plan);
             }
         }
 
@@ -295,26 +322,10 @@ public abstract class AbstractSession<T, O> {
         // And also any "zero dependency" ops - i.e., those without any inputs
         ExecStep start = new ExecStep(ExecType.EXEC_START, "", null); // Dummy dependency to trigger the variables and
                                                                       // constants
-        for (SDVariable v : sameDiff.variables()) {
-            VariableType vt = v.getVariableType();
-            if (vt == VariableType.VARIABLE || vt == VariableType.CONSTANT) {
-                ExecType et = vt == VariableType.VARIABLE ? ExecType.VARIABLE : ExecType.CONSTANT;
-                ExecStep es = new ExecStep(et, v.name(), new FrameIter(OUTER_FRAME, 0, null));
-                dt.addDependency(es, start);
-
-                Variable var = sameDiff.getVariables().get(v.name());
-                if (var.getControlDeps() != null) {
-                    addVarControlDeps(es, var); // Before this variable can be considered available for use, we need
-                                                // specified op to be executed
-                }
-            }
-        }
-
-        for (String s : phNames) {
-            ExecStep es = new ExecStep(ExecType.PLACEHOLDER, s, new FrameIter(OUTER_FRAME, 0, null));
+        for (ExecStep es : plan.getStartSteps()) {
             dt.addDependency(es, start);
 
-            Variable var = sameDiff.getVariables().get(s);
+            Variable var = sameDiff.getVariables().get(es.getName());
             if (var.getControlDeps() != null) {
                 addVarControlDeps(es, var); // Before this variable can be considered available for use, we need
                                             // specified op to be executed
@@ -478,60 +489,35 @@ public abstract class AbstractSession<T, O> {
                 }
 
                 // Resolve the inputs to this execution step (op) to actual arrays
-                Set<VarId> inputs = null;
-                Set<VarId> allIterInputs = null;
-                Set<String> constAndPhInputs = null;
-                DependencyList<ExecStep, ExecStep> dl = dt.getDependencies(es);
-
+                OpInputs opInputs = resolveOpInputs(es, op);
+                Set<VarId> inputs = opInputs.getInputs();
+                Set<VarId> allIterInputs = opInputs.getAllIterInputs();
+                Set<String> constAndPhInputs = opInputs.getConstAndPhInputs();
                 List<String> inputNames = op.getInputsToOp();
-                if (inputNames != null && !inputNames.isEmpty()) {
-                    inputs = new LinkedHashSet<>();
-                    allIterInputs = new LinkedHashSet<>();
-                    constAndPhInputs = new LinkedHashSet<>();
-                    Iterable<ExecStep> deps = dl.getDependencies();
-                    if (deps != null) {
-                        for (ExecStep dep : deps) {
-                            switch (dep.getType()) {
-                                case OP:
-                                case SWITCH_L:
-                                case SWITCH_R:
-                                    // The current execution step depends on one output of the op "dep"
-                                    SameDiffOp toExecOp = sameDiff.getOps().get(es.getName());
-                                    List<String> inputsToExecOp = toExecOp.getInputsToOp();
-                                    SameDiffOp inputOp = sameDiff.getOps().get(dep.getName());
-                                    List<String> inputOpOutNames = inputOp.getOutputsOfOp();
-                                    for (String s : inputsToExecOp) {
-                                        if (inputOpOutNames.contains(s)) {
-                                            VarId vid = new VarId(s, dep.getFrameIter().getFrame(),
-                                                    dep.getFrameIter().getIteration(),
-                                                    dep.getFrameIter().getParentFrame());
-                                            inputs.add(vid);
-                                        }
-                                    }
-                                    break;
-                                case VARIABLE:
-                                    inputs.add(new VarId(dep.getName(), dep.getFrameIter().getFrame(),
-                                            dep.getFrameIter().getIteration(), dep.getFrameIter().getParentFrame()));
-                                    break;
-                                case CONSTANT:
-                                case PLACEHOLDER:
-                                    constAndPhInputs.add(dep.getName());
-                                    break;
-                                default:
-                                    throw new UnsupportedOperationException("Not yet implemented: " + dep.getType());
-                            }
-                        }
-                    }
-                }
 
                 // Do execution of the op, in 2 steps
                 // (a) "Parameterize" the op - i.e., find and set the arrays on the op, allocate
                 // outputs, etc ready for execution
                 // (b) actually execute the operation
-                O parameterizedOp = getAndParameterizeOp(opName, outFrameIter, inputs, allIterInputs, constAndPhInputs,
-                        placeholderValues, reqOutputVariablesSet, otherPlaceHolderValues);
-                ExecutionResult opOutputValues = getOutputs(parameterizedOp, outFrameIter, inputs, allIterInputs,
-                        constAndPhInputs, listeners, at, batch, reqOutputVariablesSet, otherPlaceHolderValues);
+                // If inter-op parallelism is enabled, the op (and other independent ops that are ready) may instead
+                // be executed on another thread, in which case we only need to wait for the result here
+                if ((listeners == null || listeners.isEmpty()) && canExecuteConcurrently(es, op)) {
+                    submitReadyOps(es, opInputs, placeholderValues, reqOutputVariablesSet, otherPlaceHolderValues);
+                }
+
+                O parameterizedOp;
+                ExecutionResult opOutputValues;
+                PendingOp<O> pending = pendingOps.remove(es);
+                if (pending != null) {
+                    parameterizedOp = pending.getOp();
+                    opOutputValues = processConcurrentOutputs(parameterizedOp, outFrameIter, inputs, allIterInputs,
+                            constAndPhInputs, at, batch, reqOutputVariablesSet, awaitPendingOp(es, pending));
+                } else {
+                    parameterizedOp = getAndParameterizeOp(opName, outFrameIter, inputs, allIterInputs, constAndPhInputs,
+                            placeholderValues, reqOutputVariablesSet, otherPlaceHolderValues);
+                    opOutputValues = getOutputs(parameterizedOp, outFrameIter, inputs, allIterInputs,
+                            constAndPhInputs, listeners, at, batch, reqOutputVariablesSet, otherPlaceHolderValues);
+                }
                 List<String> opOutVarNames = op.getOutputsOfOp();
 
                 int lengthToCheck = opOutputValues.numResults();
@@ -709,6 +695,10 @@ public abstract class AbstractSession<T, O> {
             step++;
         }
 
+        // Ops may have been submitted for concurrent execution that turned out not to be needed for the requested
+        // outputs - wait for them before returning, as they may still be writing to their output arrays
+        awaitPendingOps();
+
         // TODO we should clear the node outputs map to get rid of the invalid (closed,
         // out of workspace, etc) arrays
 
@@ -717,6 +707,185 @@ public abstract class AbstractSession<T, O> {
                 .valueOutputs(outValues).build();
     }
 
+    /**
+     * Resolve the inputs of the specified op execution step, based on the dependencies recorded for it in the
+     * dependency tracker
+     *
+     * @param es Execution step for the op
+     * @param op Op to resolve the inputs for
+     * @return The inputs of the op
+     */
+    protected OpInputs resolveOpInputs(ExecStep es, SameDiffOp op) {
+        Set<VarId> inputs = null;
+        Set<VarId> allIterInputs = null;
+        Set<String> constAndPhInputs = null;
+        DependencyList<ExecStep, ExecStep> dl = dt.getDependencies(es);
+
+        List<String> inputNames = op.getInputsToOp();
+        if (inputNames != null && !inputNames.isEmpty()) {
+            inputs = new LinkedHashSet<>();
+            allIterInputs = new LinkedHashSet<>();
+            constAndPhInputs = new LinkedHashSet<>();
+            Iterable<ExecStep> deps = dl.getDependencies();
+            if (deps != null) {
+                for (ExecStep dep : deps) {
+                    switch (dep.getType()) {
+                        case OP:
+                        case SWITCH_L:
+                        case SWITCH_R:
+                            // The current execution step depends on one output of the op "dep"
+                            SameDiffOp toExecOp = sameDiff.getOps().get(es.getName());
+                            List<String> inputsToExecOp = toExecOp.getInputsToOp();
+                            SameDiffOp inputOp = sameDiff.getOps().get(dep.getName());
+                            List<String> inputOpOutNames = inputOp.getOutputsOfOp();
+                            for (String s : inputsToExecOp) {
+                                if (inputOpOutNames.contains(s)) {
+                                    VarId vid = new VarId(s, dep.getFrameIter().getFrame(),
+                                            dep.getFrameIter().getIteration(),
+                                            dep.getFrameIter().getParentFrame());
+                                    inputs.add(vid);
+                                }
+                            }
+                            break;
+                        case VARIABLE:
+                            inputs.add(new VarId(dep.getName(), dep.getFrameIter().getFrame(),
+                                    dep.getFrameIter().getIteration(), dep.getFrameIter().getParentFrame()));
+                            break;
+                        case CONSTANT:
+                        case PLACEHOLDER:
+                            constAndPhInputs.add(dep.getName());
+                            break;
+                        default:
+                            throw new UnsupportedOperationException("Not yet implemented: " + dep.getType());
+                    }
+                }
+            }
+        }
+
+        return new OpInputs(inputs, allIterInputs, constAndPhInputs);
+    }
+
+    /**
+     * Whether the specified op execution step may be executed on another thread, concurrently with other ops.<br>
+     * Only ops whose execution is independent of the session state (i.e., only reads from and writes to the arrays
+     * set on the op during parameterization) should return true. Default implementation returns false.
+     *
+     * @param es Execution step for the op
+     * @param op The op
+     * @return True if the op can be submitted via {@link #submitOp(Object, FrameIter, OpInputs, Map)}
+     */
+    protected boolean canExecuteConcurrently(ExecStep es, SameDiffOp op) {
+        return false;
+    }
+
+    /**
+     * @return Maximum number of ops submitted for concurrent execution at any time
+     */
+    protected int maxConcurrentOps() {
+        return 1;
+    }
+
+    /**
+     * Submit the specified (already parameterized) op for execution on another thread.<br>
+     * Only called for ops where {@link #canExecuteConcurrently(ExecStep, SameDiffOp)} returns true
+     *
+     * @param op                Parameterized op, as returned by {@link #getAndParameterizeOp(String, FrameIter, Set, Set, Set, Map, Set, Map)}
+     * @param outputFrameIter   The frame and iteration of the outputs
+     * @param inputs            The inputs to the op
+     * @param otherPlaceHolders Other placeholder values
+     * @return Future for the op outputs
+     */
+    protected Future<ExecutionResult> submitOp(O op, FrameIter outputFrameIter, OpInputs inputs,
+            Map<String, SDValue> otherPlaceHolders) {
+        throw new UnsupportedOperationException("Concurrent op execution is not supported by " + getClass().getSimpleName());
+    }
+
+    /**
+     * Process the outputs of an op that was executed concurrently via
+     * {@link #submitOp(Object, FrameIter, OpInputs, Map)} - i.e., everything that
+     * {@link #getOutputs(Object, FrameIter, Set, Set, Set, List, At, MultiDataSet, Set, Map)} does, other than
+     * actually executing the op
+     *
+     * @param out The outputs of the executed op
+     * @return The (processed) op outputs
+     */
+    protected ExecutionResult processConcurrentOutputs(O op, FrameIter outputFrameIter, Set<VarId> inputs,
+            Set<VarId> allIterInputs, Set<String> constAndPhInputs, At at, MultiDataSet batch,
+            Set<String> allReqVariables, ExecutionResult out) {
+        throw new UnsupportedOperationException("Concurrent op execution is not supported by " + getClass().getSimpleName());
+    }
+
+    /**
+     * Parameterize and submit for concurrent execution the specified op execution step (if not already submitted),
+     * plus any other ops that are ready for execution and can also be executed concurrently, up to
+     * {@link #maxConcurrentOps()} ops in flight. If no other op is available to execute concurrently, the specified
+     * op is not submitted and should be executed on the calling thread instead.
+     */
+    protected void submitReadyOps(ExecStep es, OpInputs esInputs, Map<String, T> placeholderValues,
+            Set<String> reqOutputVariables, Map<String, SDValue> otherPlaceHolderValues) {
+        List<ExecStep> toSubmit = new ArrayList<>();
+        if (!pendingOps.containsKey(es)) {
+            toSubmit.add(es);
+        }
+        int maxOps = maxConcurrentOps();
+        for (ExecStep s : dt.getAllSatisfiedQueue()) {
+            if (pendingOps.size() + toSubmit.size() >= maxOps)
+                break;
+            if (s.getType() == ExecType.OP && !s.equals(es) && !pendingOps.containsKey(s)
+                    && canExecuteConcurrently(s, sameDiff.getOps().get(s.getName()))) {
+                toSubmit.add(s);
+            }
+        }
+
+        if (pendingOps.isEmpty() && toSubmit.size() < 2) {
+            // Nothing to overlap with - cheaper to just execute on the calling thread
+            return;
+        }
+
+        for (ExecStep s : toSubmit) {
+            OpInputs in = s == es ? esInputs : resolveOpInputs(s, sameDiff.getOps().get(s.getName()));
+            O p = getAndParameterizeOp(s.getName(), s.getFrameIter(), in.getInputs(), in.getAllIterInputs(),
+                    in.getConstAndPhInputs(), placeholderValues, reqOutputVariables, otherPlaceHolderValues);
+            pendingOps.put(s, new PendingOp<>(p, submitOp(p, s.getFrameIter(), in, otherPlaceHolderValues)));
+        }
+    }
+
+    /**
+     * Wait for the result of an op submitted for concurrent execution, rethrowing any exception from the op execution
+     */
+    protected ExecutionResult awaitPendingOp(ExecStep es, PendingOp<O> pending) {
+        try {
+            return pending.getResult().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for execution of op \"" + es.getName() + "\"", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            throw new RuntimeException("Error executing op \"" + es.getName() + "\"", cause);
+        }
+    }
+
+    /**
+     * Wait for all ops still pending concurrent execution to complete, and discard their results
+     */
+    protected void awaitPendingOps() {
+        if (pendingOps.isEmpty())
+            return;
+        for (PendingOp<O> p : pendingOps.values()) {
+            try {
+                p.getResult().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                log.debug("Discarding failed execution of op not required for requested outputs", e.getCause());
+            }
+        }
+        pendingOps.clear();
+    }
+
     private FrameIter getExitIter(ExecStep es) {
         FrameIter outFrameIter;
         // Exit node forwards input to parent frame
@@ -1042,6 +1211,87 @@ public abstract class AbstractSession<T, O> {
         }
     }
 
+    /**
+     * Create the execution plan for the specified outputs: determine the subgraph
+     * that needs to be executed, validate that all required placeholders are
+     * present, and determine the initial execution steps (variables, constants and
+     * placeholders).<br>
+     * Sets the {@link #subgraph}, {@link #subgraphOps} and {@link #zeroInputOpsInSubgraph} fields
+     *
+     * @param variables           Variables requested by the user
+     * @param allRequired         All required variables - requested outputs plus required activations
+     * @param presentPlaceholders Names of the placeholders that have values for this call
+     * @return The execution plan
+     */
+    protected ExecutionPlan createExecutionPlan(List<String> variables, Set<String> allRequired,
+            Set<String> presentPlaceholders) {
+        subgraph = new LinkedHashSet<>();
+        subgraphOps = new LinkedHashSet<>();
+        zeroInputOpsInSubgraph = new HashSet<>();
+
+        // Step 1: determine subgraph structure we actually need to execute
+        // Basic plan: work backwards from the variables we want, based on the graph
+        // structure, to work out what
+        // we actually need to execute
+        initSubgraph(allRequired);
+
+        // Step 2: Check that we have required placeholders
+        List<String> phNames = sameDiff.inputs();
+        if (presentPlaceholders.isEmpty() || !presentPlaceholders.containsAll(phNames)) {
+            /*
+             * We only have a subset of all placeholders
+             * Validate that we have all *required* placeholder values. Some might not be
+             * needed to calculate the requested outputs
+             * A placeholder is required if:
+             * (a) It's one of the requested outputs
+             * (b) It's required to calculate any of the ops in the subgraph
+             * For example, we might have a label placeholder, and we're doing inference not
+             * training
+             */
+            for (String s : phNames) {
+                boolean required = false;
+                if (variables.contains(s)) {
+                    required = true;
+                }
+                if (!required) {
+                    Variable v = sameDiff.getVariables().get(s);
+                    if (v.getInputsForOp() != null) {
+                        for (String s2 : v.getInputsForOp()) {
+                            if (subgraph.contains(s2)) {
+                                // Placeholder is required
+                                required = true;
+                                break;
+                            }
+                        }
+                    }
+                }
+
+                if (required && (presentPlaceholders.isEmpty() || !presentPlaceholders.contains(s))) {
+                    throw new IllegalStateException(
+                            "An input placeholder \"" + s + "\" is required to calculate the requested outputs," +
+                                    " but a placeholder value was not provided");
+                }
+            }
+        }
+
+        // Initial execution steps: variables, constants and placeholders
+        List<ExecStep> startSteps = new ArrayList<>();
+        for (SDVariable v : sameDiff.variables()) {
+            VariableType vt = v.getVariableType();
+            if (vt == VariableType.VARIABLE || vt == VariableType.CONSTANT) {
+                ExecType et = vt == VariableType.VARIABLE ? ExecType.VARIABLE : ExecType.CONSTANT;
+                startSteps.add(new ExecStep(et, v.name(), new FrameIter(OUTER_FRAME, 0, null)));
+            }
+        }
+
+        for (String s : phNames) {
+            startSteps.add(new ExecStep(ExecType.PLACEHOLDER, s, new FrameIter(OUTER_FRAME, 0, null)));
+        }
+
+        return new ExecutionPlan(Collections.unmodifiableSet(subgraph), Collections.unmodifiableSet(subgraphOps),
+                Collections.unmodifiableSet(zeroInputOpsInSubgraph), Collections.unmodifiableList(startSteps));
+    }
+
     /**
      * Initialize the subgraph - the subgraph and subgraphOps sets
      * This works our what ops and variables we might need to execute to get the
@@ -1426,6 +1676,57 @@ public abstract class AbstractSession<T, O> {
 
     }
 
+    /**
+     * OpInputs: the resolved inputs for an op execution step
+     */
+    @Getter
+    @AllArgsConstructor
+    protected static class OpInputs {
+        private final Set<VarId> inputs;
+        private final Set<VarId> allIterInputs;
+        private final Set<String> constAndPhInputs;
+    }
+
+    /**
+     * PendingOp: a parameterized op that has been submitted for concurrent execution
+     */
+    @Getter
+    @AllArgsConstructor
+    protected static class PendingOp<O> {
+        private final O op;
+        private final Future<ExecutionResult> result;
+    }
+
+    /**
+     * ExecutionPlanKey: identifies a cached {@link ExecutionPlan}.<br>
+     * The graph structure version, number of ops and number of variables are used
+     * to detect changes to the graph structure since the plan was created
+     */
+    @Data
+    @AllArgsConstructor
+    protected static class ExecutionPlanKey {
+        private final Set<String> outputVariables;
+        private final Set<String> requiredVariables;
+        private final Set<String> presentPlaceholders;
+        private final long graphStructureVersion;
+        private final int numOps;
+        private final int numVariables;
+    }
+
+    /**
+     * ExecutionPlan: the parts of execution setup that depend only on the graph
+     * structure, the requested outputs and the set of present placeholders.<br>
+     * Instances are immutable and can be reused across calls to output
+     */
+    @Getter
+    @AllArgsConstructor
+    protected static class ExecutionPlan {
+        private final Set<String> subgraph;
+        private final Set<String> subgraphOps;
+        private final Set<String> zeroInputOps;
+        private final List<ExecStep> startSteps;
+    }
+
     /**
      * Used in getting the next ExecStep that matches the specified (current)
      * frame/iteration
@@ -0,0 +1,407 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.autodiff.samediff.internal;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.nd4j.autodiff.functions.DifferentialFunction;
+import org.nd4j.autodiff.samediff.SDVariable;
+import org.nd4j.autodiff.samediff.SameDiff;
+import org.nd4j.autodiff.samediff.VariableType;
+import org.nd4j.autodiff.samediff.optimize.optimizations.OptimizationUtils;
+import org.nd4j.autodiff.samediff.serde.FlatBuffersMapper;
+import org.nd4j.common.base.Preconditions;
+import org.nd4j.linalg.api.ops.RandomOp;
+import org.nd4j.linalg.api.ops.impl.controlflow.compat.BaseCompatOp;
+
+import java.util.*;
+
+/**
+ * Activation checkpointing (also known as rematerialization or gradient checkpointing) for the SameDiff gradient
+ * function.<br>
+ * Normally, every forward pass activation that is needed by the backward pass is kept in memory from the time it is
+ * calculated until the backward ops that use it have been executed. With activation checkpointing, only the
+ * <i>checkpoint</i> activations are kept: backward ops instead use copies of the forward ops that recompute the other
+ * activations from the nearest checkpoints. The original (non-checkpoint) activations are then released as soon as the
+ * forward pass no longer needs them.<br>
+ * The recompute ops are given control dependencies on the gradient variables used by the backward op that needs them,
+ * so they are only executed once the backward pass has reached that point (and not eagerly during the forward pass).
+ * A recomputed activation is shared by all later backward ops, so each segment between checkpoints is recomputed once.
+ * <br>
+ * Checkpoints can be specified explicitly, or chosen automatically: with N forward activations used in the backward
+ * pass, every ceil(sqrt(N))th one (in execution order) is used as a checkpoint, giving O(sqrt(N)) activation memory
+ * for the cost of roughly one extra forward pass.<br>
+ * Outputs of random ops (such as dropout) and ops with control dependencies are never recomputed, and graphs with
+ * control flow are not modified.<br>
+ * This is normally enabled via {@link org.nd4j.autodiff.samediff.TrainingConfig.Builder#activationCheckpoints(String...)}
+ * or {@link org.nd4j.autodiff.samediff.TrainingConfig.Builder#autoActivationCheckpoints()}, and applied when the
+ * gradient function is created.
+ */
+@Slf4j
+public class ActivationCheckpointing {
+    public static final String RECOMPUTE_SUFFIX = "_recompute";
+
+    private final SameDiff sd;
+    private final Set<String> forwardOps;
+    private final Set<String> keep = new HashSet<>();
+    private final Map<String, Integer> order;
+    private final Map<String, List<Recomputed>> recomputed = new HashMap<>();
+    private int numRecomputeOps;
+
+    private ActivationCheckpointing(SameDiff sd, Set<String> forwardOps) {
+        this.sd = sd;
+        this.forwardOps = forwardOps;
+        this.order = executionOrder(sd);
+    }
+
+    /**
+     * Apply activation checkpointing to the specified gradient function
+     *
+     * @param gradFn      Gradient function (i.e., SameDiff instance containing both the forward and backward ops)
+     * @param forwardOps  Names of the forward pass ops in the gradient function
+     * @param checkpoints Names of the activations to use as checkpoints. May be null or empty if auto is true
+     * @param auto        If true: choose checkpoints automatically, in addition to any specified ones
+     * @return Number of recompute ops added to the graph
+     */
+    public static int apply(@NonNull SameDiff gradFn, @NonNull Collection<String> forwardOps, Collection<String> checkpoints, boolean auto) {
+        Set<String> fwd = new HashSet<>(forwardOps);
+        for (String s : fwd) {
+            SameDiffOp op = gradFn.getOps().get(s);
+            if (op != null && op.getOp() instanceof BaseCompatOp) {
+                log.warn("Activation checkpointing is not supported for graphs with control flow - checkpointing will not be applied");
+                return 0;
+            }
+        }
+
+        ActivationCheckpointing ac = new ActivationCheckpointing(gradFn, fwd);
+
+        if (checkpoints != null) {
+            for (String s : checkpoints) {
+                Preconditions.checkState(gradFn.hasVariable(s), "Activation checkpoint variable \"%s\" does not exist", s);
+                ac.keep.add(s);
+            }
+        }
+
+        List<String> candidates = ac.activationsUsedInBackprop();
+        if (auto) {
+            ac.keep.addAll(selectCheckpoints(candidates));
+        }
+
+        ac.rewireBackwardOps();
+        log.debug("Applied activation checkpointing: {} forward activations used in backprop, {} checkpoints, {} recompute ops added",
+                candidates.size(), ac.keep.size(), ac.numRecomputeOps);
+        return ac.numRecomputeOps;
+    }
+
+    /**
+     * Select checkpoints using the sqrt(N) heuristic: given N activations (in execution order), every ceil(sqrt(N))th
+     * activation is selected.
+     *
+     * @param activations Candidate activations, in forward pass execution order
+     * @return Selected checkpoints
+     */
+    public static List<String> selectCheckpoints(List<String> activations) {
+        int n = activations.size();
+        int k = (int) Math.ceil(Math.sqrt(n));
+        List<String> out = new ArrayList<>();
+        if (k <= 1)
+            return out;
+        for (int i = k - 1; i < n; i += k) {
+            out.add(activations.get(i));
+        }
+        return out;
+    }
+
+    /**
+     * @return ARRAY type variables calculated by forward ops and used by at least one backward op, in execution order
+     */
+    protected List<String> activationsUsedInBackprop() {
+        List<String> fwdOrdered = new ArrayList<>(forwardOps);
+        fwdOrdered.removeIf(s -> !order.containsKey(s));
+        fwdOrdered.sort(Comparator.comparingInt(order::get));
+
+        List<String> out = new ArrayList<>();
+        for (String opName : fwdOrdered) {
+            SameDiffOp op = sd.getOps().get(opName);
+            if (op.getOutputsOfOp() == null)
+                continue;
+            for (String s : op.getOutputsOfOp()) {
+                Variable v = sd.getVariables().get(s);
+                if (v == null || v.getVariable().getVariableType() != VariableType.ARRAY || v.getInputsForOp() == null)
+                    continue;
+                for (String consumer : v.getInputsForOp()) {
+                    if (!forwardOps.contains(consumer)) {
+                        out.add(s);
+                        break;
+                    }
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * For every backward op: replace each non-checkpoint forward activation input with a recomputed copy
+     */
+    protected void rewireBackwardOps() {
+        List<String> backward = new ArrayList<>();
+        for (String s : sd.getOps().keySet()) {
+            if (!forwardOps.contains(s) && order.containsKey(s))
+                backward.add(s);
+        }
+        backward.sort(Comparator.comparingInt(order::get));
+
+        for (String opName : backward) {
+            SameDiffOp op = sd.getOps().get(opName);
+            List<String> inputs = op.getInputsToOp();
+            if (inputs == null || inputs.isEmpty())
+                continue;
+
+            //Gate: the inputs of this op calculated by the backward pass
+            List<String> gate = new ArrayList<>();
+            int gateTime = -1;
+            for (String in : inputs) {
+                String producer = sd.getVariables().get(in).getOutputOfOp();
+                if (producer != null && !forwardOps.contains(producer) && order.containsKey(producer) && !gate.contains(in)) {
+                    gate.add(in);
+                    gateTime = Math.max(gateTime, order.get(producer));
+                }
+            }
+            if (gate.isEmpty())
+                continue;   //Not gated by anything in the backward pass - recomputing would happen during the forward pass anyway
+
+            int consumerTime = order.get(opName);
+            for (int i = 0; i < inputs.size(); i++) {
+                String in = op.getInputsToOp().get(i);
+                String r = recompute(in, gate, gateTime, consumerTime);
+                if (!r.equals(in)) {
+                    OptimizationUtils.replaceOpInput(sd, op, i, r);
+                }
+            }
+        }
+        if (numRecomputeOps > 0)
+            sd.markGraphStructureModified();
+    }
+
+    /**
+     * Get (creating if necessary) a recomputed version of the specified variable that is safe to use as an input to
+     * an op executed at consumerTime.
+     *
+     * @return Name of the recomputed variable, or the original variable if it should not be recomputed
+     */
+    protected String recompute(String var, List<String> gate, int gateTime, int consumerTime) {
+        Variable v = sd.getVariables().get(var);
+        String opName = v.getOutputOfOp();
+        if (opName == null || !forwardOps.contains(opName) || keep.contains(var) || v.getVariable().getVariableType() != VariableType.ARRAY)
+            return var;
+
+        //A recomputed copy that was gated on something executed before the consumer can be shared
+        List<Recomputed> existing = recomputed.get(var);
+        if (existing != null) {
+            for (Recomputed r : existing) {
+                if (r.gateTime < consumerTime)
+                    return r.name;
+            }
+        }
+
+        SameDiffOp op = sd.getOps().get(opName);
+        if (!canRecompute(op)) {
+            keep.addAll(op.getOutputsOfOp());
+            return var;
+        }
+
+        List<String> inputs = op.getInputsToOp() == null ? Collections.<String>emptyList() : op.getInputsToOp();
+
+        //TrainingSession updates parameters in-line, as soon as their gradients are calculated. Recompute ops must
+        // therefore execute before the gradient of any parameter they use is calculated; if the gate doesn't allow that,
+        // keep the activation instead
+        List<String> paramGradOps = new ArrayList<>();
+        for (String in : inputs) {
+            Variable iv = sd.getVariables().get(in);
+            if (iv.getVariable().getVariableType() != VariableType.VARIABLE || iv.getGradient() == null)
+                continue;
+            Variable grad = sd.getVariables().get(iv.getGradient().name());
+            String gradOp = grad == null ? null : grad.getOutputOfOp();
+            if (gradOp == null || !order.containsKey(gradOp))
+                continue;
+            if (order.get(gradOp) <= gateTime) {
+                keep.addAll(op.getOutputsOfOp());
+                return var;
+            }
+            paramGradOps.add(gradOp);
+        }
+
+        String[] newInputs = new String[inputs.size()];
+        boolean anyRecomputed = false;
+        for (int i = 0; i < newInputs.length; i++) {
+            newInputs[i] = recompute(inputs.get(i), gate, gateTime, consumerTime);
+            anyRecomputed |= !newInputs[i].equals(inputs.get(i));
+        }
+
+        String[] newOutputs;
+        try {
+            newOutputs = cloneOp(op, newInputs, anyRecomputed ? null : gate);
+        } catch (Exception e) {
+            log.warn("Unable to create recompute op for op \"{}\" - activation will be kept instead", opName, e);
+            keep.addAll(op.getOutputsOfOp());
+            return var;
+        }
+
+        for (String gradOp : paramGradOps) {
+            addControlDependency(gradOp, newOutputs[0]);
+        }
+
+        String out = var;
+        List<String> outputs = op.getOutputsOfOp();
+        for (int i = 0; i < outputs.size(); i++) {
+            List<Recomputed> l = recomputed.get(outputs.get(i));
+            if (l == null) {
+                l = new ArrayList<>();
+                recomputed.put(outputs.get(i), l);
+            }
+            l.add(new Recomputed(newOutputs[i], gateTime));
+            if (outputs.get(i).equals(var))
+                out = newOutputs[i];
+        }
+        return out;
+    }
+
+    protected boolean canRecompute(SameDiffOp op) {
+        //Random ops would give different values when recomputed; control dependencies aren't copied
+        return !(op.getOp() instanceof RandomOp)
+                && !op.getOp().getClass().getName().startsWith("org.nd4j.linalg.api.ops.random.")
+                && (op.getControlDeps() == null || op.getControlDeps().isEmpty())
+                && (op.getVarControlDeps() == null || op.getVarControlDeps().isEmpty())
+                && op.getOutputsOfOp() != null && !op.getOutputsOfOp().isEmpty();
+    }
+
+    /**
+     * Add a copy of the specified op with the specified inputs and (optionally) control dependencies
+     *
+     * @return Names of the outputs of the new op
+     */
+    protected String[] cloneOp(SameDiffOp op, String[] inputs, List<String> controlDeps) {
+        DifferentialFunction orig = op.getOp();
+        DifferentialFunction clone = FlatBuffersMapper.cloneViaSerialize(sd, orig);
+        String name = sd.getOpName(op.getName() + RECOMPUTE_SUFFIX);
+        clone.setOwnName(name);
+        clone.setSameDiff(sd);
+        sd.putOpForId(name, clone);
+        sd.addArgsFor(inputs, clone);
+
+        List<String> origOutputs = op.getOutputsOfOp();
+        String[] outputs = new String[origOutputs.size()];
+        for (int i = 0; i < outputs.length; i++) {
+            SDVariable orig_i = sd.getVariables().get(origOutputs.get(i)).getVariable();
+            SDVariable v = sd.var(sd.generateNewVarName(name, i), VariableType.ARRAY, null, orig_i.dataType(), (long[]) null);
+            v.setCreator(clone);
+            outputs[i] = v.name();
+        }
+        sd.addOutgoingFor(outputs, clone);
+
+        if (controlDeps != null) {
+            for (String s : controlDeps) {
+                addControlDependency(name, s);
+            }
+        }
+
+        numRecomputeOps++;
+        return outputs;
+    }
+
+    /**
+     * Add a control dependency: the specified op can't be executed until the specified variable is available
+     */
+    protected void addControlDependency(String opName, String varName) {
+        SameDiffOp op = sd.getOps().get(opName);
+        List<String> cds = op.getControlDeps() == null ? new ArrayList<String>() : new ArrayList<>(op.getControlDeps());
+        if (!cds.contains(varName))
+            cds.add(varName);
+        op.setControlDeps(cds);
+
+        Variable v = sd.getVariables().get(varName);
+        if (v.getControlDepsForOp() == null)
+            v.setControlDepsForOp(new ArrayList<String>());
+        if (!v.getControlDepsForOp().contains(opName))
+            v.getControlDepsForOp().add(opName);
+    }
+
+    /**
+     * Topological order of all ops in the graph, taking into account data inputs and control dependencies
+     */
+    protected static Map<String, Integer> executionOrder(SameDiff sd) {
+        Map<String, Integer> inDegree = new HashMap<>();
+        Map<String, List<String>> consumers = new HashMap<>();
+        Deque<String> ready = new ArrayDeque<>();
+        for (SameDiffOp op : sd.getOps().values()) {
+            Set<String> deps = new HashSet<>();
+            if (op.getInputsToOp() != null)
+                deps.addAll(op.getInputsToOp());
+            if (op.getControlDeps() != null)
+                deps.addAll(op.getControlDeps());
+
+            int count = 0;
+            for (String s : deps) {
+                Variable v = sd.getVariables().get(s);
+                String producer = v == null ? null : v.getOutputOfOp();
+                if (producer != null && !producer.equals(op.getName())) {
+                    count++;
+                    List<String> l = consumers.get(producer);
+                    if (l == null) {
+                        l = new ArrayList<>();
+                        consumers.put(producer, l);
+                    }
+                    l.add(op.getName());
+                }
+            }
+            inDegree.put(op.getName(), count);
+            if (count == 0)
+                ready.add(op.getName());
+        }
+
+        Map<String, Integer> order = new HashMap<>();
+        int idx = 0;
+        while (!ready.isEmpty()) {
+            String opName = ready.remove();
+            order.put(opName, idx++);
+            List<String> l = consumers.get(opName);
+            if (l == null)
+                continue;
+            for (String c : l) {
+                int d = inDegree.get(c) - 1;
+                inDegree.put(c, d);
+                if (d == 0)
+                    ready.add(c);
+            }
+        }
+        return order;
+    }
+
+    private static class Recomputed {
+        private final String name;
+        private final int gateTime;
+
+        private Recomputed(String name, int gateTime) {
+            this.name = name;
+            this.gateTime = gateTime;
+        }
+    }
+}
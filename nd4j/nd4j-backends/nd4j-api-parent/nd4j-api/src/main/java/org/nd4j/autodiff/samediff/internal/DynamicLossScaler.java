@@ -0,0 +1,93 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.autodiff.samediff.internal;
+
+import lombok.Getter;
+import org.nd4j.autodiff.samediff.TrainingConfig;
+import org.nd4j.common.base.Preconditions;
+import org.nd4j.linalg.api.buffer.DataType;
+
+/**
+ * Loss scaling state for mixed precision training - see {@link TrainingConfig.Builder#mixedPrecision(DataType)}.<br>
+ * The initial gradient (dL/dL) is multiplied by the current loss scale, so small gradients don't underflow in the
+ * reduced precision datatype. Gradients are divided by the scale again (in the master weight datatype) before the
+ * updater is applied.<br>
+ * If any gradient contains NaN or infinite values, the update for that iteration is skipped. With dynamic loss scaling
+ * the scale is then halved; after {@code growthInterval} consecutive iterations without overflow, it is doubled.
+ */
+@Getter
+public class DynamicLossScaler {
+
+    public static final double BACKOFF_FACTOR = 0.5;
+    public static final double GROWTH_FACTOR = 2.0;
+    public static final double MIN_SCALE = 1.0;
+
+    private final boolean dynamic;
+    private final int growthInterval;
+    private final double maxScale;
+    private double scale;
+    private int stepsSinceOverflow;
+    private long skippedSteps;
+
+    public DynamicLossScaler(TrainingConfig config) {
+        this(config.getInitialLossScale(), config.isDynamicLossScaling(), config.getLossScaleGrowthInterval(),
+                maxScale(config.getMixedPrecisionDataType()));
+    }
+
+    public DynamicLossScaler(double initialScale, boolean dynamic, int growthInterval, double maxScale) {
+        Preconditions.checkArgument(initialScale > 0, "Initial loss scale must be positive, got %s", initialScale);
+        Preconditions.checkArgument(growthInterval > 0, "Loss scale growth interval must be positive, got %s", growthInterval);
+        this.dynamic = dynamic;
+        this.growthInterval = growthInterval;
+        this.maxScale = maxScale;
+        this.scale = Math.min(initialScale, maxScale);
+    }
+
+    /**
+     * Largest loss scale for the given reduced precision datatype. The scale is applied to the FP32 initial gradient
+     * which is then cast to the reduced precision type, so the scale itself must be representable in that type.
+     */
+    public static double maxScale(DataType dataType) {
+        return dataType == DataType.HALF ? 32768.0 : 16777216.0;
+    }
+
+    /**
+     * Update the loss scale after an iteration.
+     *
+     * @param finite True if all (unscaled) gradients for the iteration were finite
+     * @return True if the parameter update should be applied, false if it should be skipped
+     */
+    public boolean update(boolean finite) {
+        if (!finite) {
+            skippedSteps++;
+            stepsSinceOverflow = 0;
+            if (dynamic)
+                scale = Math.max(MIN_SCALE, scale * BACKOFF_FACTOR);
+            return false;
+        }
+
+        if (dynamic && ++stepsSinceOverflow >= growthInterval) {
+            scale = Math.min(maxScale, scale * GROWTH_FACTOR);
+            stepsSinceOverflow = 0;
+        }
+        return true;
+    }
+}
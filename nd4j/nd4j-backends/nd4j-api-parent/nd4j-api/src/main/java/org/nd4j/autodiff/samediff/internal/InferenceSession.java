@@ -43,6 +43,7 @@ import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.api.ops.*;
 import org.nd4j.linalg.api.ops.custom.Invoke;
 import org.nd4j.linalg.api.ops.executioner.DefaultOpExecutioner;
+import org.nd4j.linalg.api.ops.executioner.OutputShapeCache;
 import org.nd4j.linalg.api.ops.impl.controlflow.compat.*;
 import org.nd4j.linalg.api.ops.impl.layers.ExternalErrorsFunction;
 import org.nd4j.linalg.api.ops.impl.shape.Concat;
@@ -63,6 +64,7 @@ import org.nd4j.linalg.indexing.NDArrayIndex;
 import org.nd4j.shade.wstx.util.StringUtil;
 
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -89,11 +91,35 @@ public class InferenceSession extends AbstractSession<INDArray, Pair<SameDiffOp,
 
     private Map<String,OpContext> opContexts = new HashMap<>();
 
+    //Memoized output shapes for custom ops: op name -> (key, output shapes) as calculated on the op's last execution
+    private Map<String,Pair<OutputShapeCache.Key,List<LongShapeDescriptor>>> outputShapes = new HashMap<>();
+
+    //Used to execute independent ops concurrently, if SameDiff.getInterOpThreads() > 1
+    private ExecutorService interOpExecutor;
+    private int interOpExecutorThreads;
+
     public InferenceSession(@NonNull SameDiff sameDiff) {
         super(sameDiff);
         mmgr = new ArrayCacheMemoryMgr();
     }
 
+    @Override
+    public ExecutionResult output(@NonNull List<String> variables, Map<String, INDArray> placeholderValues,
+                                  Map<String, SDValue> otherPlaceHolderValues, MultiDataSet batch,
+                                  Collection<String> requiredActivations, List<Listener> listeners, At at) {
+        //Let the memory manager know about execution boundaries, for memory managers that plan across executions
+        SessionMemMgr m = mmgr;
+        Set<String> outputs = new HashSet<>(variables);
+        if (requiredActivations != null)
+            outputs.addAll(requiredActivations);
+        m.executionStarted(outputs);
+        try {
+            return super.output(variables, placeholderValues, otherPlaceHolderValues, batch, requiredActivations, listeners, at);
+        } finally {
+            m.executionEnded();
+        }
+    }
+
     @Override
     protected Map<String, INDArray> preprocessPlaceholders(Map<String, INDArray> placeholders, At at) {
         arrayUseTracker.clear();
@@ -259,6 +285,101 @@ public class InferenceSession extends AbstractSession<INDArray, Pair<SameDiffOp,
                 allIterInputs,
                 constAndPhInputs,
                 otherPlaceHolders);
+        return processOutputs(opPair, outputFrameIter, listeners, at, batch, allReqVariables, out);
+    }
+
+    @Override
+    protected boolean canExecuteConcurrently(ExecStep es, SameDiffOp op) {
+        if (sameDiff.getInterOpThreads() <= 1 || !OUTER_FRAME.equals(es.getFrameIter().getFrame()) || es.getFrameIter().getIteration() != 0)
+            return false;
+        DifferentialFunction df = op.getOp();
+        //Only ops executed purely from their op context: control flow, tensor array ops etc. read or modify the session state
+        return (df instanceof CustomOp || df instanceof Op) && !(df instanceof Identity || df instanceof Switch ||
+                df instanceof Enter || df instanceof Exit || df instanceof NextIteration || df instanceof Merge ||
+                df instanceof LoopCond || df instanceof BaseTensorOp || df instanceof Assign || df instanceof Assert ||
+                df instanceof GradientBackwardsMarker || df instanceof CreateView || df instanceof ExternalErrorsFunction ||
+                df instanceof Invoke);
+    }
+
+    @Override
+    protected int maxConcurrentOps() {
+        return sameDiff.getInterOpThreads();
+    }
+
+    @Override
+    protected Future<ExecutionResult> submitOp(Pair<SameDiffOp, OpContext> opPair, FrameIter outputFrameIter, OpInputs inputs,
+                                               Map<String, SDValue> otherPlaceHolders) {
+        //Worker threads need to use the same device as the calling thread (CUDA)
+        Integer deviceId = Nd4j.getAffinityManager().getDeviceForCurrentThread();
+        Callable<ExecutionResult> task = () -> {
+            Nd4j.getAffinityManager().unsafeSetDevice(deviceId);
+            return doExec(opPair.getFirst().getOp(), opPair.getSecond(), outputFrameIter, inputs.getInputs(),
+                    inputs.getAllIterInputs(), inputs.getConstAndPhInputs(), otherPlaceHolders);
+        };
+        //Synchronized with shutdownInterOpExecutor(), so the executor can't be shut down between lookup and submit
+        synchronized (this) {
+            return interOpExecutor().submit(task);
+        }
+    }
+
+    @Override
+    protected ExecutionResult processConcurrentOutputs(Pair<SameDiffOp, OpContext> opPair, FrameIter outputFrameIter, Set<VarId> inputs,
+                                                       Set<VarId> allIterInputs, Set<String> constAndPhInputs, At at, MultiDataSet batch,
+                                                       Set<String> allReqVariables, ExecutionResult out) {
+        at.setFrameIter(outputFrameIter);
+        return processOutputs(opPair, outputFrameIter, null, at, batch, allReqVariables, out);
+    }
+
+    /**
+     * Get the executor used for inter-op parallelism, (re)creating it if the number of inter-op threads
+     * ({@link SameDiff#getInterOpThreads()}) has changed, or if it has been shut down.<br>
+     * Idle executor threads time out, so a session that is no longer used does not keep its threads alive
+     */
+    protected synchronized ExecutorService interOpExecutor() {
+        int nThreads = sameDiff.getInterOpThreads();
+        if (interOpExecutor == null || interOpExecutor.isShutdown() || interOpExecutorThreads != nThreads) {
+            if (interOpExecutor != null)
+                interOpExecutor.shutdown();
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(nThreads, nThreads, 60L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread t = Executors.defaultThreadFactory().newThread(r);
+                            t.setName("SameDiff-InterOp-" + t.getName());
+                            t.setDaemon(true);
+                            return t;
+                        }
+                    });
+            executor.allowCoreThreadTimeOut(true);
+            interOpExecutor = executor;
+            interOpExecutorThreads = nThreads;
+        }
+        return interOpExecutor;
+    }
+
+    /**
+     * Shut down the inter-op executor of this session, if one has been created. Ops already submitted are completed.
+     * Should be called when a session is discarded; the session remains usable, and the executor is recreated if
+     * required
+     */
+    public synchronized void shutdownInterOpExecutor() {
+        if (interOpExecutor != null) {
+            interOpExecutor.shutdown();
+            interOpExecutor = null;
+        }
+    }
+
+    /**
+     * Process the outputs of an executed op: call listeners, and record array uses for memory management, releasing
+     * any arrays that are no longer required
+     */
+    protected ExecutionResult processOutputs(Pair<SameDiffOp, OpContext> opPair,
+                                             FrameIter outputFrameIter,
+                                             List<Listener> listeners,
+                                             At at, MultiDataSet batch,
+                                             Set<String> allReqVariables,
+                                             ExecutionResult out) {
+        SameDiffOp op = opPair.getFirst();
         List<String> opOutNames = op.getOutputsOfOp();
 
         if (log.isTraceEnabled()) {
@@ -1254,6 +1375,27 @@ public class InferenceSession extends AbstractSession<INDArray, Pair<SameDiffOp,
         return sameDiff.getArrForVarName(variableName);
     }
 
+    /**
+     * Calculate the output shapes for the specified custom op. Output shapes are memoized per op: if the op's input
+     * shapes, datatypes and arguments are the same as on the previous execution of the op, the previously calculated
+     * shapes are returned without calling the op's shape function. See {@link OutputShapeCache} for the ops that are
+     * excluded from this (i.e., ops where the output shape depends on the input values)
+     */
+    protected List<LongShapeDescriptor> calculateOutputShape(String opName, DynamicCustomOp customOp, OpContext oc) {
+        OutputShapeCache.Key key = OutputShapeCache.key(customOp, oc);
+        if (key != null) {
+            Pair<OutputShapeCache.Key,List<LongShapeDescriptor>> cached = outputShapes.get(opName);
+            if (cached != null && cached.getFirst().equals(key))
+                return cached.getSecond();
+        }
+
+        List<LongShapeDescriptor> shapes = customOp.calculateOutputShape(oc);
+        if (key != null && shapes != null && !shapes.isEmpty()) {
+            outputShapes.put(opName, new Pair<>(key, Collections.unmodifiableList(new ArrayList<>(shapes))));
+        }
+        return shapes;
+    }
+
     @Override
     public Pair<SameDiffOp,OpContext> getAndParameterizeOp(String opName, FrameIter frameIter, Set<VarId> opInputs, Set<VarId> allIterInputs,
                                                            Set<String> constAndPhInputs, Map<String, INDArray> placeholderValues, Set<String> allReqVariables, Map<String, SDValue> otherPlaceholders) {
@@ -1384,7 +1526,7 @@ public class InferenceSession extends AbstractSession<INDArray, Pair<SameDiffOp,
                 oc.setOutputArray(0, oc.getInputArray(0));
 
             } else {
-                List<LongShapeDescriptor> outShape = customOp.calculateOutputShape(oc);
+                List<LongShapeDescriptor> outShape = calculateOutputShape(opName, customOp, oc);
                 Preconditions.checkState(outShape != null && outShape.size() > 0, "Failed to calculate output shapes for op %s (%s) - no shapes were returned by calculateOutputShape()", customOp.opName(), customOp.getOwnName());
                 String[] outNames = df.outputVariablesNames();
                 Preconditions.checkState(outNames.length == outShape.size(), "Error in operation shape calculation for op \"%s\": Got %s op output shapes for an operation" +
@@ -0,0 +1,227 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+
+package org.nd4j.autodiff.samediff.internal;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.nd4j.autodiff.samediff.SameDiff;
+import org.nd4j.common.base.Preconditions;
+
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of {@link InferenceSession}s for a single SameDiff instance.<br>
+ * By default, SameDiff creates (and keeps) one InferenceSession per thread. This is a problem when inference is
+ * performed from a large or unbounded number of threads (such as virtual threads, or a thread per request): each new
+ * thread creates a new session and its memory manager, and these are never released.<br>
+ * A session pool instead decouples sessions from thread identity: at most {@link #getMaxSessions()} sessions are
+ * created, and callers borrow a session for the duration of a single execution, blocking if all sessions are in use.
+ * Sessions (and the arrays cached by their memory managers) stay warm across borrows.<br>
+ * <br>
+ * Usage:
+ * <pre>
+ * {@code
+ * try (InferenceSessionPool.Lease lease = pool.borrow()) {
+ *     InferenceSession session = lease.getSession();
+ *     ...
+ * }
+ * }
+ * </pre>
+ * Normally this is used via {@link SameDiff#enableSessionPool(int)}, after which all SameDiff output/exec methods
+ * borrow sessions from the pool instead of using per-thread sessions.<br>
+ * Note that waiting for a session uses {@link Semaphore} only (no monitor locks), so waiting virtual threads do not
+ * pin their carrier threads.
+ */
+@Slf4j
+public class InferenceSessionPool {
+
+    private final SameDiff sameDiff;
+    @Getter
+    private final int maxSessions;
+    private final Semaphore permits;
+    private final ConcurrentLinkedDeque<PooledSession> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger numCreated = new AtomicInteger();
+    //Incremented by clear(); sessions from an older generation are discarded when returned
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong waitCount = new AtomicLong();
+
+    /**
+     * @param sameDiff    SameDiff instance to create sessions for
+     * @param maxSessions Maximum number of sessions - i.e., maximum number of concurrent executions
+     */
+    public InferenceSessionPool(@NonNull SameDiff sameDiff, int maxSessions) {
+        Preconditions.checkArgument(maxSessions > 0, "Maximum number of sessions must be positive, got %s", maxSessions);
+        this.sameDiff = sameDiff;
+        this.maxSessions = maxSessions;
+        this.permits = new Semaphore(maxSessions, true);
+    }
+
+    /**
+     * Borrow a session from the pool, waiting if all sessions are currently in use.
+     * The returned lease must be closed to return the session to the pool.
+     *
+     * @return Lease for the borrowed session
+     */
+    public Lease borrow() {
+        if (!permits.tryAcquire()) {
+            waitCount.incrementAndGet();
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for an inference session", e);
+            }
+        }
+        return new Lease(take());
+    }
+
+    /**
+     * Borrow a session from the pool, waiting at most the specified amount of time if all sessions are in use.
+     *
+     * @param timeout Maximum time to wait
+     * @param unit    Time unit for the timeout
+     * @return Lease for the borrowed session, or null if no session became available within the specified time
+     */
+    public Lease borrow(long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+        if (!permits.tryAcquire()) {
+            waitCount.incrementAndGet();
+            if (!permits.tryAcquire(timeout, unit))
+                return null;
+        }
+        return new Lease(take());
+    }
+
+    private PooledSession take() {
+        borrowCount.incrementAndGet();
+        long gen = generation.get();
+        PooledSession s;
+        while ((s = idle.pollFirst()) != null) {
+            if (s.generation == gen)
+                return s;
+            discard(s);
+        }
+
+        numCreated.incrementAndGet();
+        log.debug("Creating new InferenceSession for session pool ({} sessions)", numCreated.get());
+        return new PooledSession(SameDiff.getInferenceFactory().create(sameDiff), gen);
+    }
+
+    private void release(PooledSession s) {
+        if (s.generation == generation.get()) {
+            //Most recently used first: keeps the working set of sessions (and their cached arrays) as small as possible
+            idle.offerFirst(s);
+        } else {
+            discard(s);
+        }
+        permits.release();
+    }
+
+    private void discard(PooledSession s) {
+        numCreated.decrementAndGet();
+        s.session.shutdownInterOpExecutor();
+    }
+
+    /**
+     * Remove all idle sessions from the pool, and ensure that sessions currently in use are discarded instead of being
+     * returned to the pool. Should be called when the SameDiff graph changes in a way that invalidates session state
+     */
+    public void clear() {
+        generation.incrementAndGet();
+        PooledSession s;
+        while ((s = idle.pollFirst()) != null) {
+            discard(s);
+        }
+    }
+
+    /**
+     * @return Number of sessions currently created by this pool - both idle and in use
+     */
+    public int numSessions() {
+        return numCreated.get();
+    }
+
+    /**
+     * @return Number of idle sessions currently in the pool
+     */
+    public int numIdleSessions() {
+        return idle.size();
+    }
+
+    /**
+     * @return Total number of times a session has been borrowed from this pool
+     */
+    public long getBorrowCount() {
+        return borrowCount.get();
+    }
+
+    /**
+     * @return Total number of borrows that had to wait for a session to be returned to the pool
+     */
+    public long getWaitCount() {
+        return waitCount.get();
+    }
+
+    private static class PooledSession {
+        private final InferenceSession session;
+        private final long generation;
+
+        private PooledSession(InferenceSession session, long generation) {
+            this.session = session;
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * A session borrowed from the pool. Must be closed (exactly once) to return the session to the pool;
+     * the session must not be used after the lease has been closed.
+     */
+    public class Lease implements AutoCloseable {
+        private PooledSession pooled;
+
+        private Lease(PooledSession pooled) {
+            this.pooled = pooled;
+        }
+
+        /**
+         * @return The borrowed session
+         */
+        public InferenceSession getSession() {
+            Preconditions.checkState(pooled != null, "Session lease has already been closed");
+            return pooled.session;
+        }
+
+        @Override
+        public void close() {
+            if (pooled != null) {
+                PooledSession s = pooled;
+                pooled = null;
+                release(s);
+            }
+        }
+    }
+}
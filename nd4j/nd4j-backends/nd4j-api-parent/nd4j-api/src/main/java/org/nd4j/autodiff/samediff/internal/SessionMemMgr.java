@@ -25,6 +25,7 @@ import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.api.shape.LongShapeDescriptor;
 
 import java.io.Closeable;
+import java.util.Collection;
 
 public interface SessionMemMgr extends Closeable {
 
@@ -64,6 +65,25 @@ public interface SessionMemMgr extends Closeable {
      */
     void release(INDArray array);
 
+    /**
+     * Called by the session at the start of each execution (i.e., each call to output), before any arrays are
+     * allocated. Memory managers that plan allocations across executions can use this to detect execution boundaries.
+     * Default implementation does nothing.
+     *
+     * @param outputs Names of the variables whose arrays will be returned to the caller by this execution
+     */
+    default void executionStarted(Collection<String> outputs) {
+        //No-op
+    }
+
+    /**
+     * Called by the session at the end of each execution, after the outputs have been computed.
+     * Default implementation does nothing.
+     */
+    default void executionEnded() {
+        //No-op
+    }
+
     /**
      * Close the session memory manager and clean up any memory / resources, if any
      */
@@ -35,6 +35,8 @@ import org.nd4j.common.base.Preconditions;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.api.ops.OpContext;
 import org.nd4j.linalg.dataset.api.MultiDataSet;
+import org.nd4j.linalg.indexing.BooleanIndexing;
+import org.nd4j.linalg.indexing.conditions.Conditions;
 import org.nd4j.linalg.learning.GradientUpdater;
 import org.nd4j.linalg.learning.regularization.Regularization;
 import org.nd4j.common.primitives.AtomicDouble;
@@ -52,12 +54,29 @@ public class TrainingSession extends InferenceSession {
     protected double[] currIterLoss;
     protected Map<Class<?>, AtomicDouble> currIterRegLoss;
     protected List<Listener> listeners;
+    protected Map<String, INDArray> masterParams;
+    protected DynamicLossScaler lossScaler;
+    protected Map<String, INDArray> mixedPrecisionGradients;
 
 
     public TrainingSession(SameDiff sameDiff) {
         super(sameDiff);
     }
 
+    /**
+     * Enable mixed precision training for this session. The SameDiff instance for this session (the gradient function)
+     * should execute in reduced precision; the updaters are applied to the master parameters instead of the
+     * parameters of the session's SameDiff instance, and the gradients are unscaled and checked for overflow first.
+     *
+     * @param masterParams Master (full precision) parameters, keyed by variable name
+     * @param lossScaler   Loss scale state
+     */
+    public void setMixedPrecision(Map<String, INDArray> masterParams, DynamicLossScaler lossScaler) {
+        this.masterParams = masterParams;
+        this.lossScaler = lossScaler;
+        this.mixedPrecisionGradients = masterParams == null ? null : new LinkedHashMap<>();
+    }
+
     /**
      * Perform one iteration of training - i.e., do forward and backward passes, and update the parameters
      *
@@ -140,7 +159,24 @@ public class TrainingSession extends InferenceSession {
 
         //Do training iteration
         List<String> outputVars = new ArrayList<>(gradVarToVarMap.keySet());    //TODO this should be empty, and grads calculated in requiredActivations
-        Map<String, INDArray> m = output(outputVars, placeholders, batch, requiredActivations, listeners, at);
+        if (masterParams != null) {
+            //Mixed precision: copy the current master weights to the reduced precision parameters, and scale the
+            // initial gradient (dL/dL, created in SameDiff.createGradFunction) by the current loss scale
+            for (Map.Entry<String, INDArray> e : masterParams.entrySet()) {
+                sameDiff.getArrForVarName(e.getKey()).assign(e.getValue());
+            }
+            INDArray initialGrad = sameDiff.getArrForVarName("one-var");
+            initialGrad.assign(lossScaler.getScale());
+            try {
+                output(outputVars, placeholders, batch, requiredActivations, listeners, at);
+            } finally {
+                //Don't leave the scale in place for other uses of the gradient function, such as calculateGradients
+                initialGrad.assign(1.0);
+            }
+            applyMixedPrecisionUpdates(at);
+        } else {
+            output(outputVars, placeholders, batch, requiredActivations, listeners, at);
+        }
 
 
         double[] finalLoss = new double[currIterLoss.length + currIterRegLoss.size()];
@@ -170,6 +206,12 @@ public class TrainingSession extends InferenceSession {
         return loss;
     }
 
+    @Override
+    protected boolean canExecuteConcurrently(ExecStep es, SameDiffOp op) {
+        //Gradient and updater application is done in getOutputs - always execute sequentially when training
+        return false;
+    }
+
     @Override
     public ExecutionResult getOutputs(Pair<SameDiffOp, OpContext> opPair, FrameIter outputFrameIter, Set<VarId> opInputs, Set<VarId> allIterInputs,
                                       Set<String> constAndPhInputs, List<Listener> listeners, At at, MultiDataSet batch, Set<String> allReqVariables, Map<String, SDValue> otherPlaceHolders) {
@@ -202,69 +244,106 @@ public class TrainingSession extends InferenceSession {
                     throw new IllegalStateException("Op depends on gradient variable: " + s + " for variable " + varName);
                 }
 
-                GradientUpdater u = updaters.get(varName);
-                Preconditions.checkState(u != null, "No updater found for variable \"%s\"", varName);
-
                 Variable var = sameDiff.getVariables().get(varName);
                 INDArray gradArr = out.resultAt(outIdx);
-                INDArray paramArr = var.getVariable().getArr();
-
-                //Pre-updater regularization (L1, L2)
-                List<Regularization> r = config.getRegularization();
-                if (r != null && r.size() > 0) {
-                    double lr = config.getUpdater().hasLearningRate() ? config.getUpdater().getLearningRate(at.iteration(), at.epoch()) : 1.0;
-                    for (Regularization reg : r) {
-                        if (reg.applyStep() == Regularization.ApplyStep.BEFORE_UPDATER) {
-                            if (this.listeners != null) {
-                                double score = reg.score(paramArr, at.iteration(), at.epoch());
-                                if (!currIterRegLoss.containsKey(reg.getClass())) {
-                                    currIterRegLoss.put(reg.getClass(), new AtomicDouble());
-                                }
-                                currIterRegLoss.get(reg.getClass()).addAndGet(score);
-                            }
-                            reg.apply(paramArr, gradArr, lr, at.iteration(), at.epoch());
-                        }
-                    }
+                if (masterParams != null) {
+                    //Mixed precision: the update can only be applied once all gradients are known to be finite
+                    INDArray master = masterParams.get(varName);
+                    Preconditions.checkState(master != null, "No master parameter array found for variable \"%s\"", varName);
+                    mixedPrecisionGradients.put(varName, gradArr.castTo(master.dataType()));
+                } else {
+                    applyUpdate(var, gradArr, var.getVariable().getArr(), at);
                 }
+            }
+
+            outIdx++;
+        }
+
+        return out;
+    }
+
+    /**
+     * Unscale the gradients collected during a mixed precision iteration and, if they are all finite, apply the
+     * updaters to the master parameters. Otherwise the update is skipped.
+     */
+    protected void applyMixedPrecisionUpdates(At at) {
+        double scale = lossScaler.getScale();
+        boolean finite = true;
+        for (INDArray g : mixedPrecisionGradients.values()) {
+            g.divi(scale);
+            if (finite && !BooleanIndexing.and(g, Conditions.isFinite()))
+                finite = false;
+        }
+
+        if (lossScaler.update(finite)) {
+            for (Map.Entry<String, INDArray> e : mixedPrecisionGradients.entrySet()) {
+                applyUpdate(sameDiff.getVariables().get(e.getKey()), e.getValue(), masterParams.get(e.getKey()), at);
+            }
+        } else {
+            log.debug("Skipped parameter update at iteration {}: gradient overflow with loss scale {}. New loss scale: {}",
+                    at.iteration(), scale, lossScaler.getScale());
+        }
+        mixedPrecisionGradients.clear();
+    }
 
-                u.applyUpdater(gradArr, at.iteration(), at.epoch());
-
-                //Post-apply regularization (weight decay)
-                if (r != null && r.size() > 0) {
-                    double lr = config.getUpdater().hasLearningRate() ? config.getUpdater().getLearningRate(at.iteration(), at.epoch()) : 1.0;
-                    for (Regularization reg : r) {
-                        if (reg.applyStep() == Regularization.ApplyStep.POST_UPDATER) {
-                            if (this.listeners != null) {
-                                double score = reg.score(paramArr, at.iteration(), at.epoch());
-                                if (!currIterRegLoss.containsKey(reg.getClass())) {
-                                    currIterRegLoss.put(reg.getClass(), new AtomicDouble());
-                                }
-                                currIterRegLoss.get(reg.getClass()).addAndGet(score);
-                            }
-                            reg.apply(paramArr, gradArr, lr, at.iteration(), at.epoch());
+    /**
+     * Apply regularization and the updater to the gradient, and update the parameter array in-line
+     */
+    protected void applyUpdate(Variable var, INDArray gradArr, INDArray paramArr, At at) {
+        String varName = var.getName();
+        GradientUpdater u = updaters.get(varName);
+        Preconditions.checkState(u != null, "No updater found for variable \"%s\"", varName);
+
+        //Pre-updater regularization (L1, L2)
+        List<Regularization> r = config.getRegularization();
+        if (r != null && r.size() > 0) {
+            double lr = config.getUpdater().hasLearningRate() ? config.getUpdater().getLearningRate(at.iteration(), at.epoch()) : 1.0;
+            for (Regularization reg : r) {
+                if (reg.applyStep() == Regularization.ApplyStep.BEFORE_UPDATER) {
+                    if (this.listeners != null) {
+                        double score = reg.score(paramArr, at.iteration(), at.epoch());
+                        if (!currIterRegLoss.containsKey(reg.getClass())) {
+                            currIterRegLoss.put(reg.getClass(), new AtomicDouble());
                         }
+                        currIterRegLoss.get(reg.getClass()).addAndGet(score);
                     }
+                    reg.apply(paramArr, gradArr, lr, at.iteration(), at.epoch());
                 }
+            }
+        }
 
-                if (listeners != null) {
-                    for (Listener l : listeners) {
-                        if (l.isActive(at.operation()))
-                            l.preUpdate(sameDiff, at, var, gradArr);
+        u.applyUpdater(gradArr, at.iteration(), at.epoch());
+
+        //Post-apply regularization (weight decay)
+        if (r != null && r.size() > 0) {
+            double lr = config.getUpdater().hasLearningRate() ? config.getUpdater().getLearningRate(at.iteration(), at.epoch()) : 1.0;
+            for (Regularization reg : r) {
+                if (reg.applyStep() == Regularization.ApplyStep.POST_UPDATER) {
+                    if (this.listeners != null) {
+                        double score = reg.score(paramArr, at.iteration(), at.epoch());
+                        if (!currIterRegLoss.containsKey(reg.getClass())) {
+                            currIterRegLoss.put(reg.getClass(), new AtomicDouble());
+                        }
+                        currIterRegLoss.get(reg.getClass()).addAndGet(score);
                     }
+                    reg.apply(paramArr, gradArr, lr, at.iteration(), at.epoch());
                 }
-
-                //Update:
-                if (config.isMinimize()) {
-                    paramArr.subi(gradArr);
-                } else {
-                    paramArr.addi(gradArr);
-                }
-                log.trace("Applied updater to gradient and updated variable: {}", varName);
             }
+        }
 
-            outIdx++;
+        if (listeners != null) {
+            for (Listener l : listeners) {
+                if (l.isActive(at.operation()))
+                    l.preUpdate(sameDiff, at, var, gradArr);
+            }
         }
 
-        return out;
+        //Update:
+        if (config.isMinimize()) {
+            paramArr.subi(gradArr);
+        } else {
+            paramArr.addi(gradArr);
+        }
+        log.trace("Applied updater to gradient and updated variable: {}", varName);
     }
 }
@@ -0,0 +1,241 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.autodiff.samediff.internal.memory;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.nd4j.autodiff.samediff.internal.memory.StaticMemoryPlan.Allocation;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.shape.LongShapeDescriptor;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.*;
+
+/**
+ * A session memory manager that uses a static memory plan: all intermediate arrays of an execution are placed into
+ * one preallocated arena per datatype, at offsets that were computed ahead of time from the arrays' lifetimes.<br>
+ * <br>
+ * The first execution is used to record the allocation trace: the sequence of allocate and release calls made by the
+ * session. Arrays are allocated normally during this execution. At the end of the execution a {@link StaticMemoryPlan}
+ * is computed from the trace, and the arenas are allocated.<br>
+ * On subsequent executions the k-th allocation request is served as a view into the arena at the planned offset,
+ * provided it has the same datatype, shape and order as the k-th recorded allocation. Releasing arena arrays is a no-op.
+ * If the allocation sequence differs from the recorded one (for example, due to different placeholder shapes), all
+ * remaining allocations in that execution are allocated normally, and the trace is re-recorded on the next execution.<br>
+ * The plan is only valid for the set of requested outputs it was recorded with: an array that was an intermediate in
+ * the recorded execution may be an output in another. If the requested outputs differ from those of the plan, the plan
+ * is discarded and the trace is re-recorded in that execution.<br>
+ * <br>
+ * Arrays that are not released during the execution (such as the requested outputs) and detached arrays are never
+ * placed in an arena, hence are safe to use after the execution has completed.<br>
+ * <br>
+ * Usage:
+ * <pre>
+ * {@code
+ * SameDiff.bindInferenceFactory(sd -> {
+ *     InferenceSession s = new InferenceSession(sd);
+ *     s.setMmgr(new ArenaMemoryMgr());
+ *     return s;
+ * });
+ * }
+ * </pre>
+ * This memory manager is best suited to repeated inference with fixed shapes, where the execution is the same on every
+ * call. Note that an ArenaMemoryMgr instance must not be shared between sessions.
+ */
+@Slf4j
+public class ArenaMemoryMgr extends AbstractMemoryMgr {
+
+    private final List<Allocation> trace = new ArrayList<>();
+    private final Map<INDArray, Integer> recordedLive = new IdentityHashMap<>();
+    private final Set<INDArray> allocated = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Map<DataType, INDArray> arenas = new HashMap<>();
+
+    @Getter
+    private StaticMemoryPlan plan;
+    private Set<String> planOutputs;
+    private Set<String> outputs;
+    private boolean recording;
+    private boolean planActive;
+    private boolean planInvalidated;
+    private long clock;
+    private int allocationIdx;
+
+    @Getter
+    private long arenaAllocations;
+    @Getter
+    private long fallbackAllocations;
+    @Getter
+    private int numPlans;
+
+    @Override
+    public synchronized void executionStarted(Collection<String> outputs) {
+        clock = 0;
+        allocationIdx = 0;
+        recordedLive.clear();
+        planInvalidated = false;
+        this.outputs = outputs == null ? Collections.<String>emptySet() : new HashSet<>(outputs);
+        if (plan != null && !this.outputs.equals(planOutputs)) {
+            //Arrays that were arena allocated intermediates in the recorded execution may be returned to the caller now
+            log.debug("Requested outputs differ from those of the static memory plan - plan will be recomputed");
+            setPlan(null);
+        }
+        if (plan == null) {
+            recording = true;
+            planActive = false;
+            trace.clear();
+        } else {
+            recording = false;
+            planActive = true;
+        }
+    }
+
+    @Override
+    public synchronized void executionEnded() {
+        allocated.clear();      //Any arrays not released by now have been returned to the user
+        if (recording) {
+            recording = false;
+            setPlan(StaticMemoryPlan.create(trace));
+            planOutputs = outputs;
+            trace.clear();
+            recordedLive.clear();
+            if (log.isTraceEnabled()) {
+                log.trace(plan.summary());
+            }
+        } else if (planInvalidated) {
+            log.debug("Allocations did not match static memory plan - plan will be recomputed on next execution");
+            setPlan(null);
+        }
+        planActive = false;
+    }
+
+    @Override
+    public synchronized INDArray allocate(boolean detached, DataType dataType, long... shape) {
+        return allocate(detached, dataType, shape, 'c', false);
+    }
+
+    @Override
+    public synchronized INDArray allocate(boolean detached, LongShapeDescriptor descriptor) {
+        return allocate(detached, descriptor.dataType(), descriptor.getShape(), descriptor.getOrder(), descriptor.isEmpty());
+    }
+
+    private INDArray allocate(boolean detached, DataType dataType, long[] shape, char order, boolean empty) {
+        int idx = allocationIdx++;
+        long time = clock++;
+        boolean plannable = !detached && !empty && shape.length > 0 && (order == 'c' || order == 'f')
+                && dataType != DataType.UTF8 && dataType != DataType.COMPRESSED && dataType != DataType.UNKNOWN;
+
+        if (planActive) {
+            List<Allocation> planned = plan.getAllocations();
+            Allocation a = idx < planned.size() ? planned.get(idx) : null;
+            if (a != null && a.isPlannable() == plannable && a.matches(dataType, shape, order)) {
+                if (a.inArena()) {
+                    arenaAllocations++;
+                    return arenaView(a);
+                }
+            } else {
+                //Execution differs from the recorded trace: offsets may no longer be valid for the remaining allocations
+                planActive = false;
+                planInvalidated = true;
+            }
+        }
+
+        INDArray arr = empty ? Nd4j.create(dataType, shape) : Nd4j.createUninitialized(dataType, shape, order);
+        fallbackAllocations++;
+        allocated.add(arr);
+        if (recording) {
+            trace.add(new Allocation(dataType, shape.clone(), order, plannable, time, -1, -1));
+            recordedLive.put(arr, trace.size() - 1);
+        }
+        return arr;
+    }
+
+    private INDArray arenaView(Allocation a) {
+        INDArray arena = arenas.get(a.getDataType());
+        long[] shape = a.getShape();
+        INDArray view = Nd4j.create(arena.data(), shape, Nd4j.getStrides(shape, a.getOrder()), a.getOffset(), a.getOrder(), a.getDataType());
+        view.setCloseable(false);
+        return view;
+    }
+
+    @Override
+    public synchronized void release(@NonNull INDArray array) {
+        long time = clock++;
+        if (recording) {
+            Integer idx = recordedLive.remove(array);
+            if (idx != null) {
+                trace.get(idx).setEnd(time);
+            }
+        }
+
+        //Arena views (and arrays not allocated by this memory manager) are not closed here
+        if (allocated.remove(array) && array.closeable()) {
+            array.close();
+        }
+    }
+
+    private void setPlan(StaticMemoryPlan plan) {
+        closeArenas();
+        this.plan = plan;
+        this.planOutputs = null;
+        if (plan != null) {
+            numPlans++;
+            for (Map.Entry<DataType, Long> e : plan.getArenaLengths().entrySet()) {
+                if (e.getValue() > 0) {
+                    arenas.put(e.getKey(), Nd4j.createUninitializedDetached(e.getKey(), e.getValue()));
+                }
+            }
+        }
+    }
+
+    private void closeArenas() {
+        for (INDArray arr : arenas.values()) {
+            if (arr.closeable()) {
+                arr.close();
+            }
+        }
+        arenas.clear();
+    }
+
+    /**
+     * @return Summary of the current memory plan (peak arena size compared to an exact-shape array cache), or null if
+     * no plan has been computed yet
+     */
+    public synchronized String planSummary() {
+        return plan == null ? null : plan.summary();
+    }
+
+    /**
+     * Discard the current memory plan (and the arenas). The allocation trace will be re-recorded on the next execution
+     */
+    public synchronized void resetPlan() {
+        setPlan(null);
+    }
+
+    @Override
+    public synchronized void close() {
+        setPlan(null);
+        trace.clear();
+        recordedLive.clear();
+        allocated.clear();
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.autodiff.samediff.internal.memory;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NonNull;
+import org.nd4j.linalg.api.buffer.DataType;
+
+import java.util.*;
+
+/**
+ * A static memory plan for a single SameDiff execution, computed from a recorded trace of the allocations and
+ * releases performed by the session during that execution.<br>
+ * Each allocation that is both allocated and released during the execution has a known lifetime (liveness interval).
+ * Allocations with non-overlapping lifetimes can share the same memory, so all such allocations are packed into one
+ * arena per datatype, using a greedy "largest first, lowest free offset" assignment.<br>
+ * Allocations that are never released during the execution (i.e., arrays returned to the user, or otherwise escaping
+ * the session) and detached allocations are not assigned to the arena.<br>
+ * See {@link ArenaMemoryMgr} for usage.
+ */
+@Getter
+public class StaticMemoryPlan {
+
+    /**
+     * Alignment (in bytes) for the start of each planned array within an arena
+     */
+    public static final int ALIGNMENT_BYTES = 64;
+
+    private final List<Allocation> allocations;
+    private final Map<DataType, Long> arenaLengths;         //Number of elements, per datatype arena
+
+    private StaticMemoryPlan(List<Allocation> allocations, Map<DataType, Long> arenaLengths) {
+        this.allocations = Collections.unmodifiableList(allocations);
+        this.arenaLengths = Collections.unmodifiableMap(arenaLengths);
+    }
+
+    /**
+     * Compute the memory plan for the specified allocation trace. Allocations with an {@link Allocation#getEnd()}
+     * of -1 (never released) or that are not {@link Allocation#isPlannable()} are not assigned an arena offset.
+     *
+     * @param trace Allocations, in the order they were requested
+     * @return The memory plan
+     */
+    public static StaticMemoryPlan create(@NonNull List<Allocation> trace) {
+        List<Allocation> allocations = new ArrayList<>(trace.size());
+        Map<DataType, List<Allocation>> byType = new LinkedHashMap<>();
+        for (Allocation a : trace) {
+            Allocation copy = new Allocation(a.getDataType(), a.getShape(), a.getOrder(), a.isPlannable(), a.getStart(), a.getEnd(), -1);
+            allocations.add(copy);
+            if (copy.inArena()) {
+                byType.computeIfAbsent(copy.getDataType(), k -> new ArrayList<>()).add(copy);
+            }
+        }
+
+        Map<DataType, Long> arenaLengths = new LinkedHashMap<>();
+        for (Map.Entry<DataType, List<Allocation>> e : byType.entrySet()) {
+            arenaLengths.put(e.getKey(), assignOffsets(e.getKey(), e.getValue()));
+        }
+
+        return new StaticMemoryPlan(allocations, arenaLengths);
+    }
+
+    /**
+     * Greedy best-fit offset assignment: largest allocations first, each placed at the lowest aligned offset that does
+     * not overlap (in memory) any already placed allocation that is live at the same time
+     *
+     * @return Arena length (number of elements) required for all of the allocations
+     */
+    private static long assignOffsets(DataType dataType, List<Allocation> list) {
+        long align = Math.max(1, ALIGNMENT_BYTES / Math.max(1, dataType.width()));
+        List<Allocation> sorted = new ArrayList<>(list);
+        sorted.sort((a, b) -> {
+            int c = Long.compare(b.length(), a.length());
+            return c != 0 ? c : Long.compare(a.getStart(), b.getStart());
+        });
+
+        List<Allocation> placed = new ArrayList<>();
+        long arenaLength = 0;
+        for (Allocation a : sorted) {
+            List<Allocation> overlapping = new ArrayList<>();
+            for (Allocation p : placed) {
+                if (p.getStart() < a.getEnd() && a.getStart() < p.getEnd()) {
+                    overlapping.add(p);
+                }
+            }
+            overlapping.sort(Comparator.comparingLong(Allocation::getOffset));
+
+            long offset = 0;
+            for (Allocation p : overlapping) {
+                if (offset + a.length() <= p.getOffset()) {
+                    break;      //Fits in the gap before this allocation
+                }
+                offset = Math.max(offset, roundUp(p.getOffset() + p.length(), align));
+            }
+            a.setOffset(offset);
+            placed.add(a);
+            arenaLength = Math.max(arenaLength, offset + a.length());
+        }
+        return arenaLength;
+    }
+
+    private static long roundUp(long value, long multiple) {
+        return ((value + multiple - 1) / multiple) * multiple;
+    }
+
+    /**
+     * @return Total size of all arenas, in bytes
+     */
+    public long arenaBytes() {
+        long bytes = 0;
+        for (Map.Entry<DataType, Long> e : arenaLengths.entrySet()) {
+            bytes += e.getValue() * e.getKey().width();
+        }
+        return bytes;
+    }
+
+    /**
+     * @return Total bytes of all arena allocations, if each was given its own (non-shared) memory
+     */
+    public long noReuseBytes() {
+        long bytes = 0;
+        for (Allocation a : allocations) {
+            if (a.inArena())
+                bytes += a.bytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * @return Maximum number of bytes of arena allocations that are live at any one time. This is the lower bound for
+     * {@link #arenaBytes()} (ignoring alignment)
+     */
+    public long peakLiveBytes() {
+        TreeMap<Long, Long> deltas = new TreeMap<>();
+        for (Allocation a : allocations) {
+            if (a.inArena()) {
+                deltas.merge(a.getStart(), a.bytes(), Long::sum);
+                deltas.merge(a.getEnd(), -a.bytes(), Long::sum);
+            }
+        }
+        long current = 0;
+        long peak = 0;
+        for (long d : deltas.values()) {
+            current += d;
+            peak = Math.max(peak, current);
+        }
+        return peak;
+    }
+
+    /**
+     * Estimate the memory used for the same allocations by an exact-shape array cache (such as
+     * {@link ArrayCacheMemoryMgr}), where a released array can only be reused by a later allocation with the same
+     * datatype and shape. No cache size limit is applied.
+     *
+     * @return Total bytes of all arrays that would be allocated by an exact-shape cache
+     */
+    public long exactShapeCacheBytes() {
+        List<Allocation> byStart = new ArrayList<>();
+        for (Allocation a : allocations) {
+            if (a.inArena())
+                byStart.add(a);
+        }
+        byStart.sort(Comparator.comparingLong(Allocation::getStart));
+
+        //For each datatype+shape: release times of the arrays currently held by the cache
+        Map<String, PriorityQueue<Long>> cached = new HashMap<>();
+        long bytes = 0;
+        for (Allocation a : byStart) {
+            String key = a.getDataType() + "_" + Arrays.toString(a.getShape());
+            PriorityQueue<Long> q = cached.computeIfAbsent(key, k -> new PriorityQueue<>());
+            if (!q.isEmpty() && q.peek() <= a.getStart()) {
+                q.poll();       //Reuse an array released before this allocation
+            } else {
+                bytes += a.bytes();
+            }
+            q.add(a.getEnd());
+        }
+        return bytes;
+    }
+
+    /**
+     * @return Number of allocations assigned to an arena
+     */
+    public int numArenaAllocations() {
+        int count = 0;
+        for (Allocation a : allocations) {
+            if (a.inArena())
+                count++;
+        }
+        return count;
+    }
+
+    /**
+     * @return A human-readable summary of the plan, including the arena size compared to an exact-shape array cache
+     */
+    public String summary() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("StaticMemoryPlan: ").append(allocations.size()).append(" allocations, ")
+                .append(numArenaAllocations()).append(" planned\n");
+        for (Map.Entry<DataType, Long> e : arenaLengths.entrySet()) {
+            sb.append("  Arena ").append(e.getKey()).append(": ").append(e.getValue()).append(" elements (")
+                    .append(e.getValue() * e.getKey().width()).append(" bytes)\n");
+        }
+        sb.append("  Peak arena bytes:           ").append(arenaBytes()).append("\n")
+                .append("  Peak live bytes:            ").append(peakLiveBytes()).append("\n")
+                .append("  Exact-shape cache bytes:    ").append(exactShapeCacheBytes()).append("\n")
+                .append("  No reuse bytes:             ").append(noReuseBytes()).append("\n");
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return summary();
+    }
+
+    /**
+     * A single allocation in the trace.<br>
+     * start and end are logical times (position in the sequence of allocate/release events) with end == -1 meaning
+     * the array was not released during the execution.
+     */
+    @Data
+    @AllArgsConstructor
+    public static class Allocation {
+        private DataType dataType;
+        private long[] shape;
+        private char order;
+        private boolean plannable;
+        private long start;
+        private long end;
+        private long offset;        //Arena offset, in elements. -1 if not in arena
+
+        public long length() {
+            long l = 1;
+            for (long s : shape)
+                l *= s;
+            return l;
+        }
+
+        public long bytes() {
+            return length() * dataType.width();
+        }
+
+        public boolean inArena() {
+            return plannable && end >= 0;
+        }
+
+        /**
+         * @return True if an allocation request for the specified datatype, shape and order matches this allocation
+         */
+        public boolean matches(DataType dataType, long[] shape, char order) {
+            return this.dataType == dataType && this.order == order && Arrays.equals(this.shape, shape);
+        }
+    }
+}
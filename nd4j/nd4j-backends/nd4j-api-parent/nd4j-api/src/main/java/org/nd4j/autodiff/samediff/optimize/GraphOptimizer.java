@@ -46,6 +46,7 @@ public class GraphOptimizer {
                 new ConstantFunctionOptimizations(),
                 new IdentityFunctionOptimizations(),
                 new ShapeFunctionOptimizations(),
+                new FusionFunctionOptimizations(),
                 new UnusedFunctionOptimizations(),
                 new CuDNNFunctionOptimizations()
         );
@@ -90,6 +91,7 @@ public class GraphOptimizer {
                         boolean applied = o.checkAndApply(sd, h, op, cArr, vArr);
                         if(applied) {
                             log.info("Operation was applied: {}", o);
+                            sd.markGraphStructureModified();
                         }
 
                         if(debugger != null)
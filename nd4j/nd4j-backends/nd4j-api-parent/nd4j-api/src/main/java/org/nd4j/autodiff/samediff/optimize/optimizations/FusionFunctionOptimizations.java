@@ -0,0 +1,358 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.autodiff.samediff.optimize.optimizations;
+
+import org.nd4j.autodiff.samediff.ArrayHolder;
+import org.nd4j.autodiff.samediff.SDVariable;
+import org.nd4j.autodiff.samediff.SameDiff;
+import org.nd4j.autodiff.samediff.VariableType;
+import org.nd4j.autodiff.samediff.internal.SameDiffOp;
+import org.nd4j.autodiff.samediff.optimize.OptimizationHelper;
+import org.nd4j.autodiff.samediff.optimize.Optimizer;
+import org.nd4j.enums.WeightsFormat;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.DynamicCustomOp;
+import org.nd4j.linalg.api.ops.impl.broadcast.BiasAdd;
+import org.nd4j.linalg.api.ops.impl.broadcast.BroadcastMulOp;
+import org.nd4j.linalg.api.ops.impl.layers.convolution.BatchNorm;
+import org.nd4j.linalg.api.ops.impl.layers.convolution.Conv2D;
+import org.nd4j.linalg.api.ops.impl.reduce.Mmul;
+import org.nd4j.linalg.api.ops.impl.scalar.RectifiedLinear;
+import org.nd4j.linalg.api.ops.impl.transforms.ReluLayer;
+import org.nd4j.linalg.api.ops.impl.transforms.custom.XwPlusB;
+import org.nd4j.linalg.api.ops.impl.transforms.pairwise.arithmetic.AddOp;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.ops.transforms.Transforms;
+
+import java.util.List;
+
+/**
+ * This set of optimizations fuses common chains of ops (as found in imported TF/ONNX graphs) into the fused ops
+ * that libnd4j already provides, so that the intermediate arrays don't have to be materialized:
+ * <ul>
+ *     <li>[mmul -> biasadd] to xw_plus_b</li>
+ *     <li>[xw_plus_b -> relu] to relu_layer</li>
+ *     <li>[conv2d (no bias) -> biasadd] to conv2d with bias</li>
+ *     <li>[conv2d -> batchnorm] to conv2d with folded weights and bias</li>
+ *     <li>[mmul or xw_plus_b -> batchnorm] to xw_plus_b with folded weights and bias</li>
+ * </ul>
+ * Batch norm folding is only applied when the weights, bias and batch norm parameters are all constants; the other
+ * fusions don't modify any arrays. Fusion is only applied when the intermediate variable is not used elsewhere.
+ */
+public class FusionFunctionOptimizations extends BaseOptimizerSet {
+
+    /**
+     * Fuse [mmul(x, w) -> biasadd(b)] (or add(b) with rank 1 b) into xw_plus_b(x, w, b)
+     */
+    public static class FuseMatMulBiasAdd implements Optimizer {
+        @Override
+        public boolean checkAndApply(SameDiff sd, OptimizationHelper helper, SameDiffOp op, ArrayHolder constantArrays, ArrayHolder variablesArrays) {
+            if(!isPlainMmul(sd, op))
+                return false;
+
+            SameDiffOp next = OptimizationUtils.singleConsumer(sd, op.getOutputsOfOp().get(0));
+            if(next == null || hasControlDeps(next) || !(next.getOp() instanceof BiasAdd || next.getOp() instanceof AddOp))
+                return false;
+            List<String> nextIn = next.getInputsToOp();
+            if(nextIn.size() != 2 || !nextIn.get(0).equals(op.getOutputsOfOp().get(0)))
+                return false;
+
+            SDVariable x = sd.getVariable(op.getInputsToOp().get(0));
+            SDVariable w = sd.getVariable(op.getInputsToOp().get(1));
+            SDVariable b = sd.getVariable(nextIn.get(1));
+            long[] wShape = w.getShape();
+            long[] bShape = b.getShape();
+            if(wShape == null || wShape.length != 2 || bShape == null || bShape.length != 1 || bShape[0] != wShape[1])
+                return false;
+            if(x.dataType() != w.dataType() || w.dataType() != b.dataType() || !w.dataType().isFPType())
+                return false;
+
+            String outName = next.getOutputsOfOp().get(0);
+            OptimizationUtils.removeOp(sd, next.getName());
+            OptimizationUtils.removeOp(sd, op.getName());
+            OptimizationUtils.removeVariable(sd, op.getOutputsOfOp().get(0));
+            new XwPlusB(sd, x, w, b).outputVariables(outName);
+            return true;
+        }
+    }
+
+    /**
+     * Fuse [xw_plus_b(x, w, b) -> relu] into relu_layer(x, w, b)
+     */
+    public static class FuseXwPlusBRelu implements Optimizer {
+        @Override
+        public boolean checkAndApply(SameDiff sd, OptimizationHelper helper, SameDiffOp op, ArrayHolder constantArrays, ArrayHolder variablesArrays) {
+            if(op.getOp().getClass() != XwPlusB.class || hasControlDeps(op) || hasTranspose(op))
+                return false;
+
+            SameDiffOp next = OptimizationUtils.singleConsumer(sd, op.getOutputsOfOp().get(0));
+            if(next == null || hasControlDeps(next) || !(next.getOp() instanceof RectifiedLinear))
+                return false;
+            INDArray cutoff = ((RectifiedLinear) next.getOp()).scalar();
+            if(cutoff == null || cutoff.getDouble(0) != 0.0)
+                return false;
+
+            List<String> in = op.getInputsToOp();
+            String outName = next.getOutputsOfOp().get(0);
+            OptimizationUtils.removeOp(sd, next.getName());
+            OptimizationUtils.removeOp(sd, op.getName());
+            OptimizationUtils.removeVariable(sd, op.getOutputsOfOp().get(0));
+            new ReluLayer(sd, sd.getVariable(in.get(0)), sd.getVariable(in.get(1)), sd.getVariable(in.get(2))).outputVariables(outName);
+            return true;
+        }
+    }
+
+    /**
+     * Fuse [conv2d(x, w) -> biasadd(b)] into conv2d(x, w, b) when the conv2d op does not already have a bias
+     */
+    public static class FuseConv2dBiasAdd implements Optimizer {
+        @Override
+        public boolean checkAndApply(SameDiff sd, OptimizationHelper helper, SameDiffOp op, ArrayHolder constantArrays, ArrayHolder variablesArrays) {
+            if(!(op.getOp() instanceof Conv2D) || op.getInputsToOp().size() != 2 || hasControlDeps(op))
+                return false;
+            long[] iArgs = ((Conv2D) op.getOp()).iArgs();
+            if(iArgs.length < 10)
+                return false;
+            boolean nchw = iArgs[9] == 0;
+
+            SameDiffOp next = OptimizationUtils.singleConsumer(sd, op.getOutputsOfOp().get(0));
+            if(next == null || hasControlDeps(next) || !(next.getOp() instanceof BiasAdd) || next.getInputsToOp().size() != 2)
+                return false;
+            boolean[] bArgs = ((BiasAdd) next.getOp()).bArgs();
+            boolean biasNchw = bArgs.length == 0 || bArgs[0];
+            if(nchw != biasNchw)
+                return false;
+
+            SDVariable w = sd.getVariable(op.getInputsToOp().get(1));
+            SDVariable b = sd.getVariable(next.getInputsToOp().get(1));
+            if(w.dataType() != b.dataType() || b.getShape() == null || b.getShape().length != 1)
+                return false;
+
+            OptimizationUtils.addOpInput(sd, op, b.name());
+            OptimizationUtils.bypassConsumer(sd, op, next);
+            return true;
+        }
+    }
+
+    /**
+     * Fold [conv2d -> batchnorm] into a single conv2d op with modified weights and bias:<br>
+     * w' = w * gamma / sqrt(var + eps)<br>
+     * b' = (b - mean) * gamma / sqrt(var + eps) + beta
+     */
+    public static class FoldBatchNormIntoConv2d implements Optimizer {
+        @Override
+        public boolean checkAndApply(SameDiff sd, OptimizationHelper helper, SameDiffOp op, ArrayHolder constantArrays, ArrayHolder variablesArrays) {
+            if(!(op.getOp() instanceof Conv2D) || hasControlDeps(op))
+                return false;
+            long[] iArgs = ((Conv2D) op.getOp()).iArgs();
+            if(iArgs.length < 10)
+                return false;
+            boolean nchw = iArgs[9] == 0;
+            WeightsFormat wf = iArgs.length > 10 ? WeightsFormat.values()[(int) iArgs[10]] : WeightsFormat.YXIO;
+
+            SameDiffOp next = OptimizationUtils.singleConsumer(sd, op.getOutputsOfOp().get(0));
+            if(next == null || hasControlDeps(next) || !(next.getOp() instanceof BatchNorm))
+                return false;
+            if(batchNormAxis(next, 4) != (nchw ? 1 : 3))
+                return false;
+
+            List<String> in = op.getInputsToOp();
+            if(!isConstant(sd, in.get(1)) || (in.size() > 2 && !isConstant(sd, in.get(2))))
+                return false;
+            INDArray[] scaleShift = scaleAndShift(sd, next);
+            if(scaleShift == null)
+                return false;
+
+            INDArray w = sd.getVariable(in.get(1)).getArr();
+            int outChannelDim = wf == WeightsFormat.YXIO ? 3 : 0;
+            if(w.rank() != 4 || w.size(outChannelDim) != scaleShift[0].length())
+                return false;
+            INDArray b = in.size() > 2 ? sd.getVariable(in.get(2)).getArr() : null;
+
+            INDArray[] folded = fold(w, b, scaleShift[0], scaleShift[1], outChannelDim);
+            applyFolded(sd, op, next, folded);
+            return true;
+        }
+    }
+
+    /**
+     * Fold [mmul(x, w) -> batchnorm] or [xw_plus_b(x, w, b) -> batchnorm] into a single xw_plus_b op with modified
+     * weights and bias, as per {@link FoldBatchNormIntoConv2d}
+     */
+    public static class FoldBatchNormIntoDense implements Optimizer {
+        @Override
+        public boolean checkAndApply(SameDiff sd, OptimizationHelper helper, SameDiffOp op, ArrayHolder constantArrays, ArrayHolder variablesArrays) {
+            boolean isMmul = isPlainMmul(sd, op);
+            boolean isXwPlusB = op.getOp().getClass() == XwPlusB.class && !hasTranspose(op) && !hasControlDeps(op);
+            if(!isMmul && !isXwPlusB)
+                return false;
+
+            SameDiffOp next = OptimizationUtils.singleConsumer(sd, op.getOutputsOfOp().get(0));
+            if(next == null || hasControlDeps(next) || !(next.getOp() instanceof BatchNorm))
+                return false;
+            if(batchNormAxis(next, 2) != 1)
+                return false;
+
+            List<String> in = op.getInputsToOp();
+            if(!isConstant(sd, in.get(1)) || (isXwPlusB && !isConstant(sd, in.get(2))))
+                return false;
+            INDArray[] scaleShift = scaleAndShift(sd, next);
+            if(scaleShift == null)
+                return false;
+
+            INDArray w = sd.getVariable(in.get(1)).getArr();
+            if(w.rank() != 2 || w.size(1) != scaleShift[0].length())
+                return false;
+            INDArray b = isXwPlusB ? sd.getVariable(in.get(2)).getArr() : null;
+            INDArray[] folded = fold(w, b, scaleShift[0], scaleShift[1], 1);
+
+            if(isXwPlusB) {
+                applyFolded(sd, op, next, folded);
+            } else {
+                SDVariable x = sd.getVariable(in.get(0));
+                String wName = in.get(1);
+                String outName = next.getOutputsOfOp().get(0);
+                OptimizationUtils.removeOp(sd, next.getName());
+                OptimizationUtils.removeOp(sd, op.getName());
+                OptimizationUtils.removeVariable(sd, op.getOutputsOfOp().get(0));
+                SDVariable wFolded = OptimizationUtils.newConstant(sd, wName + "_bnfold", folded[0]);
+                SDVariable bFolded = OptimizationUtils.newConstant(sd, wName + "_bnfold_b", folded[1]);
+                new XwPlusB(sd, x, wFolded, bFolded).outputVariables(outName);
+            }
+            return true;
+        }
+    }
+
+    protected static boolean hasControlDeps(SameDiffOp op){
+        return (op.getControlDeps() != null && !op.getControlDeps().isEmpty()) ||
+                (op.getVarControlDeps() != null && !op.getVarControlDeps().isEmpty()) ||
+                (op.getControlDepFor() != null && !op.getControlDepFor().isEmpty());
+    }
+
+    protected static boolean hasTranspose(SameDiffOp op){
+        for(long l : ((DynamicCustomOp) op.getOp()).iArgs()){
+            if(l != 0)
+                return true;
+        }
+        return false;
+    }
+
+    protected static boolean isConstant(SameDiff sd, String varName){
+        SDVariable v = sd.getVariable(varName);
+        return v.getVariableType() == VariableType.CONSTANT && v.getArr() != null;
+    }
+
+    /**
+     * @return True if the op is a non-transposed 2d mmul with alpha = 1 and beta = 0, with a rank 2 weights array
+     */
+    protected static boolean isPlainMmul(SameDiff sd, SameDiffOp op){
+        if(!(op.getOp() instanceof Mmul) || op.getInputsToOp().size() != 2 || hasControlDeps(op) || hasTranspose(op))
+            return false;
+        double[] tArgs = ((Mmul) op.getOp()).tArgs();
+        if(tArgs.length >= 2 && (tArgs[0] != 1.0 || tArgs[1] != 0.0))
+            return false;
+        long[] xShape = sd.getVariable(op.getInputsToOp().get(0)).getShape();
+        long[] wShape = sd.getVariable(op.getInputsToOp().get(1)).getShape();
+        return (xShape == null || xShape.length == 2) && wShape != null && wShape.length == 2;
+    }
+
+    /**
+     * @return The (single) axis of the batch norm op, for an input of the specified rank, or -1 if multiple axes
+     */
+    protected static int batchNormAxis(SameDiffOp bn, int rank){
+        long[] iArgs = ((BatchNorm) bn.getOp()).iArgs();
+        if(iArgs.length <= 2)
+            return rank - 1;        //Default: last dimension
+        if(iArgs.length > 3)
+            return -1;
+        int axis = (int) iArgs[2];
+        return axis < 0 ? axis + rank : axis;
+    }
+
+    /**
+     * Calculate the batch norm scale (gamma / sqrt(var + eps)) and shift (beta - mean * scale), if all parameters are
+     * constants
+     *
+     * @return Scale and shift arrays (rank 1, double precision), or null if batch norm parameters are not constants
+     */
+    protected static INDArray[] scaleAndShift(SameDiff sd, SameDiffOp bn){
+        BatchNorm b = (BatchNorm) bn.getOp();
+        long[] iArgs = b.iArgs();
+        double[] tArgs = b.tArgs();
+        boolean applyGamma = iArgs.length > 0 ? iArgs[0] != 0 : b.isApplyGamma();
+        boolean applyBeta = iArgs.length > 1 ? iArgs[1] != 0 : b.isApplyBeta();
+        double eps = tArgs.length > 0 ? tArgs[0] : b.getEpsilon();
+
+        List<String> in = bn.getInputsToOp();
+        if(in.size() != 3 + (applyGamma ? 1 : 0) + (applyBeta ? 1 : 0))
+            return null;
+        for( int i = 1; i < in.size(); i++) {
+            if(!isConstant(sd, in.get(i)))
+                return null;
+        }
+
+        INDArray mean = sd.getVariable(in.get(1)).getArr().castTo(DataType.DOUBLE).reshape(-1);
+        INDArray var = sd.getVariable(in.get(2)).getArr().castTo(DataType.DOUBLE).reshape(-1);
+        INDArray scale = Transforms.sqrt(var.add(eps), false).rdivi(1.0);
+        if(applyGamma)
+            scale.muli(sd.getVariable(in.get(3)).getArr().castTo(DataType.DOUBLE).reshape(-1));
+        INDArray shift = mean.mul(scale).negi();
+        if(applyBeta)
+            shift.addi(sd.getVariable(in.get(applyGamma ? 4 : 3)).getArr().castTo(DataType.DOUBLE).reshape(-1));
+        if(mean.length() != scale.length() || shift.length() != scale.length())
+            return null;
+        return new INDArray[]{scale, shift};
+    }
+
+    /**
+     * @return Folded weights (w * scale along the output channel dimension) and bias (b * scale + shift), both in the
+     * datatype of the weights
+     */
+    protected static INDArray[] fold(INDArray w, INDArray b, INDArray scale, INDArray shift, int outChannelDim){
+        DataType dt = w.dataType();
+        INDArray wd = w.castTo(DataType.DOUBLE);
+        INDArray wFolded = Nd4j.createUninitialized(DataType.DOUBLE, wd.shape());
+        Nd4j.exec(new BroadcastMulOp(wd, scale, wFolded, outChannelDim));
+        INDArray bFolded = shift.dup();
+        if(b != null)
+            bFolded.addi(b.castTo(DataType.DOUBLE).reshape(-1).mul(scale));
+        return new INDArray[]{wFolded.castTo(dt), bFolded.castTo(dt)};
+    }
+
+    /**
+     * Replace the weights (input 1) and bias (input 2, added if absent) of the op with the folded arrays, then remove
+     * the batch norm op
+     */
+    protected static void applyFolded(SameDiff sd, SameDiffOp op, SameDiffOp bn, INDArray[] folded){
+        List<String> in = op.getInputsToOp();
+        String wName = in.get(1);
+        SDVariable wFolded = OptimizationUtils.newConstant(sd, wName + "_bnfold", folded[0]);
+        SDVariable bFolded = OptimizationUtils.newConstant(sd, wName + "_bnfold_b", folded[1]);
+        OptimizationUtils.replaceOpInput(sd, op, 1, wFolded.name());
+        if(in.size() > 2) {
+            OptimizationUtils.replaceOpInput(sd, op, 2, bFolded.name());
+        } else {
+            OptimizationUtils.addOpInput(sd, op, bFolded.name());
+        }
+        OptimizationUtils.bypassConsumer(sd, op, bn);
+    }
+}
@@ -21,12 +21,16 @@
 package org.nd4j.autodiff.samediff.optimize.optimizations;
 
 import lombok.NonNull;
+import org.nd4j.autodiff.samediff.SDVariable;
 import org.nd4j.autodiff.samediff.SameDiff;
 import org.nd4j.autodiff.samediff.internal.SameDiffOp;
 import org.nd4j.autodiff.samediff.internal.Variable;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.DynamicCustomOp;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 public class OptimizationUtils {
@@ -67,4 +71,85 @@ public class OptimizationUtils {
         sd.getVariables().remove(varToRemove);
     }
 
+    /**
+     * Get the single op that uses the specified variable as an input, if it is the only use of the variable.
+     * Returns null if the variable is used by more than one op (or zero ops), is used as a control dependency, or is
+     * one of the graph outputs as per {@link SameDiff#outputs()}
+     */
+    public static SameDiffOp singleConsumer(@NonNull SameDiff sd, @NonNull String varName){
+        Variable v = sd.getVariables().get(varName);
+        if(v == null || v.getInputsForOp() == null || v.getInputsForOp().size() != 1)
+            return null;
+        if((v.getControlDepsForOp() != null && !v.getControlDepsForOp().isEmpty()) ||
+                (v.getControlDepsForVar() != null && !v.getControlDepsForVar().isEmpty()))
+            return null;
+        List<String> outputs = sd.outputs();
+        if(outputs != null && outputs.contains(varName))
+            return null;
+        return sd.getOps().get(v.getInputsForOp().get(0));
+    }
+
+    /**
+     * Replace the input at the specified index of the op with a different variable
+     */
+    public static void replaceOpInput(@NonNull SameDiff sd, @NonNull SameDiffOp op, int idx, @NonNull String newInput){
+        List<String> inputs = new ArrayList<>(op.getInputsToOp());
+        String oldInput = inputs.set(idx, newInput);
+        op.setInputsToOp(inputs);
+        if(!inputs.contains(oldInput)){
+            sd.getVariables().get(oldInput).getInputsForOp().remove(op.getName());
+        }
+        addInputForOp(sd, newInput, op.getName());
+    }
+
+    /**
+     * Add a new input (as the last input) for the specified op
+     */
+    public static void addOpInput(@NonNull SameDiff sd, @NonNull SameDiffOp op, @NonNull String newInput){
+        List<String> inputs = op.getInputsToOp() == null ? new ArrayList<String>() : new ArrayList<>(op.getInputsToOp());
+        inputs.add(newInput);
+        op.setInputsToOp(inputs);
+        addInputForOp(sd, newInput, op.getName());
+    }
+
+    private static void addInputForOp(SameDiff sd, String varName, String opName){
+        Variable v = sd.getVariables().get(varName);
+        if(v.getInputsForOp() == null)
+            v.setInputsForOp(new ArrayList<String>());
+        if(!v.getInputsForOp().contains(opName))
+            v.getInputsForOp().add(opName);
+    }
+
+    /**
+     * Remove the consumer op, and have the producer op write directly to the consumer's output variable.<br>
+     * i.e., [producer -> x -> consumer -> y] becomes [producer -> y].<br>
+     * Both ops must have exactly one output, and x must only be used by the consumer op.
+     */
+    public static void bypassConsumer(@NonNull SameDiff sd, @NonNull SameDiffOp producer, @NonNull SameDiffOp consumer){
+        String x = producer.getOutputsOfOp().get(0);
+        String y = consumer.getOutputsOfOp().get(0);
+        removeOp(sd, consumer.getName());
+        removeVariable(sd, x);
+
+        producer.setOutputsOfOp(new ArrayList<>(Collections.singletonList(y)));
+        sd.getVariables().get(y).setOutputOfOp(producer.getName());
+        SDVariable yVar = sd.getVariable(y);
+        yVar.setCreator(producer.getOp());
+        if(producer.getOp() instanceof DynamicCustomOp){
+            ((DynamicCustomOp) producer.getOp()).setOutputVariables(new SDVariable[]{yVar});
+        }
+    }
+
+    /**
+     * Add a new constant to the graph, using the specified name if possible, or a unique variant of it otherwise
+     */
+    public static SDVariable newConstant(@NonNull SameDiff sd, @NonNull String name, @NonNull INDArray arr){
+        String n = name;
+        int i = 1;
+        while(sd.hasVariable(n)){
+            n = name + "_" + (i++);
+        }
+        return sd.constant(n, arr);
+    }
+
 }
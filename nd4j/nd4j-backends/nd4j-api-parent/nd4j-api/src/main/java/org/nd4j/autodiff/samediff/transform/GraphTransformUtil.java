@@ -164,6 +164,7 @@ public class GraphTransformUtil {
             }
         }
 
+        sd.markGraphStructureModified();
         return sd;
     }
 
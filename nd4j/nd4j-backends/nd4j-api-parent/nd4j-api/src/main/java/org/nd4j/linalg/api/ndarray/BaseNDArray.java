@@ -43,6 +43,7 @@ import org.nd4j.linalg.api.iter.NdIndexIterator;
 import org.nd4j.linalg.api.memory.MemoryWorkspace;
 import org.nd4j.linalg.api.ops.CustomOp;
 import org.nd4j.linalg.api.ops.DynamicCustomOp;
+import org.nd4j.linalg.api.ops.executioner.LazyExecutionScope;
 import org.nd4j.linalg.api.ops.impl.reduce.HashCode;
 import org.nd4j.linalg.api.ops.impl.reduce.bool.All;
 import org.nd4j.linalg.api.ops.impl.reduce.bool.Any;
@@ -4946,6 +4947,9 @@ public abstract class BaseNDArray implements INDArray, Iterable {
     }
 
     protected void autoProcessScalarCall() {
+        //Direct element access: any ops deferred in a lazy execution scope must be executed first
+        if (LazyExecutionScope.anyOpen())
+            Nd4j.getExecutioner().commit();
        /* if (Nd4j.getExecutioner().getProfilingMode() != OpExecutioner.ProfilingMode.DISABLED && Nd4j.getExecutioner().getProfilingMode() != OpExecutioner.ProfilingMode.SCOPE_PANIC)
             OpProfiler.getInstance().processScalarCall();*/
     }
@@ -5012,6 +5016,7 @@ public abstract class BaseNDArray implements INDArray, Iterable {
     public String toString(@NonNull NDArrayStrings options) {
         if(wasClosed())
             return "<Closed NDArray, id=" + getId() + ", dtype=" + dataType() + ", shape=" + Arrays.toString(shape()) + ">";
+        autoProcessScalarCall();
         if (!isCompressed() && !preventUnpack)
             return options.format(this);
         else if (isCompressed() && compressDebug)
@@ -65,8 +65,18 @@ public abstract class DefaultOpExecutioner implements OpExecutioner {
     protected AtomicBoolean verbose = new AtomicBoolean(false);
     protected AtomicBoolean debug = new AtomicBoolean(false);
 
+    //Memoized output shapes for custom ops - used by the backend calculateOutputShape implementations
+    protected final OutputShapeCache outputShapeCache = new OutputShapeCache();
+
     public DefaultOpExecutioner() {}
 
+    /**
+     * @return The output shape cache used by {@link #calculateOutputShape(CustomOp, OpContext)}
+     */
+    public OutputShapeCache getOutputShapeCache() {
+        return outputShapeCache;
+    }
+
     public static void initOpContext(CustomOp op, boolean shapeOverride, OpContext context) {
         // optionally skip shape validation on op execution
         if (shapeOverride)
@@ -0,0 +1,117 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.linalg.api.ops.executioner;
+
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Opt-in scope for lazy (deferred) execution of element-wise ops. Usage:
+ * <pre>
+ * {@code
+ * try(LazyExecutionScope scope = LazyExecutionScope.open()){
+ *     INDArray out = Transforms.sigmoid(x.mul(a).addi(b), false);
+ *     ...
+ * }
+ * }
+ * </pre>
+ * Within the scope, chains of scalar, pairwise (add/sub/mul/div, same shape) and element-wise transform ops on
+ * contiguous arrays of the same length and datatype are recorded instead of being executed one by one. When the queue
+ * is flushed, the chain is executed in a single pass over memory, one cache-sized block at a time, instead of one full
+ * pass per op.<br>
+ * The queue is flushed when: any other op (reductions, matrix multiplication, custom ops, etc) is executed, array
+ * elements are read or written from Java (getDouble, putScalar, toString etc), {@link OpExecutioner#commit()} or
+ * {@link #flush()} is called, or the scope is closed. Code that accesses the data buffer of an array directly within a
+ * scope should call {@link #flush()} first.<br>
+ * Scopes are thread confined: they must be closed on the thread that opened them, and arrays modified within a scope
+ * should not be handed to another thread before a flush.<br>
+ * If the current backend does not implement {@link LazyOpExecutioner}, the scope has no effect and all ops are
+ * executed immediately.
+ */
+public class LazyExecutionScope implements AutoCloseable {
+
+    private static final AtomicInteger OPEN_SCOPES = new AtomicInteger();
+
+    private final LazyOpExecutioner executioner;
+    private boolean closed;
+
+    private LazyExecutionScope(LazyOpExecutioner executioner) {
+        this.executioner = executioner;
+    }
+
+    /**
+     * Open a lazy execution scope on the current thread
+     */
+    public static LazyExecutionScope open() {
+        OpExecutioner e = Nd4j.getExecutioner();
+        if (!(e instanceof LazyOpExecutioner))
+            return new LazyExecutionScope(null);
+
+        LazyOpExecutioner l = (LazyOpExecutioner) e;
+        OPEN_SCOPES.incrementAndGet();
+        l.enterLazyScope();
+        return new LazyExecutionScope(l);
+    }
+
+    /**
+     * @return True if any lazy execution scope is open (on any thread). Used as a cheap check before flushing
+     */
+    public static boolean anyOpen() {
+        return OPEN_SCOPES.get() > 0;
+    }
+
+    /**
+     * @return True if ops are being deferred in this scope; false if the backend does not support lazy execution
+     */
+    public boolean isLazy() {
+        return executioner != null;
+    }
+
+    /**
+     * Execute all ops queued on the current thread
+     */
+    public void flush() {
+        if (executioner != null)
+            executioner.commit();
+    }
+
+    /**
+     * @return Number of ops currently queued on the current thread
+     */
+    public int queueLength() {
+        return executioner == null ? 0 : executioner.getLazyQueueLength();
+    }
+
+    @Override
+    public void close() {
+        if (closed)
+            return;
+        closed = true;
+        if (executioner != null) {
+            try {
+                executioner.exitLazyScope();
+            } finally {
+                OPEN_SCOPES.decrementAndGet();
+            }
+        }
+    }
+}
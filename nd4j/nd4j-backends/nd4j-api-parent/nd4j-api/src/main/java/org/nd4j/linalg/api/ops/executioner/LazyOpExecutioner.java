@@ -0,0 +1,46 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.linalg.api.ops.executioner;
+
+/**
+ * An {@link OpExecutioner} that supports deferred execution of element-wise ops within a {@link LazyExecutionScope}.
+ * While a scope is open on a thread, compatible element-wise ops executed on that thread are queued instead of being
+ * executed immediately; the queue is executed (fused where possible) on {@link #commit()}, when an op that can't be
+ * deferred is executed, or when the outermost scope is closed.
+ */
+public interface LazyOpExecutioner extends OpExecutioner {
+
+    /**
+     * Enter a lazy execution scope on the current thread. Scopes may be nested.
+     * Usually called via {@link LazyExecutionScope#open()} rather than directly.
+     */
+    void enterLazyScope();
+
+    /**
+     * Exit a lazy execution scope on the current thread. Exiting the outermost scope executes any queued ops.
+     */
+    void exitLazyScope();
+
+    /**
+     * @return Number of ops currently queued for execution on the current thread
+     */
+    int getLazyQueueLength();
+}
@@ -0,0 +1,294 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.linalg.api.ops.executioner;
+
+import lombok.NonNull;
+import org.nd4j.common.config.ND4JSystemProperties;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.CustomOp;
+import org.nd4j.linalg.api.ops.OpContext;
+import org.nd4j.linalg.api.shape.LongShapeDescriptor;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Memoization of custom op output shapes.<br>
+ * Output shape calculation for custom ops requires a JNI call (and creation of new {@link LongShapeDescriptor}
+ * instances) on every op execution, even when the inputs and arguments are the same as on the previous call.
+ * This class caches the calculated output shapes keyed by a {@link Key}: the op name, the datatype/shape/order of
+ * each input, the op arguments (iArgs, tArgs, bArgs and dArgs) and the values of any small non floating point inputs
+ * (which are commonly used for shape/axis arguments).<br>
+ * <br>
+ * Some ops have output shapes that depend on the (floating point) values of their inputs, such as
+ * non_max_suppression or where. These are listed in {@link #VALUE_DEPENDENT_OPS} and are never cached.
+ * Similarly, ops with non floating point inputs larger than {@link #MAX_VALUE_ELEMENTS} are not cached.<br>
+ * <br>
+ * A single instance is thread safe. Caching can be disabled globally using the
+ * {@link ND4JSystemProperties#OUTPUT_SHAPE_CACHE_ENABLED} system property, or via {@link #setEnabled(boolean)}
+ */
+public class OutputShapeCache {
+
+    public static final int DEFAULT_MAX_SIZE = 4096;
+
+    /**
+     * Maximum number of elements for non floating point inputs: the values of such inputs are part of the cache key,
+     * as they are commonly used to define output shapes (for example, reshape, tile, fill, etc)
+     */
+    public static final int MAX_VALUE_ELEMENTS = 64;
+
+    /**
+     * Ops where the output shape depends on the values of the (floating point) inputs
+     */
+    public static final Set<String> VALUE_DEPENDENT_OPS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "non_max_suppression", "non_max_suppression_v3", "non_max_suppression_overlaps",
+            "where", "where_np", "Where", "boolean_mask", "choose", "unique", "unique_with_counts",
+            "listdiff", "dynamic_partition", "dynamic_stitch", "range", "bincount", "confusion_matrix",
+            "compat_sparse_to_dense", "compat_string_split", "split_string"
+    )));
+
+    private static volatile boolean enabled = Boolean.parseBoolean(
+            System.getProperty(ND4JSystemProperties.OUTPUT_SHAPE_CACHE_ENABLED, "true"));
+
+    private final int maxSize;
+    private final Map<Key, List<LongShapeDescriptor>> cache;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public OutputShapeCache() {
+        this(Integer.parseInt(System.getProperty(ND4JSystemProperties.OUTPUT_SHAPE_CACHE_MAX_SIZE, String.valueOf(DEFAULT_MAX_SIZE))));
+    }
+
+    public OutputShapeCache(final int maxSize) {
+        this.maxSize = maxSize;
+        this.cache = new LinkedHashMap<Key, List<LongShapeDescriptor>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, List<LongShapeDescriptor>> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * @return True if output shape caching is enabled (globally)
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enable or disable output shape caching (globally)
+     */
+    public static void setEnabled(boolean enabled) {
+        OutputShapeCache.enabled = enabled;
+    }
+
+    /**
+     * Get the cached output shapes for the specified key
+     *
+     * @param key Key, as per {@link #key(CustomOp, OpContext)}. May be null (in which case null is returned)
+     * @return The cached output shapes, or null if not present in the cache
+     */
+    public List<LongShapeDescriptor> get(Key key) {
+        if (key == null)
+            return null;
+        List<LongShapeDescriptor> ret;
+        synchronized (cache) {
+            ret = cache.get(key);
+        }
+        if (ret == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return new ArrayList<>(ret);
+    }
+
+    /**
+     * Put the calculated output shapes into the cache. No-op if the key is null or the shapes are null/empty
+     */
+    public void put(Key key, List<LongShapeDescriptor> shapes) {
+        if (key == null || shapes == null || shapes.isEmpty() || maxSize <= 0)
+            return;
+        List<LongShapeDescriptor> copy = Collections.unmodifiableList(new ArrayList<>(shapes));
+        synchronized (cache) {
+            cache.put(key, copy);
+        }
+    }
+
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public void resetStats() {
+        hits.set(0);
+        misses.set(0);
+    }
+
+    /**
+     * Create the cache key for the specified op and (optional) op context.
+     *
+     * @param op        Op to create the key for
+     * @param opContext Op context. If non-null, inputs and arguments are taken from the context instead of the op
+     * @return The key, or null if the output shape for this op (given the current inputs) should not be cached
+     */
+    public static Key key(@NonNull CustomOp op, OpContext opContext) {
+        if (!enabled)
+            return null;
+        String opName = op.opName();
+        if (opName == null || VALUE_DEPENDENT_OPS.contains(opName))
+            return null;
+
+        List<INDArray> inputs = opContext != null && opContext.getInputArrays() != null && !opContext.getInputArrays().isEmpty()
+                ? opContext.getInputArrays() : op.inputArguments();
+
+        LongList sig = new LongList();
+        sig.add(inputs.size());
+        for (INDArray in : inputs) {
+            if (in == null)
+                return null;
+            DataType dt = in.dataType();
+            if (dt == DataType.UTF8 || dt == DataType.COMPRESSED || dt == DataType.UNKNOWN)
+                return null;
+            long[] shape = in.shape();
+            sig.add(dt.ordinal());
+            sig.add(in.isEmpty() ? -1 : shape.length);
+            for (long l : shape)
+                sig.add(l);
+            sig.add(in.ordering());
+
+            if (!dt.isFPType() && !in.isEmpty()) {
+                long length = in.length();
+                if (length > MAX_VALUE_ELEMENTS)
+                    return null;
+                INDArray values = in.rank() <= 1 ? in : in.reshape('c', length);
+                for (long i = 0; i < length; i++) {
+                    sig.add(dt.isIntType() ? values.getLong(i) : Double.doubleToLongBits(values.getDouble(i)));
+                }
+            }
+        }
+
+        if (opContext != null) {
+            List<Long> iArgs = opContext.getIArguments();
+            sig.add(iArgs.size());
+            for (Long l : iArgs)
+                sig.add(l);
+            List<Double> tArgs = opContext.getTArguments();
+            sig.add(tArgs.size());
+            for (Double d : tArgs)
+                sig.add(Double.doubleToLongBits(d));
+            List<Boolean> bArgs = opContext.getBArguments();
+            sig.add(bArgs.size());
+            for (Boolean b : bArgs)
+                sig.add(b ? 1 : 0);
+            List<DataType> dArgs = opContext.getDArguments();
+            sig.add(dArgs.size());
+            for (DataType d : dArgs)
+                sig.add(d.ordinal());
+        } else {
+            long[] iArgs = op.iArgs();
+            sig.add(iArgs.length);
+            for (long l : iArgs)
+                sig.add(l);
+            double[] tArgs = op.tArgs();
+            sig.add(tArgs.length);
+            for (double d : tArgs)
+                sig.add(Double.doubleToLongBits(d));
+            boolean[] bArgs = op.bArgs();
+            sig.add(bArgs.length);
+            for (boolean b : bArgs)
+                sig.add(b ? 1 : 0);
+            DataType[] dArgs = op.dArgs();
+            sig.add(dArgs.length);
+            for (DataType d : dArgs)
+                sig.add(d.ordinal());
+        }
+
+        return new Key(opName, sig.toArray());
+    }
+
+    /**
+     * Output shape cache key: op name plus a signature of the op inputs and arguments
+     */
+    public static class Key {
+        private final String opName;
+        private final long[] signature;
+        private final int hash;
+
+        public Key(@NonNull String opName, @NonNull long[] signature) {
+            this.opName = opName;
+            this.signature = signature;
+            this.hash = 31 * opName.hashCode() + Arrays.hashCode(signature);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Key))
+                return false;
+            Key k = (Key) o;
+            return hash == k.hash && opName.equals(k.opName) && Arrays.equals(signature, k.signature);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return "OutputShapeCache.Key(" + opName + ", " + Arrays.toString(signature) + ")";
+        }
+    }
+
+    private static class LongList {
+        private long[] values = new long[32];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length)
+                values = Arrays.copyOf(values, 2 * size);
+            values[size++] = value;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
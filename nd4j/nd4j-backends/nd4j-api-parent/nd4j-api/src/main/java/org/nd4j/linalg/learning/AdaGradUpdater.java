@@ -32,7 +32,7 @@ import java.util.Map;
 
 
 @Data
-public class AdaGradUpdater implements GradientUpdater<AdaGrad> {
+public class AdaGradUpdater implements SparseGradientUpdater<AdaGrad> {
     public static final String GRAD_STATE = "grad";
     public INDArray historicalGradient;
     public int[] shape;
@@ -94,4 +94,18 @@ public class AdaGradUpdater implements GradientUpdater<AdaGrad> {
 
         Nd4j.exec(new org.nd4j.linalg.api.ops.impl.updaters.AdaGradUpdater(gradient, historicalGradient.reshape(gradient.shape()), learningRate, epsilon));
     }
+
+    @Override
+    public void applyUpdaterRows(INDArray gradientRows, int[] rows, long[] shape, char order, int iteration, int epoch) {
+        if (historicalGradient == null)
+            throw new IllegalStateException("Updater has not been initialized with view state");
+
+        double learningRate = config.getLearningRate(iteration, epoch);
+        double epsilon = config.getEpsilon();
+
+        INDArray h2d = SparseUpdaterUtils.stateAs2d(historicalGradient, shape, order);
+        INDArray hRows = SparseUpdaterUtils.gatherRows(h2d, rows);
+        Nd4j.exec(new org.nd4j.linalg.api.ops.impl.updaters.AdaGradUpdater(gradientRows, hRows, learningRate, epsilon));
+        SparseUpdaterUtils.scatterRows(h2d, rows, hRows);
+    }
 }
@@ -38,7 +38,7 @@ import java.util.Map;
  * @author Adam Gibson
  */
 @Data
-public class AdamUpdater implements GradientUpdater<Adam> {
+public class AdamUpdater implements SparseGradientUpdater<Adam> {
     public static final String M_STATE = "M";
     public static final String V_STATE = "V";
 
@@ -109,4 +109,25 @@ public class AdamUpdater implements GradientUpdater<Adam> {
 
         Nd4j.exec(new org.nd4j.linalg.api.ops.impl.updaters.AdamUpdater(gradient.reshape(v.shape()), v, m, learningRate, beta1, beta2, epsilon, iteration));
     }
+
+    @Override
+    public void applyUpdaterRows(INDArray gradientRows, int[] rows, long[] shape, char order, int iteration, int epoch) {
+        if (m == null || v == null)
+            throw new IllegalStateException("Updater has not been initialized with view state");
+
+        double beta1 = config.getBeta1();
+        double beta2 = config.getBeta2();
+        double learningRate = config.getLearningRate(iteration, epoch);
+        double epsilon = config.getEpsilon();
+
+        INDArray m2d = SparseUpdaterUtils.stateAs2d(m, shape, order);
+        INDArray v2d = SparseUpdaterUtils.stateAs2d(v, shape, order);
+        INDArray mRows = SparseUpdaterUtils.gatherRows(m2d, rows);
+        INDArray vRows = SparseUpdaterUtils.gatherRows(v2d, rows);
+
+        Nd4j.exec(new org.nd4j.linalg.api.ops.impl.updaters.AdamUpdater(gradientRows, vRows, mRows, learningRate, beta1, beta2, epsilon, iteration));
+
+        SparseUpdaterUtils.scatterRows(m2d, rows, mRows);
+        SparseUpdaterUtils.scatterRows(v2d, rows, vRows);
+    }
 }
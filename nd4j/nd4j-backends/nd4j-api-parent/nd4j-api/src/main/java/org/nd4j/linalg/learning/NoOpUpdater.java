@@ -29,7 +29,7 @@ import java.util.Collections;
 import java.util.Map;
 
 @Data
-public class NoOpUpdater implements GradientUpdater<NoOp> {
+public class NoOpUpdater implements SparseGradientUpdater<NoOp> {
 
     private final NoOp config;
 
@@ -57,4 +57,9 @@ public class NoOpUpdater implements GradientUpdater<NoOp> {
     public void applyUpdater(INDArray gradient, int iteration, int epoch) {
         //No op
     }
+
+    @Override
+    public void applyUpdaterRows(INDArray gradientRows, int[] rows, long[] shape, char order, int iteration, int epoch) {
+        //No op
+    }
 }
@@ -34,7 +34,7 @@ import java.util.Map;
  * @author Adam Gibson
  */
 @Data
-public class SgdUpdater implements GradientUpdater<Sgd> {
+public class SgdUpdater implements SparseGradientUpdater<Sgd> {
 
     private final Sgd config;
 
@@ -63,4 +63,9 @@ public class SgdUpdater implements GradientUpdater<Sgd> {
         double lr = config.getLearningRate(iteration, epoch);
         Nd4j.exec(new org.nd4j.linalg.api.ops.impl.updaters.SgdUpdater(gradient, lr));
     }
+
+    @Override
+    public void applyUpdaterRows(INDArray gradientRows, int[] rows, long[] shape, char order, int iteration, int epoch) {
+        applyUpdater(gradientRows, iteration, epoch);
+    }
 }
@@ -0,0 +1,49 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.linalg.learning;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.learning.config.IUpdater;
+
+/**
+ * A {@link GradientUpdater} that can also be applied to a subset of the rows of a 2d parameter array - for example,
+ * the rows of an embedding weight matrix that were used in the current minibatch.<br>
+ * Updates are applied <i>lazily</i>: the updater state for rows that are not specified is not modified. For stateless
+ * updaters (SGD) and updaters whose state does not change for a zero gradient (AdaGrad) this is equivalent to applying
+ * the updater to the full (mostly zero) gradient array. For updaters such as Adam, this differs from dense updates:
+ * the moving averages for a row only decay in iterations where that row has a non-zero gradient.
+ */
+public interface SparseGradientUpdater<T extends IUpdater> extends GradientUpdater<T> {
+
+    /**
+     * Modify the gradient for the specified rows to be an update, in-place. The updater state for all other rows is
+     * not modified.
+     *
+     * @param gradientRows  Gradient for the specified rows, shape [rows.length, numColumns]
+     * @param rows          Indices of the rows (in the full parameter array) to update. Must not contain duplicates
+     * @param shape         Shape of the full (2d) parameter/gradient array
+     * @param order         Order of the full parameter/gradient array. The updater state is assumed to be laid out in
+     *                      the same way as the full gradient array
+     * @param iteration     Current iteration
+     * @param epoch         Current epoch
+     */
+    void applyUpdaterRows(INDArray gradientRows, int[] rows, long[] shape, char order, int iteration, int epoch);
+}
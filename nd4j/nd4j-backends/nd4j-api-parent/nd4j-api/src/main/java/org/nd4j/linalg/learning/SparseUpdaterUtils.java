@@ -0,0 +1,61 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.linalg.learning;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.impl.scatter.ScatterUpdate;
+import org.nd4j.linalg.api.shape.Shape;
+import org.nd4j.linalg.factory.Nd4j;
+
+/**
+ * Utility methods for {@link SparseGradientUpdater} implementations: gathering and scattering rows of the updater state
+ */
+class SparseUpdaterUtils {
+    private static final int[] ROW_DIM = new int[]{1};
+
+    private SparseUpdaterUtils() { }
+
+    /**
+     * @param state Updater state array, laid out as the full gradient array
+     * @return The state array, as a 2d array with the specified shape and order (no copy)
+     */
+    static INDArray stateAs2d(INDArray state, long[] shape, char order) {
+        INDArray out = Shape.newShapeNoCopy(state, new long[]{shape[0], shape[1]}, order == 'f');
+        if (out == null)
+            throw new IllegalStateException("Could not reshape updater state array of length " + state.length()
+                    + " to shape [" + shape[0] + "," + shape[1] + "] without copying");
+        return out;
+    }
+
+    /**
+     * @return Copy of the specified rows of the 2d array, shape [rows.length, numColumns]
+     */
+    static INDArray gatherRows(INDArray arr2d, int[] rows) {
+        return Nd4j.pullRows(arr2d, 1, rows, 'c');
+    }
+
+    /**
+     * Assign the values (shape [rows.length, numColumns]) to the specified rows of the 2d array
+     */
+    static void scatterRows(INDArray arr2d, int[] rows, INDArray values) {
+        Nd4j.scatterUpdate(ScatterUpdate.UpdateOp.ASSIGN, arr2d, Nd4j.createFromArray(rows), values, ROW_DIM);
+    }
+}
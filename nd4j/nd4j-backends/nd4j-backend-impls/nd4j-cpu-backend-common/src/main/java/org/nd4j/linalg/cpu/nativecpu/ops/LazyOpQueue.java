@@ -0,0 +1,231 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.linalg.cpu.nativecpu.ops;
+
+import org.nd4j.common.config.ND4JSystemProperties;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.CustomOp;
+import org.nd4j.linalg.api.ops.Op;
+import org.nd4j.linalg.api.ops.ScalarOp;
+import org.nd4j.linalg.api.ops.TransformOp;
+import org.nd4j.linalg.api.ops.impl.transforms.floating.Sqrt;
+import org.nd4j.linalg.api.ops.impl.transforms.pairwise.arithmetic.*;
+import org.nd4j.linalg.api.ops.impl.transforms.same.*;
+import org.nd4j.linalg.api.ops.impl.transforms.strict.*;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Per-thread queue of deferred element-wise ops, used by {@link NativeOpExecutioner} within a
+ * {@link org.nd4j.linalg.api.ops.executioner.LazyExecutionScope}.<br>
+ * All ops in the queue operate on contiguous, non-view arrays with the same length, datatype and ordering. Such ops
+ * are independent per element (in buffer order), so the chain can be executed block by block: each block of
+ * {@link #blockSize} elements is processed by every op in the chain while it is still in cache, instead of making one
+ * full pass over memory per op. Blocks are processed in parallel.
+ */
+class LazyOpQueue {
+
+    static final int MAX_QUEUE_LENGTH = 64;
+
+    private static final Set<Class<?>> TRANSFORMS = new HashSet<>(Arrays.<Class<?>>asList(
+            Sigmoid.class, Tanh.class, Exp.class, Log.class, SoftPlus.class, Swish.class, GELU.class, Sin.class, Cos.class,
+            Abs.class, Negative.class, Square.class, Sign.class, Floor.class, Ceil.class, Round.class, Reciprocal.class,
+            OneMinus.class, Sqrt.class));
+
+    //Legacy pairwise transform op numbers (see libnd4j legacy_ops.h) for the same-shape arithmetic custom ops
+    private static final Map<Class<?>, Integer> PAIRWISE = new HashMap<>();
+    static {
+        PAIRWISE.put(AddOp.class, 0);
+        PAIRWISE.put(DivOp.class, 2);
+        PAIRWISE.put(MulOp.class, 3);
+        PAIRWISE.put(RSubOp.class, 5);
+        PAIRWISE.put(SubOp.class, 6);
+        PAIRWISE.put(RDivOp.class, 11);
+    }
+
+    enum Type {SCALAR, PAIRWISE, TRANSFORM}
+
+    static class DeferredOp {
+        final Type type;
+        final Op op;            //Null for pairwise ops
+        final int opNum;
+        final INDArray x;
+        final INDArray y;       //Null for scalar and transform ops
+        final INDArray z;
+
+        DeferredOp(Type type, Op op, int opNum, INDArray x, INDArray y, INDArray z) {
+            this.type = type;
+            this.op = op;
+            this.opNum = opNum;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+    }
+
+    private final int blockSize = Integer.parseInt(System.getProperty(ND4JSystemProperties.LAZY_EXECUTION_BLOCK_SIZE, "8192"));
+    private final List<DeferredOp> ops = new ArrayList<>();
+    private int depth;
+    private long length;
+    private DataType dataType;
+    private char order;
+
+    void enter() {
+        depth++;
+    }
+
+    /**
+     * @return True if this was the outermost scope
+     */
+    boolean exit() {
+        if (depth > 0)
+            depth--;
+        return depth == 0;
+    }
+
+    boolean isActive() {
+        return depth > 0;
+    }
+
+    boolean isEmpty() {
+        return ops.isEmpty();
+    }
+
+    int size() {
+        return ops.size();
+    }
+
+    /**
+     * Convert the op to a deferred op, if it is a supported element-wise op
+     *
+     * @return The deferred op, or null if the op can't be deferred
+     */
+    static DeferredOp toDeferred(Op op) {
+        if (op instanceof ScalarOp) {
+            ScalarOp s = (ScalarOp) op;
+            if (s.getOpType() != Op.Type.SCALAR || s.dimensions() != null || s.scalar() == null)
+                return null;
+            return new DeferredOp(Type.SCALAR, op, op.opNum(), op.x(), null, op.z());
+        } else if (op instanceof TransformOp) {
+            if (op.y() != null || !TRANSFORMS.contains(op.getClass()))
+                return null;
+            return new DeferredOp(Type.TRANSFORM, op, op.opNum(), op.x(), null, op.z());
+        }
+        return null;
+    }
+
+    static DeferredOp toDeferred(CustomOp op) {
+        Integer opNum = PAIRWISE.get(op.getClass());
+        if (opNum == null || op.numInputArguments() != 2 || op.numOutputArguments() != 1 || op.numIArguments() > 0 || op.numTArguments() > 0)
+            return null;
+        INDArray x = op.inputArguments().get(0);
+        INDArray y = op.inputArguments().get(1);
+        INDArray z = op.outputArguments().get(0);
+        if (x == null || y == null || z == null || !x.equalShapes(y) || !x.equalShapes(z))
+            return null;
+        return new DeferredOp(Type.PAIRWISE, null, opNum, x, y, z);
+    }
+
+    /**
+     * Add the op to the queue if it can be fused with the ops already queued.
+     *
+     * @return False if the op isn't compatible with the queued ops (the queue should be flushed first) or the queue is full
+     */
+    boolean add(DeferredOp op) {
+        if (ops.size() >= MAX_QUEUE_LENGTH)
+            return false;
+        if (ops.isEmpty()) {
+            length = op.x.length();
+            dataType = op.x.dataType();
+            order = op.x.ordering();
+        }
+        if (!compatible(op.x) || !compatible(op.z) || (op.y != null && !compatible(op.y)))
+            return false;
+        ops.add(op);
+        return true;
+    }
+
+    /**
+     * @return True if all arrays of the op are supported for deferred execution
+     */
+    static boolean canDefer(DeferredOp op) {
+        return supported(op.x) && supported(op.z) && (op.y == null || supported(op.y)) && op.x.dataType() == op.z.dataType();
+    }
+
+    private static boolean supported(INDArray arr) {
+        return arr != null && !arr.isEmpty() && !arr.isView() && !arr.isCompressed() && arr.dataType().isFPType()
+                && arr.elementWiseStride() == 1 && arr.data().length() == arr.length();
+    }
+
+    private boolean compatible(INDArray arr) {
+        return arr.length() == length && arr.dataType() == dataType && arr.ordering() == order;
+    }
+
+    /**
+     * Execute and remove all queued ops
+     */
+    void flush(NativeOpExecutioner executioner) {
+        if (ops.isEmpty())
+            return;
+        List<DeferredOp> toExec = new ArrayList<>(ops);
+        ops.clear();
+
+        if (toExec.size() == 1 || length <= blockSize) {
+            for (DeferredOp op : toExec) {
+                executioner.execDeferred(op, op.x, op.y, op.z);
+            }
+            return;
+        }
+
+        //Create the views for each block (and the extra args buffers, which are created lazily) up front, on this thread
+        for (DeferredOp op : toExec) {
+            if (op.op != null && op.op.extraArgs() != null)
+                op.op.extraArgsDataBuff(op.z.dataType());
+        }
+        int numBlocks = (int) ((length + blockSize - 1) / blockSize);
+        Map<INDArray, INDArray[]> blocks = new IdentityHashMap<>();
+        for (DeferredOp op : toExec) {
+            blocks.computeIfAbsent(op.x, a -> blockViews(a, numBlocks));
+            blocks.computeIfAbsent(op.z, a -> blockViews(a, numBlocks));
+            if (op.y != null)
+                blocks.computeIfAbsent(op.y, a -> blockViews(a, numBlocks));
+        }
+
+        IntStream.range(0, numBlocks).parallel().forEach(b -> {
+            for (DeferredOp op : toExec) {
+                executioner.execDeferred(op, blocks.get(op.x)[b], op.y == null ? null : blocks.get(op.y)[b], blocks.get(op.z)[b]);
+            }
+        });
+    }
+
+    private INDArray[] blockViews(INDArray arr, int numBlocks) {
+        INDArray[] out = new INDArray[numBlocks];
+        for (int i = 0; i < numBlocks; i++) {
+            long start = (long) i * blockSize;
+            long len = Math.min(blockSize, length - start);
+            out[i] = Nd4j.create(arr.data(), new long[]{len}, new long[]{1}, start, 'c');
+        }
+        return out;
+    }
+}
@@ -41,7 +41,10 @@ import org.nd4j.linalg.api.ops.*;
 import org.nd4j.linalg.api.ops.aggregates.Aggregate;
 import org.nd4j.linalg.api.ops.aggregates.Batch;
 import org.nd4j.linalg.api.ops.executioner.DefaultOpExecutioner;
+import org.nd4j.linalg.api.ops.executioner.LazyExecutionScope;
+import org.nd4j.linalg.api.ops.executioner.LazyOpExecutioner;
 import org.nd4j.linalg.api.ops.executioner.OpStatus;
+import org.nd4j.linalg.api.ops.executioner.OutputShapeCache;
 import org.nd4j.linalg.api.ops.impl.scatter.ScatterUpdate;
 import org.nd4j.linalg.api.ops.impl.summarystats.Variance;
 import org.nd4j.linalg.api.ops.impl.transforms.any.IsMax;
@@ -74,7 +77,7 @@ import org.nd4j.nativeblas.*;
 import java.util.*;
 
 @Slf4j
-public class NativeOpExecutioner extends DefaultOpExecutioner {
+public class NativeOpExecutioner extends DefaultOpExecutioner implements LazyOpExecutioner {
     private NativeOps loop = NativeOpsHolder.getInstance().getDeviceNativeOps();
     private ConstantHandler constantHandler = Nd4j.getConstantHandler();
     @Getter
@@ -94,6 +97,11 @@ public class NativeOpExecutioner extends DefaultOpExecutioner {
     private ThreadLocal<Map<Integer, Pointer>> batchPointers = new ThreadLocal<>();
     private ThreadLocal<Map<Integer, AggregateMemoryBlock>> memoryBlocks = new ThreadLocal<>();
 
+    /**
+     * Element-wise ops deferred within a LazyExecutionScope, per thread
+     */
+    private ThreadLocal<LazyOpQueue> lazyQueue = ThreadLocal.withInitial(LazyOpQueue::new);
+
     public NativeOpExecutioner() {
         tadManager.init(loop, constantHandler);
 
@@ -114,6 +122,9 @@ public class NativeOpExecutioner extends DefaultOpExecutioner {
 
     @Override
     public INDArray exec(Op op, OpContext opContext) {
+        if (LazyExecutionScope.anyOpen() && deferOrFlush(opContext == null ? LazyOpQueue.toDeferred(op) : null))
+            return op.z();
+
         checkForCompression(op);
 
         if (op instanceof ScalarOp) {
@@ -146,6 +157,7 @@ public class NativeOpExecutioner extends DefaultOpExecutioner {
     }
 
     public INDArray exec(IndexAccumulation op, OpContext oc) {
+        flushLazyOps();
         checkForCompression(op);
 
         INDArray x = getX(op, oc);
@@ -224,6 +236,7 @@ public class NativeOpExecutioner extends DefaultOpExecutioner {
     }
 
     public INDArray exec(ReduceOp op, OpContext oc) {
+        flushLazyOps();
         INDArray x = getX(op, oc);
         INDArray y = getY(op, oc);
         INDArray z = getZ(op, oc);
@@ -572,6 +585,9 @@ public class NativeOpExecutioner extends DefaultOpExecutioner {
     }
 
     public INDArray exec(ScalarOp op, OpContext oc) {
+        if (LazyExecutionScope.anyOpen() && deferOrFlush(oc == null ? LazyOpQueue.toDeferred(op) : null))
+            return op.z();
+
         long st = profilingConfigurableHookIn(op);
 
         if((oc != null && oc.getOutputArray(0) == null) || getZ(op, oc) == null){
@@ -821,6 +837,7 @@ public class NativeOpExecutioner extends DefaultOpExecutioner {
     }
 
     public INDArray exec(BroadcastOp op, OpContext oc) {
+        flushLazyOps();
         INDArray x = getX(op, oc);
         INDArray y = getY(op, oc);
         INDArray z = getZ(op, oc);
@@ -910,6 +927,7 @@ public class NativeOpExecutioner extends DefaultOpExecutioner {
      */
     @Override
     public <T extends Aggregate> void exec(Batch<T> batch) {
+        flushLazyOps();
 
         IntPointer pointer = (IntPointer) getPointer(batch);
 
@@ -1030,6 +1048,7 @@ public class NativeOpExecutioner extends DefaultOpExecutioner {
     public void exec(List<Aggregate> batch) {
         if (batch.size() == 0)
             return;
+        flushLazyOps();
 
         List<Batch<Aggregate>> batches = Batch.getBatches(batch);
         for (Batch<Aggregate> single : batches) {
@@ -1048,6 +1067,7 @@ public class NativeOpExecutioner extends DefaultOpExecutioner {
      */
     @Override
     public void exec(Aggregate op) {
+        flushLazyOps();
 
         if (memoryBlocks.get() == null)
             memoryBlocks.set(new HashMap<>());
@@ -1173,6 +1193,7 @@ public class NativeOpExecutioner extends DefaultOpExecutioner {
 
 
     public INDArray exec(RandomOp op, OpContext oc, Random rng) {
+        flushLazyOps();
         INDArray x = getX(op, oc);
         INDArray y = getY(op, oc);
         INDArray z = getZ(op, oc);
@@ -1342,6 +1363,9 @@ public class NativeOpExecutioner extends DefaultOpExecutioner {
      */
     @Override
     public INDArray[] exec(@NonNull CustomOp op) {
+        if (LazyExecutionScope.anyOpen() && deferOrFlush(LazyOpQueue.toDeferred(op)))
+            return op.outputArguments().toArray(new INDArray[0]);
+
         DifferentialFunction differentialFunction = (DifferentialFunction) op;
         boolean shapeOverride = false;
         if (op.numOutputArguments() == 0 && !op.isInplaceCall()) {
@@ -1409,6 +1433,13 @@ public class NativeOpExecutioner extends DefaultOpExecutioner {
 
     @Override
     public List<LongShapeDescriptor> calculateOutputShape(@NonNull CustomOp op, OpContext opContext) {
+        flushLazyOps();     //Some shape functions depend on input values
+        //Output shapes are memoized: skip the native shape function if the inputs and arguments are unchanged
+        OutputShapeCache.Key cacheKey = OutputShapeCache.key(op, opContext);
+        List<LongShapeDescriptor> cached = outputShapeCache.get(cacheKey);
+        if (cached != null)
+            return cached;
+
         DifferentialFunction func = (DifferentialFunction) op;
         String opName = func.getOwnName();
         val lc = op.opName().toLowerCase();
@@ -1543,6 +1574,7 @@ public class NativeOpExecutioner extends DefaultOpExecutioner {
             DifferentialFunction differentialFunction = (DifferentialFunction) op;
             log.trace("Calculated output shapes for op  of name {} and type {} - {}",differentialFunction.getOwnName(), op.getClass().getName(), Arrays.toString(arr));
         }
+        outputShapeCache.put(cacheKey, result);
         return result;
     }
 
@@ -1570,6 +1602,7 @@ public class NativeOpExecutioner extends DefaultOpExecutioner {
 
     @Override
     public Map<String, INDArray> executeGraph(long id, @NonNull Map<String, INDArray> map, @NonNull Map<String, Integer> reverseMap) {
+        flushLazyOps();
 
         val ptrBuffers = new PointerPointer(map.size());
         val ptrShapes = new PointerPointer(map.size());
@@ -1688,6 +1721,7 @@ public class NativeOpExecutioner extends DefaultOpExecutioner {
 
     @Override
     public void scatterUpdate(ScatterUpdate.UpdateOp op, @NonNull INDArray array, @NonNull INDArray indices, @NonNull INDArray updates, @NonNull int[] axis) {
+        flushLazyOps();
         val tadX = tadManager.getTADOnlyShapeInfo(array, axis);
         val tadY = tadManager.getTADOnlyShapeInfo(updates, axis);
 
@@ -1703,6 +1737,117 @@ public class NativeOpExecutioner extends DefaultOpExecutioner {
             throw new RuntimeException(loop.lastErrorMessage());
     }
 
+    @Override
+    public void enterLazyScope() {
+        lazyQueue.get().enter();
+    }
+
+    @Override
+    public void exitLazyScope() {
+        LazyOpQueue q = lazyQueue.get();
+        if (q.exit())
+            q.flush(this);
+    }
+
+    @Override
+    public int getLazyQueueLength() {
+        return lazyQueue.get().size();
+    }
+
+    @Override
+    public void commit() {
+        flushLazyOps();
+    }
+
+    /**
+     * Execute any element-wise ops deferred on the current thread
+     */
+    protected void flushLazyOps() {
+        if (!LazyExecutionScope.anyOpen())
+            return;
+        LazyOpQueue q = lazyQueue.get();
+        if (!q.isEmpty())
+            q.flush(this);
+    }
+
+    /**
+     * Defer the op if a lazy execution scope is active on the current thread and the op can be deferred; otherwise
+     * execute all deferred ops, so that the op (which will be executed immediately) sees their results
+     *
+     * @param op Op to defer. May be null (never deferred)
+     * @return True if the op was deferred
+     */
+    private boolean deferOrFlush(LazyOpQueue.DeferredOp op) {
+        LazyOpQueue q = lazyQueue.get();
+        if (op != null && q.isActive() && LazyOpQueue.canDefer(op)) {
+            if (q.add(op))
+                return true;
+            //Not compatible with the current chain (or queue is full): start a new chain
+            q.flush(this);
+            return q.add(op);
+        }
+        if (!q.isEmpty())
+            q.flush(this);
+        return false;
+    }
+
+    /**
+     * Execute a deferred element-wise op on the specified arrays - either the original arrays, or views of one block
+     * of them. Thread safe: blocks of a fused chain are executed in parallel
+     */
+    void execDeferred(LazyOpQueue.DeferredOp op, INDArray x, INDArray y, INDArray z) {
+        if (extraz.get() == null)
+            extraz.set(new PointerPointer(32));
+        PointerPointer dummy = extraz.get();
+
+        val xb = ((BaseCpuDataBuffer) x.data()).getOpaqueDataBuffer();
+        val zb = ((BaseCpuDataBuffer) z.data()).getOpaqueDataBuffer();
+        val xShape = (LongPointer) x.shapeInfoDataBuffer().addressPointer();
+        val zShape = (LongPointer) z.shapeInfoDataBuffer().addressPointer();
+
+        switch (op.type) {
+            case SCALAR: {
+                INDArray scalar = ((ScalarOp) op.op).scalar();
+                loop.execScalar(null, op.opNum,
+                        xb, xShape, null,
+                        zb, zShape, null,
+                        ((BaseCpuDataBuffer) scalar.data()).getOpaqueDataBuffer(), (LongPointer) scalar.shapeInfoDataBuffer().addressPointer(), null,
+                        getPointerForExtraArgs(op.op, z.dataType()));
+                break;
+            }
+            case PAIRWISE:
+                loop.execPairwiseTransform(dummy, op.opNum,
+                        xb, xShape, null,
+                        ((BaseCpuDataBuffer) y.data()).getOpaqueDataBuffer(), (LongPointer) y.shapeInfoDataBuffer().addressPointer(), null,
+                        zb, zShape, null,
+                        null);
+                break;
+            case TRANSFORM: {
+                val xtraz = getPointerForExtraArgs(op.op, z.dataType());
+                switch (op.op.getOpType()) {
+                    case TRANSFORM_FLOAT:
+                        loop.execTransformFloat(dummy, op.opNum, xb, xShape, null, zb, zShape, null, xtraz);
+                        break;
+                    case TRANSFORM_STRICT:
+                        loop.execTransformStrict(dummy, op.opNum, xb, xShape, null, zb, zShape, null, xtraz);
+                        break;
+                    case TRANSFORM_SAME:
+                        loop.execTransformSame(dummy, op.opNum, xb, xShape, null, zb, zShape, null, xtraz);
+                        break;
+                    case TRANSFORM_ANY:
+                        loop.execTransformAny(dummy, op.opNum, xb, xShape, null, zb, zShape, null, xtraz);
+                        break;
+                    default:
+                        throw new UnsupportedOperationException("Unknown transform type: [" + op.op.getOpType() + "]");
+                }
+                break;
+            }
+        }
+
+        if (loop.lastErrorCode() != 0)
+            throw new RuntimeException(loop.lastErrorMessage());
+    }
+
     @Override
     public OpContext buildContext() {
         return new CpuOpContext();
@@ -1710,6 +1855,7 @@ public class NativeOpExecutioner extends DefaultOpExecutioner {
 
     @Override
     public INDArray[] exec(CustomOp op, @NonNull OpContext context) {
+        flushLazyOps();
         long st = profilingConfigurableHookIn(op, context);
         boolean mklOverride = false;
         try {
@@ -44,6 +44,7 @@ import org.nd4j.linalg.api.ops.aggregates.Aggregate;
 import org.nd4j.linalg.api.ops.aggregates.Batch;
 import org.nd4j.linalg.api.ops.executioner.DefaultOpExecutioner;
 import org.nd4j.linalg.api.ops.executioner.OpStatus;
+import org.nd4j.linalg.api.ops.executioner.OutputShapeCache;
 import org.nd4j.linalg.api.ops.impl.scatter.ScatterUpdate;
 import org.nd4j.linalg.api.ops.impl.summarystats.Variance;
 import org.nd4j.linalg.api.ops.performance.PerformanceTracker;
@@ -1710,6 +1711,12 @@ public class CudaExecutioner extends DefaultOpExecutioner {
 
         Nd4j.getExecutioner().commit();
 
+        //Output shapes are memoized: skip the native shape function if the inputs and arguments are unchanged
+        OutputShapeCache.Key cacheKey = OutputShapeCache.key(op, opContext);
+        List<LongShapeDescriptor> cached = outputShapeCache.get(cacheKey);
+        if (cached != null)
+            return cached;
+
         val lc = op.opName().toLowerCase();
         val hash = op.opHash();
 
@@ -1812,6 +1819,7 @@ public class CudaExecutioner extends DefaultOpExecutioner {
         nativeOps.deleteShapeList(ptrptr);
 
 
+        outputShapeCache.put(cacheKey, result);
         return result;
     }
 
@@ -225,6 +225,26 @@ public class ND4JSystemProperties {
      */
     public final static String LARGE_ARRAY_MAX_MULTIPLE = "org.nd4j.cache.large_array_max_multiple";
 
+    /**
+     * Applicability: Always<br>
+     * Description: Whether output shapes calculated for custom ops should be memoized, keyed by input shapes/datatypes
+     * and op arguments. Set to false to always calculate output shapes. Default: true
+     */
+    public final static String OUTPUT_SHAPE_CACHE_ENABLED = "org.nd4j.cache.output_shape_cache";
+
+    /**
+     * Applicability: Always<br>
+     * Description: Maximum number of entries in the executioner's global output shape cache. Default: 4096
+     */
+    public final static String OUTPUT_SHAPE_CACHE_MAX_SIZE = "org.nd4j.cache.output_shape_cache_max_size";
+
+    /**
+     * Applicability: nd4j-native backend, within a {@code LazyExecutionScope}<br>
+     * Description: Number of elements per block when executing a fused chain of deferred element-wise ops. Each
+     * block is processed by all ops in the chain while it is in cache. Default: 8192
+     */
+    public final static String LAZY_EXECUTION_BLOCK_SIZE = "org.nd4j.lazy.block_size";
+
     private ND4JSystemProperties() {
     }
 }
@@ -0,0 +1,140 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+package org.deeplearning4j.models.embeddings.reader.impl;
+
+import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.models.embeddings.inmemory.InMemoryLookupTable;
+import org.deeplearning4j.models.word2vec.VocabWord;
+import org.deeplearning4j.models.word2vec.wordstore.inmemory.AbstractCache;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.nd4j.common.tests.tags.NativeTag;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@NativeTag
+public class HnswModelUtilsTest extends BaseDL4JTest {
+
+    private static final int N = 3000;
+    private static final int DIM = 32;
+
+    /**
+     * Lookup table with N words, with vectors drawn around 50 random cluster centers
+     */
+    private static InMemoryLookupTable<VocabWord> lookupTable() {
+        AbstractCache<VocabWord> cache = new AbstractCache.Builder<VocabWord>().build();
+        for (int i = 0; i < N; i++) {
+            cache.addToken(new VocabWord(1.0, "w" + i));
+            cache.addWordToIndex(i, "w" + i);
+        }
+        InMemoryLookupTable<VocabWord> table = new InMemoryLookupTable.Builder<VocabWord>()
+                .vectorLength(DIM).cache(cache).build();
+
+        Nd4j.getRandom().setSeed(12345);
+        INDArray centers = Nd4j.randn(DataType.FLOAT, 50, DIM);
+        INDArray syn0 = Nd4j.randn(DataType.FLOAT, N, DIM).muli(0.3);
+        for (int i = 0; i < N; i++) {
+            syn0.getRow(i).addi(centers.getRow(i % 50));
+        }
+        table.setSyn0(syn0);
+        return table;
+    }
+
+    private static int[] exactTopK(float[][] unit, int query, int k) {
+        Integer[] idx = new Integer[unit.length];
+        double[] sim = new double[unit.length];
+        for (int i = 0; i < unit.length; i++) {
+            idx[i] = i;
+            for (int j = 0; j < DIM; j++)
+                sim[i] += unit[query][j] * unit[i][j];
+        }
+        Arrays.sort(idx, (a, b) -> Double.compare(sim[b], sim[a]));
+        int[] out = new int[k];
+        for (int i = 0; i < k; i++)
+            out[i] = idx[i];
+        return out;
+    }
+
+    @Test
+    public void testRecall() {
+        InMemoryLookupTable<VocabWord> table = lookupTable();
+        HnswModelUtils<VocabWord> utils = new HnswModelUtils<>(new HnswIndex.Builder().m(16).efConstruction(100)
+                .efSearch(50).workers(4));
+        utils.init(table);
+
+        INDArray syn0 = table.getSyn0();
+        float[][] unit = syn0.divColumnVector(syn0.norm2(1).reshape(N, 1)).toFloatMatrix();
+        HnswIndex index = utils.getIndex();
+        assertEquals(N, index.getSize());
+        assertEquals(DIM, index.getDimension());
+
+        int k = 10;
+        int found = 0;
+        int queries = 200;
+        for (int q = 0; q < queries; q++) {
+            Set<Integer> exact = new HashSet<>();
+            for (int i : exactTopK(unit, q, k))
+                exact.add(i);
+            int[] approx = index.search(syn0.getRow(q), k);
+            assertEquals(k, approx.length);
+            for (int i : approx) {
+                if (exact.contains(i))
+                    found++;
+            }
+        }
+        double recall = found / (double) (queries * k);
+        assertTrue(recall > 0.95, "Recall@10: " + recall);
+
+        //Query word itself is excluded
+        Collection<String> nearest = utils.wordsNearest("w7", 5);
+        assertEquals(5, nearest.size());
+        assertFalse(nearest.contains("w7"));
+    }
+
+    @Test
+    public void testSaveLoad(@TempDir Path testDir) throws Exception {
+        InMemoryLookupTable<VocabWord> table = lookupTable();
+        HnswModelUtils<VocabWord> utils = new HnswModelUtils<>(new HnswIndex.Builder().efConstruction(50).workers(2));
+        utils.init(table);
+
+        File f = new File(testDir.toFile(), "index.hnsw");
+        utils.saveIndex(f);
+
+        HnswModelUtils<VocabWord> loaded = new HnswModelUtils<>(f);
+        loaded.init(table);
+        assertEquals(utils.getIndex().getEfSearch(), loaded.getIndex().getEfSearch());
+        for (int q = 0; q < 50; q++) {
+            INDArray v = table.getSyn0().getRow(q);
+            assertArrayEquals(utils.getIndex().search(v, 10), loaded.getIndex().search(v, 10));
+            assertEquals(utils.wordsNearest(v, 10), loaded.wordsNearest(v, 10));
+        }
+
+        //Index built for different vectors
+        INDArray other = Nd4j.rand(DataType.FLOAT, N + 1, DIM);
+        assertThrows(IllegalStateException.class, () -> HnswIndex.load(f, other));
+    }
+}
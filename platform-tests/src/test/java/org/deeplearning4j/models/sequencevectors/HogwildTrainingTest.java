@@ -0,0 +1,126 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+package org.deeplearning4j.models.sequencevectors;
+
+import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.models.sequencevectors.enums.ListenerEvent;
+import org.deeplearning4j.models.sequencevectors.interfaces.VectorsListener;
+import org.deeplearning4j.models.word2vec.VocabWord;
+import org.deeplearning4j.models.word2vec.Word2Vec;
+import org.deeplearning4j.text.sentenceiterator.CollectionSentenceIterator;
+import org.deeplearning4j.text.tokenization.tokenizerfactory.DefaultTokenizerFactory;
+import org.junit.jupiter.api.Test;
+import org.nd4j.common.tests.tags.NativeTag;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@NativeTag
+public class HogwildTrainingTest extends BaseDL4JTest {
+
+    @Override
+    public long getTimeoutMilliseconds() {
+        return 240_000L;
+    }
+
+    /**
+     * Synthetic corpus with two disjoint "topics": words a0..a9 only co-occur with each other, as do b0..b9
+     */
+    private static List<String> corpus(int numSentences) {
+        Random r = new Random(12345);
+        List<String> sentences = new ArrayList<>(numSentences);
+        for (int i = 0; i < numSentences; i++) {
+            String topic = i % 2 == 0 ? "a" : "b";
+            StringBuilder sb = new StringBuilder();
+            for (int j = 0; j < 12; j++) {
+                if (j > 0)
+                    sb.append(' ');
+                sb.append(topic).append(r.nextInt(10));
+            }
+            sentences.add(sb.toString());
+        }
+        return sentences;
+    }
+
+    @Test
+    public void testMultiThreadedTraining() {
+        int numSentences = 2000;
+        int epochs = 2;
+
+        AtomicLong lines = new AtomicLong();
+        Set<String> threadNames = ConcurrentHashMap.newKeySet();
+        VectorsListener<VocabWord> listener = new VectorsListener<VocabWord>() {
+            @Override
+            public boolean validateEvent(ListenerEvent event, long argument) {
+                return event == ListenerEvent.LINE;
+            }
+
+            @Override
+            public void processEvent(ListenerEvent event, SequenceVectors<VocabWord> sequenceVectors, long argument) {
+                lines.incrementAndGet();
+                threadNames.add(Thread.currentThread().getName());
+            }
+        };
+
+        Word2Vec vec = new Word2Vec.Builder()
+                .iterate(new CollectionSentenceIterator(corpus(numSentences)))
+                .tokenizerFactory(new DefaultTokenizerFactory())
+                .minWordFrequency(1)
+                .layerSize(20)
+                .windowSize(3)
+                .epochs(epochs)
+                .seed(12345)
+                .workers(4)
+                .setVectorsListeners(Collections.singletonList(listener))
+                .build();
+        vec.fit();
+
+        //Every sentence should be processed exactly once per epoch, regardless of which thread picked it up
+        assertEquals((long) numSentences * epochs, lines.get());
+        //Lines should be spread across the calculation threads, not processed by a single thread
+        assertTrue(threadNames.size() > 1, threadNames.toString());
+        for (String s : threadNames) {
+            assertTrue(s.startsWith("VectorCalculationsThread"), s);
+        }
+
+        for (int i = 0; i < 10; i++) {
+            INDArray v = vec.getWordVectorMatrix("a" + i);
+            assertNotNull(v);
+            assertFalse(v.isNaN().any());
+        }
+
+        double within = 0.0;
+        double across = 0.0;
+        for (int i = 0; i < 10; i++) {
+            for (int j = 0; j < 10; j++) {
+                if (i != j)
+                    within += vec.similarity("a" + i, "a" + j);
+                across += vec.similarity("a" + i, "b" + j);
+            }
+        }
+        within /= 90;
+        across /= 100;
+        assertTrue(within > across, "Within-topic similarity " + within + " should exceed across-topic similarity " + across);
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.models.word2vec;
+
+import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.models.embeddings.loader.MappedWordVectorSerializer;
+import org.deeplearning4j.models.embeddings.loader.WordVectorSerializer;
+import org.deeplearning4j.models.embeddings.wordvectors.WordVectors;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.nd4j.common.io.ClassPathResource;
+import org.nd4j.common.tests.tags.NativeTag;
+import org.nd4j.common.tests.tags.TagNames;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag(TagNames.FILE_IO)
+@NativeTag
+public class MappedWord2VecTest extends BaseDL4JTest {
+
+    @Test
+    public void testConvertBinary(@TempDir Path testDir) throws Exception {
+        File source = new ClassPathResource("vec.bin").getFile();
+        File target = new File(testDir.toFile(), "vec.mmap");
+        WordVectors expected = WordVectorSerializer.loadStaticModel(source);
+        MappedWord2Vec mapped = MappedWordVectorSerializer.convert(source, target);
+
+        assertEquals(expected.vocabSize(), mapped.vocabSize());
+        assertEquals(expected.vectorSize(), mapped.vectorSize());
+        for (int i = 0; i < expected.vocabSize(); i++) {
+            String word = expected.vocab().wordAtIndex(i);
+            assertTrue(mapped.hasWord(word));
+            assertEquals(i, mapped.indexOf(word));
+            assertEquals(word, mapped.wordAtIndex(i));
+            assertEquals(expected.getWordVectorMatrix(word).castTo(DataType.FLOAT).reshape(-1),
+                    mapped.getWordVectorMatrix(word));
+        }
+
+        assertEquals(expected.similarity("Adam", "is"), mapped.similarity("Adam", "is"), 1e-4);
+        assertEquals(1.0, mapped.similarity("Adam", "Adam"), 1e-6);
+        Collection<String> nearest = mapped.wordsNearest("Adam", 1);
+        assertEquals("is", nearest.iterator().next());
+
+        INDArray weights = Nd4j.create(DataType.FLOAT, mapped.vocabSize(), mapped.vectorSize());
+        mapped.loadWeightsInto(weights);
+        assertEquals(mapped.getWordVectorMatrix(mapped.wordAtIndex(3)), weights.getRow(3));
+
+        //Format detection in loadStaticModel
+        WordVectors loaded = WordVectorSerializer.loadStaticModel(target);
+        assertTrue(loaded instanceof MappedWord2Vec);
+        assertEquals(mapped.vocabSize(), loaded.vocabSize());
+    }
+
+    @Test
+    public void testWriteWordVectors(@TempDir Path testDir) throws Exception {
+        WordVectors vec = WordVectorSerializer.readWord2VecModel(new ClassPathResource("vec.bin").getFile());
+        File target = new File(testDir.toFile(), "vec.mmap");
+        MappedWordVectorSerializer.writeWordVectors(vec, target);
+        assertTrue(MappedWord2Vec.isMappedFile(target));
+        assertFalse(MappedWord2Vec.isMappedFile(new ClassPathResource("vec.bin").getFile()));
+
+        MappedWord2Vec mapped = MappedWord2Vec.load(target);
+        assertEquals(vec.vocab().numWords(), mapped.vocabSize());
+        INDArray expected = vec.getWordVectors(Arrays.asList("Adam", "is"));
+        assertEquals(expected.castTo(DataType.FLOAT), mapped.getWordVectors(Arrays.asList("Adam", "is")));
+        assertEquals(vec.wordsNearest("Adam", 3), mapped.wordsNearest("Adam", 3));
+
+        //Words not in vocab
+        assertFalse(mapped.hasWord("notInVocab"));
+        assertEquals(-1, mapped.indexOf("notInVocab"));
+        assertNull(mapped.getWordVectorMatrix("notInVocab"));
+        mapped.setUNK("Adam");
+        assertEquals(mapped.getWordVectorMatrix("Adam"), mapped.getWordVectorMatrix("notInVocab"));
+        assertEquals(1, mapped.getWordVectors(Arrays.asList("notInVocab")).rows());
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.models.word2vec.wordstore.inmemory;
+
+import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.models.sequencevectors.iterators.AbstractSequenceIterator;
+import org.deeplearning4j.models.sequencevectors.transformers.impl.SentenceTransformer;
+import org.deeplearning4j.models.word2vec.Huffman;
+import org.deeplearning4j.models.word2vec.VocabWord;
+import org.deeplearning4j.models.word2vec.wordstore.VocabCache;
+import org.deeplearning4j.models.word2vec.wordstore.VocabConstructor;
+import org.deeplearning4j.text.sentenceiterator.BasicLineIterator;
+import org.deeplearning4j.text.tokenization.tokenizer.preprocessor.CommonPreprocessor;
+import org.deeplearning4j.text.tokenization.tokenizerfactory.DefaultTokenizerFactory;
+import org.deeplearning4j.text.tokenization.tokenizerfactory.TokenizerFactory;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.nd4j.common.resources.Resources;
+import org.nd4j.common.tests.tags.NativeTag;
+import org.nd4j.common.tests.tags.TagNames;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompactVocabCacheTest extends BaseDL4JTest {
+
+    @Test
+    public void testHuffman() {
+        CompactVocabCache<VocabWord> cache = new CompactVocabCache.Builder<VocabWord>().build();
+
+        cache.addToken(new VocabWord(1.0, "word"));
+        cache.addToken(new VocabWord(2.0, "test"));
+        cache.addToken(new VocabWord(3.0, "tester"));
+
+        assertEquals(3, cache.numWords());
+        assertEquals(6, cache.totalWordOccurrences());
+
+        Huffman huffman = new Huffman(cache.tokens());
+        huffman.build();
+        huffman.applyIndexes(cache);
+
+        assertEquals("tester", cache.wordAtIndex(0));
+        assertEquals("test", cache.wordAtIndex(1));
+        assertEquals("word", cache.wordAtIndex(2));
+        assertEquals(0, cache.tokenFor("tester").getIndex());
+        assertEquals(1, cache.indexOf("test"));
+        assertEquals(-2, cache.indexOf("missing"));
+
+        cache.removeElement("tester");
+        assertEquals(2, cache.numWords());
+        assertEquals(3, cache.totalWordOccurrences());
+        assertNull(cache.wordAtIndex(0));
+        assertFalse(cache.containsWord("tester"));
+        assertEquals(new HashSet<>(Arrays.asList("word", "test")), new HashSet<>(cache.words()));
+    }
+
+    @Test
+    public void testSameAsAbstractCache() {
+        AbstractCache<VocabWord> expected = new AbstractCache.Builder<VocabWord>().build();
+        CompactVocabCache<VocabWord> cache = new CompactVocabCache.Builder<VocabWord>().build();
+
+        //Random additions (including existing words) and removals, to exercise growth, compaction and table removal
+        Random r = new Random(12345);
+        List<String> present = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            if (r.nextInt(4) == 0 && !present.isEmpty()) {
+                String w = present.remove(r.nextInt(present.size()));
+                expected.removeElement(w);
+                cache.removeElement(w);
+            } else {
+                String w = "w" + r.nextInt(10000);
+                double freq = 1 + r.nextInt(5);
+                if (expected.addToken(new VocabWord(freq, w)))
+                    present.add(w);
+                cache.addToken(new VocabWord(freq, w));
+            }
+        }
+
+        assertEquals(expected.numWords(), cache.numWords());
+        assertEquals(expected.totalWordOccurrences(), cache.totalWordOccurrences());
+        assertEquals(new HashSet<>(expected.words()), new HashSet<>(cache.words()));
+        assertEquals(expected.numWords(), cache.vocabWords().size());
+        for (int i = 0; i < 10000; i++) {
+            String w = "w" + i;
+            assertEquals(expected.containsWord(w), cache.containsWord(w));
+            assertEquals(expected.wordFrequency(w), cache.wordFrequency(w));
+            if (expected.containsWord(w))
+                assertEquals(w, cache.wordFor(expected.wordFor(w).getStorageId()).getLabel());
+        }
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        CompactVocabCache<VocabWord> cache = new CompactVocabCache.Builder<VocabWord>().build();
+        VocabWord[] words = {new VocabWord(1.0, "word"), new VocabWord(2.0, "test"), new VocabWord(3.0, "tester")};
+        for (int i = 0; i < words.length; ++i) {
+            cache.addToken(words[i]);
+            cache.addWordToIndex(i, words[i].getLabel());
+        }
+        cache.incrementTotalDocCount(5);
+
+        String json = cache.toJson();
+        CompactVocabCache<VocabWord> restored = CompactVocabCache.fromJson(json);
+        AbstractCache<VocabWord> restoredAbstract = AbstractCache.fromJson(json);
+        assertEquals(cache.totalWordOccurrences(), restored.totalWordOccurrences());
+        assertEquals(cache.totalNumberOfDocs(), restored.totalNumberOfDocs());
+        assertEquals(cache.totalNumberOfDocs(), restoredAbstract.totalNumberOfDocs());
+        for (int i = 0; i < words.length; ++i) {
+            assertEquals(cache.wordAtIndex(i), restored.wordAtIndex(i));
+            assertEquals(cache.wordAtIndex(i), restoredAbstract.wordAtIndex(i));
+        }
+    }
+
+    @Test
+    public void testConcurrentUpdates() throws Exception {
+        final CompactVocabCache<VocabWord> cache = new CompactVocabCache.Builder<VocabWord>().build();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 5000; i++) {
+                        String w = "w" + i;
+                        if (!cache.addToken(new VocabWord(1.0, w)))
+                            assertNotNull(cache.wordFor(w));
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread t : threads)
+            t.join();
+
+        assertEquals(5000, cache.numWords());
+        for (int i = 0; i < 5000; i++)
+            assertEquals(4, cache.wordFrequency("w" + i));
+    }
+
+    @Test
+    @Tag(TagNames.FILE_IO)
+    @NativeTag
+    public void testBuildJointVocabulary() throws Exception {
+        TokenizerFactory t = new DefaultTokenizerFactory();
+        t.setTokenPreProcessor(new CommonPreprocessor());
+
+        Map<String, VocabCache<VocabWord>> results = new HashMap<>();
+        for (String type : new String[]{"abstract", "compact"}) {
+            VocabCache<VocabWord> cache = type.equals("abstract") ? new AbstractCache.Builder<VocabWord>().build()
+                    : new CompactVocabCache.Builder<VocabWord>().build();
+            SentenceTransformer transformer = new SentenceTransformer.Builder()
+                    .iterator(new BasicLineIterator(Resources.asFile("big/raw_sentences.txt"))).tokenizerFactory(t).build();
+            AbstractSequenceIterator<VocabWord> sequenceIterator = new AbstractSequenceIterator.Builder<>(transformer).build();
+            VocabConstructor<VocabWord> constructor = new VocabConstructor.Builder<VocabWord>()
+                    .addSource(sequenceIterator, 5).setTargetVocabCache(cache).build();
+            constructor.buildJointVocabulary(false, true);
+            results.put(type, cache);
+        }
+
+        VocabCache<VocabWord> expected = results.get("abstract");
+        VocabCache<VocabWord> actual = results.get("compact");
+        assertEquals(expected.numWords(), actual.numWords());
+        assertEquals(expected.totalWordOccurrences(), actual.totalWordOccurrences());
+        for (VocabWord word : expected.vocabWords()) {
+            VocabWord other = actual.wordFor(word.getLabel());
+            assertNotNull(other);
+            assertEquals(word.getElementFrequency(), other.getElementFrequency(), 0.0);
+            assertEquals(word.getLabel(), actual.wordAtIndex(other.getIndex()));
+        }
+    }
+}
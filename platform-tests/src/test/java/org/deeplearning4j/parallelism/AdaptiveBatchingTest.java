@@ -0,0 +1,152 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+package org.deeplearning4j.parallelism;
+
+import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.parallelism.inference.AdaptiveBatcher;
+import org.deeplearning4j.parallelism.inference.BatchSizeHistogram;
+import org.deeplearning4j.parallelism.inference.InferenceMode;
+import org.deeplearning4j.parallelism.inference.InferenceObservable;
+import org.deeplearning4j.parallelism.inference.observers.TimedInferenceObservable;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.nd4j.common.tests.tags.NativeTag;
+import org.nd4j.common.tests.tags.TagNames;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@NativeTag
+@Tag(TagNames.DL4J_OLD_API)
+public class AdaptiveBatchingTest extends BaseDL4JTest {
+
+    @Test
+    @Timeout(60)
+    public void testAdaptiveBatchingMatchesModel() throws Exception {
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder().seed(12345).list()
+                .layer(new DenseLayer.Builder().nIn(4).nOut(8).activation(Activation.TANH).build())
+                .layer(new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nIn(8).nOut(3).activation(Activation.SOFTMAX).build())
+                .build();
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+
+        ParallelInference inf = new ParallelInference.Builder(net)
+                .inferenceMode(InferenceMode.ADAPTIVE_BATCHED)
+                .workers(2)
+                .queueLimit(256)
+                .maxBatchLatency(20, TimeUnit.MILLISECONDS)
+                .preferredBatchSizes(1, 4, 8)
+                .build();
+
+        int nThreads = 8;
+        int perThread = 20;
+        try {
+            Thread[] threads = new Thread[nThreads];
+            Throwable[] failures = new Throwable[nThreads];
+            for (int t = 0; t < nThreads; t++) {
+                int idx = t;
+                threads[t] = new Thread(() -> {
+                    try {
+                        for (int i = 0; i < perThread; i++) {
+                            INDArray in = Nd4j.rand(DataType.FLOAT, 1 + (i % 2), 4);
+                            INDArray out = inf.output(in);
+                            assertTrue(net.output(in).equalsWithEps(out, 1e-5));
+                        }
+                    } catch (Throwable e) {
+                        failures[idx] = e;
+                    }
+                });
+                threads[t].start();
+            }
+            for (int t = 0; t < nThreads; t++) {
+                threads[t].join();
+                assertNull(failures[t], "Failure in thread " + t + ": " + failures[t]);
+            }
+
+            long requests = 0;
+            for (int w = 0; w < inf.getNumWorkers(); w++) {
+                requests += inf.getLatencyHistogram(w).getCount();
+                BatchSizeHistogram h = inf.getBatchSizeHistogram(w);
+                assertTrue(new HashSet<>(Arrays.asList(1L, 4L, 8L)).containsAll(h.getCounts().keySet()), h.toString());
+            }
+            assertEquals(nThreads * perThread, requests);
+            assertEquals(0, inf.getRejectedCount());
+        } finally {
+            inf.shutdown();
+        }
+    }
+
+    @Test
+    @Timeout(60)
+    public void testBatcherCompatibilityAndPadding() throws Exception {
+        LinkedBlockingQueue<InferenceObservable> queue = new LinkedBlockingQueue<>();
+        TimedInferenceObservable o1 = new TimedInferenceObservable(new INDArray[]{Nd4j.create(DataType.FLOAT, 1, 4)}, null);
+        TimedInferenceObservable o2 = new TimedInferenceObservable(new INDArray[]{Nd4j.create(DataType.FLOAT, 2, 4)}, null);
+        TimedInferenceObservable o3 = new TimedInferenceObservable(new INDArray[]{Nd4j.create(DataType.FLOAT, 1, 5)}, null);
+        queue.add(o1);
+        queue.add(o2);
+        queue.add(o3);
+
+        AdaptiveBatcher batcher = new AdaptiveBatcher(0, 0, 32, new long[]{8, 4});
+        List<TimedInferenceObservable> b1 = batcher.nextBatch(queue);
+        assertEquals(Arrays.asList(o1, o2), b1);
+        assertEquals(4, batcher.paddedBatchSize(3));
+        assertEquals(8, batcher.paddedBatchSize(5));
+        assertEquals(9, batcher.paddedBatchSize(9));
+
+        //Incompatible shape: held back for the next batch
+        List<TimedInferenceObservable> b2 = batcher.nextBatch(queue);
+        assertEquals(Arrays.asList(o3), b2);
+    }
+
+    @Test
+    @Timeout(60)
+    public void testQueueDeadline() throws Exception {
+        LinkedBlockingQueue<InferenceObservable> queue = new LinkedBlockingQueue<>();
+        TimedInferenceObservable expired = new TimedInferenceObservable(new INDArray[]{Nd4j.create(DataType.FLOAT, 1, 4)}, null);
+        queue.add(expired);
+        Thread.sleep(50);
+        TimedInferenceObservable fresh = new TimedInferenceObservable(new INDArray[]{Nd4j.create(DataType.FLOAT, 1, 4)}, null);
+        queue.add(fresh);
+
+        AdaptiveBatcher batcher = new AdaptiveBatcher(0, TimeUnit.MILLISECONDS.toNanos(25), 32, null);
+        List<TimedInferenceObservable> b = batcher.nextBatch(queue);
+        assertEquals(Arrays.asList(fresh), b);
+        assertEquals(1, batcher.getShedCount());
+        assertThrows(RejectedExecutionException.class, expired::getOutput);
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.parallelism;
+
+import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.parallelism.inference.LatencyHistogram;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.nd4j.autodiff.samediff.SDVariable;
+import org.nd4j.autodiff.samediff.SameDiff;
+import org.nd4j.common.tests.tags.NativeTag;
+import org.nd4j.common.tests.tags.TagNames;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@NativeTag
+@Tag(TagNames.SAMEDIFF)
+public class SameDiffParallelInferenceTest extends BaseDL4JTest {
+
+    private static SameDiff model() {
+        SameDiff sd = SameDiff.create();
+        SDVariable in = sd.placeHolder("in", DataType.FLOAT, -1, 4);
+        SDVariable w = sd.var("w", Nd4j.rand(DataType.FLOAT, 4, 3));
+        SDVariable b = sd.var("b", Nd4j.rand(DataType.FLOAT, 3));
+        sd.nn.softmax("out", in.mmul(w).add(b), 1);
+        return sd;
+    }
+
+    @Test
+    @Timeout(60)
+    public void testBatchedOutputMatchesSequential() throws Exception {
+        SameDiff sd = model();
+        SameDiffParallelInference inf = new SameDiffParallelInference.Builder(sd)
+                .outputs("out")
+                .maxBatchSize(8)
+                .maxWait(50, TimeUnit.MILLISECONDS)
+                .build();
+
+        try {
+            List<INDArray> inputs = new ArrayList<>();
+            List<CompletableFuture<Map<String, INDArray>>> futures = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                INDArray in = Nd4j.rand(DataType.FLOAT, 1, 4);
+                inputs.add(in);
+                futures.add(inf.submit(Collections.singletonMap("in", in)));
+            }
+
+            for (int i = 0; i < inputs.size(); i++) {
+                INDArray exp = sd.outputSingle(Collections.singletonMap("in", inputs.get(i)), "out");
+                INDArray act = futures.get(i).get().get("out");
+                assertArrayEquals(new long[]{1, 3}, act.shape());
+                assertEquals(exp, act);
+            }
+
+            assertEquals(20, inf.getRequestCount());
+            assertEquals(20, inf.getExampleCount());
+            assertEquals(0, inf.getFailureCount());
+            //Requests were submitted faster than the max wait time: at least some must have been batched
+            assertTrue(inf.getBatchCount() < 20, "Expected batching, got " + inf.getBatchCount() + " batches");
+            assertTrue(inf.getAverageBatchSize() > 1.0);
+            assertEquals(20, inf.getLatencyHistogram().getCount());
+            assertTrue(inf.getLatencyHistogram().getPercentile(99) >= inf.getLatencyHistogram().getPercentile(50));
+        } finally {
+            inf.shutdown();
+        }
+    }
+
+    @Test
+    @Timeout(60)
+    public void testStackInputsAndErrors() throws Exception {
+        SameDiff sd = model();
+        SameDiffParallelInference inf = new SameDiffParallelInference.Builder(sd)
+                .outputs("out")
+                .stackInputs(true)
+                .maxWait(20, TimeUnit.MILLISECONDS)
+                .build();
+
+        try {
+            INDArray in1 = Nd4j.rand(DataType.FLOAT, 4);
+            INDArray in2 = Nd4j.rand(DataType.FLOAT, 4);
+            CompletableFuture<Map<String, INDArray>> f1 = inf.submit(Collections.singletonMap("in", in1));
+            CompletableFuture<Map<String, INDArray>> f2 = inf.submit(Collections.singletonMap("in", in2));
+
+            INDArray exp1 = sd.outputSingle(Collections.singletonMap("in", in1.reshape(1, 4)), "out");
+            INDArray exp2 = sd.outputSingle(Collections.singletonMap("in", in2.reshape(1, 4)), "out");
+            assertEquals(exp1.reshape(3), f1.get().get("out"));
+            assertEquals(exp2.reshape(3), f2.get().get("out"));
+
+            //Invalid input shape: exception should be propagated to the caller
+            assertThrows(RuntimeException.class, () -> inf.output(Collections.singletonMap("in", Nd4j.rand(DataType.FLOAT, 5))));
+            assertEquals(1, inf.getFailureCount());
+        } finally {
+            inf.shutdown();
+        }
+    }
+
+    @Test
+    public void testLatencyHistogram() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            h.record(i * 1000L);
+        }
+
+        assertEquals(1000, h.getCount());
+        assertEquals(1_000_000, h.getMax());
+        assertEquals(500_500.0, h.getMean(), 1e-6);
+
+        //Percentiles are approximate: within the sub-bucket resolution
+        assertEquals(500_000, h.getPercentile(50), 500_000 / LatencyHistogram.SUB_BUCKETS);
+        assertEquals(990_000, h.getPercentile(99), 990_000 / LatencyHistogram.SUB_BUCKETS);
+        assertEquals(1_000_000, h.getPercentile(100));
+
+        h.reset();
+        assertEquals(0, h.getCount());
+        assertEquals(0, h.getPercentile(99));
+    }
+}
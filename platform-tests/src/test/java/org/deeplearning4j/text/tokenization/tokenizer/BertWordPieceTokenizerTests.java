@@ -42,6 +42,7 @@ import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
+import java.util.NavigableMap;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -282,4 +283,33 @@ public class BertWordPieceTokenizerTests extends BaseDL4JTest {
             assertEquals(expected, tokenizer.getTokens());
         }
     }
+
+    @Test
+    public void testTrieMatchesVocabMap() throws Exception {
+        NavigableMap<String, Integer> vocab = BertWordPieceTokenizerFactory.loadVocab(pathToVocab, c);
+        BertWordPieceTokenizerFactory t = new BertWordPieceTokenizerFactory(vocab, true, true);
+
+        String reuters = FileUtils.readFileToString(new ClassPathResource("reuters/5250").getFile(), c);
+        List<String> texts = Arrays.asList(reuters,
+                "I saw a girl with a telescope\u061F",
+                "apple.\t\n  .pen. .pineapple\u00A0«quoted» \u2014 dash\u2026 $100 ^^ `x` a_b",
+                "Donaudampfschifffahrtskapitänsmützeninnenfuttersaum",
+                "", "   ", "#", "##", "###");
+
+        for (String s : texts) {
+            List<String> expected = new BertWordPieceTokenizer(s, vocab, t.getPreTokenizePreProcessor(), null).getTokens();
+            assertEquals(expected, t.create(s).getTokens());
+
+            int[] ids = new int[expected.size()];
+            assertEquals(expected.size(), t.tokenizeToIds(s, ids));
+            for (int i = 0; i < ids.length; i++) {
+                assertEquals(vocab.get(expected.get(i)).intValue(), ids[i]);
+            }
+
+            //Output array too small: only the first tokens are written, but the total count is returned
+            int[] small = new int[Math.min(3, ids.length)];
+            assertEquals(expected.size(), t.tokenizeToIds(s, small));
+            assertArrayEquals(Arrays.copyOf(ids, small.length), small);
+        }
+    }
 }
@@ -2246,4 +2246,44 @@ public class TestComputationGraphNetwork extends BaseDL4JTest {
 
         assertEquals(out, out2);
     }
+
+    @Test
+    public void testInferenceView() throws Exception {
+        ComputationGraph net = new ComputationGraph(getIrisGraphConfiguration());
+        net.init();
+        DataSet ds = new IrisDataSetIterator(150, 150).next();
+        net.fit(ds);
+
+        ComputationGraph view = net.inferenceView();
+        assertTrue(view.isInferenceView());
+        assertSame(net.params().data(), view.params().data());
+        INDArray exp = net.outputSingle(ds.getFeatures());
+        assertEquals(exp, view.outputSingle(ds.getFeatures()));
+
+        int nThreads = 4;
+        Thread[] threads = new Thread[nThreads];
+        Throwable[] failures = new Throwable[nThreads];
+        for (int i = 0; i < nThreads; i++) {
+            int idx = i;
+            threads[i] = new Thread(() -> {
+                try {
+                    ComputationGraph v = net.inferenceView();
+                    for (int j = 0; j < 50; j++) {
+                        assertEquals(exp, v.outputSingle(ds.getFeatures()));
+                    }
+                } catch (Throwable t) {
+                    failures[idx] = t;
+                }
+            });
+            threads[i].start();
+        }
+        for (int i = 0; i < nThreads; i++) {
+            threads[i].join();
+            assertNull(failures[i], "Failure in thread " + i + ": " + failures[i]);
+        }
+
+        net.fit(ds);
+        assertEquals(net.outputSingle(ds.getFeatures()), view.outputSingle(ds.getFeatures()));
+        assertThrows(IllegalStateException.class, () -> view.fit(ds));
+    }
 }
@@ -0,0 +1,232 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.eclipse.deeplearning4j.dl4jcore.nn.layers.feedforward.embedding;
+
+import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.RNNFormat;
+import org.deeplearning4j.nn.conf.layers.EmbeddingLayer;
+import org.deeplearning4j.nn.conf.layers.EmbeddingSequenceLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.conf.layers.RnnOutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.params.DefaultParamInitializer;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.nd4j.common.tests.tags.NativeTag;
+import org.nd4j.common.tests.tags.TagNames;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.learning.config.AdaGrad;
+import org.nd4j.linalg.learning.config.Adam;
+import org.nd4j.linalg.learning.config.IUpdater;
+import org.nd4j.linalg.learning.config.Nesterovs;
+import org.nd4j.linalg.learning.config.Sgd;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@NativeTag
+@Tag(TagNames.DL4J_OLD_API)
+public class SparseEmbeddingGradientsTest extends BaseDL4JTest {
+
+    private static final int VOCAB = 100;
+
+    private static MultiLayerNetwork embeddingNet(IUpdater updater, boolean sparse, boolean sequence) {
+        return embeddingNet(updater, sparse, sequence, 0.0);
+    }
+
+    private static MultiLayerNetwork embeddingNet(IUpdater updater, boolean sparse, boolean sequence, double l2) {
+        NeuralNetConfiguration.ListBuilder b = new NeuralNetConfiguration.Builder()
+                .dataType(DataType.DOUBLE)
+                .seed(12345)
+                .updater(updater)
+                .l2(l2)
+                .list();
+        if (sequence) {
+            b.layer(new EmbeddingSequenceLayer.Builder().nIn(VOCAB).nOut(8).inputLength(4).hasBias(true)
+                    .outputDataFormat(RNNFormat.NCW).sparseGradients(sparse).build())
+                    .layer(new RnnOutputLayer.Builder().nIn(8).nOut(3).activation(Activation.SOFTMAX)
+                            .lossFunction(LossFunctions.LossFunction.MCXENT).build());
+        } else {
+            b.layer(new EmbeddingLayer.Builder().nIn(VOCAB).nOut(8).hasBias(true).sparseGradients(sparse).build())
+                    .layer(new OutputLayer.Builder().nIn(8).nOut(3).activation(Activation.SOFTMAX)
+                            .lossFunction(LossFunctions.LossFunction.MCXENT).build());
+        }
+        MultiLayerConfiguration conf = b.build();
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+        return net;
+    }
+
+    /**
+     * Indices in [offset, offset+10), with duplicates
+     */
+    private static DataSet data(int iter, boolean sequence) {
+        int mb = 6;
+        int offset = 10 * iter;
+        if (sequence) {
+            INDArray in = Nd4j.create(DataType.DOUBLE, mb, 4);
+            INDArray labels = Nd4j.create(DataType.DOUBLE, mb, 3, 4);
+            for (int i = 0; i < mb; i++) {
+                for (int j = 0; j < 4; j++) {
+                    in.putScalar(i, j, offset + (i * 3 + j) % 10);
+                    labels.putScalar(i, (i + j) % 3, j, 1.0);
+                }
+            }
+            return new DataSet(in, labels);
+        }
+        INDArray in = Nd4j.create(DataType.DOUBLE, mb, 1);
+        INDArray labels = Nd4j.create(DataType.DOUBLE, mb, 3);
+        for (int i = 0; i < mb; i++) {
+            in.putScalar(i, 0, offset + (i * 7) % 10);
+            labels.putScalar(i, i % 3, 1.0);
+        }
+        return new DataSet(in, labels);
+    }
+
+    private static boolean[] usedRows(DataSet ds) {
+        boolean[] used = new boolean[VOCAB];
+        INDArray f = ds.getFeatures();
+        for (int i = 0; i < f.length(); i++) {
+            used[f.getInt(i / f.size(1), i % f.size(1))] = true;
+        }
+        return used;
+    }
+
+    @Test
+    public void testSparseMatchesDense() {
+        //For SGD and AdaGrad without regularization, lazy (sparse) updates are exactly equivalent to dense updates
+        for (boolean sequence : new boolean[]{false, true}) {
+            for (IUpdater u : new IUpdater[]{new Sgd(0.1), new AdaGrad(0.1)}) {
+                String msg = (sequence ? "EmbeddingSequenceLayer" : "EmbeddingLayer") + " - " + u.getClass().getSimpleName();
+                MultiLayerNetwork dense = embeddingNet(u, false, sequence);
+                MultiLayerNetwork sparse = embeddingNet(u, true, sequence);
+                assertEquals(dense.params(), sparse.params(), msg);
+
+                for (int i = 0; i < 5; i++) {
+                    DataSet ds = data(i % 3, sequence);
+                    dense.fit(ds);
+                    sparse.fit(ds);
+                    assertEquals(dense.params(), sparse.params(), msg + " - iteration " + i);
+                    assertEquals(dense.getUpdater().getStateViewArray(), sparse.getUpdater().getStateViewArray(), msg);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testAdamLazyUpdates() {
+        for (boolean sequence : new boolean[]{false, true}) {
+            MultiLayerNetwork dense = embeddingNet(new Adam(0.01), false, sequence);
+            MultiLayerNetwork sparse = embeddingNet(new Adam(0.01), true, sequence);
+
+            //First iteration: moving averages are zero for all rows, so dense and lazy updates are identical
+            dense.fit(data(0, sequence));
+            sparse.fit(data(0, sequence));
+            assertEquals(dense.params(), sparse.params());
+
+            //Second iteration uses only rows in the range 10-19: other rows should not be modified by the lazy update,
+            //unlike dense Adam
+            INDArray wBefore = sparse.getParam("0_" + DefaultParamInitializer.WEIGHT_KEY).dup();
+            DataSet ds = data(1, sequence);
+            boolean[] used = usedRows(ds);
+            dense.fit(ds);
+            sparse.fit(ds);
+
+            INDArray wSparse = sparse.getParam("0_" + DefaultParamInitializer.WEIGHT_KEY);
+            INDArray wDense = dense.getParam("0_" + DefaultParamInitializer.WEIGHT_KEY);
+            for (int r = 0; r < VOCAB; r++) {
+                if (used[r]) {
+                    assertNotEquals(wBefore.getRow(r), wSparse.getRow(r));
+                    assertEquals(wDense.getRow(r), wSparse.getRow(r));
+                } else {
+                    assertEquals(wBefore.getRow(r), wSparse.getRow(r));
+                }
+            }
+            assertNotEquals(wBefore.getRows(0, 1, 2), wDense.getRows(0, 1, 2));
+
+            //Non-embedding parameters are updated as normal
+            assertEquals(dense.getParam("1_W"), sparse.getParam("1_W"));
+            assertEquals(dense.getParam("0_b"), sparse.getParam("0_b"));
+        }
+    }
+
+    @Test
+    public void testLazyRegularization() {
+        //L2 is only applied to the rows present in the minibatch: unused rows are decayed by dense updates only
+        for (boolean sequence : new boolean[]{false, true}) {
+            MultiLayerNetwork dense = embeddingNet(new Sgd(0.1), false, sequence, 0.1);
+            MultiLayerNetwork sparse = embeddingNet(new Sgd(0.1), true, sequence, 0.1);
+            assertEquals(dense.params(), sparse.params());
+
+            INDArray wBefore = sparse.getParam("0_" + DefaultParamInitializer.WEIGHT_KEY).dup();
+            DataSet ds = data(0, sequence);
+            boolean[] used = usedRows(ds);
+            dense.fit(ds);
+            sparse.fit(ds);
+
+            INDArray wSparse = sparse.getParam("0_" + DefaultParamInitializer.WEIGHT_KEY);
+            INDArray wDense = dense.getParam("0_" + DefaultParamInitializer.WEIGHT_KEY);
+            for (int r = 0; r < VOCAB; r++) {
+                if (used[r]) {
+                    assertEquals(wDense.getRow(r), wSparse.getRow(r), "Row " + r);
+                } else {
+                    assertEquals(wBefore.getRow(r), wSparse.getRow(r), "Row " + r);
+                    assertNotEquals(wBefore.getRow(r), wDense.getRow(r), "Row " + r);
+                }
+            }
+            assertNotEquals(dense.params(), sparse.params());
+        }
+    }
+
+    @Test
+    public void testSparseGradientRowsOnly() {
+        MultiLayerNetwork net = embeddingNet(new Sgd(0.1), true, false);
+        for (int i = 0; i < 3; i++) {
+            DataSet ds = data(i, false);
+            net.setInput(ds.getFeatures());
+            net.setLabels(ds.getLabels());
+            net.computeGradientAndScore();
+            INDArray g = net.gradient().getGradientFor("0_" + DefaultParamInitializer.WEIGHT_KEY);
+            boolean[] used = usedRows(ds);
+            for (int r = 0; r < VOCAB; r++) {
+                assertEquals(!used[r], g.getRow(r).amaxNumber().doubleValue() == 0.0, "Row " + r);
+            }
+            net.fit(ds);
+        }
+    }
+
+    @Test
+    public void testUnsupportedUpdater() {
+        MultiLayerNetwork net = embeddingNet(new Nesterovs(0.1, 0.9), true, false);
+        try {
+            net.fit(data(0, false));
+            fail("Expected exception");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("sparse"), e.getMessage());
+        }
+    }
+}
@@ -36,6 +36,7 @@ import org.junit.jupiter.api.Test;
 import org.nd4j.common.tests.tags.NativeTag;
 import org.nd4j.common.tests.tags.TagNames;
 import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.buffer.DataType;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.indexing.INDArrayIndex;
@@ -200,6 +201,32 @@ class GravesLSTMTest extends BaseDL4JTest {
         }
     }
 
+    @Test
+    @DisplayName("Test Sequence Output Matches Time Steps")
+    void testSequenceOutputMatchesTimeSteps() {
+        // Full sequences use a single input projection for all time steps; rnnTimeStep with 2d input projects one step at a time
+        for (boolean graves : new boolean[] { false, true }) {
+            org.deeplearning4j.nn.conf.layers.Layer lstm = graves
+                    ? new org.deeplearning4j.nn.conf.layers.GravesLSTM.Builder().activation(Activation.TANH).nIn(5).nOut(7).build()
+                    : new org.deeplearning4j.nn.conf.layers.LSTM.Builder().activation(Activation.TANH).nIn(5).nOut(7).build();
+            MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder().dataType(DataType.DOUBLE).seed(12345).list()
+                    .layer(lstm)
+                    .layer(new org.deeplearning4j.nn.conf.layers.RnnOutputLayer.Builder().lossFunction(LossFunctions.LossFunction.MSE).nIn(7).nOut(3).activation(Activation.IDENTITY).build())
+                    .build();
+            MultiLayerNetwork net = new MultiLayerNetwork(conf);
+            net.init();
+            int miniBatch = 4;
+            int tsLength = 12;
+            INDArray in = Nd4j.rand(DataType.DOUBLE, miniBatch, 5, tsLength);
+            INDArray out = net.output(in);
+            for (int t = 0; t < tsLength; t++) {
+                INDArray step = net.rnnTimeStep(in.get(NDArrayIndex.all(), NDArrayIndex.all(), NDArrayIndex.point(t)));
+                INDArray exp = out.get(NDArrayIndex.all(), NDArrayIndex.all(), NDArrayIndex.point(t));
+                assertTrue(exp.equalsWithEps(step, 1e-10), "graves=" + graves + ", t=" + t);
+            }
+        }
+    }
+
     @Test
     @DisplayName("Test Gate Activation Fns Sanity Check")
     void testGateActivationFnsSanityCheck() {
@@ -1033,4 +1033,62 @@ public class MultiLayerTest extends BaseDL4JTest {
         net.fit(new DataSet(in, lbl));
         Nd4j.getExecutioner().setProfilingMode(OpExecutioner.ProfilingMode.SCOPE_PANIC);
     }
+
+    @Test
+    @DisplayName("Test Inference View")
+    void testInferenceView() throws Exception {
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder().seed(12345).updater(new Adam(1e-2)).list()
+                .layer(new DenseLayer.Builder().nIn(4).nOut(10).activation(Activation.TANH).build())
+                .layer(new BatchNormalization.Builder().nOut(10).build())
+                .layer(new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nIn(10).nOut(3).activation(Activation.SOFTMAX).build())
+                .build();
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+        INDArray f = Nd4j.rand(DataType.FLOAT, 8, 4);
+        INDArray l = TestUtils.randomOneHot(8, 3);
+        net.fit(f, l);
+
+        MultiLayerNetwork view = net.inferenceView();
+        assertTrue(view.isInferenceView());
+        assertFalse(net.isInferenceView());
+        // Parameters are shared, not copied
+        assertSame(net.params().data(), view.params().data());
+        INDArray exp = net.output(f);
+        assertEquals(exp, view.output(f));
+
+        int nThreads = 4;
+        List<INDArray> inputs = new ArrayList<>();
+        List<INDArray> expected = new ArrayList<>();
+        for (int i = 0; i < nThreads; i++) {
+            INDArray in = Nd4j.rand(DataType.FLOAT, i + 1, 4);
+            inputs.add(in);
+            expected.add(net.output(in));
+        }
+        Thread[] threads = new Thread[nThreads];
+        Throwable[] failures = new Throwable[nThreads];
+        for (int i = 0; i < nThreads; i++) {
+            int idx = i;
+            threads[i] = new Thread(() -> {
+                try {
+                    MultiLayerNetwork v = net.inferenceView();
+                    for (int j = 0; j < 50; j++) {
+                        assertEquals(expected.get(idx), v.output(inputs.get(idx)));
+                    }
+                } catch (Throwable t) {
+                    failures[idx] = t;
+                }
+            });
+            threads[i].start();
+        }
+        for (int i = 0; i < nThreads; i++) {
+            threads[i].join();
+            assertNull(failures[i], "Failure in thread " + i + ": " + failures[i]);
+        }
+
+        // Parameter updates on the original network are visible in the view
+        net.fit(f, l);
+        assertEquals(net.output(f), view.output(f));
+
+        assertThrows(IllegalStateException.class, () -> view.fit(f, l));
+    }
 }
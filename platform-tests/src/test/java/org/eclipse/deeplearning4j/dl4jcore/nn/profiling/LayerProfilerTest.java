@@ -0,0 +1,178 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.eclipse.deeplearning4j.dl4jcore.nn.profiling;
+
+import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.datasets.iterator.impl.IrisDataSetIterator;
+import org.deeplearning4j.nn.conf.ComputationGraphConfiguration;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.graph.ElementWiseVertex;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.profiling.LayerProfileStats;
+import org.deeplearning4j.nn.profiling.LayerProfiler;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.nd4j.common.tests.tags.NativeTag;
+import org.nd4j.common.tests.tags.TagNames;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.learning.config.Adam;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+import org.nd4j.shade.jackson.databind.JsonNode;
+import org.nd4j.shade.jackson.databind.ObjectMapper;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@NativeTag
+@Tag(TagNames.DL4J_OLD_API)
+public class LayerProfilerTest extends BaseDL4JTest {
+
+    private static Map<String, LayerProfileStats> byKey(List<LayerProfileStats> stats) {
+        Map<String, LayerProfileStats> m = new HashMap<>();
+        for (LayerProfileStats s : stats) {
+            m.put(s.getPhase() + "/" + s.getName(), s);
+        }
+        return m;
+    }
+
+    @Test
+    public void testProfileMultiLayerNetwork() throws Exception {
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .seed(12345)
+                .updater(new Adam(1e-2))
+                .list()
+                .layer(new DenseLayer.Builder().nIn(4).nOut(10).activation(Activation.TANH).build())
+                .layer(new DenseLayer.Builder().nIn(10).nOut(10).activation(Activation.TANH).build())
+                .layer(new OutputLayer.Builder().nIn(10).nOut(3).activation(Activation.SOFTMAX)
+                        .lossFunction(LossFunctions.LossFunction.MCXENT).build())
+                .build();
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+
+        INDArray in = Nd4j.rand(5, 4);
+        INDArray expOut = net.output(in);
+
+        LayerProfiler profiler = new LayerProfiler().attach(net);
+        assertSame(profiler, net.getLayerProfiler());
+
+        //Profiling should not change the results
+        assertEquals(expOut, net.output(in));
+
+        net.fit(new IrisDataSetIterator(50, 150));     //3 iterations
+        profiler.detach();
+        assertNull(net.getLayerProfiler());
+
+        Map<String, LayerProfileStats> stats = byKey(profiler.getStats());
+        for (int i = 0; i < 3; i++) {
+            String name = net.getLayer(i).conf().getLayer().getLayerName();
+            LayerProfileStats fwd = stats.get("FORWARD/" + name);
+            assertNotNull(fwd, name);
+            //Output layer activations during fitting are computed as part of backprop, not the forward pass
+            assertEquals(i < 2 ? 4 : 1, fwd.getCount());
+            assertTrue(fwd.getTotalNanos() > 0);
+            assertTrue(fwd.getOpCount() > 0);
+
+            LayerProfileStats bwd = stats.get("BACKWARD/" + name);
+            assertNotNull(bwd, name);
+            assertEquals(3, bwd.getCount());
+        }
+
+        //All layers have the same updater configuration -> one updater block, applied once per iteration
+        long updaterCalls = 0;
+        for (LayerProfileStats s : profiler.getStats()) {
+            if (s.getPhase() == LayerProfiler.Phase.UPDATER)
+                updaterCalls += s.getCount();
+        }
+        assertEquals(3, updaterCalls);
+
+        //Nothing should be recorded after detaching
+        int numStats = profiler.getStats().size();
+        long fwdCount = stats.get("FORWARD/layer0").getCount();
+        net.output(in);
+        assertEquals(numStats, profiler.getStats().size());
+        assertEquals(fwdCount, byKey(profiler.getStats()).get("FORWARD/layer0").getCount());
+
+        String table = profiler.summaryTable();
+        assertTrue(table.contains("layer0"));
+        assertTrue(table.contains("BACKWARD"));
+
+        JsonNode trace = new ObjectMapper().readTree(profiler.toChromeTrace());
+        JsonNode events = trace.get("traceEvents");
+        assertEquals((4 + 4 + 1) + 3 * 3 + 3, events.size());
+        JsonNode e = events.get(0);
+        assertEquals("X", e.get("ph").asText());
+        assertEquals("FORWARD", e.get("cat").asText());
+        assertTrue(e.has("ts") && e.has("dur") && e.has("tid"));
+        assertTrue(e.get("args").has("workspaceBytes"));
+
+        profiler.reset();
+        assertTrue(profiler.getStats().isEmpty());
+    }
+
+    @Test
+    public void testProfileComputationGraph() {
+        ComputationGraphConfiguration conf = new NeuralNetConfiguration.Builder()
+                .seed(12345)
+                .updater(new Adam(1e-2))
+                .graphBuilder()
+                .addInputs("in")
+                .addLayer("d0", new DenseLayer.Builder().nIn(4).nOut(10).activation(Activation.TANH).build(), "in")
+                .addLayer("d1", new DenseLayer.Builder().nIn(4).nOut(10).activation(Activation.TANH).build(), "in")
+                .addVertex("add", new ElementWiseVertex(ElementWiseVertex.Op.Add), "d0", "d1")
+                .addLayer("out", new OutputLayer.Builder().nIn(10).nOut(3).activation(Activation.SOFTMAX)
+                        .lossFunction(LossFunctions.LossFunction.MCXENT).build(), "add")
+                .setOutputs("out")
+                .build();
+        ComputationGraph net = new ComputationGraph(conf);
+        net.init();
+
+        LayerProfiler profiler = new LayerProfiler.Builder().countOps(false).recordTrace(false).build().attach(net);
+        net.fit(new IrisDataSetIterator(150, 150));
+        net.output(Nd4j.rand(5, 4));
+        profiler.detach();
+
+        Map<String, LayerProfileStats> stats = byKey(profiler.getStats());
+        for (String s : new String[]{"d0", "d1", "add", "out"}) {
+            assertEquals(s.equals("out") ? 1 : 2, stats.get("FORWARD/" + s).getCount(), s);
+            assertEquals(1, stats.get("BACKWARD/" + s).getCount(), s);
+            assertEquals(0, stats.get("FORWARD/" + s).getOpCount());
+        }
+        assertEquals("ElementWiseVertex", stats.get("FORWARD/add").getType());
+        assertFalse(stats.containsKey("FORWARD/in"));
+
+        JsonNode trace;
+        try {
+            trace = new ObjectMapper().readTree(profiler.toChromeTrace());
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        assertEquals(0, trace.get("traceEvents").size());
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.eclipse.deeplearning4j.dl4jcore.nn.quantization;
+
+import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.datasets.iterator.utilty.ListDataSetIterator;
+import org.deeplearning4j.nn.conf.ComputationGraphConfiguration;
+import org.deeplearning4j.nn.conf.ConvolutionMode;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.inputs.InputType;
+import org.deeplearning4j.nn.conf.layers.BatchNormalization;
+import org.deeplearning4j.nn.conf.layers.ConvolutionLayer;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.conf.layers.SubsamplingLayer;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.quantization.PostTrainingQuantizer;
+import org.deeplearning4j.nn.quantization.QuantizationReport;
+import org.deeplearning4j.nn.quantization.QuantizedLayer;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.nd4j.common.tests.tags.NativeTag;
+import org.nd4j.common.tests.tags.TagNames;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.learning.config.Adam;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+import org.nd4j.linalg.ops.transforms.Transforms;
+
+import java.io.File;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@NativeTag
+@Tag(TagNames.DL4J_OLD_API)
+public class PostTrainingQuantizerTest extends BaseDL4JTest {
+
+    @TempDir
+    public Path tempDir;
+
+    private static DataSetIterator data(long... featureShape) {
+        Nd4j.getRandom().setSeed(12345);
+        INDArray f = Nd4j.rand(DataType.FLOAT, featureShape);
+        INDArray l = Nd4j.zeros(DataType.FLOAT, featureShape[0], 3);
+        for (int i = 0; i < featureShape[0]; i++) {
+            l.putScalar(i, i % 3, 1.0);
+        }
+        return new ListDataSetIterator<>(new DataSet(f, l).asList(), 16);
+    }
+
+    private static void assertClose(INDArray expected, INDArray actual) {
+        double maxDiff = Transforms.abs(expected.sub(actual)).maxNumber().doubleValue();
+        assertTrue(maxDiff < 0.05, "Max difference: " + maxDiff);
+    }
+
+    @Test
+    public void testQuantizeMultiLayerNetwork() throws Exception {
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .seed(12345)
+                .updater(new Adam(1e-2))
+                .convolutionMode(ConvolutionMode.Same)
+                .list()
+                .layer(new ConvolutionLayer.Builder().kernelSize(3, 3).nOut(6).activation(Activation.RELU).build())
+                .layer(new SubsamplingLayer.Builder().kernelSize(2, 2).stride(2, 2).build())
+                .layer(new ConvolutionLayer.Builder().kernelSize(2, 2).stride(1, 1).convolutionMode(ConvolutionMode.Truncate)
+                        .nOut(5).activation(Activation.TANH).build())
+                .layer(new BatchNormalization.Builder().build())
+                .layer(new DenseLayer.Builder().nOut(16).activation(Activation.RELU).build())
+                .layer(new DenseLayer.Builder().nOut(16).activation(Activation.RELU).hasLayerNorm(true).build())
+                .layer(new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nOut(3).activation(Activation.SOFTMAX).build())
+                .setInputType(InputType.convolutional(10, 10, 2))
+                .build();
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+        DataSetIterator iter = data(64, 2, 10, 10);
+        net.fit(iter, 3);
+        INDArray paramsBefore = net.params().dup();
+
+        MultiLayerNetwork quantized = new PostTrainingQuantizer(iter, 2).quantize(net);
+
+        //Supported: 2 convolution, 1 dense (without layer norm), output layer
+        int[] expQuantized = {0, 2, 4, 6};
+        int count = 0;
+        for (int i = 0; i < quantized.getnLayers(); i++) {
+            boolean q = quantized.getLayer(i) instanceof QuantizedLayer;
+            if (q) {
+                assertEquals(expQuantized[count++], i);
+                QuantizedLayer ql = (QuantizedLayer) quantized.getLayer(i);
+                assertEquals(DataType.INT8, ql.getQuantizedWeights().dataType());
+                //FP32 weights are not retained: parameters are only the scales and bias; one byte per original weight
+                long nOut = ql.layerConf().getNOut();
+                assertEquals(2 * nOut, ql.numParams());
+                assertNull(ql.getParam("W"));
+                assertEquals(net.getLayer(i).getParam("W").length(), ql.quantizedWeightBytes());
+            }
+            assertFalse(net.getLayer(i) instanceof QuantizedLayer);
+        }
+        assertEquals(expQuantized.length, count);
+        assertTrue(quantized.getLayer(quantized.getLayer(6).conf().getLayer().getLayerName()) instanceof QuantizedLayer);
+        assertEquals(paramsBefore, net.params());
+
+        DataSet ds = iter.next();
+        assertClose(net.output(ds.getFeatures()), quantized.output(ds.getFeatures()));
+
+        QuantizationReport r = PostTrainingQuantizer.report(net, quantized, iter);
+        assertEquals(4, r.getNumQuantizedLayers());
+        assertTrue(Math.abs(r.getAccuracyDelta()) <= 0.1, r.toString());
+        assertEquals(PostTrainingQuantizer.modelBytes(net), r.getOriginalMemoryBytes());
+        assertEquals(PostTrainingQuantizer.modelBytes(quantized), r.getQuantizedMemoryBytes());
+        //Network params buffer (FP32: unquantized layers, weight scales, biases) plus the INT8 weight buffers
+        long expQuantizedBytes = quantized.params().data().length() * 4;
+        for (int i : expQuantized) {
+            expQuantizedBytes += ((QuantizedLayer) quantized.getLayer(i)).getQuantizedWeights().data().length();
+        }
+        assertEquals(expQuantizedBytes, r.getQuantizedMemoryBytes());
+        assertEquals(net.params().data().length() * 4, r.getOriginalMemoryBytes());
+        //Layer norm dense and batch norm layers remain FP32, hence less than the 4x reduction of the quantized layers alone
+        assertTrue(r.getMemoryReduction() > 2.0, r.toString());
+
+        assertThrows(Exception.class, () -> quantized.fit(ds));
+
+        //Save and restore, including the INT8 weights
+        File f = tempDir.resolve("quantized.zip").toFile();
+        PostTrainingQuantizer.writeModel(quantized, f);
+        MultiLayerNetwork restored = PostTrainingQuantizer.restoreMultiLayerNetwork(f);
+        for (int i : expQuantized) {
+            assertEquals(((QuantizedLayer) quantized.getLayer(i)).getQuantizedWeights(),
+                    ((QuantizedLayer) restored.getLayer(i)).getQuantizedWeights());
+        }
+        assertEquals(quantized.params(), restored.params());
+        assertEquals(quantized.output(ds.getFeatures()), restored.output(ds.getFeatures()));
+        assertEquals(paramsBefore, net.params());
+    }
+
+    @Test
+    public void testQuantizeComputationGraph() throws Exception {
+        ComputationGraphConfiguration conf = new NeuralNetConfiguration.Builder()
+                .seed(12345)
+                .updater(new Adam(1e-2))
+                .graphBuilder()
+                .addInputs("in")
+                .addLayer("d0", new DenseLayer.Builder().nOut(20).activation(Activation.RELU).build(), "in")
+                .addLayer("d1", new DenseLayer.Builder().nOut(20).activation(Activation.TANH).hasBias(false).build(), "d0")
+                .addLayer("out", new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nOut(3).activation(Activation.SOFTMAX).build(), "d1")
+                .setOutputs("out")
+                .setInputTypes(InputType.feedForward(12))
+                .build();
+        ComputationGraph graph = new ComputationGraph(conf);
+        graph.init();
+        DataSetIterator iter = data(64, 12);
+        graph.fit(iter, 3);
+
+        ComputationGraph quantized = new PostTrainingQuantizer(iter).quantize(graph);
+        for (String name : new String[]{"d0", "d1", "out"}) {
+            assertTrue(quantized.getLayer(name) instanceof QuantizedLayer, name);
+            assertFalse(graph.getLayer(name) instanceof QuantizedLayer, name);
+        }
+
+        DataSet ds = iter.next();
+        assertClose(graph.outputSingle(ds.getFeatures()), quantized.outputSingle(ds.getFeatures()));
+
+        QuantizationReport r = PostTrainingQuantizer.report(graph, quantized, iter);
+        assertEquals(3, r.getNumQuantizedLayers());
+        assertTrue(Math.abs(r.getAccuracyDelta()) <= 0.1, r.toString());
+        //All weights are quantized, only the FP32 scales and biases remain
+        assertEquals(20 + 20 + 20 + 3 + 3, quantized.numParams());
+        assertTrue(r.getMemoryReduction() > 2.5, r.toString());
+
+        File f = tempDir.resolve("quantizedGraph.zip").toFile();
+        PostTrainingQuantizer.writeModel(quantized, f);
+        ComputationGraph restored = PostTrainingQuantizer.restoreComputationGraph(f);
+        assertEquals(quantized.outputSingle(ds.getFeatures()), restored.outputSingle(ds.getFeatures()));
+    }
+}
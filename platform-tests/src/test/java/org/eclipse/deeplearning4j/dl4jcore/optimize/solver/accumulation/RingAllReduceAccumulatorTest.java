@@ -0,0 +1,160 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.eclipse.deeplearning4j.dl4jcore.optimize.solver.accumulation;
+
+import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.datasets.iterator.utilty.ListDataSetIterator;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.optimize.solvers.accumulation.RingAllReduceAccumulator;
+import org.deeplearning4j.optimize.stepfunctions.NegativeDefaultStepFunction;
+import org.deeplearning4j.parallelism.ParallelWrapper;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.nd4j.common.tests.tags.NativeTag;
+import org.nd4j.common.tests.tags.TagNames;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+import org.nd4j.linalg.learning.config.Sgd;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@NativeTag
+@Tag(TagNames.DL4J_OLD_API)
+public class RingAllReduceAccumulatorTest extends BaseDL4JTest {
+
+    /**
+     * Run one iteration of storeUpdate + applyUpdate on each update, one thread each, and return the applied updates
+     */
+    private static INDArray[] allReduce(RingAllReduceAccumulator accumulator, INDArray[] updates) throws Exception {
+        INDArray[] applied = new INDArray[updates.length];
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < updates.length; i++) {
+            final int idx = i;
+            Thread t = new Thread(() -> {
+                try {
+                    INDArray params = Nd4j.zeros(updates[idx].dataType(), updates[idx].length());
+                    accumulator.storeUpdate(updates[idx], 0, 0);
+                    accumulator.applyUpdate(new NegativeDefaultStepFunction(), params, updates[idx], true);
+                    applied[idx] = params.negi();
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            });
+            threads.add(t);
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertNull(failure.get());
+        return applied;
+    }
+
+    @Test
+    public void testAllReduce() throws Exception {
+        for (int n : new int[]{1, 2, 3, 5, 8}) {
+            for (int length : new int[]{1, 7, 1000}) {
+                for (boolean average : new boolean[]{true, false}) {
+                    RingAllReduceAccumulator accumulator = new RingAllReduceAccumulator(n, average);
+                    for (int iter = 0; iter < 3; iter++) {
+                        INDArray[] updates = new INDArray[n];
+                        INDArray expected = Nd4j.zeros(DataType.FLOAT, length);
+                        for (int i = 0; i < n; i++) {
+                            updates[i] = Nd4j.rand(DataType.FLOAT, length);
+                            expected.addi(updates[i]);
+                        }
+                        if (average)
+                            expected.divi(n);
+                        INDArray[] expectedUpdates = new INDArray[n];
+                        for (int i = 0; i < n; i++) {
+                            expectedUpdates[i] = updates[i].dup();
+                        }
+
+                        INDArray[] applied = allReduce(accumulator, updates);
+                        for (int i = 0; i < n; i++) {
+                            String msg = "n=" + n + ", length=" + length + ", average=" + average + ", worker " + i;
+                            assertTrue(expected.equalsWithEps(applied[i], 1e-5), msg);
+                            //Input updates must not be modified
+                            assertEquals(expectedUpdates[i], updates[i], msg);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testPartialRound() throws Exception {
+        RingAllReduceAccumulator accumulator = new RingAllReduceAccumulator(4);
+        accumulator.registerConsumers(2);
+
+        INDArray[] updates = {Nd4j.rand(DataType.FLOAT, 100), Nd4j.rand(DataType.FLOAT, 100)};
+        INDArray expected = updates[0].add(updates[1]).divi(2);
+        INDArray[] applied = allReduce(accumulator, updates);
+        assertTrue(expected.equalsWithEps(applied[0], 1e-5));
+        assertTrue(expected.equalsWithEps(applied[1], 1e-5));
+    }
+
+    @Test
+    public void testParallelWrapperAllReduce() {
+        Nd4j.getRandom().setSeed(12345);
+        MultiLayerNetwork net = new MultiLayerNetwork(new NeuralNetConfiguration.Builder()
+                .seed(12345)
+                .updater(new Sgd(0.1))
+                .list()
+                .layer(new DenseLayer.Builder().nIn(10).nOut(20).activation(Activation.TANH).build())
+                .layer(new OutputLayer.Builder(LossFunctions.LossFunction.MSE).nIn(20).nOut(3).activation(Activation.IDENTITY).build())
+                .build());
+        net.init();
+
+        INDArray f = Nd4j.rand(DataType.FLOAT, 256, 10);
+        INDArray l = f.get(NDArrayIndex.all(), NDArrayIndex.interval(0, 3)).dup();
+        DataSet all = new DataSet(f, l);
+        //11 minibatches over 4 workers: the last round has only 3 workers
+        DataSetIterator iter = new ListDataSetIterator<>(all.asList(), 25);
+
+        double scoreBefore = net.score(all);
+        ParallelWrapper wrapper = new ParallelWrapper.Builder<>(net)
+                .workers(4)
+                .prefetchBuffer(0)
+                .trainingMode(ParallelWrapper.TrainingMode.ALL_REDUCE)
+                .build();
+        for (int i = 0; i < 5; i++) {
+            wrapper.fit(iter);
+        }
+        double scoreAfter = net.score(all);
+        assertTrue(scoreAfter < scoreBefore, "Score before: " + scoreBefore + ", after: " + scoreAfter);
+    }
+}
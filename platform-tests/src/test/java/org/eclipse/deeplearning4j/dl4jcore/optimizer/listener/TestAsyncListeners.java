@@ -0,0 +1,157 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.eclipse.deeplearning4j.dl4jcore.optimizer.listener;
+
+import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.datasets.iterator.impl.IrisDataSetIterator;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.optimize.api.InvocationType;
+import org.deeplearning4j.optimize.listeners.AsyncEvaluativeListener;
+import org.deeplearning4j.optimize.listeners.Checkpoint;
+import org.deeplearning4j.optimize.listeners.CheckpointListener;
+import org.deeplearning4j.optimize.listeners.EvaluativeListener;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.nd4j.common.tests.tags.NativeTag;
+import org.nd4j.common.tests.tags.TagNames;
+import org.nd4j.evaluation.classification.Evaluation;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.learning.config.Adam;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@NativeTag
+@Tag(TagNames.DL4J_OLD_API)
+public class TestAsyncListeners extends BaseDL4JTest {
+
+    @Override
+    public long getTimeoutMilliseconds() {
+        return 90000L;
+    }
+
+    private static MultiLayerNetwork getNet() {
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .seed(12345)
+                .updater(new Adam(1e-2))
+                .list()
+                .layer(new DenseLayer.Builder().nIn(4).nOut(10).activation(Activation.TANH).build())
+                .layer(new OutputLayer.Builder().nIn(10).nOut(3).activation(Activation.SOFTMAX)
+                        .lossFunction(LossFunctions.LossFunction.MCXENT).build())
+                .build();
+
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+        return net;
+    }
+
+    @Test
+    public void testAsyncEvaluationMatchesSync() {
+        DataSetIterator train = new IrisDataSetIterator(25, 150);
+
+        //Record the accuracy after each epoch for both listeners; the async evaluation sees a snapshot of the parameters
+        //at the time the evaluation was triggered, hence results should be identical
+        List<Double> syncAcc = new ArrayList<>();
+        EvaluativeListener sync = new EvaluativeListener(new IrisDataSetIterator(50, 150), 1, InvocationType.EPOCH_END,
+                new Evaluation());
+        sync.setCallback((listener, model, invocationsCount, evaluations) ->
+                syncAcc.add(((Evaluation) evaluations[0]).accuracy()));
+
+        List<Double> asyncAcc = new ArrayList<>();
+        AsyncEvaluativeListener async = new AsyncEvaluativeListener(new IrisDataSetIterator(50, 150), 1,
+                InvocationType.EPOCH_END, new Evaluation());
+        async.setCallback((listener, model, invocationsCount, evaluations) ->
+                asyncAcc.add(((Evaluation) evaluations[0]).accuracy()));
+
+        MultiLayerNetwork net = getNet();
+        net.setListeners(sync, async);
+        for (int i = 0; i < 5; i++) {
+            net.fit(train);
+        }
+        async.waitForCompletion();
+        async.shutdown();
+
+        assertEquals(5, syncAcc.size());
+        assertEquals(syncAcc, asyncAcc);
+        assertTrue(async.getTotalStallMs() >= 0.0);
+    }
+
+    @Test
+    public void testAsyncCheckpointing(@TempDir Path tempDir) throws Exception {
+        File fSync = new File(tempDir.toFile(), "sync");
+        File fAsync = new File(tempDir.toFile(), "async");
+        assertTrue(fSync.mkdirs());
+        assertTrue(fAsync.mkdirs());
+
+        CheckpointListener sync = new CheckpointListener.Builder(fSync)
+                .keepLast(3)
+                .saveEveryNIterations(5)
+                .build();
+        CheckpointListener async = new CheckpointListener.Builder(fAsync)
+                .keepLast(3)
+                .saveEveryNIterations(5)
+                .asyncSaving(true)
+                .build();
+
+        MultiLayerNetwork netSync = getNet();
+        MultiLayerNetwork netAsync = netSync.clone();
+        netSync.setListeners(sync);
+        netAsync.setListeners(async);
+
+        DataSetIterator iter = new IrisDataSetIterator(25, 50);
+        for (int i = 0; i < 10; i++) {
+            netSync.fit(iter);
+            netAsync.fit(iter);
+        }
+        async.waitForPendingSaves();
+
+        List<Checkpoint> cpSync = sync.availableCheckpoints();
+        List<Checkpoint> cpAsync = async.availableCheckpoints();
+        assertEquals(3, cpAsync.size());
+        assertEquals(cpSync.size(), cpAsync.size());
+
+        for (int i = 0; i < cpSync.size(); i++) {
+            Checkpoint cs = cpSync.get(i);
+            Checkpoint ca = cpAsync.get(i);
+            assertEquals(cs.getCheckpointNum(), ca.getCheckpointNum());
+            assertEquals(cs.getIteration(), ca.getIteration());
+            assertEquals(cs.getEpoch(), ca.getEpoch());
+
+            MultiLayerNetwork ns = sync.loadCheckpointMLN(cs);
+            MultiLayerNetwork na = async.loadCheckpointMLN(ca);
+            assertEquals(ns.params(), na.params());
+            assertEquals(ns.getUpdater().getStateViewArray(), na.getUpdater().getStateViewArray());
+            assertEquals(ns.getIterationCount(), na.getIterationCount());
+            assertEquals(ns.getEpochCount(), na.getEpochCount());
+        }
+    }
+}
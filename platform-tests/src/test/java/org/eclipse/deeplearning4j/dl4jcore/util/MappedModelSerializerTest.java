@@ -0,0 +1,157 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+package org.eclipse.deeplearning4j.dl4jcore.util;
+
+import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.datasets.iterator.impl.IrisDataSetIterator;
+import org.deeplearning4j.nn.conf.ComputationGraphConfiguration;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.util.MappedModelSerializer;
+import org.deeplearning4j.util.ModelSerializer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.nd4j.common.tests.tags.NativeTag;
+import org.nd4j.common.tests.tags.TagNames;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.learning.config.Adam;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import java.io.File;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Mapped Model Serializer Test")
+@NativeTag
+@Tag(TagNames.FILE_IO)
+class MappedModelSerializerTest extends BaseDL4JTest {
+
+    @TempDir
+    public Path tempDir;
+
+    private static MultiLayerNetwork getTrainedMLN() {
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder().seed(12345).updater(new Adam(1e-2))
+                .activation(Activation.TANH).list()
+                .layer(new DenseLayer.Builder().nIn(4).nOut(20).build())
+                .layer(new OutputLayer.Builder().lossFunction(LossFunctions.LossFunction.MCXENT)
+                        .activation(Activation.SOFTMAX).nIn(20).nOut(3).build())
+                .build();
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+        net.fit(new IrisDataSetIterator(50, 150));
+        return net;
+    }
+
+    @Test
+    @DisplayName("Test Write Mapped MLN Model")
+    void testWriteMappedMLNModel() throws Exception {
+        MultiLayerNetwork net = getTrainedMLN();
+        File f = new File(tempDir.toFile(), "model.bin");
+        MappedModelSerializer.writeModel(net, f, true);
+        assertTrue(MappedModelSerializer.isMappedModelFile(f));
+
+        MultiLayerNetwork restored = MappedModelSerializer.restoreMultiLayerNetwork(f, true);
+        assertEquals(net.getLayerWiseConfigurations().toJson(), restored.getLayerWiseConfigurations().toJson());
+        assertEquals(net.params(), restored.params());
+        assertEquals(net.getUpdater().getStateViewArray(), restored.getUpdater().getStateViewArray());
+        assertEquals(net.getIterationCount(), restored.getIterationCount());
+
+        INDArray in = Nd4j.rand(5, 4);
+        assertEquals(net.output(in), restored.output(in));
+
+        //Loading via ModelSerializer should detect the format
+        MultiLayerNetwork restored2 = ModelSerializer.restoreMultiLayerNetwork(f, false);
+        assertEquals(net.params(), restored2.params());
+
+        //Training the restored network (continuing from the restored updater state) should match the original, and
+        //should not modify the file (copy-on-write mapping)
+        DataSetIterator iter = new IrisDataSetIterator(50, 150);
+        net.fit(iter);
+        restored.fit(iter);
+        assertEquals(net.params(), restored.params());
+
+        MultiLayerNetwork restored3 = MappedModelSerializer.restoreMultiLayerNetwork(f, true);
+        assertEquals(restored2.params(), restored3.params());
+        assertNotEquals(restored.params(), restored3.params());
+    }
+
+    @Test
+    @DisplayName("Test Mapped Model Loaded Multiple Times")
+    void testMappedModelLoadedMultipleTimes() throws Exception {
+        MultiLayerNetwork net = getTrainedMLN();
+        File f = new File(tempDir.toFile(), "model.bin");
+        MappedModelSerializer.writeModel(net, f, false);
+
+        //Buffers of the same model are equal, but each must keep its own mapping alive
+        MultiLayerNetwork first = MappedModelSerializer.restoreMultiLayerNetwork(f, false);
+        for (int i = 0; i < 5; i++) {
+            MultiLayerNetwork other = MappedModelSerializer.restoreMultiLayerNetwork(f, false);
+            assertEquals(first.params(), other.params());
+        }
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+
+        INDArray in = Nd4j.rand(5, 4);
+        assertEquals(net.params(), first.params());
+        assertEquals(net.output(in), first.output(in));
+    }
+
+    @Test
+    @DisplayName("Test Write Mapped CG Model")
+    void testWriteMappedCGModel() throws Exception {
+        ComputationGraphConfiguration config = new NeuralNetConfiguration.Builder().seed(12345).updater(new Adam(1e-2))
+                .graphBuilder().addInputs("in")
+                .addLayer("dense", new DenseLayer.Builder().nIn(4).nOut(10).activation(Activation.TANH).build(), "in")
+                .addLayer("out", new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nIn(10).nOut(3)
+                        .activation(Activation.SOFTMAX).build(), "dense")
+                .setOutputs("out").build();
+        ComputationGraph cg = new ComputationGraph(config);
+        cg.init();
+        cg.fit(new IrisDataSetIterator(50, 150));
+
+        File f = new File(tempDir.toFile(), "model.bin");
+        MappedModelSerializer.writeModel(cg, f, true);
+
+        ComputationGraph restored = ModelSerializer.restoreComputationGraph(f, true);
+        assertEquals(cg.getConfiguration().toJson(), restored.getConfiguration().toJson());
+        assertEquals(cg.params(), restored.params());
+        assertEquals(cg.getUpdater().getStateViewArray(), restored.getUpdater().getStateViewArray());
+
+        assertThrows(IllegalStateException.class, () -> MappedModelSerializer.restoreMultiLayerNetwork(f, true));
+
+        //Zip format files are not mistaken for the mapped format
+        File zip = new File(tempDir.toFile(), "model.zip");
+        ModelSerializer.writeModel(cg, zip, true);
+        assertFalse(MappedModelSerializer.isMappedModelFile(zip));
+        assertEquals(cg.params(), ModelSerializer.restoreComputationGraph(zip, true).params());
+    }
+}
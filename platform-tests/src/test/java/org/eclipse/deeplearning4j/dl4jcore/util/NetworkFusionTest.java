@@ -0,0 +1,167 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+package org.eclipse.deeplearning4j.dl4jcore.util;
+
+import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.nn.conf.ComputationGraphConfiguration;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.graph.ElementWiseVertex;
+import org.deeplearning4j.nn.conf.graph.MergeVertex;
+import org.deeplearning4j.nn.conf.graph.ScaleVertex;
+import org.deeplearning4j.nn.conf.inputs.InputType;
+import org.deeplearning4j.nn.conf.layers.*;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.util.NetworkUtils;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.nd4j.common.tests.tags.NativeTag;
+import org.nd4j.common.tests.tags.TagNames;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.activations.impl.ActivationReLU;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.learning.config.Adam;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+import org.nd4j.linalg.ops.transforms.Transforms;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@NativeTag
+@Tag(TagNames.DL4J_OLD_API)
+public class NetworkFusionTest extends BaseDL4JTest {
+
+    private static DataSet randomData(long... featureShape) {
+        INDArray features = Nd4j.rand(DataType.DOUBLE, featureShape);
+        INDArray labels = Nd4j.zeros(DataType.DOUBLE, featureShape[0], 3);
+        for (int i = 0; i < featureShape[0]; i++) {
+            labels.putScalar(i, i % 3, 1.0);
+        }
+        return new DataSet(features, labels);
+    }
+
+    private static void assertOutputsEqual(INDArray expected, INDArray actual) {
+        assertArrayEquals(expected.shape(), actual.shape());
+        double maxDiff = Transforms.abs(expected.sub(actual), false).maxNumber().doubleValue();
+        assertTrue(maxDiff < 1e-8, "Max output difference: " + maxDiff);
+    }
+
+    @Test
+    public void testFuseMultiLayerNetwork() {
+        Nd4j.getRandom().setSeed(12345);
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .dataType(DataType.DOUBLE)
+                .seed(12345)
+                .updater(new Adam(1e-2))
+                .list()
+                .layer(new ConvolutionLayer.Builder().kernelSize(3, 3).nOut(4).activation(Activation.IDENTITY).build())
+                .layer(new BatchNormalization.Builder().build())
+                .layer(new ActivationLayer.Builder().activation(Activation.RELU).build())
+                .layer(new DropoutLayer.Builder(0.5).build())
+                .layer(new DenseLayer.Builder().nOut(10).hasBias(false).activation(Activation.IDENTITY).build())
+                .layer(new BatchNormalization.Builder().useLogStd(false).build())
+                .layer(new ActivationLayer.Builder().activation(Activation.TANH).build())
+                .layer(new OutputLayer.Builder().nOut(3).activation(Activation.SOFTMAX)
+                        .lossFunction(LossFunctions.LossFunction.MCXENT).build())
+                .setInputType(InputType.convolutional(8, 8, 3))
+                .build();
+
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+        DataSet ds = randomData(16, 3, 8, 8);
+        for (int i = 0; i < 5; i++) {
+            net.fit(ds);
+        }
+
+        INDArray paramsBefore = net.params().dup();
+        MultiLayerNetwork fused = NetworkUtils.fuseForInference(net);
+
+        //conv+bn+relu, (dropout removed), dense+bn+tanh, output
+        assertEquals(3, fused.getnLayers());
+        assertTrue(fused.getLayer(0).conf().getLayer() instanceof ConvolutionLayer);
+        assertTrue(((BaseLayer) fused.getLayer(0).conf().getLayer()).getActivationFn() instanceof ActivationReLU);
+        assertTrue(((DenseLayer) fused.getLayer(1).conf().getLayer()).hasBias());
+        assertTrue(fused.getLayer(2).conf().getLayer() instanceof OutputLayer);
+
+        INDArray in = ds.getFeatures();
+        assertOutputsEqual(net.output(in), fused.output(in));
+
+        //Original network should not be modified
+        assertEquals(8, net.getnLayers());
+        assertEquals(paramsBefore, net.params());
+        assertFalse(((DenseLayer) net.getLayer(4).conf().getLayer()).hasBias());
+    }
+
+    @Test
+    public void testFuseComputationGraph() {
+        Nd4j.getRandom().setSeed(12345);
+        ComputationGraphConfiguration conf = new NeuralNetConfiguration.Builder()
+                .dataType(DataType.DOUBLE)
+                .seed(12345)
+                .updater(new Adam(1e-2))
+                .activation(Activation.IDENTITY)
+                .graphBuilder()
+                .addInputs("in")
+                .addLayer("c1", new ConvolutionLayer.Builder().kernelSize(3, 3).nOut(4).build(), "in")
+                .addLayer("bn1", new BatchNormalization.Builder().build(), "c1")
+                .addLayer("a1", new ActivationLayer.Builder().activation(Activation.RELU).build(), "bn1")
+                .addVertex("s", new ScaleVertex(1.0), "a1")
+                .addLayer("c2", new ConvolutionLayer.Builder().kernelSize(3, 3).nOut(4)
+                        .convolutionMode(org.deeplearning4j.nn.conf.ConvolutionMode.Same).build(), "s")
+                .addLayer("bn2", new BatchNormalization.Builder().build(), "c2")
+                .addVertex("add", new ElementWiseVertex(ElementWiseVertex.Op.Add), "bn2", "s")
+                .addLayer("relu", new ActivationLayer.Builder().activation(Activation.RELU).build(), "add")
+                //c3 has two consumers: bn3 can't be folded
+                .addLayer("c3", new ConvolutionLayer.Builder().kernelSize(3, 3).nOut(2).build(), "in")
+                .addLayer("bn3", new BatchNormalization.Builder().build(), "c3")
+                .addVertex("merge", new MergeVertex(), "relu", "bn3", "c3")
+                .addVertex("single", new MergeVertex(), "merge")
+                .addLayer("pool", new GlobalPoolingLayer.Builder().poolingType(PoolingType.AVG).build(), "single")
+                .addLayer("out", new OutputLayer.Builder().nOut(3).activation(Activation.SOFTMAX)
+                        .lossFunction(LossFunctions.LossFunction.MCXENT).build(), "pool")
+                .setOutputs("out")
+                .setInputTypes(InputType.convolutional(8, 8, 3))
+                .build();
+
+        ComputationGraph net = new ComputationGraph(conf);
+        net.init();
+        DataSet ds = randomData(16, 3, 8, 8);
+        for (int i = 0; i < 5; i++) {
+            net.fit(ds);
+        }
+
+        ComputationGraph fused = NetworkUtils.fuseForInference(net);
+        ComputationGraphConfiguration fusedConf = fused.getConfiguration();
+        for (String s : new String[]{"bn1", "a1", "s", "bn2", "single"}) {
+            assertFalse(fusedConf.getVertices().containsKey(s), s);
+        }
+        for (String s : new String[]{"c1", "c2", "add", "relu", "c3", "bn3", "merge", "pool", "out"}) {
+            assertTrue(fusedConf.getVertices().containsKey(s), s);
+        }
+        assertEquals(java.util.Arrays.asList("c2", "c1"), fusedConf.getVertexInputs().get("add"));
+        assertEquals(java.util.Collections.singletonList("merge"), fusedConf.getVertexInputs().get("pool"));
+
+        INDArray in = ds.getFeatures();
+        assertOutputsEqual(net.outputSingle(in), fused.outputSingle(in));
+    }
+}
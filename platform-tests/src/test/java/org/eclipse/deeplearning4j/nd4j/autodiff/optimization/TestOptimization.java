@@ -28,17 +28,25 @@ import org.junit.jupiter.params.provider.MethodSource;
 import org.nd4j.autodiff.samediff.SDVariable;
 import org.nd4j.autodiff.samediff.SameDiff;
 import org.nd4j.autodiff.samediff.VariableType;
+import org.nd4j.autodiff.samediff.internal.SameDiffOp;
 import org.nd4j.autodiff.samediff.optimize.GraphOptimizer;
+import org.nd4j.autodiff.samediff.optimize.OptimizerSet;
 import org.nd4j.autodiff.samediff.optimize.optimizations.ConstantFunctionOptimizations;
+import org.nd4j.autodiff.samediff.optimize.optimizations.FusionFunctionOptimizations;
 import org.nd4j.autodiff.samediff.optimize.optimizations.IdentityFunctionOptimizations;
+import org.nd4j.autodiff.samediff.optimize.optimizations.UnusedFunctionOptimizations;
 import org.nd4j.common.tests.tags.TagNames;
 import org.nd4j.linalg.BaseNd4jTestWithBackends;
 import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ops.impl.layers.convolution.BatchNorm;
+import org.nd4j.linalg.api.ops.impl.layers.convolution.config.Conv2DConfig;
+import org.nd4j.linalg.api.ops.impl.transforms.ReluLayer;
 import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.factory.Nd4jBackend;
 
 import java.io.File;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Collections;
 
 import static org.junit.Assert.*;
@@ -154,10 +162,76 @@ public class TestOptimization extends BaseNd4jTestWithBackends {
                 .build();
 
         SameDiff optimized = OptimizationTestUtil.testOptimization(conf);
-        assertEquals(3, optimized.getOps().size());
+        assertEquals(2, optimized.getOps().size());     //xw_plus_b (fused mmul + add) and softmax
         assertFalse(optimized.hasVariable(i1.name()));
         assertFalse(optimized.hasVariable(i2.name()));
         assertFalse(optimized.hasVariable(i3.name()));
         assertTrue(optimized.hasVariable("out"));
     }
-}
\ No newline at end of file
+
+    @ParameterizedTest
+    @MethodSource("org.nd4j.linalg.BaseNd4jTestWithBackends#configs")
+    public void testFuseMatMulBiasRelu(Nd4jBackend nd4jBackend) {
+        SameDiff sd = SameDiff.create();
+        SDVariable in = sd.placeHolder("in", DataType.FLOAT, -1, 4);
+        SDVariable w = sd.constant("w", Nd4j.rand(DataType.FLOAT, 4, 3));
+        SDVariable b = sd.constant("b", Nd4j.rand(DataType.FLOAT, 3));
+        SDVariable mmul = in.mmul(w);
+        SDVariable bias = sd.nn.biasAdd(mmul, b, true);
+        SDVariable out = sd.nn.relu("out", bias, 0.0);
+
+        File subDir = tempDir.resolve("fuse-matmul-bias-relu").toFile();
+        assertTrue(subDir.mkdirs());
+
+        OptTestConfig conf = OptTestConfig.builder()
+                .original(sd)
+                .tempFolder(subDir)
+                .outputs(Collections.singletonList("out"))
+                .placeholder("in", Nd4j.rand(DataType.FLOAT, 5, 4))
+                .mustApply(sd.getVariables().get(mmul.name()).getOutputOfOp(), FusionFunctionOptimizations.FuseMatMulBiasAdd.class)
+                .build();
+
+        SameDiff optimized = OptimizationTestUtil.testOptimization(conf);
+        assertEquals(1, optimized.getOps().size());
+        assertTrue(optimized.getOps().values().iterator().next().getOp() instanceof ReluLayer);
+        assertFalse(optimized.hasVariable(mmul.name()));
+        assertFalse(optimized.hasVariable(bias.name()));
+        assertTrue(optimized.hasVariable("out"));
+    }
+
+    @ParameterizedTest
+    @MethodSource("org.nd4j.linalg.BaseNd4jTestWithBackends#configs")
+    public void testFoldBatchNormIntoConv2d(Nd4jBackend nd4jBackend) {
+        SameDiff sd = SameDiff.create();
+        SDVariable in = sd.placeHolder("in", DataType.FLOAT, -1, 3, 8, 8);
+        SDVariable w = sd.constant("w", Nd4j.rand(DataType.FLOAT, 2, 2, 3, 4));       //YXIO
+        SDVariable mean = sd.constant("mean", Nd4j.rand(DataType.FLOAT, 4));
+        SDVariable var = sd.constant("var", Nd4j.rand(DataType.FLOAT, 4).addi(0.5));
+        SDVariable gamma = sd.constant("gamma", Nd4j.rand(DataType.FLOAT, 4));
+        SDVariable beta = sd.constant("beta", Nd4j.rand(DataType.FLOAT, 4));
+
+        SDVariable conv = sd.cnn.conv2d(in, w, Conv2DConfig.builder().kH(2).kW(2).dataFormat("NCHW").build());
+        SDVariable bn = sd.nn.batchNorm(conv, mean, var, gamma, beta, 1e-3, 1);
+        SDVariable out = sd.nn.tanh("out", bn);
+
+        File subDir = tempDir.resolve("fold-bn-conv2d").toFile();
+        assertTrue(subDir.mkdirs());
+
+        OptTestConfig conf = OptTestConfig.builder()
+                .original(sd)
+                .tempFolder(subDir)
+                .outputs(Collections.singletonList("out"))
+                .placeholder("in", Nd4j.rand(DataType.FLOAT, 2, 3, 8, 8))
+                .mustApply(sd.getVariables().get(conv.name()).getOutputOfOp(), FusionFunctionOptimizations.FoldBatchNormIntoConv2d.class)
+                .optimizerSets(Arrays.<OptimizerSet>asList(new FusionFunctionOptimizations(), new UnusedFunctionOptimizations()))
+                .build();
+
+        SameDiff optimized = OptimizationTestUtil.testOptimization(conf);
+        assertEquals(2, optimized.getOps().size());     //conv2d (with bias) and tanh
+        for(SameDiffOp op : optimized.getOps().values()){
+            assertFalse(op.getOp() instanceof BatchNorm);
+        }
+        assertFalse(optimized.hasVariable("mean"));
+        assertFalse(optimized.hasVariable("var"));
+    }
+}
@@ -25,7 +25,14 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.nd4j.autodiff.listeners.At;
+import org.nd4j.autodiff.listeners.Operation;
+import org.nd4j.autodiff.samediff.SDVariable;
+import org.nd4j.autodiff.samediff.SameDiff;
+import org.nd4j.autodiff.samediff.internal.InferenceSession;
+import org.nd4j.autodiff.samediff.internal.memory.ArenaMemoryMgr;
 import org.nd4j.autodiff.samediff.internal.memory.ArrayCacheMemoryMgr;
+import org.nd4j.autodiff.samediff.internal.memory.StaticMemoryPlan;
 import org.nd4j.common.tests.tags.NativeTag;
 import org.nd4j.common.tests.tags.TagNames;
 import org.nd4j.linalg.BaseNd4jTestWithBackends;
@@ -35,6 +42,11 @@ import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.factory.Nd4jBackend;
 
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -160,4 +172,102 @@ public class MemoryMgrTest extends BaseNd4jTestWithBackends {
         assertEquals(2000, mmgr.getLruCacheValues().size());
     }
 
+    @ParameterizedTest
+    @MethodSource("org.nd4j.linalg.BaseNd4jTestWithBackends#configs")
+    public void testStaticMemoryPlan(Nd4jBackend backend) {
+        //Chain of 5 arrays, each released after the next one is allocated: at most 2 live at once
+        List<StaticMemoryPlan.Allocation> trace = new ArrayList<>();
+        for( int i = 0; i < 5; i++) {
+            trace.add(new StaticMemoryPlan.Allocation(DataType.FLOAT, new long[]{16, 16}, 'c', true, 2 * i, 2 * i + 3, -1));
+        }
+        //Never released (i.e., an output) - not planned
+        trace.add(new StaticMemoryPlan.Allocation(DataType.FLOAT, new long[]{16, 16}, 'c', true, 10, -1, -1));
+
+        StaticMemoryPlan plan = StaticMemoryPlan.create(trace);
+        assertEquals(5, plan.numArenaAllocations());
+        assertEquals(2 * 256 * 4, plan.arenaBytes());
+        assertEquals(2 * 256 * 4, plan.peakLiveBytes());
+        assertEquals(5 * 256 * 4, plan.noReuseBytes());
+        assertEquals(-1, plan.getAllocations().get(5).getOffset());
+
+        //Allocations with overlapping lifetimes must not overlap in memory
+        List<StaticMemoryPlan.Allocation> allocs = plan.getAllocations();
+        for( int i = 0; i < 5; i++) {
+            for( int j = i + 1; j < 5; j++) {
+                StaticMemoryPlan.Allocation a = allocs.get(i);
+                StaticMemoryPlan.Allocation b = allocs.get(j);
+                if(a.getStart() < b.getEnd() && b.getStart() < a.getEnd()) {
+                    assertTrue(a.getOffset() + a.length() <= b.getOffset() || b.getOffset() + b.length() <= a.getOffset());
+                }
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("org.nd4j.linalg.BaseNd4jTestWithBackends#configs")
+    public void testArenaMemoryMgr(Nd4jBackend backend) {
+        SameDiff sd = SameDiff.create();
+        SDVariable in = sd.placeHolder("in", DataType.FLOAT, -1, 8);
+        SDVariable x = in;
+        for( int i = 0; i < 4; i++) {
+            SDVariable w = sd.var("w" + i, Nd4j.rand(DataType.FLOAT, 8, 8));
+            x = sd.nn.tanh("h" + i, x.mmul(w).add(1.0));
+        }
+        SDVariable out = x.sum("out", 1);
+
+        INDArray input = Nd4j.rand(DataType.FLOAT, 4, 8);
+        INDArray exp = sd.outputSingle(Collections.singletonMap("in", input), "out");
+
+        ArenaMemoryMgr mmgr = new ArenaMemoryMgr();
+        InferenceSession is = new InferenceSession(sd);
+        is.setMmgr(mmgr);
+
+        List<INDArray> outputs = new ArrayList<>();
+        for( int i = 0; i < 3; i++) {
+            Map<String,INDArray> m = is.output(Collections.singletonList("out"), Collections.singletonMap("in", input), null,
+                    Collections.emptyList(), null, At.defaultAt(Operation.INFERENCE));
+            outputs.add(m.get("out"));
+        }
+
+        StaticMemoryPlan plan = mmgr.getPlan();
+        assertNotNull(plan);
+        assertEquals(1, mmgr.getNumPlans());
+        assertTrue(plan.numArenaAllocations() > 0);
+        assertTrue(mmgr.getArenaAllocations() > 0);
+        assertTrue(plan.arenaBytes() <= plan.noReuseBytes());
+
+        //Outputs are not placed in the arena, so earlier outputs must not be overwritten by later executions
+        for(INDArray o : outputs) {
+            assertEquals(exp, o);
+        }
+
+        //Different shape: doesn't match the plan, should fall back and re-plan on the next execution
+        INDArray input2 = Nd4j.rand(DataType.FLOAT, 6, 8);
+        INDArray exp2 = sd.outputSingle(Collections.singletonMap("in", input2), "out");
+        for( int i = 0; i < 3; i++) {
+            Map<String,INDArray> m = is.output(Collections.singletonList("out"), Collections.singletonMap("in", input2), null,
+                    Collections.emptyList(), null, At.defaultAt(Operation.INFERENCE));
+            assertEquals(exp2, m.get("out"));
+        }
+        assertEquals(2, mmgr.getNumPlans());
+
+        //Different requested outputs: h1 was an arena allocated intermediate in the current plan, so the plan must not
+        //be used - otherwise h1 would be overwritten (and freed) by later executions
+        Map<String,INDArray> expH1 = sd.output(Collections.singletonMap("in", input2), "out", "h1");
+        Map<String,INDArray> m = is.output(Arrays.asList("out", "h1"), Collections.singletonMap("in", input2), null,
+                Collections.emptyList(), null, At.defaultAt(Operation.INFERENCE));
+        INDArray h1 = m.get("h1");
+        assertEquals(expH1.get("h1"), h1);
+        assertEquals(3, mmgr.getNumPlans());
+
+        for( int i = 0; i < 3; i++) {
+            m = is.output(Collections.singletonList("out"), Collections.singletonMap("in", input2), null,
+                    Collections.emptyList(), null, At.defaultAt(Operation.INFERENCE));
+            assertEquals(exp2, m.get("out"));
+        }
+        assertEquals(4, mmgr.getNumPlans());
+        assertEquals(expH1.get("h1"), h1);
+        mmgr.close();
+    }
+
 }
@@ -27,6 +27,7 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.nd4j.autodiff.samediff.SDVariable;
 import org.nd4j.autodiff.samediff.SameDiff;
+import org.nd4j.autodiff.samediff.internal.InferenceSessionPool;
 import org.nd4j.common.primitives.AtomicBoolean;
 import org.nd4j.common.tests.BaseND4JTest;
 import org.nd4j.common.tests.tags.TagNames;
@@ -42,6 +43,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @Slf4j
 @Tag(TagNames.SAMEDIFF)
@@ -109,6 +111,53 @@ public class SameDiffMultiThreadTests extends BaseND4JTest {
 
 
 
+    @ParameterizedTest
+    @MethodSource("org.nd4j.linalg.BaseNd4jTestWithBackends#configs")
+    public void testSessionPool(Nd4jBackend backend) throws Exception {
+        int nThreads = 16;
+        int nRuns = 100;
+        int maxSessions = 2;
+
+        SameDiff sd = SameDiff.create();
+        SDVariable in = sd.placeHolder("in", DataType.FLOAT, -1, 10);
+        SDVariable w1 = sd.var("w1", Nd4j.rand(DataType.FLOAT, 10, 10));
+        SDVariable b1 = sd.var("b1", Nd4j.rand(DataType.FLOAT, 10));
+        SDVariable w2 = sd.var("w2", Nd4j.rand(DataType.FLOAT, 10, 10));
+        SDVariable b2 = sd.var("b2", Nd4j.rand(DataType.FLOAT, 10));
+        SDVariable l1 = sd.nn.tanh(in.mmul(w1).add(b1));
+        SDVariable out = sd.nn.softmax("out", l1.mmul(w2).add(b2));
+
+        INDArray[] inputArrs = new INDArray[nThreads];
+        INDArray[] expOut = new INDArray[nThreads];
+        for( int i = 0; i < nThreads; i++) {
+            inputArrs[i] = Nd4j.rand(DataType.FLOAT, i+1, 10);
+            expOut[i] = sd.outputSingle(Collections.singletonMap("in", inputArrs[i]), "out");
+            inputArrs[i].setCloseable(false);
+            expOut[i].setCloseable(false);
+        }
+
+        InferenceSessionPool pool = sd.enableSessionPool(maxSessions);
+
+        Semaphore s = new Semaphore(nThreads);
+        CountDownLatch latch = new CountDownLatch(nThreads);
+        AtomicBoolean[] failuresByThread = new AtomicBoolean[nThreads];
+        AtomicInteger[] counters = new AtomicInteger[nThreads];
+        doTest(sd, nThreads, nRuns, inputArrs, expOut, "in", "out", failuresByThread, counters, s, latch);
+
+        s.release(nThreads);
+        latch.await();
+
+        for(int i = 0; i < nThreads; i++) {
+            assertFalse(failuresByThread[i].get(),"Thread " + i + " failed");
+            assertEquals( nRuns, counters[i].get(),"Thread " + i + " number of runs");
+        }
+
+        assertTrue(sd.getSessions().isEmpty());
+        assertTrue(pool.numSessions() <= maxSessions);
+        assertEquals(pool.numSessions(), pool.numIdleSessions());
+        assertEquals((long) nThreads * nRuns, pool.getBorrowCount());
+    }
+
     public static void doTest(SameDiff sd, int nThreads, int nRuns, INDArray[] inputArrs, INDArray[] expOut,
                               String inName, String outName,
                               AtomicBoolean[] failuresByThread, AtomicInteger[] counters, Semaphore s, CountDownLatch latch){
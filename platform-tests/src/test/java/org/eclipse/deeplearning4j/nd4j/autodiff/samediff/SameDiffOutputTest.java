@@ -26,6 +26,7 @@ import org.junit.jupiter.params.provider.MethodSource;
 import org.nd4j.autodiff.samediff.SDVariable;
 import org.nd4j.autodiff.samediff.SameDiff;
 import org.nd4j.autodiff.samediff.TrainingConfig;
+import org.nd4j.autodiff.samediff.internal.InferenceSession;
 import org.nd4j.common.tests.tags.NativeTag;
 import org.nd4j.common.tests.tags.TagNames;
 import org.nd4j.linalg.BaseNd4jTestWithBackends;
@@ -103,6 +104,92 @@ public class SameDiffOutputTest extends BaseNd4jTestWithBackends {
                 0.0001),"output != input + 2");
     }
 
+    @ParameterizedTest
+    @MethodSource("org.nd4j.linalg.BaseNd4jTestWithBackends#configs")
+    public void testExecutionPlanCache(Nd4jBackend backend) {
+        SameDiff sd = SameDiff.create();
+        SDVariable in = sd.placeHolder("input", DataType.FLOAT, -1, 4);
+        SDVariable w = sd.var("w", Nd4j.rand(DataType.FLOAT, 4, 3));
+        SDVariable out = in.mmul(w).add("out", 1.0);
+
+        INDArray arr = Nd4j.rand(DataType.FLOAT, 2, 4);
+        INDArray exp = arr.mmul(w.getArr()).add(1.0);
+        for (int i = 0; i < 3; i++) {
+            INDArray o = sd.output(Collections.singletonMap("input", arr), "out").get("out");
+            assertEquals(exp, o);
+        }
+
+        InferenceSession is = sd.getSessions().get(Thread.currentThread().getId());
+        assertEquals(1, is.getExecutionPlanCacheMisses());
+        assertEquals(2, is.getExecutionPlanCacheHits());
+
+        //Modifying the graph should invalidate the cached plan
+        SDVariable out2 = out.mul("out2", 2.0);
+        INDArray o2 = sd.output(Collections.singletonMap("input", arr), "out2").get("out2");
+        assertEquals(exp.mul(2.0), o2);
+        INDArray o = sd.output(Collections.singletonMap("input", arr), "out").get("out");
+        assertEquals(exp, o);
+        assertEquals(3, is.getExecutionPlanCacheMisses());
+        assertEquals(2, is.getExecutionPlanCacheHits());
+    }
+
+    @ParameterizedTest
+    @MethodSource("org.nd4j.linalg.BaseNd4jTestWithBackends#configs")
+    public void testInterOpParallelism(Nd4jBackend backend) throws Exception {
+        Nd4j.getRandom().setSeed(12345);
+        SameDiff sd = SameDiff.create();
+        SDVariable in = sd.placeHolder("input", DataType.FLOAT, -1, 8);
+        SDVariable[] branches = new SDVariable[6];
+        for (int i = 0; i < branches.length; i++) {
+            SDVariable x = in;
+            for (int j = 0; j < 3; j++) {
+                SDVariable w = sd.var("w_" + i + "_" + j, Nd4j.rand(DataType.FLOAT, 8, 8));
+                x = sd.math().tanh(x.mmul(w));
+            }
+            branches[i] = x;
+        }
+        SDVariable out = sd.math().mergeAdd(branches).rename("out");
+
+        INDArray arr = Nd4j.rand(DataType.FLOAT, 4, 8);
+        INDArray exp = sd.output(Collections.singletonMap("input", arr), "out").get("out");
+
+        sd.setInterOpThreads(4);
+        for (int i = 0; i < 3; i++) {
+            INDArray o = sd.output(Collections.singletonMap("input", arr), "out").get("out");
+            assertEquals(exp, o);
+        }
+        assertTrue(numInterOpThreads() > 0);
+
+        //Discarded sessions (per-thread sessions replaced by a pool, pooled sessions removed by clear) should not
+        //leave their inter-op threads running
+        sd.enableSessionPool(2);
+        waitForInterOpThreads(0);
+        for (int i = 0; i < 3; i++) {
+            INDArray o = sd.output(Collections.singletonMap("input", arr), "out").get("out");
+            assertEquals(exp, o);
+        }
+        assertTrue(numInterOpThreads() > 0);
+        sd.disableSessionPool();
+        waitForInterOpThreads(0);
+    }
+
+    private static int numInterOpThreads() {
+        int count = 0;
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if (t.isAlive() && t.getName().startsWith("SameDiff-InterOp-"))
+                count++;
+        }
+        return count;
+    }
+
+    private static void waitForInterOpThreads(int expected) throws InterruptedException {
+        long end = System.currentTimeMillis() + 10000;
+        while (numInterOpThreads() != expected && System.currentTimeMillis() < end) {
+            Thread.sleep(50);
+        }
+        assertEquals(expected, numInterOpThreads());
+    }
+
     @Override
     public char ordering() {
         return 'c';
@@ -21,6 +21,7 @@
 package org.eclipse.deeplearning4j.nd4j.autodiff.samediff;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.File;
@@ -43,6 +44,8 @@ import org.nd4j.autodiff.samediff.SDIndex;
 import org.nd4j.autodiff.samediff.SDVariable;
 import org.nd4j.autodiff.samediff.SameDiff;
 import org.nd4j.autodiff.samediff.TrainingConfig;
+import org.nd4j.autodiff.samediff.VariableType;
+import org.nd4j.autodiff.samediff.internal.ActivationCheckpointing;
 import org.nd4j.common.tests.tags.NativeTag;
 import org.nd4j.common.tests.tags.TagNames;
 import org.nd4j.evaluation.IEvaluation;
@@ -60,6 +63,8 @@ import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
 import org.nd4j.linalg.dataset.api.preprocessor.NormalizerStandardize;
 import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.factory.Nd4jBackend;
+import org.nd4j.linalg.indexing.BooleanIndexing;
+import org.nd4j.linalg.indexing.conditions.Conditions;
 import org.nd4j.linalg.learning.config.AMSGrad;
 import org.nd4j.linalg.learning.config.AdaMax;
 import org.nd4j.linalg.learning.config.Adam;
@@ -519,6 +524,134 @@ public class SameDiffTrainingTest extends BaseNd4jTestWithBackends {
     }
 
 
+    @ParameterizedTest
+    @MethodSource("org.nd4j.linalg.BaseNd4jTestWithBackends#configs")
+    public void testActivationCheckpointing(Nd4jBackend backend) {
+        INDArray f = Nd4j.rand(DataType.FLOAT, 8, 10);
+        INDArray l = Nd4j.rand(DataType.FLOAT, 8, 10);
+
+        SameDiff noCheckpoint = deepMlp(false);
+        SameDiff withCheckpoint = deepMlp(true);
+
+        Map<String, INDArray> ph = new HashMap<>();
+        ph.put("in", f);
+        ph.put("label", l);
+        Map<String, INDArray> gExp = noCheckpoint.calculateGradients(ph, "w0", "w5", "b9");
+        Map<String, INDArray> gAct = withCheckpoint.calculateGradients(ph, "w0", "w5", "b9");
+        for (String s : gExp.keySet()) {
+            assertEquals(gExp.get(s), gAct.get(s), s);
+        }
+
+        //Recompute ops should have been added to the gradient function, and not to the forward graph
+        long numRecompute = withCheckpoint.getFunction("grad").getOps().keySet().stream()
+                .filter(s -> s.contains(ActivationCheckpointing.RECOMPUTE_SUFFIX)).count();
+        assertTrue(numRecompute > 0);
+        assertEquals(noCheckpoint.getOps().size(), withCheckpoint.getOps().size());
+
+        //Parameters are updated in-line during training: recomputation must use the parameters from before the update
+        DataSet ds = new DataSet(f, l);
+        for (int i = 0; i < 3; i++) {
+            noCheckpoint.fit(ds);
+            withCheckpoint.fit(ds);
+        }
+        for (SDVariable v : noCheckpoint.variables()) {
+            if (v.getVariableType() == VariableType.VARIABLE) {
+                assertEquals(v.getArr(), withCheckpoint.getVariable(v.name()).getArr(), v.name());
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("org.nd4j.linalg.BaseNd4jTestWithBackends#configs")
+    public void testMixedPrecisionTraining(Nd4jBackend backend) {
+        Nd4j.getRandom().setSeed(12345);
+        DataSet ds = new DataSet(Nd4j.rand(DataType.FLOAT, 32, 10), Nd4j.rand(DataType.FLOAT, 32, 10));
+
+        SameDiff fp32 = mixedPrecisionMlp(null, 32768);
+        SameDiff bf16 = mixedPrecisionMlp(DataType.BFLOAT16, 32768);
+        double initialLoss = fp32.fit(ds).lossCurve().lastMeanLoss("loss");
+        bf16.fit(ds);
+        for (int i = 0; i < 100; i++) {
+            fp32.fit(ds);
+            bf16.fit(ds);
+        }
+        double lossFp32 = fp32.fit(ds).lossCurve().lastMeanLoss("loss");
+        double lossBf16 = bf16.fit(ds).lossCurve().lastMeanLoss("loss");
+        assertTrue(lossFp32 < 0.5 * initialLoss);
+        assertEquals(lossFp32, lossBf16, 0.15 * lossFp32);
+
+        //Master weights stay in FP32; only the gradient function uses the reduced precision type
+        assertEquals(DataType.FLOAT, bf16.getVariable("w0").dataType());
+        assertEquals(DataType.FLOAT, bf16.getVariable("w0").getArr().dataType());
+        assertEquals(DataType.BFLOAT16, bf16.getFunction("grad").getVariable("w0").dataType());
+        assertEquals(0, bf16.getLossScaler().getSkippedSteps());
+
+        //Large loss scale + large loss: the scaled FP16 gradients overflow. Those steps should be skipped and the
+        // scale reduced until training can proceed
+        SameDiff fp16 = mixedPrecisionMlp(DataType.HALF, 32768);
+        DataSet large = new DataSet(ds.getFeatures(), ds.getLabels().mul(1000));
+        INDArray w0Before = fp16.getArrForVarName("w0").dup();
+        fp16.fit(large);
+        assertEquals(w0Before, fp16.getArrForVarName("w0"));
+        assertEquals(1, fp16.getLossScaler().getSkippedSteps());
+        assertEquals(16384.0, fp16.getLossScaler().getScale(), 0.0);
+        for (int i = 0; i < 20; i++) {
+            fp16.fit(large);
+        }
+        assertTrue(fp16.getLossScaler().getScale() < 16384.0);
+        INDArray w0 = fp16.getArrForVarName("w0");
+        assertTrue(BooleanIndexing.and(w0, Conditions.isFinite()));
+        assertNotEquals(w0Before, w0);
+    }
+
+    private static SameDiff mixedPrecisionMlp(DataType mixedPrecision, double lossScale) {
+        Nd4j.getRandom().setSeed(12345);
+        SameDiff sd = SameDiff.create();
+        SDVariable in = sd.placeHolder("in", DataType.FLOAT, -1, 10);
+        SDVariable label = sd.placeHolder("label", DataType.FLOAT, -1, 10);
+        SDVariable x = in;
+        for (int i = 0; i < 3; i++) {
+            SDVariable w = sd.var("w" + i, Nd4j.rand(DataType.FLOAT, 10, 10).subi(0.5));
+            SDVariable b = sd.var("b" + i, Nd4j.rand(DataType.FLOAT, 10).subi(0.5));
+            x = x.mmul(w).add(b);
+            if (i < 2)
+                x = sd.math.tanh(x);
+        }
+        sd.loss.meanSquaredError("loss", label, x, null);
+
+        sd.setTrainingConfig(TrainingConfig.builder()
+                .updater(new Adam(1e-2))
+                .dataSetFeatureMapping("in")
+                .dataSetLabelMapping("label")
+                .mixedPrecision(mixedPrecision)
+                .lossScaling(lossScale, true)
+                .build());
+        return sd;
+    }
+
+    private static SameDiff deepMlp(boolean checkpointing) {
+        Nd4j.getRandom().setSeed(12345);
+        SameDiff sd = SameDiff.create();
+        SDVariable in = sd.placeHolder("in", DataType.FLOAT, -1, 10);
+        SDVariable label = sd.placeHolder("label", DataType.FLOAT, -1, 10);
+        SDVariable x = in;
+        for (int i = 0; i < 10; i++) {
+            SDVariable w = sd.var("w" + i, Nd4j.rand(DataType.FLOAT, 10, 10).subi(0.5));
+            SDVariable b = sd.var("b" + i, Nd4j.rand(DataType.FLOAT, 10).subi(0.5));
+            x = sd.math.tanh("tanh" + i, x.mmul(w).add(b));
+        }
+        sd.loss.meanSquaredError("loss", label, x, null);
+
+        sd.setTrainingConfig(TrainingConfig.builder()
+                .updater(new Sgd(0.1))
+                .dataSetFeatureMapping("in")
+                .dataSetLabelMapping("label")
+                .autoActivationCheckpoints(checkpointing)
+                .build());
+        return sd;
+    }
+
+
     @Override
     public char ordering() {
         return 'c';
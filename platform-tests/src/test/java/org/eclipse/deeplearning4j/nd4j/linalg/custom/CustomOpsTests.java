@@ -68,8 +68,10 @@ import org.nd4j.linalg.api.ops.custom.ToggleBits;
 import org.nd4j.linalg.api.ops.custom.TriangularSolve;
 import org.nd4j.linalg.api.ops.custom.YiqToRgb;
 import org.nd4j.linalg.api.ops.custom.YuvToRgb;
+import org.nd4j.linalg.api.ops.executioner.DefaultOpExecutioner;
 import org.nd4j.linalg.api.ops.executioner.OpExecutioner;
 import org.nd4j.linalg.api.ops.executioner.OpStatus;
+import org.nd4j.linalg.api.ops.executioner.OutputShapeCache;
 import org.nd4j.linalg.api.ops.impl.controlflow.Where;
 import org.nd4j.linalg.api.ops.impl.image.NonMaxSuppression;
 import org.nd4j.linalg.api.ops.impl.image.ResizeArea;
@@ -2112,4 +2114,33 @@ public class CustomOpsTests extends BaseNd4jTestWithBackends {
 
         assertEquals(out, out2);
     }
+
+    @ParameterizedTest
+    @MethodSource("org.nd4j.linalg.BaseNd4jTestWithBackends#configs")
+    public void testOutputShapeCache(Nd4jBackend backend) {
+        OutputShapeCache cache = ((DefaultOpExecutioner) Nd4j.getExecutioner()).getOutputShapeCache();
+        cache.clear();
+        cache.resetStats();
+
+        INDArray in = Nd4j.rand(DataType.FLOAT, 3, 4);
+        CustomOp op1 = DynamicCustomOp.builder("reshape").addInputs(in, Nd4j.createFromArray(4L, 3L)).build();
+        CustomOp op2 = DynamicCustomOp.builder("reshape").addInputs(in.dup(), Nd4j.createFromArray(4L, 3L)).build();
+        CustomOp op3 = DynamicCustomOp.builder("reshape").addInputs(in, Nd4j.createFromArray(2L, 6L)).build();
+
+        List<LongShapeDescriptor> s1 = Nd4j.getExecutioner().calculateOutputShape(op1);
+        List<LongShapeDescriptor> s2 = Nd4j.getExecutioner().calculateOutputShape(op2);
+        assertEquals(s1, s2);
+        assertEquals(1, cache.getHits());
+
+        //Value of the (integer) shape argument is part of the key
+        assertNotEquals(OutputShapeCache.key(op1, null), OutputShapeCache.key(op3, null));
+        List<LongShapeDescriptor> s3 = Nd4j.getExecutioner().calculateOutputShape(op3);
+        assertArrayEquals(new long[]{2, 6}, s3.get(0).getShape());
+        assertEquals(1, cache.getHits());
+
+        //Ops with output shapes that depend on input values are never cached
+        INDArray boxes = Nd4j.rand(DataType.FLOAT, 3, 4);
+        INDArray scores = Nd4j.rand(DataType.FLOAT, 3);
+        assertNull(OutputShapeCache.key(new NonMaxSuppression(boxes, scores, 2, 0.5, 0.5), null));
+    }
 }
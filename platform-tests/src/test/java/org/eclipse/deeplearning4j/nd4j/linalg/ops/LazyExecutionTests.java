@@ -0,0 +1,127 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.eclipse.deeplearning4j.nd4j.linalg.ops;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.nd4j.common.tests.tags.NativeTag;
+import org.nd4j.linalg.BaseNd4jTestWithBackends;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.executioner.LazyExecutionScope;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.factory.Nd4jBackend;
+import org.nd4j.linalg.ops.transforms.Transforms;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@NativeTag
+public class LazyExecutionTests extends BaseNd4jTestWithBackends {
+
+    @ParameterizedTest
+    @MethodSource("org.nd4j.linalg.BaseNd4jTestWithBackends#configs")
+    public void testFusedChainMatchesEager(Nd4jBackend backend) {
+        for (DataType dt : new DataType[]{DataType.FLOAT, DataType.DOUBLE}) {
+            //Larger than one block, and not a multiple of the block size
+            INDArray x = Nd4j.rand(dt, 1000, 101);
+            INDArray a = Nd4j.rand(dt, 1000, 101);
+            INDArray b = Nd4j.rand(dt, 1000, 101);
+
+            INDArray expChain = x.mul(a).addi(b).muli(3.0);
+            INDArray expSigmoid = Transforms.sigmoid(x.sub(b), true);
+            INDArray expInPlace = x.dup();
+            expInPlace.muli(expInPlace).rsubi(1.0).divi(a.add(1.0));
+
+            INDArray chain;
+            INDArray sigmoid;
+            INDArray inPlace = x.dup();
+            try (LazyExecutionScope scope = LazyExecutionScope.open()) {
+                chain = x.mul(a).addi(b).muli(3.0);
+                sigmoid = Transforms.sigmoid(x.sub(b), true);
+                inPlace.muli(inPlace).rsubi(1.0).divi(a.add(1.0));
+                if (scope.isLazy())
+                    assertTrue(scope.queueLength() > 0);
+            }
+
+            assertEquals(expChain, chain);
+            assertEquals(expSigmoid, sigmoid);
+            assertEquals(expInPlace, inPlace);
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("org.nd4j.linalg.BaseNd4jTestWithBackends#configs")
+    public void testFlushOnRead(Nd4jBackend backend) {
+        INDArray x = Nd4j.linspace(DataType.FLOAT, 1, 20000, 1).reshape(100, 200);
+        try (LazyExecutionScope scope = LazyExecutionScope.open()) {
+            INDArray y = x.mul(2.0).addi(1.0);
+            INDArray z = Transforms.exp(y.sub(y), true);
+            if (scope.isLazy())
+                assertEquals(4, scope.queueLength());
+
+            //Element access flushes the queue
+            assertEquals(3.0, y.getDouble(0), 0.0);
+            assertEquals(0, scope.queueLength());
+
+            //Reductions flush the queue
+            y.muli(0.5);
+            assertEquals(20000.5, y.maxNumber().doubleValue(), 0.0);
+            assertEquals(0, scope.queueLength());
+            assertEquals(20000.0, z.sumNumber().doubleValue(), 1e-3);
+
+            //Incompatible chains are flushed and a new chain is started
+            INDArray small = Nd4j.ones(DataType.FLOAT, 10).muli(2.0);
+            INDArray big = x.add(1.0);
+            INDArray doubles = Nd4j.ones(DataType.DOUBLE, 10).addi(1.0);
+            assertEquals(Nd4j.valueArrayOf(new long[]{10}, 2.0f), small);
+            assertEquals(x.dup().addi(1.0), big);
+            assertEquals(Nd4j.valueArrayOf(new long[]{10}, 2.0), doubles);
+
+            //Views and broadcasts are not deferred
+            INDArray row = x.getRow(0);
+            INDArray rowPlus = row.add(1.0);
+            INDArray bcast = x.addRowVector(rowPlus);
+            assertEquals(2.0 * x.getDouble(0) + 1.0, bcast.getDouble(0), 1e-6);
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("org.nd4j.linalg.BaseNd4jTestWithBackends#configs")
+    public void testNestedScopes(Nd4jBackend backend) {
+        INDArray x = Nd4j.ones(DataType.FLOAT, 3, 4);
+        INDArray y;
+        try (LazyExecutionScope outer = LazyExecutionScope.open()) {
+            try (LazyExecutionScope inner = LazyExecutionScope.open()) {
+                y = x.mul(5.0);
+            }
+            //Closing the inner scope should not flush
+            if (outer.isLazy())
+                assertEquals(1, outer.queueLength());
+            y.addi(x);
+        }
+        assertEquals(Nd4j.valueArrayOf(new long[]{3, 4}, 6.0f), y);
+    }
+
+    @Override
+    public char ordering() {
+        return 'c';
+    }
+}